@@ -0,0 +1,100 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientFilter;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.repository.QueryResult;
+
+/**
+ * Age band reports on the clients of one therapist: the clients aged 18 to 25,
+ * counted and read through the birth date index and by filtering the whole
+ * partition one client at a time.
+ *
+ * Births are spread over 70 years, so the band holds about a ninth of the
+ * clients.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class AgeBandBenchmark {
+
+	private static final LocalDate TODAY = LocalDate.of(2010, 1, 1);
+
+	@Param({ "1000000" })
+	private int clients;
+
+	private ClientRepository repository;
+	private UUID therapistId;
+	private ClientFilter band;
+
+	@Setup
+	public void setUp() {
+		repository = new ClientRepository();
+		therapistId = UUID.randomUUID();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < clients; i++) {
+			Client client = Fixtures.client(therapistId, i);
+			client.setBirthDate(Date.from(TODAY.minusDays(random.nextInt(365 * 70)).atStartOfDay(ZoneOffset.UTC)
+					.toInstant()));
+			repository.save(therapistId, client);
+		}
+		band = new ClientFilter(null, null, TODAY.minusYears(26), TODAY.minusYears(18).plusDays(1));
+	}
+
+	@Benchmark
+	public long countByIndex() {
+		return repository.countByBirthDate(therapistId, band.getFirstBirthDay(), band.getLastBirthDay());
+	}
+
+	@Benchmark
+	public long countAllByIndex() {
+		return repository.countByBirthDate(band.getFirstBirthDay(), band.getLastBirthDay());
+	}
+
+	@Benchmark
+	public long countByScan() {
+		return partition().values().stream().filter(band::matches).count();
+	}
+
+	@Benchmark
+	public QueryResult<Client> queryByIndex() {
+		return repository.query(therapistId, band);
+	}
+
+	@Benchmark
+	public List<Client> queryByScan() {
+		return partition().values().stream().filter(band::matches).collect(Collectors.toList());
+	}
+
+	private Map<UUID, Client> partition() {
+		return repository.findById(therapistId).get();
+	}
+}
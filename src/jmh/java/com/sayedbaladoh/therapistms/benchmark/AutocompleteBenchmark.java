@@ -0,0 +1,75 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.repository.CompletionTrie;
+
+/**
+ * Name completion of the clients of one therapist, one keystroke at a time,
+ * and the cost of renaming a client in the trie.
+ *
+ * First and last names are drawn from small pools, the rest of the name from
+ * a large one, so short prefixes have hundreds of thousands of names under
+ * them and long ones a few.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AutocompleteBenchmark {
+
+	private static final String[] FIRST_NAMES = { "Ahmed", "Mohamed", "Mariam", "Sara", "Omar", "Youssef", "Nour",
+			"Hana", "Karim", "Laila", "Mostafa", "Salma", "Tarek", "Dina", "Hassan", "Amira" };
+	private static final String[] LAST_NAMES = { "Hassan", "Ali", "Ibrahim", "Mahmoud", "Saleh", "Fathy", "Samir",
+			"Nabil", "Gamal", "Adel", "Khaled", "Farouk" };
+	private static final String[] PREFIXES = { "a", "ah", "ahm", "ahmed", "ahmed h", "ahmed hassan 1", "sa", "sal",
+			"mari", "mariam sa", "fat", "12" };
+
+	@Param({ "100000" })
+	private int clients;
+
+	private CompletionTrie trie;
+
+	@Setup
+	public void setUp() {
+		trie = new CompletionTrie();
+		for (int i = 0; i < clients; i++)
+			trie.add(name(i));
+	}
+
+	@Benchmark
+	public List<String> complete() {
+		return trie.complete(PREFIXES[ThreadLocalRandom.current().nextInt(PREFIXES.length)], CompletionTrie.K);
+	}
+
+	@Benchmark
+	public void rename() {
+		String name = name(ThreadLocalRandom.current().nextInt(clients));
+		trie.remove(name);
+		trie.add(name);
+	}
+
+	static String name(int i) {
+		return FIRST_NAMES[i % FIRST_NAMES.length] + " " + LAST_NAMES[i / FIRST_NAMES.length % LAST_NAMES.length]
+				+ " " + i;
+	}
+}
@@ -0,0 +1,99 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientFilter;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.repository.QueryResult;
+
+/**
+ * Filter queries on the clients of one therapist, through the planner and by
+ * filtering the whole partition one client at a time.
+ *
+ * Jobs are drawn from 20 values and genders from 2, so the job index reads a
+ * twentieth of the partition; births are spread over 70 years, so the birth
+ * date index reads a seventh of it for the clients born since 2000.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ClientQueryBenchmark {
+
+	private static final int JOBS = 20;
+
+	@Param({ "100000" })
+	private int clients;
+
+	private ClientRepository repository;
+	private UUID therapistId;
+	private ClientFilter byJob;
+	private ClientFilter byBirthDate;
+
+	@Setup
+	public void setUp() {
+		repository = new ClientRepository();
+		therapistId = UUID.randomUUID();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < clients; i++) {
+			Client client = Fixtures.client(therapistId, i);
+			client.setGender(random.nextBoolean() ? "female" : "male");
+			client.setJob("Job " + random.nextInt(JOBS));
+			client.setBirthDate(Date.from(LocalDate.of(1940, 1, 1).plusDays(random.nextInt(365 * 70))
+					.atStartOfDay(ZoneOffset.UTC).toInstant()));
+			repository.save(therapistId, client);
+		}
+		byJob = new ClientFilter("female", "job 7", LocalDate.of(1990, 1, 1), null);
+		byBirthDate = new ClientFilter(null, null, LocalDate.of(2000, 1, 1), null);
+	}
+
+	@Benchmark
+	public QueryResult<Client> queryByJob() {
+		return repository.query(therapistId, byJob);
+	}
+
+	@Benchmark
+	public List<Client> scanByJob() {
+		return scan(byJob);
+	}
+
+	@Benchmark
+	public QueryResult<Client> queryByBirthDate() {
+		return repository.query(therapistId, byBirthDate);
+	}
+
+	@Benchmark
+	public List<Client> scanByBirthDate() {
+		return scan(byBirthDate);
+	}
+
+	private List<Client> scan(ClientFilter filter) {
+		return repository.findById(therapistId).get().values().stream().filter(filter::matches)
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,99 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+
+/**
+ * <code>ClientRepository.save</code> throughput under contention. With one
+ * therapist every thread writes to the same partition; with more, the writes
+ * spread over partitions.
+ *
+ * Each thread saves the same few thousand client ids over and over, or inserts
+ * new clients and removes them right away, so the repository stays the same
+ * size however long the benchmark runs.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ClientRepositoryBenchmark {
+
+	private static final int CLIENTS_PER_THREAD = 4096;
+
+	@Param({ "1", "64" })
+	private int therapists;
+
+	private ClientRepository repository;
+	private UUID[] therapistIds;
+
+	@Setup
+	public void setUp() {
+		repository = new ClientRepository();
+		therapistIds = new UUID[therapists];
+		for (int i = 0; i < therapists; i++)
+			therapistIds[i] = UUID.randomUUID();
+	}
+
+	@State(Scope.Thread)
+	public static class Writer {
+
+		private final UUID[] clientIds = new UUID[CLIENTS_PER_THREAD];
+		private final String[] emails = new String[CLIENTS_PER_THREAD];
+		private int next;
+
+		@Setup
+		public void setUp() {
+			for (int i = 0; i < clientIds.length; i++) {
+				clientIds[i] = UUID.randomUUID();
+				emails[i] = clientIds[i] + "@test.com";
+			}
+		}
+
+		int nextClient() {
+			return next++ & (CLIENTS_PER_THREAD - 1);
+		}
+	}
+
+	@Benchmark
+	public Client save(Writer writer) {
+		UUID therapistId = therapistIds[ThreadLocalRandom.current().nextInt(therapists)];
+		int i = writer.nextClient();
+		Client client = Fixtures.client(therapistId, i);
+		client.setId(writer.clientIds[i]);
+		client.setEmail(writer.emails[i]);
+		return repository.save(therapistId, client);
+	}
+
+	@Benchmark
+	public Optional<Client> insertAndRemove() {
+		UUID therapistId = therapistIds[ThreadLocalRandom.current().nextInt(therapists)];
+		Client client = Fixtures.client(therapistId, 0);
+		client.setEmail(client.getId() + "@test.com");
+		repository.save(therapistId, client);
+		return repository.remove(therapistId, client.getId());
+	}
+}
@@ -0,0 +1,95 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+
+/**
+ * Partial word search of the clients of one therapist, from the n-gram index
+ * and from a scan of the whole partition, like the front desk filtering the
+ * full client list in the browser.
+ *
+ * Names, addresses and jobs are drawn from small pools, so common trigrams
+ * have posting lists of tens of thousands of clients.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ClientSearchBenchmark {
+
+	private static final String[] FIRST_NAMES = { "Ahmed", "Mohamed", "Mariam", "Sara", "Omar", "Youssef", "Nour",
+			"Hana", "Karim", "Laila", "Mostafa", "Salma", "Tarek", "Dina", "Hassan", "Amira" };
+	private static final String[] LAST_NAMES = { "Hassan", "Ali", "Ibrahim", "Mahmoud", "Saleh", "Fathy", "Samir",
+			"Nabil", "Gamal", "Adel", "Khaled", "Farouk" };
+	private static final String[] CITIES = { "Cairo", "Giza", "Alexandria", "Mansoura", "Tanta", "Aswan", "Luxor" };
+	private static final String[] JOBS = { "Engineer", "Doctor", "Teacher", "Accountant", "Lawyer", "Designer" };
+	private static final String[] QUERIES = { "ahm", "mariam sal", "hassan", "giza", "engineer", "oma", "youssef n",
+			"docto" };
+
+	@Param({ "100000" })
+	private int clients;
+
+	private ClientRepository repository;
+	private UUID therapistId;
+
+	@Setup
+	public void setUp() {
+		repository = new ClientRepository();
+		therapistId = UUID.randomUUID();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < clients; i++) {
+			Client client = Fixtures.client(therapistId, i);
+			client.setName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+					+ LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + i);
+			client.setAddress(random.nextInt(100) + " Street, " + CITIES[random.nextInt(CITIES.length)]);
+			client.setJob(JOBS[random.nextInt(JOBS.length)]);
+			repository.save(therapistId, client);
+		}
+	}
+
+	@Benchmark
+	public List<Client> search() {
+		return repository.search(therapistId, randomQuery(), 20);
+	}
+
+	@Benchmark
+	public List<Client> scan() {
+		String query = randomQuery();
+		List<Client> found = new ArrayList<>();
+		for (Client client : repository.findById(therapistId).get().values()) {
+			String text = (client.getName() + " " + client.getAddress() + " " + client.getJob())
+					.toLowerCase(Locale.ROOT);
+			if (text.contains(query))
+				found.add(client);
+		}
+		return found;
+	}
+
+	private String randomQuery() {
+		return QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)];
+	}
+}
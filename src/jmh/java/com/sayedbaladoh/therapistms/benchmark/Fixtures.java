@@ -0,0 +1,41 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.Date;
+import java.util.UUID;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.model.Therapist;
+
+/**
+ * Entities shaped like the ones of the integration tests.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+final class Fixtures {
+
+	private Fixtures() {
+	}
+
+	static Therapist therapist(int i) {
+		Therapist therapist = new Therapist();
+		therapist.setPracticeId(UUID.randomUUID());
+		therapist.setName("Therapist " + i);
+		therapist.setEmail("therapist" + i + "@test.com");
+		return therapist;
+	}
+
+	static Client client(UUID therapistId, int i) {
+		Client client = new Client();
+		client.setId(UUID.randomUUID());
+		client.setTherapistId(therapistId);
+		client.setName("Client " + i);
+		client.setEmail("client" + i + "@test.com");
+		client.setPhoneNumber("+2012345789");
+		client.setAddress("Cairo");
+		client.setJob("Engineer");
+		client.setBirthDate(new Date(0));
+		client.setGender(i % 2 == 0 ? "male" : "female");
+		return client;
+	}
+}
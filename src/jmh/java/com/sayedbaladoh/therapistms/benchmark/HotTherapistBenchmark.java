@@ -0,0 +1,87 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.service.ClientService;
+import com.sayedbaladoh.therapistms.service.ClientServiceImpl;
+import com.sayedbaladoh.therapistms.util.ObjectMapperHelper;
+
+/**
+ * Mixed reads and copy-on-write updates of the clients of one hot therapist,
+ * three readers per writer, and the same three readers without the writer.
+ * Besides the throughput, the latency percentiles of the reads of both groups
+ * are sampled, so they tell what the writer costs the readers.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class HotTherapistBenchmark {
+
+	private static final int CLIENTS = 1000;
+
+	private ClientService clientService;
+	private UUID therapistId;
+	private UUID[] clientIds;
+	private ClientUpdateRequestDto update;
+
+	@Setup
+	public void setUp() {
+		ClientRepository repository = new ClientRepository();
+		clientService = new ClientServiceImpl(repository, new ObjectMapperHelper());
+		therapistId = UUID.randomUUID();
+		clientIds = new UUID[CLIENTS];
+		for (int i = 0; i < CLIENTS; i++)
+			clientIds[i] = repository.save(therapistId, Fixtures.client(therapistId, i)).getId();
+		update = new ClientUpdateRequestDto();
+		update.setJob("Doctor");
+	}
+
+	@Benchmark
+	@Group("hotTherapist")
+	@GroupThreads(3)
+	public ClientResponseDto read() {
+		return clientService.getClient(therapistId, randomClientId(), null);
+	}
+
+	@Benchmark
+	@Group("hotTherapist")
+	@GroupThreads(1)
+	public ClientResponseDto update() {
+		return clientService.updateClient(therapistId, randomClientId(), update, null);
+	}
+
+	@Benchmark
+	@Group("readersAlone")
+	@GroupThreads(3)
+	public ClientResponseDto readAlone() {
+		return clientService.getClient(therapistId, randomClientId(), null);
+	}
+
+	private UUID randomClientId() {
+		return clientIds[ThreadLocalRandom.current().nextInt(CLIENTS)];
+	}
+}
@@ -0,0 +1,89 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.util.JsonStreaming;
+import com.sayedbaladoh.therapistms.util.ObjectMapperHelper;
+
+/**
+ * Jackson serialization of client lists, buffered as the message converters
+ * do and streamed as <code>JsonStreaming</code> does.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+	@Param({ "100", "10000" })
+	private int size;
+
+	private ObjectMapper objectMapper;
+	private List<ClientResponseDto> clients;
+
+	@Setup
+	public void setUp() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		ObjectMapperHelper objectMapperHelper = new ObjectMapperHelper();
+		UUID therapistId = UUID.randomUUID();
+		clients = IntStream.range(0, size)
+				.mapToObj(i -> objectMapperHelper.map(Fixtures.client(therapistId, i), ClientResponseDto.class))
+				.collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public byte[] writeList() throws IOException {
+		return objectMapper.writeValueAsBytes(clients);
+	}
+
+	@Benchmark
+	public void streamList(Blackhole blackhole) throws IOException {
+		JsonStreaming.array(objectMapper, clients.stream()).writeTo(new BlackholeOutputStream(blackhole));
+	}
+
+	private static final class BlackholeOutputStream extends OutputStream {
+
+		private final Blackhole blackhole;
+
+		private BlackholeOutputStream(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void write(int b) {
+			blackhole.consume(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			blackhole.consume(b);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.InMemoryRepository;
+import com.sayedbaladoh.therapistms.repository.LsmRepository;
+import com.sayedbaladoh.therapistms.repository.Repository;
+import com.sayedbaladoh.therapistms.storage.Codecs;
+import com.sayedbaladoh.therapistms.storage.Journal;
+
+/**
+ * Sustained ingest of clients, as during the annual re-intake, into an
+ * <code>LsmRepository</code> or, as a baseline not writing to disk, an
+ * <code>InMemoryRepository</code>. Each write saves a random id of the key
+ * space, so the first writes insert and the later ones mostly overwrite.
+ *
+ * While the writers run, a reader thread looks random ids of the key space up
+ * and records how long each lookup takes. The tear down prints the read
+ * latency percentiles and, for the LSM repository, its write amplification,
+ * the number and time of the writes stalled by flushes and compactions, the
+ * runs left and the compactions done.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LsmIngestBenchmark {
+
+	private static final int MAX_SAMPLES = 1 << 22;
+
+	@Param({ "LSM", "IN_MEMORY" })
+	private String engine;
+
+	@Param({ "1000000" })
+	private int clients;
+
+	@Param({ "4194304" })
+	private long memtableBytes;
+
+	private Path directory;
+	private Repository<UUID, Client> repository;
+	private long[] ids;
+	private Client[] templates;
+	private Thread reader;
+	private volatile boolean reading;
+	private long[] latencies;
+	private int samples;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("lsm");
+		repository = "LSM".equals(engine)
+				? new LsmRepository<>(Codecs.CLIENT, directory, "clients", Journal.NONE, memtableBytes,
+						LsmRepository.DEFAULT_COMPACTION_THREADS)
+				: new InMemoryRepository<UUID, Client>() {
+						};
+		UUID therapistId = UUID.randomUUID();
+		ids = new long[2 * clients];
+		for (int i = 0; i < clients; i++) {
+			UUID id = UUID.randomUUID();
+			ids[2 * i] = id.getMostSignificantBits();
+			ids[2 * i + 1] = id.getLeastSignificantBits();
+		}
+		templates = new Client[64];
+		for (int i = 0; i < templates.length; i++)
+			templates[i] = Fixtures.client(therapistId, i);
+		latencies = new long[MAX_SAMPLES];
+		reading = true;
+		reader = new Thread(this::read, "lsm-reader");
+		reader.start();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		reading = false;
+		reader.join();
+		long[] sorted = Arrays.copyOf(latencies, samples);
+		Arrays.sort(sorted);
+		System.out.printf("%s: %d lookups, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n", engine,
+				sorted.length, percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999),
+				percentile(sorted, 1));
+		if (repository instanceof LsmRepository) {
+			LsmRepository<Client> lsm = (LsmRepository<Client>) repository;
+			System.out.printf(
+					"%s: %d MB written, write amplification %.2f, %d stalls for %d ms, %d runs of %d MB, %d compactions%n",
+					engine, lsm.userBytes() >> 20, lsm.writeAmplification(), lsm.countStalls(),
+					TimeUnit.NANOSECONDS.toMillis(lsm.stallNanos()), lsm.countRuns(), lsm.diskBytes() >> 20,
+					lsm.countCompactions());
+			lsm.close();
+		}
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public Client ingest() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Client client = new Client(templates[random.nextInt(templates.length)]);
+		client.setId(randomId(random));
+		client.setAddress("Giza " + random.nextInt(1000));
+		return repository.save(client.getId(), client);
+	}
+
+	private void read() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		while (reading) {
+			UUID id = randomId(random);
+			long start = System.nanoTime();
+			repository.findById(id);
+			latencies[samples++ & (MAX_SAMPLES - 1)] = System.nanoTime() - start;
+		}
+		samples = Math.min(samples, MAX_SAMPLES);
+	}
+
+	private UUID randomId(ThreadLocalRandom random) {
+		int i = random.nextInt(clients);
+		return new UUID(ids[2 * i], ids[2 * i + 1]);
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0)
+			return 0;
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+		return sorted[Math.max(0, index)] / 1_000.0;
+	}
+}
@@ -0,0 +1,85 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
+import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.util.ObjectMapperHelper;
+
+/**
+ * <code>ObjectMapperHelper</code> mappings. Run with <code>-prof gc</code>,
+ * as the benchmark profile does, for the bytes allocated per mapping
+ * (<code>gc.alloc.rate.norm</code>).
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+	private static final int LIST_SIZE = 1000;
+
+	private ObjectMapperHelper objectMapperHelper;
+	private Client client;
+	private ClientRequestDto request;
+	private ClientUpdateRequestDto update;
+	private List<Client> clients;
+
+	@Setup
+	public void setUp() {
+		objectMapperHelper = new ObjectMapperHelper();
+		UUID therapistId = UUID.randomUUID();
+		client = Fixtures.client(therapistId, 0);
+		request = new ClientRequestDto();
+		request.setName("Ahmed");
+		request.setEmail("ahmed@test.com");
+		request.setGender("male");
+		request.setPhoneNumber("+2012345789");
+		update = new ClientUpdateRequestDto();
+		update.setJob("Doctor");
+		clients = new ArrayList<>(LIST_SIZE);
+		for (int i = 0; i < LIST_SIZE; i++)
+			clients.add(Fixtures.client(therapistId, i));
+	}
+
+	@Benchmark
+	public ClientResponseDto mapToResponse() {
+		return objectMapperHelper.map(client, ClientResponseDto.class);
+	}
+
+	@Benchmark
+	public Client mapRequest() {
+		return objectMapperHelper.map(request, Client.class);
+	}
+
+	@Benchmark
+	public Client mapUpdate() {
+		return objectMapperHelper.map(update, new Client(client));
+	}
+
+	@Benchmark
+	public List<ClientResponseDto> mapAll() {
+		return objectMapperHelper.mapAll(clients, ClientResponseDto.class);
+	}
+}
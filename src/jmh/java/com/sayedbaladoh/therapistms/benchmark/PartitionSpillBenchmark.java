@@ -0,0 +1,177 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.config.StorageProperties.MapType;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.SpillStore;
+
+/**
+ * Reads of the client lists of therapists drawn from a Zipfian distribution,
+ * from a client repository keeping all clients in memory or only a share of
+ * them, the others being spilled to disk. The setup prints the heap and the
+ * resident set size of the process once the clients are loaded; the tear down
+ * the hit rate of the reads, the latency of the reads that loaded a partition
+ * back, and the resident set size again.
+ *
+ * Run with a heap large enough for all clients, e.g.
+ * <code>-Djmh.args="PartitionSpillBenchmark -jvmArgs -Xmx2g"</code>.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PartitionSpillBenchmark {
+
+	/**
+	 * The share of the clients kept in memory, 1 keeping all of them without a
+	 * spill store.
+	 */
+	@Param({ "1.0", "0.25", "0.05" })
+	private String residentShare;
+
+	@Param({ "20000" })
+	private int therapists;
+
+	@Param({ "25" })
+	private int clientsPerTherapist;
+
+	/**
+	 * The exponent of the Zipfian distribution of the reads over the
+	 * therapists.
+	 */
+	@Param({ "0.99" })
+	private String skew;
+
+	private ClientRepository repository;
+	private Path directory;
+	private UUID[] therapistIds;
+	private double[] cumulative;
+	private long hits;
+	private long faults;
+	private long[] faultNanos = new long[1 << 20];
+	private int faultCount;
+
+	@Setup
+	public void setUp() throws IOException {
+		double share = Double.parseDouble(residentShare);
+		long residentClients = (long) (share * therapists * clientsPerTherapist);
+		directory = Files.createTempDirectory("spill");
+		repository = share >= 1 ? new ClientRepository()
+				: new ClientRepository(Journal.NONE, MapType.CONCURRENT_HASH_MAP,
+						new SpillStore(directory, "clients"), residentClients);
+
+		therapistIds = new UUID[therapists];
+		for (int t = 0; t < therapists; t++) {
+			therapistIds[t] = UUID.randomUUID();
+			for (int i = 0; i < clientsPerTherapist; i++)
+				repository.save(therapistIds[t], Fixtures.client(therapistIds[t], i));
+		}
+		List<UUID> shuffled = new ArrayList<>(Arrays.asList(therapistIds));
+		Collections.shuffle(shuffled);
+		therapistIds = shuffled.toArray(new UUID[0]);
+
+		cumulative = new double[therapists];
+		double exponent = Double.parseDouble(skew);
+		double sum = 0;
+		for (int rank = 0; rank < therapists; rank++)
+			cumulative[rank] = sum += 1 / Math.pow(rank + 1, exponent);
+		for (int rank = 0; rank < therapists; rank++)
+			cumulative[rank] /= sum;
+
+		System.out.printf("%s: %d MB of heap, %d MB resident, %d clients in memory, %d partitions spilled%n",
+				residentShare, usedHeap() >> 20, residentSetSize() >> 20, repository.countResidentClients(),
+				repository.countSpilledPartitions());
+		hits = repository.countPartitionHits();
+		faults = repository.countPartitionFaults();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		long reads = repository.countPartitionHits() - hits + repository.countPartitionFaults() - faults;
+		long faulted = repository.countPartitionFaults() - faults;
+		long[] latencies = Arrays.copyOf(faultNanos, Math.min(faultCount, faultNanos.length));
+		Arrays.sort(latencies);
+		System.out.printf(
+				"%s: hit rate %.4f of %d reads, fault-in p50 %.1f us, p99 %.1f us, max %.1f us, %d MB resident%n",
+				residentShare, reads == 0 ? 1 : 1 - (double) faulted / reads, reads, percentile(latencies, 0.5),
+				percentile(latencies, 0.99), percentile(latencies, 1), residentSetSize() >> 20);
+		repository.close();
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public Map<UUID, Client> findById() {
+		UUID therapistId = therapistIds[rank()];
+		long faulted = repository.countPartitionFaults();
+		long start = System.nanoTime();
+		Map<UUID, Client> clients = repository.findById(therapistId).get();
+		long elapsed = System.nanoTime() - start;
+		if (repository.countPartitionFaults() != faulted)
+			faultNanos[faultCount++ & (faultNanos.length - 1)] = elapsed;
+		return clients;
+	}
+
+	private int rank() {
+		int rank = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+		return Math.min(rank < 0 ? -rank - 1 : rank, therapists - 1);
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0)
+			return 0;
+		return sorted[Math.min(sorted.length - 1, (int) (percentile * sorted.length))] / 1_000.0;
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Returns the resident set size of the process, from
+	 * <code>/proc/self/status</code>, 0 where there is none.
+	 */
+	private static long residentSetSize() throws IOException {
+		Path status = Paths.get("/proc/self/status");
+		if (!Files.exists(status))
+			return 0;
+		for (String line : Files.readAllLines(status))
+			if (line.startsWith("VmRSS:"))
+				return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+		return 0;
+	}
+}
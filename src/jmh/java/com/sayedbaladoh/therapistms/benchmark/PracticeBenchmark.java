@@ -0,0 +1,79 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.model.Therapist;
+import com.sayedbaladoh.therapistms.repository.TherapistRepository;
+
+/**
+ * The therapists of a practice, from the practice index and from a scan of
+ * every therapist.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class PracticeBenchmark {
+
+	@Param({ "200000" })
+	private int therapists;
+
+	@Param({ "5000" })
+	private int practices;
+
+	private TherapistRepository repository;
+	private UUID[] practiceIds;
+
+	@Setup
+	public void setUp() {
+		repository = new TherapistRepository();
+		practiceIds = new UUID[practices];
+		for (int i = 0; i < practices; i++)
+			practiceIds[i] = UUID.randomUUID();
+		for (int i = 0; i < therapists; i++) {
+			Therapist therapist = Fixtures.therapist(i);
+			therapist.setPracticeId(practiceIds[i % practices]);
+			repository.saveOrUpdate(therapist);
+		}
+	}
+
+	@Benchmark
+	public List<Therapist> findByPracticeId() {
+		return repository.findByPracticeId(randomPracticeId());
+	}
+
+	@Benchmark
+	public List<Therapist> scan() {
+		UUID practiceId = randomPracticeId();
+		List<Therapist> found = new ArrayList<>();
+		for (Therapist therapist : repository.findAll())
+			if (practiceId.equals(therapist.getPracticeId()))
+				found.add(therapist);
+		return found;
+	}
+
+	private UUID randomPracticeId() {
+		return practiceIds[ThreadLocalRandom.current().nextInt(practices)];
+	}
+}
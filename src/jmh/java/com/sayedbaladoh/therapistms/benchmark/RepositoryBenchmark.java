@@ -0,0 +1,94 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.model.Therapist;
+import com.sayedbaladoh.therapistms.repository.TherapistRepository;
+
+/**
+ * Single threaded <code>InMemoryRepository</code> operations, through the
+ * therapist repository.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+	@Param({ "1000", "100000" })
+	private int size;
+
+	private TherapistRepository repository;
+	private Therapist[] therapists;
+
+	@Setup
+	public void setUp() {
+		repository = new TherapistRepository();
+		therapists = new Therapist[size];
+		for (int i = 0; i < size; i++)
+			therapists[i] = repository.saveOrUpdate(Fixtures.therapist(i));
+	}
+
+	@Benchmark
+	public Optional<Therapist> findById() {
+		return repository.findById(random().getId());
+	}
+
+	@Benchmark
+	public Therapist saveExisting() {
+		return repository.saveOrUpdate(random());
+	}
+
+	@Benchmark
+	public void insertAndDelete() {
+		Therapist therapist = Fixtures.therapist(size);
+		therapist.setId(UUID.randomUUID());
+		therapist.setEmail(therapist.getId() + "@test.com");
+		repository.saveOrUpdate(therapist);
+		repository.deleteById(therapist.getId());
+	}
+
+	@Benchmark
+	public List<Therapist> findPage() {
+		return repository.findPage(random().getId(), 50);
+	}
+
+	@Benchmark
+	public long findAll() {
+		long count = 0;
+		for (Therapist therapist : repository.findAll())
+			if (therapist.getPracticeId() != null)
+				count++;
+		return count;
+	}
+
+	@Benchmark
+	public boolean existsById() {
+		return repository.existsById(UUID.randomUUID());
+	}
+
+	private Therapist random() {
+		return therapists[ThreadLocalRandom.current().nextInt(size)];
+	}
+}
@@ -0,0 +1,84 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.repository.SortKey;
+import com.sayedbaladoh.therapistms.repository.SortedIndex;
+
+/**
+ * A page of the clients of one therapist in name order, from the middle of the
+ * order: read from the name sort order following the cursor, and by sorting
+ * the whole partition and skipping to the cursor as a caller would.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SortedPageBenchmark {
+
+	private static final Comparator<Client> BY_NAME = Comparator
+			.comparing((Client client) -> SortedIndex.text(client.getName())).thenComparing(Client::getId);
+
+	@Param({ "100000" })
+	private int clients;
+
+	@Param({ "50" })
+	private int limit;
+
+	private ClientRepository repository;
+	private UUID therapistId;
+	private SortKey<UUID> cursor;
+
+	@Setup
+	public void setUp() {
+		repository = new ClientRepository();
+		therapistId = UUID.randomUUID();
+		for (int i = 0; i < clients; i++)
+			repository.save(therapistId, Fixtures.client(therapistId, i));
+		List<Client> sorted = sortAll();
+		cursor = repository.sortKeyOf("name", sorted.get(sorted.size() / 2));
+	}
+
+	@Benchmark
+	public List<Client> pageBySortOrder() {
+		return repository.findPage(therapistId, "name", cursor, limit);
+	}
+
+	@Benchmark
+	public List<Client> pageBySorting() {
+		return sortAll().stream()
+				.filter(client -> repository.sortKeyOf("name", client).getKey().compareTo(cursor.getKey()) > 0)
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+
+	private List<Client> sortAll() {
+		List<Client> sorted = new ArrayList<>(repository.findById(therapistId).get().values());
+		sorted.sort(BY_NAME);
+		return sorted;
+	}
+}
@@ -0,0 +1,170 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.config.StorageProperties.MapType;
+import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
+import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.service.ClientService;
+import com.sayedbaladoh.therapistms.service.ClientServiceImpl;
+import com.sayedbaladoh.therapistms.storage.EntityStore;
+import com.sayedbaladoh.therapistms.storage.JdbcStorageEngine;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.StorageEngine;
+import com.sayedbaladoh.therapistms.storage.Tables;
+import com.sayedbaladoh.therapistms.util.ObjectMapperHelper;
+
+/**
+ * The operations of the client endpoints, run through the client service, on a
+ * client repository kept in memory only or written through to the H2 database
+ * of the JDBC engine. The tear down prints how long a repository takes to load
+ * the clients back from the engine, as on startup.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class StorageEngineBenchmark {
+
+	@Param({ "MEMORY", "JDBC" })
+	private String engine;
+
+	@Param({ "200" })
+	private int therapists;
+
+	@Param({ "50" })
+	private int clientsPerTherapist;
+
+	private Path directory;
+	private StorageEngine storageEngine;
+	private ClientRepository repository;
+	private ClientService clientService;
+	private UUID[] therapistIds;
+	private UUID[][] clientIds;
+	private ClientUpdateRequestDto update;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("engine");
+		storageEngine = "JDBC".equals(engine) ? new JdbcStorageEngine(directory, 8, Duration.ofMillis(1))
+				: StorageEngine.MEMORY;
+		repository = repository();
+		clientService = new ClientServiceImpl(repository, new ObjectMapperHelper());
+
+		therapistIds = new UUID[therapists];
+		clientIds = new UUID[therapists][clientsPerTherapist];
+		for (int t = 0; t < therapists; t++) {
+			therapistIds[t] = UUID.randomUUID();
+			Map<UUID, Client> clients = new ConcurrentSkipListMap<>();
+			for (int i = 0; i < clientsPerTherapist; i++) {
+				Client client = Fixtures.client(therapistIds[t], t * clientsPerTherapist + i);
+				clients.put(client.getId(), client);
+				clientIds[t][i] = client.getId();
+			}
+			repository.save(therapistIds[t], clients);
+		}
+		update = new ClientUpdateRequestDto();
+		update.setJob("Doctor");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		long start = System.nanoTime();
+		ClientRepository loaded = repository();
+		loaded.recover();
+		System.out.printf("%s: %d clients loaded in %d ms%n", engine, loaded.countClients(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		storageEngine.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/**
+	 * GET /therapists/{therapistId}/clients/{clientId}
+	 */
+	@Benchmark
+	public ClientResponseDto getClient() {
+		int t = ThreadLocalRandom.current().nextInt(therapists);
+		return clientService.getClient(therapistIds[t], randomClientId(t), null);
+	}
+
+	/**
+	 * GET /therapists/{therapistId}/clients
+	 */
+	@Benchmark
+	public List<ClientResponseDto> getAllClients() {
+		return clientService.getAllClients(therapistIds[ThreadLocalRandom.current().nextInt(therapists)], null);
+	}
+
+	/**
+	 * PUT /therapists/{therapistId}/clients/{clientId}
+	 */
+	@Benchmark
+	public ClientResponseDto updateClient() {
+		int t = ThreadLocalRandom.current().nextInt(therapists);
+		return clientService.updateClient(therapistIds[t], randomClientId(t), update, null);
+	}
+
+	/**
+	 * POST /therapists/{therapistId}/clients then DELETE
+	 * /therapists/{therapistId}/clients/{clientId}, so the partitions keep their
+	 * size.
+	 */
+	@Benchmark
+	public ClientResponseDto addAndRemoveClient() {
+		UUID therapistId = therapistIds[ThreadLocalRandom.current().nextInt(therapists)];
+		ClientRequestDto client = new ClientRequestDto();
+		client.setName("Client");
+		client.setEmail("client" + UUID.randomUUID() + "@test.com");
+		client.setAddress("Cairo");
+		client.setJob("Engineer");
+		client.setGender("female");
+		ClientResponseDto added = clientService.addClient(therapistId, client);
+		clientService.removeClient(therapistId, added.getId());
+		return added;
+	}
+
+	private ClientRepository repository() {
+		EntityStore<Client> store = storageEngine.open(Tables.CLIENTS);
+		return new ClientRepository(Journal.NONE, MapType.CONCURRENT_HASH_MAP, store, null, Long.MAX_VALUE);
+	}
+
+	private UUID randomClientId(int t) {
+		return clientIds[t][ThreadLocalRandom.current().nextInt(clientsPerTherapist)];
+	}
+}
@@ -0,0 +1,107 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.config.StorageProperties.MapType;
+
+/**
+ * Lookups and writes of random ids in the maps a repository can keep its
+ * entities in. The setup prints the heap the map retains per entry, measured
+ * after a full GC, keys included: the ids are fresh <code>UUID</code>s only the
+ * map refers to, and the entries share one value.
+ *
+ * Run with a heap of a few GB for 10M entries, e.g.
+ * <code>-Djmh.args="UuidMapBenchmark -jvmArgs -Xmx4g"</code>.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UuidMapBenchmark {
+
+	private static final Object VALUE = new Object();
+
+	@Param({ "CONCURRENT_HASH_MAP", "OPEN_ADDRESSING" })
+	private String mapType;
+
+	@Param({ "10000000" })
+	private int size;
+
+	private ConcurrentMap<UUID, Object> map;
+	private long[] ids;
+
+	@Setup
+	public void setUp() {
+		ids = new long[2 * size];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = ThreadLocalRandom.current().nextLong();
+
+		long before = usedHeap();
+		map = MapType.valueOf(mapType).create();
+		for (int i = 0; i < size; i++)
+			map.put(id(i), VALUE);
+		long after = usedHeap();
+		System.out.printf("%s: %.1f bytes per entry for %d entries%n", mapType, (after - before) / (double) size,
+				size);
+	}
+
+	@Benchmark
+	public Object get() {
+		return map.get(id(random()));
+	}
+
+	@Benchmark
+	public Object getMissing() {
+		return map.get(new UUID(ThreadLocalRandom.current().nextLong(), ThreadLocalRandom.current().nextLong()));
+	}
+
+	@Benchmark
+	public Object put() {
+		return map.put(id(random()), VALUE);
+	}
+
+	@Benchmark
+	public Object insertAndRemove() {
+		UUID id = new UUID(ThreadLocalRandom.current().nextLong(), ThreadLocalRandom.current().nextLong());
+		map.put(id, VALUE);
+		return map.remove(id);
+	}
+
+	/**
+	 * A new <code>UUID</code> of an id, as parsed from a request.
+	 */
+	private UUID id(int index) {
+		return new UUID(ids[2 * index], ids[2 * index + 1]);
+	}
+
+	private int random() {
+		return ThreadLocalRandom.current().nextInt(size);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
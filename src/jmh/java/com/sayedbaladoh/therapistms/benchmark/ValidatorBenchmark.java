@@ -0,0 +1,46 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.validation.GenderValidator;
+import com.sayedbaladoh.therapistms.validation.UuidValidator;
+
+/**
+ * The custom constraint validators, run on every request body.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+
+	private final UuidValidator uuidValidator = new UuidValidator();
+	private final GenderValidator genderValidator = new GenderValidator();
+	private final UUID uuid = UUID.randomUUID();
+
+	@Benchmark
+	public boolean uuid() {
+		return uuidValidator.isValid(uuid, null);
+	}
+
+	@Benchmark
+	public boolean gender() {
+		return genderValidator.isValid("female", null);
+	}
+}
@@ -0,0 +1,69 @@
+package com.sayedbaladoh.therapistms.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sayedbaladoh.therapistms.storage.WriteAheadLog;
+
+/**
+ * Durable write throughput and latency percentiles of concurrent writers with
+ * an fsync per write (window 0) and with group commit windows of 1ms and 5ms.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class WriteAheadLogBenchmark {
+
+	@Param({ "0", "1", "5" })
+	private int windowMillis;
+
+	private Path directory;
+	private WriteAheadLog writeAheadLog;
+	private final byte[] record = new byte[128];
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("wal-benchmark");
+		writeAheadLog = new WriteAheadLog(directory, "benchmark", Duration.ofMillis(windowMillis));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		writeAheadLog.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public void appendAndSync() {
+		writeAheadLog.append(record);
+		writeAheadLog.sync();
+	}
+}
@@ -1,20 +1,15 @@
 package com.sayedbaladoh.therapistms;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class TherapistApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(TherapistApplication.class, args);
 	}
-	
-	@Bean
-	public ModelMapper modelMapper() {
-		return new ModelMapper();
-	}
 
 }
@@ -0,0 +1,73 @@
+package com.sayedbaladoh.therapistms.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedbaladoh.therapistms.controller.ClientController;
+import com.sayedbaladoh.therapistms.metrics.LatencyEndpoint;
+import com.sayedbaladoh.therapistms.metrics.PhaseTimingPostProcessor;
+import com.sayedbaladoh.therapistms.metrics.RepositoryMetrics;
+import com.sayedbaladoh.therapistms.metrics.RequestMetrics;
+import com.sayedbaladoh.therapistms.metrics.RequestMetricsInterceptor;
+import com.sayedbaladoh.therapistms.metrics.TimedJackson2HttpMessageConverter;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.repository.TherapistRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Per endpoint latency, split into repository, mapping and serialization
+ * phases, and repository size gauges, published with Micrometer and on the
+ * <code>latency</code> actuator endpoint.
+ */
+@Configuration
+public class MetricsConfig {
+
+	@Bean
+	public static PhaseTimingPostProcessor phaseTimingPostProcessor() {
+		return new PhaseTimingPostProcessor();
+	}
+
+	@Bean
+	public RequestMetrics requestMetrics(MeterRegistry registry) {
+		return new RequestMetrics(registry, ClientController.class.getPackage().getName());
+	}
+
+	@Bean
+	public TimedJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+			RequestMetrics requestMetrics) {
+		return new TimedJackson2HttpMessageConverter(objectMapper, requestMetrics);
+	}
+
+	@Bean
+	public WebMvcConfigurer requestMetricsConfigurer(RequestMetrics requestMetrics) {
+		RequestMetricsInterceptor interceptor = new RequestMetricsInterceptor(requestMetrics);
+		return new WebMvcConfigurer() {
+
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(interceptor);
+			}
+
+			@Override
+			public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+				configurer.registerCallableInterceptors(interceptor);
+			}
+		};
+	}
+
+	@Bean
+	public RepositoryMetrics repositoryMetrics(TherapistRepository therapistRepository,
+			ClientRepository clientRepository) {
+		return new RepositoryMetrics(therapistRepository, clientRepository);
+	}
+
+	@Bean
+	public LatencyEndpoint latencyEndpoint(RequestMetrics requestMetrics) {
+		return new LatencyEndpoint(requestMetrics);
+	}
+}
@@ -0,0 +1,126 @@
+package com.sayedbaladoh.therapistms.config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.sayedbaladoh.therapistms.repository.UuidHashMap;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Storage configuration, bound from the <code>therapistms.storage</code>
+ * properties.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "therapistms.storage")
+public class StorageProperties {
+
+	/**
+	 * Whether writes are appended to a write-ahead log and replayed on startup.
+	 */
+	private boolean durable = false;
+
+	/**
+	 * The directory of the storage files.
+	 */
+	private Path directory = Paths.get("data");
+
+	/**
+	 * How long a commit waits for concurrent writers to share its fsync. Zero
+	 * fsyncs every write on its own.
+	 */
+	private Duration groupCommitWindow = Duration.ofMillis(1);
+
+	/**
+	 * How often the repositories are snapshotted, so startup only replays the
+	 * log written since the last snapshot.
+	 */
+	private Duration snapshotInterval = Duration.ofMinutes(5);
+
+	/**
+	 * The map holding the entities of the repositories by id, and the therapist
+	 * ids of the clients by client id.
+	 */
+	private MapType map = MapType.CONCURRENT_HASH_MAP;
+
+	/**
+	 * The heap the clients may take, beyond which the client lists of the
+	 * therapists least recently read are spilled to files in the directory and
+	 * read back when needed. Zero keeps all of them in memory.
+	 */
+	private DataSize clientMemoryBudget = DataSize.ofBytes(0);
+
+	/**
+	 * Where the entities are kept beyond memory, the repositories serving every
+	 * read from memory in either case.
+	 */
+	private Engine engine = Engine.MEMORY;
+
+	/**
+	 * The maximum number of connections to the database of the JDBC engine.
+	 */
+	private int connectionPoolSize = 4;
+
+	/**
+	 * The storage engines.
+	 */
+	public enum Engine {
+
+		/**
+		 * The entities are kept in memory, and in the write-ahead log if storage is
+		 * durable.
+		 */
+		MEMORY,
+
+		/**
+		 * The entities are also written through to an embedded H2 database in the
+		 * directory, one row per entity, and loaded from it on startup. With a
+		 * client memory budget, cold client lists are dropped from memory and read
+		 * back from the database rather than spilled to files.
+		 */
+		JDBC,
+
+		/**
+		 * The entities are also written through to a log-structured merge tree per
+		 * table in the directory, which takes writes at the cost of a journal
+		 * append each, and loaded from it on startup. With a client memory budget,
+		 * cold client lists are dropped from memory and read back from the tree
+		 * rather than spilled to files.
+		 */
+		LSM
+	}
+
+	/**
+	 * The maps the repositories can hold their entities in.
+	 */
+	public enum MapType {
+
+		/**
+		 * A <code>ConcurrentHashMap</code>.
+		 */
+		CONCURRENT_HASH_MAP,
+
+		/**
+		 * A {@link UuidHashMap}, with no node nor <code>UUID</code> per entry.
+		 */
+		OPEN_ADDRESSING;
+
+		public <V> ConcurrentMap<UUID, V> create() {
+			return this == OPEN_ADDRESSING ? new UuidHashMap<>() : new ConcurrentHashMap<>();
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package com.sayedbaladoh.therapistms.controller;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import javax.validation.Valid;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,14 +17,23 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedbaladoh.therapistms.dto.ClientQueryResponseDto;
 import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
 import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
 import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.dto.PageDto;
 import com.sayedbaladoh.therapistms.service.ClientService;
+import com.sayedbaladoh.therapistms.util.ETags;
+import com.sayedbaladoh.therapistms.util.JsonStreaming;
+import com.sayedbaladoh.therapistms.util.Pagination;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -39,6 +51,7 @@ import lombok.RequiredArgsConstructor;
 public class ClientController {
 
 	private final ClientService clientService;
+	private final ObjectMapper objectMapper;
 
 	/**
 	 * Add a new client to an therapist client’s list.
@@ -57,58 +70,199 @@ public class ClientController {
 
 		String uri = ServletUriComponentsBuilder.fromCurrentServletMapping().path("/therapists/{therapistId}/clients/{id}")
 				.buildAndExpand(therapistId, client.getId()).toString();
-		HttpHeaders headers = new HttpHeaders();
+		HttpHeaders headers = ETags.headers(client.getVersion());
 		headers.add("Location", uri);
 
 		return new ResponseEntity<>(client, headers, HttpStatus.CREATED);
 	}
 
 	/**
-	 * Get all clients details for an therapist.
+	 * Get all clients details for an therapist, or a page of them when a limit is
+	 * given, in id order or sorted by name, email or birthDate. The link to the
+	 * next page is returned in the <code>Link</code> header.
 	 * 
 	 * @param therapistId The therapist Id.
+	 * @param limit       The page size.
+	 * @param cursor      The cursor of the page, from the previous page link.
+	 * @param sort        The sort order: name, email or birthDate, if any.
 	 * @return The list of clients for therapist.
 	 */
 	@ApiOperation(value = "Return list of clients for therapist", nickname = "getAllClients", notes = "Get a list of clients", tags = {
 			"Clients" }, response = List.class)
 	@GetMapping(produces = { "application/json" })
-	public ResponseEntity<List<ClientResponseDto>> getAllClients(@PathVariable("therapistId") UUID therapistId) {
+	public ResponseEntity<List<ClientResponseDto>> getAllClients(@PathVariable("therapistId") UUID therapistId,
+			@RequestParam(value = "limit", required = false) Integer limit,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "sort", required = false) String sort) {
 
-		List<ClientResponseDto> clients = clientService.getAllClients(therapistId);
-		return new ResponseEntity<>(clients, HttpStatus.OK);
+		if (limit == null) {
+			List<ClientResponseDto> clients = clientService.getAllClients(therapistId, sort);
+			return new ResponseEntity<>(clients, HttpStatus.OK);
+		}
+
+		PageDto<ClientResponseDto> page = clientService.getClients(therapistId, cursor, limit, sort);
+		return new ResponseEntity<>(page.getItems(), Pagination.headers(page), HttpStatus.OK);
+	}
+
+	/**
+	 * Stream all clients details for an therapist, writing each client to the
+	 * response as it is mapped instead of building the whole list first.
+	 * 
+	 * @param therapistId The therapist Id.
+	 * @return The list of clients for therapist.
+	 */
+	@ApiOperation(value = "Stream list of clients for therapist", nickname = "streamAllClients", notes = "Stream a list of clients", tags = {
+			"Clients" }, response = List.class)
+	@GetMapping(params = "stream=true", produces = { "application/json" })
+	public ResponseEntity<StreamingResponseBody> streamAllClients(@PathVariable("therapistId") UUID therapistId) {
+
+		// Looked up before the response is committed, so an unknown therapist is
+		// still a 404.
+		Stream<ClientResponseDto> clients = clientService.streamAllClients(therapistId);
+		return new ResponseEntity<>(JsonStreaming.array(objectMapper, clients), JsonStreaming.headers(),
+				HttpStatus.OK);
+	}
+
+	/**
+	 * Get the client details by therapist Id and client email, whatever its case.
+	 * 
+	 * @param therapistId The therapist Id.
+	 * @param email       The client email.
+	 * @return The client details.
+	 */
+	@ApiOperation(value = "Return a client details by email", nickname = "getClientByEmail", notes = "Get a client details by email", tags = {
+			"Clients" }, response = ClientResponseDto.class)
+	@GetMapping(params = "email", produces = { "application/json" })
+	public ResponseEntity<ClientResponseDto> getClientByEmail(@PathVariable("therapistId") UUID therapistId,
+			@RequestParam("email") String email) {
+
+		ClientResponseDto client = clientService.getClientByEmail(therapistId, email);
+		return new ResponseEntity<>(client, ETags.headers(client.getVersion()), HttpStatus.OK);
+	}
+
+	/**
+	 * Search the clients of a therapist by partial words of their name, address
+	 * or job, best matches first.
+	 * 
+	 * @param therapistId The therapist Id.
+	 * @param query       The words to search for, at least 2 characters.
+	 * @param limit       The maximum number of clients.
+	 * @return The matching clients.
+	 */
+	@ApiOperation(value = "Search the clients of a therapist", nickname = "searchClients", notes = "Search clients by name, address or job", tags = {
+			"Clients" }, response = List.class)
+	@GetMapping(path = "/search", produces = { "application/json" })
+	public ResponseEntity<List<ClientResponseDto>> searchClients(@PathVariable("therapistId") UUID therapistId,
+			@RequestParam("q") String query, @RequestParam(value = "limit", defaultValue = "20") int limit) {
+
+		return new ResponseEntity<>(clientService.searchClients(therapistId, query, limit), HttpStatus.OK);
+	}
+
+	/**
+	 * Query the clients of a therapist meeting all the given criteria, in id
+	 * order. The query reads the most selective index available, or scans the
+	 * clients if none applies; the plan it ran is returned on demand.
+	 * 
+	 * @param therapistId The therapist Id.
+	 * @param gender      The gender, if any.
+	 * @param job         The job, whatever its case, if any.
+	 * @param bornAfter   The day the clients must be born after, if any.
+	 * @param bornBefore  The day the clients must be born before, if any.
+	 * @param explain     Whether to return the plan of the query.
+	 * @return The matching clients, with the plan if asked for.
+	 */
+	@ApiOperation(value = "Query the clients of a therapist", nickname = "queryClients", notes = "Filter clients by gender, job and birth date", tags = {
+			"Clients" }, response = ClientQueryResponseDto.class)
+	@GetMapping(path = "/query", produces = { "application/json" })
+	public ResponseEntity<ClientQueryResponseDto> queryClients(@PathVariable("therapistId") UUID therapistId,
+			@RequestParam(value = "gender", required = false) String gender,
+			@RequestParam(value = "job", required = false) String job,
+			@RequestParam(value = "bornAfter", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornAfter,
+			@RequestParam(value = "bornBefore", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornBefore,
+			@RequestParam(value = "explain", defaultValue = "false") boolean explain) {
+
+		return new ResponseEntity<>(
+				clientService.queryClients(therapistId, gender, job, bornAfter, bornBefore, explain), HttpStatus.OK);
+	}
+
+	/**
+	 * Count the clients of a therapist born between two days, such as an age
+	 * band, from the birth date index.
+	 * 
+	 * @param therapistId The therapist Id.
+	 * @param bornAfter   The day the clients must be born after, if any.
+	 * @param bornBefore  The day the clients must be born before, if any.
+	 * @return The number of clients.
+	 */
+	@ApiOperation(value = "Count the clients of a therapist by birth date", nickname = "countClients", notes = "Count clients born between two days", tags = {
+			"Clients" }, response = Long.class)
+	@GetMapping(path = "/count", produces = { "application/json" })
+	public ResponseEntity<Long> countClients(@PathVariable("therapistId") UUID therapistId,
+			@RequestParam(value = "bornAfter", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornAfter,
+			@RequestParam(value = "bornBefore", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornBefore) {
+
+		return new ResponseEntity<>(clientService.countClients(therapistId, bornAfter, bornBefore), HttpStatus.OK);
+	}
+
+	/**
+	 * Complete the name of the clients of a therapist as it is typed, most
+	 * frequent names first.
+	 * 
+	 * @param therapistId The therapist Id.
+	 * @param prefix      The start of the name, or of one of its words.
+	 * @param limit       The maximum number of names, at most 10.
+	 * @return The completed names.
+	 */
+	@ApiOperation(value = "Complete the name of the clients of a therapist", nickname = "completeClientNames", notes = "Autocomplete client names", tags = {
+			"Clients" }, response = List.class)
+	@GetMapping(path = "/autocomplete", produces = { "application/json" })
+	public ResponseEntity<List<String>> completeClientNames(@PathVariable("therapistId") UUID therapistId,
+			@RequestParam("prefix") String prefix, @RequestParam(value = "limit", defaultValue = "10") int limit) {
+
+		return new ResponseEntity<>(clientService.completeClientNames(therapistId, prefix, limit), HttpStatus.OK);
 	}
 
 	/**
-	 * Get the client details by therapist Id and client Id.
+	 * Get the client details by therapist Id and client Id, with its
+	 * <code>ETag</code>. A client still matching the <code>If-None-Match</code>
+	 * header is answered with <code>304 Not Modified</code>, without mapping it.
 	 * 
 	 * @param therapistId The therapist Id.
 	 * @param clientId    The client Id.
+	 * @param ifNoneMatch The tags of the versions known to the caller, if any.
 	 * @return The client details.
 	 */
 	@ApiOperation(value = "Return a client details", nickname = "getClient", notes = "Get a client details", tags = {
 			"Clients" }, response = ClientResponseDto.class)
 	@GetMapping(value = "/{clientId}", produces = { "application/json" })
 	public ResponseEntity<ClientResponseDto> getClient(@PathVariable("therapistId") UUID therapistId,
-			@PathVariable("clientId") UUID clientId) {
+			@PathVariable("clientId") UUID clientId,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
-		return new ResponseEntity<>(clientService.getClient(therapistId, clientId), HttpStatus.OK);
+		ClientResponseDto client = clientService.getClient(therapistId, clientId, ifNoneMatch);
+		return new ResponseEntity<>(client, ETags.headers(client.getVersion()), HttpStatus.OK);
 	}
 
 	/**
-	 * Update an existing client.
+	 * Update an existing client. Given an <code>If-Match</code> header, the
+	 * update is only applied if the client still has one of its tags, and is
+	 * rejected with <code>412 Precondition Failed</code> otherwise.
 	 * 
 	 * @param therapistId The therapist Id.
 	 * @param clientId    The client Id.
 	 * @param clientDto   The client details.
+	 * @param ifMatch     The tag of the version the update is based on, if any.
 	 * @return The updated client.
 	 */
 	@ApiOperation(value = "Edit a client details", nickname = "updateClient", notes = "Update a client details", tags = {
 			"Clients" }, response = ClientResponseDto.class)
 	@PutMapping(value = "/{clientId}", consumes = { "application/json" })
 	public ResponseEntity<ClientResponseDto> updateClient(@PathVariable("therapistId") UUID therapistId,
-			@PathVariable("clientId") UUID clientId, @RequestBody @Valid ClientUpdateRequestDto clientDto) {
+			@PathVariable("clientId") UUID clientId, @RequestBody @Valid ClientUpdateRequestDto clientDto,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-		return new ResponseEntity<>(clientService.updateClient(therapistId, clientId, clientDto), HttpStatus.OK);
+		ClientResponseDto client = clientService.updateClient(therapistId, clientId, clientDto, ifMatch);
+		return new ResponseEntity<>(client, ETags.headers(client.getVersion()), HttpStatus.OK);
 	}
 
 	/**
@@ -0,0 +1,75 @@
+package com.sayedbaladoh.therapistms.controller;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.service.ClientService;
+import com.sayedbaladoh.therapistms.util.ETags;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Client Lookup Rest Controller provides APIs to find a <code>Client<code>
+ * without knowing its therapist.
+ * 
+ * @author SayedBaladoh
+ */
+@Api(value = "Clients", description = "Client's operations APIs", tags = { "Clients" })
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/clients")
+public class ClientLookupController {
+
+	private final ClientService clientService;
+
+	/**
+	 * Get the client details by client Id, with its <code>ETag</code>. A client
+	 * still matching the <code>If-None-Match</code> header is answered with
+	 * <code>304 Not Modified</code>, without mapping it.
+	 * 
+	 * @param clientId    The client Id.
+	 * @param ifNoneMatch The tags of the versions known to the caller, if any.
+	 * @return The client details.
+	 */
+	@ApiOperation(value = "Return a client details by Id", nickname = "getClientById", notes = "Get a client details by Id", tags = {
+			"Clients" }, response = ClientResponseDto.class)
+	@GetMapping(value = "/{clientId}", produces = { "application/json" })
+	public ResponseEntity<ClientResponseDto> getClient(@PathVariable("clientId") UUID clientId,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+		ClientResponseDto client = clientService.getClient(clientId, ifNoneMatch);
+		return new ResponseEntity<>(client, ETags.headers(client.getVersion()), HttpStatus.OK);
+	}
+
+	/**
+	 * Count the clients of all therapists born between two days, such as an age
+	 * band, from the birth date index.
+	 * 
+	 * @param bornAfter  The day the clients must be born after, if any.
+	 * @param bornBefore The day the clients must be born before, if any.
+	 * @return The number of clients.
+	 */
+	@ApiOperation(value = "Count the clients of all therapists by birth date", nickname = "countAllClients", notes = "Count clients born between two days", tags = {
+			"Clients" }, response = Long.class)
+	@GetMapping(value = "/count", produces = { "application/json" })
+	public ResponseEntity<Long> countClients(
+			@RequestParam(value = "bornAfter", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornAfter,
+			@RequestParam(value = "bornBefore", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornBefore) {
+
+		return new ResponseEntity<>(clientService.countClients(bornAfter, bornBefore), HttpStatus.OK);
+	}
+}
@@ -0,0 +1,48 @@
+package com.sayedbaladoh.therapistms.controller;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
+import com.sayedbaladoh.therapistms.service.TherapistService;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Practice Controller provides APIs to list the <code>Therapist<code>s of a
+ * practice.
+ *
+ * @author SayedBaladoh
+ */
+@Api(value = "Practices", description = "Practice's operations APIs", tags = { "Practices" })
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/practices")
+public class PracticeController {
+
+	private final TherapistService therapistService;
+
+	/**
+	 * Get the therapists of a practice.
+	 *
+	 * @param practiceId The practice Id.
+	 * @return The list of therapists of the practice.
+	 */
+	@ApiOperation(value = "Return list of therapists of a practice", nickname = "getPracticeTherapists", notes = "Get a list of therapists of a practice", tags = {
+			"Practices" }, response = List.class)
+	@GetMapping(value = "/{practiceId}/therapists", produces = { "application/json" })
+	public ResponseEntity<List<TherapistResponseDto>> getPracticeTherapists(
+			@PathVariable("practiceId") UUID practiceId) {
+
+		return new ResponseEntity<>(therapistService.getPracticeTherapists(practiceId), HttpStatus.OK);
+	}
+}
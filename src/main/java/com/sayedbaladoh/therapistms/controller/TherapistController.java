@@ -2,6 +2,7 @@ package com.sayedbaladoh.therapistms.controller;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import javax.validation.Valid;
 
@@ -13,14 +14,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedbaladoh.therapistms.dto.PageDto;
 import com.sayedbaladoh.therapistms.dto.TherapistRequestDto;
 import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
 import com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto;
 import com.sayedbaladoh.therapistms.service.TherapistService;
+import com.sayedbaladoh.therapistms.util.ETags;
+import com.sayedbaladoh.therapistms.util.JsonStreaming;
+import com.sayedbaladoh.therapistms.util.Pagination;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -38,6 +47,7 @@ import lombok.RequiredArgsConstructor;
 public class TherapistController {
 
 	private final TherapistService therapistService;
+	private final ObjectMapper objectMapper;
 
 	/**
 	 * Add a new therapist.
@@ -53,54 +63,108 @@ public class TherapistController {
 		TherapistResponseDto therapist = therapistService.addTherapist(therapistDto);
 		String uri = ServletUriComponentsBuilder.fromCurrentServletMapping().path("/therapists/{id}")
 				.buildAndExpand(therapist.getId()).toString();
-		HttpHeaders headers = new HttpHeaders();
+		HttpHeaders headers = ETags.headers(therapist.getVersion());
 		headers.add("Location", uri);
 
 		return new ResponseEntity<>(therapist, headers, HttpStatus.CREATED);
 	}
 
 	/**
-	 * Get all therapists .
+	 * Get all therapists, or a page of them when a limit is given, in id order or
+	 * sorted by name or email. The link to the next page is returned in the
+	 * <code>Link</code> header.
 	 * 
+	 * @param limit  The page size.
+	 * @param cursor The cursor of the page, from the previous page link.
+	 * @param sort   The sort order: name or email, if any.
 	 * @return The list of therapists.
 	 */
 	@ApiOperation(value = "Return list of therapists", nickname = "getAllTherapists", notes = "Get a list of therapists", tags = {
 			"Therapists" }, response = List.class)
 	@GetMapping(produces = { "application/json" })
-	public ResponseEntity<List<TherapistResponseDto>> getAllTherapists() {
+	public ResponseEntity<List<TherapistResponseDto>> getAllTherapists(
+			@RequestParam(value = "limit", required = false) Integer limit,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "sort", required = false) String sort) {
+
+		if (limit == null) {
+			List<TherapistResponseDto> therapists = therapistService.getAllTherapists(sort);
+			return new ResponseEntity<>(therapists, HttpStatus.OK);
+		}
+
+		PageDto<TherapistResponseDto> page = therapistService.getTherapists(cursor, limit, sort);
+		return new ResponseEntity<>(page.getItems(), Pagination.headers(page), HttpStatus.OK);
+	}
+
+	/**
+	 * Stream all therapists, writing each one to the response as it is mapped
+	 * instead of building the whole list first.
+	 * 
+	 * @return The list of therapists.
+	 */
+	@ApiOperation(value = "Stream list of therapists", nickname = "streamAllTherapists", notes = "Stream a list of therapists", tags = {
+			"Therapists" }, response = List.class)
+	@GetMapping(params = "stream=true", produces = { "application/json" })
+	public ResponseEntity<StreamingResponseBody> streamAllTherapists() {
+
+		Stream<TherapistResponseDto> therapists = therapistService.streamAllTherapists();
+		return new ResponseEntity<>(JsonStreaming.array(objectMapper, therapists), JsonStreaming.headers(),
+				HttpStatus.OK);
+	}
+
+	/**
+	 * Get the therapist details by email, whatever its case.
+	 * 
+	 * @param email The therapist email.
+	 * @return The therapist details.
+	 */
+	@ApiOperation(value = "Return a therapist details by email", nickname = "getTherapistByEmail", notes = "Get a therapist details by email", tags = {
+			"Therapists" }, response = TherapistResponseDto.class)
+	@GetMapping(params = "email", produces = { "application/json" })
+	public ResponseEntity<TherapistResponseDto> getTherapistByEmail(@RequestParam("email") String email) {
 
-		List<TherapistResponseDto> therapists = therapistService.getAllTherapists();
-		return new ResponseEntity<>(therapists, HttpStatus.OK);
+		TherapistResponseDto therapist = therapistService.getTherapistByEmail(email);
+		return new ResponseEntity<>(therapist, ETags.headers(therapist.getVersion()), HttpStatus.OK);
 	}
 
 	/**
-	 * Get the therapist details by Id.
+	 * Get the therapist details by Id, with its <code>ETag</code>. A therapist
+	 * still matching the <code>If-None-Match</code> header is answered with
+	 * <code>304 Not Modified</code>, without mapping it.
 	 * 
 	 * @param therapistId The therapist Id.
+	 * @param ifNoneMatch The tags of the versions known to the caller, if any.
 	 * @return The therapist details.
 	 */
 	@ApiOperation(value = "Return a therapist details", nickname = "getTherapist", notes = "Get a therapist details", tags = {
 			"Therapists" }, response = TherapistResponseDto.class)
 	@GetMapping(value = "/{therapistID}", produces = { "application/json" })
-	public ResponseEntity<TherapistResponseDto> getTherapist(@PathVariable("therapistID") UUID therapistID) {
+	public ResponseEntity<TherapistResponseDto> getTherapist(@PathVariable("therapistID") UUID therapistID,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
-		return new ResponseEntity<>(therapistService.getTherapist(therapistID), HttpStatus.OK);
+		TherapistResponseDto therapist = therapistService.getTherapist(therapistID, ifNoneMatch);
+		return new ResponseEntity<>(therapist, ETags.headers(therapist.getVersion()), HttpStatus.OK);
 	}
 
 	/**
-	 * Update an existing therapist.
+	 * Update an existing therapist. Given an <code>If-Match</code> header, the
+	 * update is only applied if the therapist still has one of its tags, and is
+	 * rejected with <code>412 Precondition Failed</code> otherwise.
 	 * 
 	 * @param therapistId  The therapist Id.
 	 * @param therapistDto The therapist details.
+	 * @param ifMatch      The tag of the version the update is based on, if any.
 	 * @return The updated therapist.
 	 */
 	@ApiOperation(value = "Edit a therapist details", nickname = "updateTherapist", notes = "Update a therapist details", tags = {
 			"Therapists" }, response = TherapistResponseDto.class)
 	@PutMapping(value = "/{therapistID}", consumes = { "application/json" })
 	public ResponseEntity<TherapistResponseDto> updateTherapist(@PathVariable("therapistID") UUID therapistID,
-			@RequestBody @Valid TherapistUpdateRequestDto therapistDto) {
+			@RequestBody @Valid TherapistUpdateRequestDto therapistDto,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-		return new ResponseEntity<>(therapistService.updateTherapist(therapistID, therapistDto), HttpStatus.OK);
+		TherapistResponseDto therapist = therapistService.updateTherapist(therapistID, therapistDto, ifMatch);
+		return new ResponseEntity<>(therapist, ETags.headers(therapist.getVersion()), HttpStatus.OK);
 	}
 
 }
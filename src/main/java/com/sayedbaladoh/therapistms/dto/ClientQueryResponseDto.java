@@ -0,0 +1,21 @@
+package com.sayedbaladoh.therapistms.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ClientQueryResponseDto {
+
+	private List<ClientResponseDto> clients;
+
+	/**
+	 * The plan the query ran, only if it was asked for.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private QueryPlanDto plan;
+}
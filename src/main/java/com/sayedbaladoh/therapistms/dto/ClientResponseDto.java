@@ -19,4 +19,6 @@ public class ClientResponseDto {
 	private String job;
 	private Date birthDate;
 	private String gender;
+	@ApiModelProperty(readOnly = true)
+	private long version;
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.sayedbaladoh.therapistms.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PageDto<T> {
+
+	private List<T> items;
+
+	/**
+	 * The opaque cursor of the next page, {@literal null} on the last page.
+	 */
+	private String nextCursor;
+}
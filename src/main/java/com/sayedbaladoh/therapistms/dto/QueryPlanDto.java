@@ -0,0 +1,26 @@
+package com.sayedbaladoh.therapistms.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryPlanDto {
+
+	/**
+	 * <code>index</code> or <code>scan</code>.
+	 */
+	private String access;
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String index;
+
+	private boolean parallel;
+	private long estimatedRows;
+	private long rowsTouched;
+	private long rowsReturned;
+}
@@ -13,4 +13,6 @@ public class TherapistResponseDto {
 	private UUID practiceId;
 	private String name;
 	private String email;
+	@ApiModelProperty(readOnly = true)
+	private long version;
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.sayedbaladoh.therapistms.exception;
+
+public class DuplicateResourceException extends RuntimeException {
+
+    private static final long serialVersionUID = -2270378213436127092L;
+
+    public DuplicateResourceException() {
+        super();
+    }
+
+    public DuplicateResourceException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    public DuplicateResourceException(final String message) {
+        super(message);
+    }
+
+    public DuplicateResourceException(final Throwable cause) {
+		super(cause);
+	}
+}
\ No newline at end of file
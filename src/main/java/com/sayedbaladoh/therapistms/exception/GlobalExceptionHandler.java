@@ -16,6 +16,7 @@ import com.fasterxml.jackson.databind.exc.InvalidFormatException;
 import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.sayedbaladoh.therapistms.dto.ErrorItem;
 import com.sayedbaladoh.therapistms.dto.ErrorResponse;
+import com.sayedbaladoh.therapistms.util.ETags;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -50,6 +51,29 @@ public class GlobalExceptionHandler {
 
 		return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
 	}
+
+	@ExceptionHandler(DuplicateResourceException.class)
+	public ResponseEntity<ErrorItem> handle(DuplicateResourceException e) {
+		log.info(e.getMessage());
+		ErrorItem error = new ErrorItem();
+		error.setMessage(e.getMessage());
+
+		return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+	}
+
+	@ExceptionHandler(PreconditionFailedException.class)
+	public ResponseEntity<ErrorItem> handle(PreconditionFailedException e) {
+		log.info(e.getMessage());
+		ErrorItem error = new ErrorItem();
+		error.setMessage(e.getMessage());
+
+		return new ResponseEntity<>(error, HttpStatus.PRECONDITION_FAILED);
+	}
+
+	@ExceptionHandler(NotModifiedException.class)
+	public ResponseEntity<Void> handle(NotModifiedException e) {
+		return new ResponseEntity<>(ETags.headers(e.getVersion()), HttpStatus.NOT_MODIFIED);
+	}
 	
 //	@ExceptionHandler(HttpClientErrorException.class)
 //	public ResponseEntity<ErrorItem> handle(HttpClientErrorException e) {
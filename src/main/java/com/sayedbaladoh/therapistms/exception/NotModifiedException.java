@@ -0,0 +1,26 @@
+package com.sayedbaladoh.therapistms.exception;
+
+/**
+ * Thrown when a conditional GET finds the entity unchanged, before it is
+ * mapped, so the response is a <code>304 Not Modified</code> with no body.
+ * 
+ * Polling clients get one on most requests, so it has no stack trace.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public class NotModifiedException extends RuntimeException {
+
+	private static final long serialVersionUID = -3361748209771628417L;
+
+	private final long version;
+
+	public NotModifiedException(final long version) {
+		super(null, null, false, false);
+		this.version = version;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+}
@@ -0,0 +1,22 @@
+package com.sayedbaladoh.therapistms.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = 4417623569208412951L;
+
+    public PreconditionFailedException() {
+        super();
+    }
+
+    public PreconditionFailedException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    public PreconditionFailedException(final String message) {
+        super(message);
+    }
+
+    public PreconditionFailedException(final Throwable cause) {
+		super(cause);
+	}
+}
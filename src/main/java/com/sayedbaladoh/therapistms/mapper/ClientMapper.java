@@ -0,0 +1,81 @@
+package com.sayedbaladoh.therapistms.mapper;
+
+import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
+import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.model.Client;
+
+/**
+ * Mappings between the <code>Client</code> entity and its DTOs.
+ *
+ * Null source properties are skipped, so an update request only changes the
+ * properties it carries. Immutable values such as UUIDs and strings are
+ * shared, not copied.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public final class ClientMapper {
+
+	private ClientMapper() {
+	}
+
+	public static Client toClient(ClientRequestDto source, Client destination) {
+		if (source.getName() != null)
+			destination.setName(source.getName());
+		if (source.getEmail() != null)
+			destination.setEmail(source.getEmail());
+		if (source.getPhoneNumber() != null)
+			destination.setPhoneNumber(source.getPhoneNumber());
+		if (source.getAddress() != null)
+			destination.setAddress(source.getAddress());
+		if (source.getJob() != null)
+			destination.setJob(source.getJob());
+		if (source.getBirthDate() != null)
+			destination.setBirthDate(source.getBirthDate());
+		if (source.getGender() != null)
+			destination.setGender(source.getGender());
+		return destination;
+	}
+
+	public static Client toClient(ClientUpdateRequestDto source, Client destination) {
+		if (source.getName() != null)
+			destination.setName(source.getName());
+		if (source.getEmail() != null)
+			destination.setEmail(source.getEmail());
+		if (source.getPhoneNumber() != null)
+			destination.setPhoneNumber(source.getPhoneNumber());
+		if (source.getAddress() != null)
+			destination.setAddress(source.getAddress());
+		if (source.getJob() != null)
+			destination.setJob(source.getJob());
+		if (source.getBirthDate() != null)
+			destination.setBirthDate(source.getBirthDate());
+		if (source.getGender() != null)
+			destination.setGender(source.getGender());
+		return destination;
+	}
+
+	public static ClientResponseDto toResponse(Client source, ClientResponseDto destination) {
+		if (source.getId() != null)
+			destination.setId(source.getId());
+		if (source.getTherapistId() != null)
+			destination.setTherapistId(source.getTherapistId());
+		if (source.getName() != null)
+			destination.setName(source.getName());
+		if (source.getEmail() != null)
+			destination.setEmail(source.getEmail());
+		if (source.getPhoneNumber() != null)
+			destination.setPhoneNumber(source.getPhoneNumber());
+		if (source.getAddress() != null)
+			destination.setAddress(source.getAddress());
+		if (source.getJob() != null)
+			destination.setJob(source.getJob());
+		if (source.getBirthDate() != null)
+			destination.setBirthDate(source.getBirthDate());
+		if (source.getGender() != null)
+			destination.setGender(source.getGender());
+		destination.setVersion(source.getVersion());
+		return destination;
+	}
+}
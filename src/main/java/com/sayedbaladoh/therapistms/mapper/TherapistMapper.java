@@ -0,0 +1,52 @@
+package com.sayedbaladoh.therapistms.mapper;
+
+import com.sayedbaladoh.therapistms.dto.TherapistRequestDto;
+import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
+import com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto;
+import com.sayedbaladoh.therapistms.model.Therapist;
+
+/**
+ * Mappings between the <code>Therapist</code> entity and its DTOs, skipping
+ * null source properties like {@link ClientMapper}.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public final class TherapistMapper {
+
+	private TherapistMapper() {
+	}
+
+	public static Therapist toTherapist(TherapistRequestDto source, Therapist destination) {
+		if (source.getPracticeId() != null)
+			destination.setPracticeId(source.getPracticeId());
+		if (source.getName() != null)
+			destination.setName(source.getName());
+		if (source.getEmail() != null)
+			destination.setEmail(source.getEmail());
+		return destination;
+	}
+
+	public static Therapist toTherapist(TherapistUpdateRequestDto source, Therapist destination) {
+		if (source.getPracticeId() != null)
+			destination.setPracticeId(source.getPracticeId());
+		if (source.getName() != null)
+			destination.setName(source.getName());
+		if (source.getEmail() != null)
+			destination.setEmail(source.getEmail());
+		return destination;
+	}
+
+	public static TherapistResponseDto toResponse(Therapist source, TherapistResponseDto destination) {
+		if (source.getId() != null)
+			destination.setId(source.getId());
+		if (source.getPracticeId() != null)
+			destination.setPracticeId(source.getPracticeId());
+		if (source.getName() != null)
+			destination.setName(source.getName());
+		if (source.getEmail() != null)
+			destination.setEmail(source.getEmail());
+		destination.setVersion(source.getVersion());
+		return destination;
+	}
+}
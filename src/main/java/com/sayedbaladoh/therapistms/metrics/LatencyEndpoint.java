@@ -0,0 +1,50 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * The <code>latency</code> actuator endpoint: the count, p50, p99, p999 and max
+ * in milliseconds of each phase of each endpoint, over the last two minutes.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@Endpoint(id = "latency")
+public class LatencyEndpoint {
+
+	private static final Phase[] PHASES = Phase.values();
+
+	private final RequestMetrics requestMetrics;
+
+	public LatencyEndpoint(RequestMetrics requestMetrics) {
+		this.requestMetrics = requestMetrics;
+	}
+
+	@ReadOperation
+	public Map<String, Map<String, Map<String, Number>>> latency() {
+		Map<String, Map<String, Map<String, Number>>> endpoints = new TreeMap<>();
+		requestMetrics.histograms().forEach((endpoint, histograms) -> {
+			Map<String, Map<String, Number>> phases = new LinkedHashMap<>();
+			for (Phase phase : PHASES)
+				phases.put(phase.tag(), summary(histograms[phase.ordinal()]));
+			endpoints.put(endpoint, phases);
+		});
+		return endpoints;
+	}
+
+	private static Map<String, Number> summary(LatencyHistogram histogram) {
+		Map<String, Number> summary = new LinkedHashMap<>();
+		summary.put("count", histogram.windowCount());
+		summary.put("p50", histogram.percentile(0.5, TimeUnit.MILLISECONDS));
+		summary.put("p99", histogram.percentile(0.99, TimeUnit.MILLISECONDS));
+		summary.put("p999", histogram.percentile(0.999, TimeUnit.MILLISECONDS));
+		summary.put("max", histogram.max(TimeUnit.MILLISECONDS));
+		return summary;
+	}
+}
@@ -0,0 +1,116 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A latency histogram over a sliding window of about two minutes.
+ *
+ * Latencies are recorded wait-free, in microseconds with two significant
+ * digits, into an HdrHistogram <code>Recorder</code>. Reads move what was
+ * recorded since the previous read into the current of three slots, each a
+ * third of the window, so the recording threads never wait for a reader and
+ * the window only moves when it is read.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public final class LatencyHistogram {
+
+	private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+	private static final int DIGITS = 2;
+	private static final int SLOTS = 3;
+	private static final long SLOT_NANOS = TimeUnit.SECONDS.toNanos(40);
+
+	private final Recorder recorder = new Recorder(HIGHEST_MICROS, DIGITS);
+	private final LongAdder totalNanos = new LongAdder();
+
+	private final Histogram[] slots = new Histogram[SLOTS];
+	private final Histogram window = new Histogram(HIGHEST_MICROS, DIGITS);
+	private Histogram interval;
+	private int slot;
+	private long slotStart = System.nanoTime();
+	private long count;
+
+	LatencyHistogram() {
+		for (int i = 0; i < SLOTS; i++)
+			slots[i] = new Histogram(HIGHEST_MICROS, DIGITS);
+	}
+
+	void record(long nanos) {
+		recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_MICROS));
+		totalNanos.add(nanos);
+	}
+
+	/**
+	 * Returns the number of latencies recorded since the start.
+	 */
+	public synchronized long count() {
+		advance();
+		return count;
+	}
+
+	/**
+	 * Returns the sum of the latencies recorded since the start.
+	 */
+	public double totalTime(TimeUnit unit) {
+		return (double) totalNanos.sum() / unit.toNanos(1);
+	}
+
+	/**
+	 * Returns the number of latencies in the window.
+	 */
+	public synchronized long windowCount() {
+		advance();
+		return window.getTotalCount();
+	}
+
+	/**
+	 * Returns a percentile of the window, 0 if it is empty.
+	 *
+	 * @param percentile the percentile, between 0 and 1.
+	 * @param unit       the unit of the result.
+	 * @return the latency at the percentile.
+	 */
+	public synchronized double percentile(double percentile, TimeUnit unit) {
+		advance();
+		return toUnit(window.getValueAtPercentile(percentile * 100), unit);
+	}
+
+	/**
+	 * Returns the max of the window, 0 if it is empty.
+	 */
+	public synchronized double max(TimeUnit unit) {
+		advance();
+		return toUnit(window.getMaxValue(), unit);
+	}
+
+	private void advance() {
+		interval = recorder.getIntervalHistogram(interval);
+		count += interval.getTotalCount();
+
+		long now = System.nanoTime();
+		if (now - slotStart >= SLOTS * SLOT_NANOS) {
+			for (Histogram expired : slots)
+				expired.reset();
+			slotStart = now;
+		}
+		while (now - slotStart >= SLOT_NANOS) {
+			slot = (slot + 1) % SLOTS;
+			slots[slot].reset();
+			slotStart += SLOT_NANOS;
+		}
+		slots[slot].add(interval);
+
+		window.reset();
+		for (Histogram histogram : slots)
+			window.add(histogram);
+	}
+
+	private static double toUnit(long micros, TimeUnit unit) {
+		return (double) micros * TimeUnit.MICROSECONDS.toNanos(1) / unit.toNanos(1);
+	}
+}
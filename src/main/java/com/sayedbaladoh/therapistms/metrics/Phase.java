@@ -0,0 +1,17 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+/**
+ * The phases a request is timed in. <code>TOTAL</code> is the whole request,
+ * from the handler interceptor to its completion.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public enum Phase {
+
+	REPOSITORY, MAPPING, SERIALIZATION, TOTAL;
+
+	String tag() {
+		return name().toLowerCase();
+	}
+}
@@ -0,0 +1,63 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import com.sayedbaladoh.therapistms.repository.Repository;
+import com.sayedbaladoh.therapistms.util.ObjectMapperHelper;
+
+/**
+ * Proxies the repositories and the object mapper helper so the time the
+ * current request spends in them is added to its repository and mapping
+ * phases. Calls made outside of a request are not timed.
+ *
+ * The request metrics are looked up on the first call, as the meter registry
+ * they need itself depends on the repositories for their gauges.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class PhaseTimingPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+	private BeanFactory beanFactory;
+	private volatile RequestMetrics metrics;
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		this.beanFactory = beanFactory;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof Repository)
+			return timed(bean, Phase.REPOSITORY);
+		if (bean instanceof ObjectMapperHelper)
+			return timed(bean, Phase.MAPPING);
+		return bean;
+	}
+
+	private Object timed(Object bean, Phase phase) {
+		ProxyFactory proxyFactory = new ProxyFactory(bean);
+		proxyFactory.setProxyTargetClass(true);
+		proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+			long start = System.nanoTime();
+			try {
+				return invocation.proceed();
+			} finally {
+				metrics().add(phase, System.nanoTime() - start);
+			}
+		});
+		return proxyFactory.getProxy();
+	}
+
+	private RequestMetrics metrics() {
+		RequestMetrics requestMetrics = metrics;
+		if (requestMetrics == null)
+			metrics = requestMetrics = beanFactory.getBean(RequestMetrics.class);
+		return requestMetrics;
+	}
+}
@@ -0,0 +1,73 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.repository.TherapistRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Gauges of the repository sizes. Client partitions are summarized by their
+ * mean and max sizes rather than with a gauge per therapist, whose number is
+ * unbounded.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class RepositoryMetrics implements MeterBinder {
+
+	private final TherapistRepository therapistRepository;
+	private final ClientRepository clientRepository;
+
+	public RepositoryMetrics(TherapistRepository therapistRepository, ClientRepository clientRepository) {
+		this.therapistRepository = therapistRepository;
+		this.clientRepository = clientRepository;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("therapistms.repository.size", therapistRepository, TherapistRepository::count)
+				.description("The number of entities in the repository")
+				.tag("repository", "therapists")
+				.register(registry);
+		Gauge.builder("therapistms.repository.size", clientRepository, ClientRepository::count)
+				.description("The number of entities in the repository")
+				.tag("repository", "clients")
+				.register(registry);
+		Gauge.builder("therapistms.clients", clientRepository, ClientRepository::countClients)
+				.description("The number of clients of all therapists")
+				.register(registry);
+		Gauge.builder("therapistms.clients.partition.size", clientRepository, RepositoryMetrics::meanPartitionSize)
+				.description("The number of clients per therapist")
+				.tag("statistic", "mean")
+				.register(registry);
+		Gauge.builder("therapistms.clients.partition.size", clientRepository, ClientRepository::maxPartitionSize)
+				.description("The number of clients per therapist")
+				.tag("statistic", "max")
+				.register(registry);
+		Gauge.builder("therapistms.clients.resident", clientRepository, ClientRepository::countResidentClients)
+				.description("The number of clients in memory, the others being spilled to disk")
+				.register(registry);
+		Gauge.builder("therapistms.clients.partitions.spilled", clientRepository,
+				ClientRepository::countSpilledPartitions)
+				.description("The number of client partitions spilled to disk")
+				.register(registry);
+		FunctionCounter.builder("therapistms.clients.partition.accesses", clientRepository,
+				ClientRepository::countPartitionHits)
+				.description("The accesses to client partitions that can be spilled")
+				.tag("result", "hit")
+				.register(registry);
+		FunctionCounter.builder("therapistms.clients.partition.accesses", clientRepository,
+				ClientRepository::countPartitionFaults)
+				.description("The accesses to client partitions that can be spilled")
+				.tag("result", "fault")
+				.register(registry);
+	}
+
+	private static double meanPartitionSize(ClientRepository clientRepository) {
+		long partitions = clientRepository.count();
+		return partitions == 0 ? 0 : (double) clientRepository.countClients() / partitions;
+	}
+}
@@ -0,0 +1,112 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.web.method.HandlerMethod;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+/**
+ * Per endpoint latency of each request phase.
+ *
+ * The phases of the request served by the current thread are accumulated in a
+ * <code>RequestPhases</code> bound to the thread, and recorded in one
+ * <code>LatencyHistogram</code> per endpoint and phase when the request
+ * completes. The histograms are published to Micrometer as function timers
+ * with p50, p99, p999 and max gauges, which only read them when scraped, so
+ * recording a request costs a few wait-free histogram updates.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class RequestMetrics {
+
+	public static final String TIMER = "therapistms.request.phase";
+
+	private static final Phase[] PHASES = Phase.values();
+	private static final double[] PERCENTILES = { 0.5, 0.99, 0.999 };
+
+	private final MeterRegistry registry;
+	private final String controllerPackage;
+	private final ConcurrentMap<Method, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+	private final ThreadLocal<RequestPhases> current = new ThreadLocal<>();
+
+	/**
+	 * @param registry          the meter registry.
+	 * @param controllerPackage the package of the controllers to time.
+	 */
+	public RequestMetrics(MeterRegistry registry, String controllerPackage) {
+		this.registry = registry;
+		this.controllerPackage = controllerPackage;
+	}
+
+	/**
+	 * Adds time to a phase of the request served by the current thread, if any.
+	 */
+	public void add(Phase phase, long elapsed) {
+		RequestPhases phases = current.get();
+		if (phases != null)
+			phases.add(phase, elapsed);
+	}
+
+	/**
+	 * Returns the histograms of the endpoints requested so far, by endpoint name,
+	 * indexed by phase.
+	 */
+	public Map<String, LatencyHistogram[]> histograms() {
+		Map<String, LatencyHistogram[]> byEndpoint = new TreeMap<>();
+		histograms.forEach((method, endpointHistograms) -> byEndpoint.put(endpoint(method), endpointHistograms));
+		return byEndpoint;
+	}
+
+	boolean isTimed(HandlerMethod handler) {
+		return handler.getBeanType().getPackage().getName().equals(controllerPackage);
+	}
+
+	RequestPhases start(HandlerMethod handler) {
+		return new RequestPhases(histograms.computeIfAbsent(handler.getMethod(), this::register), System.nanoTime());
+	}
+
+	void bind(RequestPhases phases) {
+		current.set(phases);
+	}
+
+	void unbind() {
+		current.remove();
+	}
+
+	private LatencyHistogram[] register(Method method) {
+		String endpoint = endpoint(method);
+		LatencyHistogram[] endpointHistograms = new LatencyHistogram[PHASES.length];
+		for (Phase phase : PHASES) {
+			LatencyHistogram histogram = new LatencyHistogram();
+			endpointHistograms[phase.ordinal()] = histogram;
+
+			FunctionTimer.builder(TIMER, histogram, LatencyHistogram::count, h -> h.totalTime(TimeUnit.NANOSECONDS),
+					TimeUnit.NANOSECONDS)
+					.description("The time spent by requests in each phase")
+					.tags("endpoint", endpoint, "phase", phase.tag())
+					.register(registry);
+			for (double percentile : PERCENTILES)
+				TimeGauge.builder(TIMER + ".percentile", histogram, TimeUnit.NANOSECONDS,
+						h -> h.percentile(percentile, TimeUnit.NANOSECONDS))
+						.tags("endpoint", endpoint, "phase", phase.tag(), "phi", Double.toString(percentile))
+						.register(registry);
+			TimeGauge.builder(TIMER + ".max", histogram, TimeUnit.NANOSECONDS, h -> h.max(TimeUnit.NANOSECONDS))
+					.tags("endpoint", endpoint, "phase", phase.tag())
+					.register(registry);
+		}
+		return endpointHistograms;
+	}
+
+	static String endpoint(Method method) {
+		return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+	}
+}
@@ -0,0 +1,84 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+import java.util.concurrent.Callable;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Binds the phases of a request to the threads serving it.
+ *
+ * A request is started by its first dispatch and recorded on completion. When
+ * the response is written asynchronously, as streamed lists are, the phases
+ * follow the request to the writing thread, the write is timed as
+ * serialization, and the request completes in the async dispatch that
+ * follows.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class RequestMetricsInterceptor implements AsyncHandlerInterceptor, CallableProcessingInterceptor {
+
+	private static final String PHASES = RequestPhases.class.getName();
+
+	private final RequestMetrics metrics;
+
+	public RequestMetricsInterceptor(RequestMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!(handler instanceof HandlerMethod) || !metrics.isTimed((HandlerMethod) handler))
+			return true;
+
+		RequestPhases phases = (RequestPhases) request.getAttribute(PHASES);
+		if (phases == null) {
+			phases = metrics.start((HandlerMethod) handler);
+			request.setAttribute(PHASES, phases);
+		}
+		metrics.bind(phases);
+		return true;
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+			Object handler) {
+		metrics.unbind();
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		metrics.unbind();
+		RequestPhases phases = (RequestPhases) request.getAttribute(PHASES);
+		if (phases != null) {
+			request.removeAttribute(PHASES);
+			phases.record(System.nanoTime());
+		}
+	}
+
+	@Override
+	public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+		RequestPhases phases = (RequestPhases) request.getAttribute(PHASES, RequestAttributes.SCOPE_REQUEST);
+		if (phases != null) {
+			metrics.bind(phases);
+			phases.startAsync(System.nanoTime());
+		}
+	}
+
+	@Override
+	public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+		RequestPhases phases = (RequestPhases) request.getAttribute(PHASES, RequestAttributes.SCOPE_REQUEST);
+		if (phases != null) {
+			phases.endAsync(System.nanoTime());
+			metrics.unbind();
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+/**
+ * The time spent so far in each phase by one request. It is bound to the
+ * thread serving the request, which may change when the response is written
+ * asynchronously, but is only ever used by one thread at a time.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+final class RequestPhases {
+
+	private static final Phase[] PHASES = Phase.values();
+
+	private final LatencyHistogram[] histograms;
+	private final long start;
+	private final long[] nanos = new long[PHASES.length];
+	private long asyncStart;
+
+	RequestPhases(LatencyHistogram[] histograms, long start) {
+		this.histograms = histograms;
+		this.start = start;
+	}
+
+	void add(Phase phase, long elapsed) {
+		nanos[phase.ordinal()] += elapsed;
+	}
+
+	void startAsync(long now) {
+		asyncStart = now;
+	}
+
+	void endAsync(long now) {
+		add(Phase.SERIALIZATION, now - asyncStart);
+	}
+
+	/**
+	 * Records the phases the request went through, and its total time.
+	 */
+	void record(long end) {
+		nanos[Phase.TOTAL.ordinal()] = end - start;
+		for (Phase phase : PHASES) {
+			long elapsed = nanos[phase.ordinal()];
+			if (elapsed > 0)
+				histograms[phase.ordinal()].record(elapsed);
+		}
+	}
+}
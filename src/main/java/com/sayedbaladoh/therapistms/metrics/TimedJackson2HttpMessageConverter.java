@@ -0,0 +1,38 @@
+package com.sayedbaladoh.therapistms.metrics;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The JSON message converter, adding the time spent writing response bodies to
+ * the serialization phase of the current request.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class TimedJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+	private final RequestMetrics metrics;
+
+	public TimedJackson2HttpMessageConverter(ObjectMapper objectMapper, RequestMetrics metrics) {
+		super(objectMapper);
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		long start = System.nanoTime();
+		try {
+			super.writeInternal(object, type, outputMessage);
+		} finally {
+			metrics.add(Phase.SERIALIZATION, System.nanoTime() - start);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.sayedbaladoh.therapistms.model;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.UUID;
 
@@ -9,7 +10,9 @@ import com.sayedbaladoh.therapistms.validation.Gender;
 
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 /**
@@ -17,21 +20,105 @@ import lombok.Setter;
  * 
  * Extends <code>User</code> entity.
  * 
+ * Clients held by the <code>ClientRepository</code> are snapshots shared with
+ * concurrent readers and must not be mutated. To change a client, copy it with
+ * {@link #Client(Client)}, change the copy and publish it with
+ * <code>ClientRepository#replace</code>.
+ * 
+ * As clients are held for their whole life and mostly read at the API edge,
+ * they are held compact, see {@link Compact}: the therapist id as its two
+ * halves, the text as UTF-8 bytes, the job and gender as shared instances and
+ * the birth date as its UTC day. The getters decode them and the setters
+ * encode them, so the birth date has no time of day.
+ * 
  * @author Sayed Baladoh
  *
  */
 @ApiModel(description = "The Client entity has all details about the client.")
 @Getter
 @Setter
+@NoArgsConstructor
 public class Client extends User {
 
-	private UUID therapistId;
-	private String phoneNumber;
-	private String address;
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private long therapistIdHigh;
+
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private long therapistIdLow;
+
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private boolean hasTherapistId;
+
+	private byte[] phoneNumber;
+	private byte[] address;
 	private String job;
-	private Date birthDate;
-	
+	private int birthDate = Compact.NO_DAY;
+
 	@Gender
 	private String gender;
 
+	public Client(Client other) {
+		super(other);
+		this.therapistIdHigh = other.therapistIdHigh;
+		this.therapistIdLow = other.therapistIdLow;
+		this.hasTherapistId = other.hasTherapistId;
+		this.phoneNumber = other.phoneNumber;
+		this.address = other.address;
+		this.job = other.job;
+		this.birthDate = other.birthDate;
+		this.gender = other.gender;
+	}
+
+	public UUID getTherapistId() {
+		return hasTherapistId ? new UUID(therapistIdHigh, therapistIdLow) : null;
+	}
+
+	public void setTherapistId(UUID therapistId) {
+		this.hasTherapistId = therapistId != null;
+		this.therapistIdHigh = therapistId == null ? 0 : therapistId.getMostSignificantBits();
+		this.therapistIdLow = therapistId == null ? 0 : therapistId.getLeastSignificantBits();
+	}
+
+	public String getPhoneNumber() {
+		return Compact.decode(phoneNumber);
+	}
+
+	public void setPhoneNumber(String phoneNumber) {
+		this.phoneNumber = Compact.encode(phoneNumber);
+	}
+
+	public String getAddress() {
+		return Compact.decode(address);
+	}
+
+	public void setAddress(String address) {
+		this.address = Compact.encode(address);
+	}
+
+	/**
+	 * Tells whether another client has the same address, comparing the encoded
+	 * values without decoding them.
+	 */
+	public boolean hasSameAddress(Client other) {
+		return other != null && Arrays.equals(address, other.address);
+	}
+
+	public void setJob(String job) {
+		this.job = Compact.share(job);
+	}
+
+	public Date getBirthDate() {
+		return Compact.date(birthDate);
+	}
+
+	public void setBirthDate(Date birthDate) {
+		this.birthDate = Compact.day(birthDate);
+	}
+
+	public void setGender(String gender) {
+		this.gender = Compact.share(gender);
+	}
 }
@@ -0,0 +1,71 @@
+package com.sayedbaladoh.therapistms.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The compact encodings of the fields of the entities, which are held for
+ * their whole life but only read now and then: text as UTF-8 bytes, half the
+ * size of a <code>String</code> for the mostly ASCII values, fields with few
+ * distinct values as the shared instance of a dictionary, and dates as days.
+ * The getters of the entities decode them.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+final class Compact {
+
+	static final int NO_DAY = Integer.MIN_VALUE;
+
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+	private static final int DICTIONARY_SIZE = 4096;
+	private static final byte[] EMPTY = new byte[0];
+	private static final ConcurrentMap<String, String> DICTIONARY = new ConcurrentHashMap<>();
+
+	private Compact() {
+	}
+
+	static byte[] encode(String value) {
+		if (value == null)
+			return null;
+		return value.isEmpty() ? EMPTY : value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	static String decode(byte[] value) {
+		return value == null ? null : new String(value, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the shared instance of a value. Once the dictionary is full, new
+	 * values are kept as they are, so a field with many distinct values costs
+	 * no more than before.
+	 */
+	static String share(String value) {
+		if (value == null)
+			return null;
+		String shared = DICTIONARY.get(value);
+		if (shared != null)
+			return shared;
+		if (DICTIONARY.size() >= DICTIONARY_SIZE)
+			return value;
+		shared = DICTIONARY.putIfAbsent(value, value);
+		return shared == null ? value : shared;
+	}
+
+	/**
+	 * Returns the UTC day of a date, {@link #NO_DAY} if none. Days out of the
+	 * int range are clamped.
+	 */
+	static int day(Date date) {
+		if (date == null)
+			return NO_DAY;
+		long day = Math.floorDiv(date.getTime(), MILLIS_PER_DAY);
+		return (int) Math.max(NO_DAY + 1L, Math.min(Integer.MAX_VALUE, day));
+	}
+
+	static Date date(int day) {
+		return day == NO_DAY ? null : new Date(day * MILLIS_PER_DAY);
+	}
+}
@@ -3,14 +3,31 @@ package com.sayedbaladoh.therapistms.model;
 import java.util.UUID;
 
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+/**
+ * The Therapist entity.
+ * 
+ * Therapists held by the <code>TherapistRepository</code> are indexed by their
+ * practice and must not be mutated. To change a therapist, copy it with
+ * {@link #Therapist(Therapist)}, change the copy and save it.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
 @Getter
 @Setter
+@NoArgsConstructor
 public class Therapist extends User {
 
 	private UUID practiceId;
 
+	public Therapist(Therapist other) {
+		super(other);
+		this.practiceId = other.practiceId;
+	}
+
 	@Override
 	public String toString() {
 		return "Therapist [practiceId=" + practiceId + ", getId()=" + getId() + ", getName()=" + getName()
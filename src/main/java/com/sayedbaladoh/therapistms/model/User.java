@@ -1,23 +1,77 @@
 package com.sayedbaladoh.therapistms.model;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
 
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+/**
+ * The fields common to therapists and clients. The name and email are held as
+ * UTF-8 bytes, see {@link Compact}; the id is kept as is, as the same instance
+ * is the key of the entity in its repository.
+ */
 @Getter
 @Setter
+@NoArgsConstructor
 public class User {
 
 	private UUID id;
+	private byte[] name;
+	private byte[] email;
+
+	/**
+	 * The version of the entity, incremented by its repository on every update,
+	 * from which its <code>ETag</code> is built.
+	 */
+	private long version;
+
+	/**
+	 * Copies a user, sharing its encoded values, which are never modified.
+	 */
+	protected User(User other) {
+		this.id = other.id;
+		this.name = other.name;
+		this.email = other.email;
+		this.version = other.version;
+	}
 
 	@NotBlank
-	private String name;
+	public String getName() {
+		return Compact.decode(name);
+	}
+
+	public void setName(String name) {
+		this.name = Compact.encode(name);
+	}
 
 	@NotBlank
 	@Email
-	private String email;
+	public String getEmail() {
+		return Compact.decode(email);
+	}
+
+	public void setEmail(String email) {
+		this.email = Compact.encode(email);
+	}
+
+	/**
+	 * Tells whether another user has the same name, comparing the encoded values
+	 * without decoding them.
+	 */
+	public boolean hasSameName(User other) {
+		return other != null && Arrays.equals(name, other.name);
+	}
+
+	/**
+	 * Tells whether another user has the same email, comparing the encoded values
+	 * without decoding them.
+	 */
+	public boolean hasSameEmail(User other) {
+		return other != null && Arrays.equals(email, other.email);
+	}
 }
@@ -0,0 +1,78 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.time.LocalDate;
+
+import com.sayedbaladoh.therapistms.model.Client;
+
+import lombok.Getter;
+
+/**
+ * The criteria of a client query, all of which a client must meet. A
+ * {@literal null} or blank criterion matches every client.
+ *
+ * Gender and job are compared whatever their case; birth dates are compared by
+ * UTC day.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@Getter
+public class ClientFilter {
+
+	private final String gender;
+	private final String job;
+
+	/**
+	 * The day clients must be born after, exclusive.
+	 */
+	private final LocalDate bornAfter;
+
+	/**
+	 * The day clients must be born before, exclusive.
+	 */
+	private final LocalDate bornBefore;
+
+	/**
+	 * The epoch days of the birth date range, inclusive.
+	 */
+	private final long firstBirthDay;
+	private final long lastBirthDay;
+
+	public ClientFilter(String gender, String job, LocalDate bornAfter, LocalDate bornBefore) {
+		this.gender = FieldIndex.normalize(gender);
+		this.job = FieldIndex.normalize(job);
+		this.bornAfter = bornAfter;
+		this.bornBefore = bornBefore;
+		this.firstBirthDay = bornAfter == null ? Long.MIN_VALUE : bornAfter.toEpochDay() + 1;
+		this.lastBirthDay = bornBefore == null ? Long.MAX_VALUE : bornBefore.toEpochDay() - 1;
+	}
+
+	/**
+	 * Returns whether the filter has a birth date criterion.
+	 */
+	public boolean hasBirthDateRange() {
+		return bornAfter != null || bornBefore != null;
+	}
+
+	/**
+	 * Returns whether a client meets all the criteria.
+	 */
+	public boolean matches(Client client) {
+		return (gender == null || matches(gender, client.getGender()))
+				&& (job == null || matches(job, client.getJob()))
+				&& (!hasBirthDateRange() || client.getBirthDate() != null
+						&& matches(RangeIndex.epochDay(client.getBirthDate())));
+	}
+
+	/**
+	 * Compares a value to a criterion without lower casing it, as every client
+	 * scanned would allocate a copy.
+	 */
+	private static boolean matches(String criterion, String value) {
+		return value != null && criterion.equalsIgnoreCase(value.trim());
+	}
+
+	private boolean matches(long birthDay) {
+		return birthDay >= firstBirthDay && birthDay <= lastBirthDay;
+	}
+}
@@ -0,0 +1,234 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.util.Emails;
+
+/**
+ * The indexes of the clients of one therapist, updated together through
+ * {@link #index} under the therapist's lock, so a write of a client looks its
+ * partition's indexes up once and a partition spilled or replaced drops them
+ * all at once.
+ *
+ * The clients are indexed by their normalized email, by gender and job in
+ * {@link FieldIndex}es, by name, email and birth date in {@link SortedIndex}es,
+ * by name, address and job in an {@link NGramIndex} and by name in a
+ * {@link CompletionTrie}; their birth dates go to the {@link RangeIndex} shared
+ * by all therapists.
+ *
+ * As the text of a client is held encoded, a write decodes each of its fields
+ * once for all the indexes, and none of a field the new version did not
+ * change, which is told from the encoded values. The indexes hold one decoded
+ * instance per value: the email index and the email order share the normalized
+ * email, and the name order keys on the trie's copy of each distinct name.
+ *
+ * Indexes built while the repository recovers leave the emails unchecked until
+ * {@link #checkEmails()}, as a snapshot read while writes went on may give an
+ * email to two clients until the journal is replayed.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+final class ClientIndexes {
+
+	/**
+	 * The sort keys of the clients by the name of their sort order.
+	 */
+	private static final Map<String, Function<Client, String>> SORT_KEYS = new LinkedHashMap<>();
+
+	static {
+		SORT_KEYS.put("name", client -> nameKey(client.getName()));
+		SORT_KEYS.put("email", client -> SortedIndex.text(client.getEmail()));
+		SORT_KEYS.put("birthDate", client -> SortedIndex.day(client.getBirthDate()));
+	}
+
+	private final UUID therapistId;
+	private final RangeIndex<Client> birthDates;
+	private final UniqueIndex<String, UUID, Client> emails;
+	private final FieldIndex<UUID, Client> genders;
+	private final FieldIndex<UUID, Client> jobs;
+	private final Map<String, SortedIndex<UUID, Client>> sortOrders = new LinkedHashMap<>();
+	private final SortedIndex<UUID, Client> byName;
+	private final SortedIndex<UUID, Client> byEmail;
+	private final SortedIndex<UUID, Client> byBirthDate;
+	private final NGramIndex<UUID> searchIndex = new NGramIndex<>();
+	private final CompletionTrie names = new CompletionTrie();
+	private boolean uncheckedEmails;
+
+	/**
+	 * @param therapistId the therapist id.
+	 * @param clients     the partition of the therapist, by client id.
+	 * @param birthDates  the birth date index of all therapists.
+	 * @param recovering  whether the repository is recovering, the emails being
+	 *                    checked once it is done.
+	 */
+	ClientIndexes(UUID therapistId, Map<UUID, Client> clients, RangeIndex<Client> birthDates, boolean recovering) {
+		this.therapistId = therapistId;
+		this.birthDates = birthDates;
+		this.uncheckedEmails = recovering;
+		emails = new UniqueIndex<>("Client email", client -> Emails.normalize(client.getEmail()), clients::get);
+		genders = new FieldIndex<>("gender", Client::getGender, clients::get);
+		jobs = new FieldIndex<>("job", Client::getJob, clients::get);
+		for (Map.Entry<String, Function<Client, String>> sortKey : SORT_KEYS.entrySet())
+			sortOrders.put(sortKey.getKey(), new SortedIndex<>(sortKey.getKey(), sortKey.getValue(), clients::get));
+		byName = sortOrders.get("name");
+		byEmail = sortOrders.get("email");
+		byBirthDate = sortOrders.get("birthDate");
+	}
+
+	/**
+	 * Returns the names of the sort orders of the clients.
+	 */
+	static Collection<String> sorts() {
+		return Collections.unmodifiableSet(SORT_KEYS.keySet());
+	}
+
+	/**
+	 * Returns the sort key function of a sort order.
+	 *
+	 * @throws IllegalArgumentException if the sort order does not exist.
+	 */
+	static Function<Client, String> sortKey(String sort) {
+		Function<Client, String> sortKey = SORT_KEYS.get(sort);
+		if (sortKey == null)
+			throw new IllegalArgumentException("sort must be one of " + String.join(", ", SORT_KEYS.keySet()) + ".");
+		return sortKey;
+	}
+
+	/**
+	 * Checks the email of a new version of a client is not another client's,
+	 * before the write is journaled. The writes of a therapist's clients hold its
+	 * lock, so the email is still free when the write is indexed.
+	 *
+	 * @throws DuplicateResourceException if another client of the therapist has
+	 *                                    the email.
+	 */
+	void claim(UUID clientId, Client previous, Client client) {
+		if (uncheckedEmails || client.hasSameEmail(previous))
+			return;
+
+		String email = emails.keyOf(client);
+		UUID owner = email == null ? null : emails.findId(email).orElse(null);
+		if (owner != null && !owner.equals(clientId))
+			throw new DuplicateResourceException(emails.getName() + " " + email + " already exists.");
+	}
+
+	/**
+	 * Moves a client from its previous version to its new one in every index,
+	 * either version being {@literal null} for an insert or a removal.
+	 */
+	void index(UUID clientId, Client previous, Client client) {
+		boolean sameName = client != null && client.hasSameName(previous);
+		boolean sameEmail = client != null && client.hasSameEmail(previous);
+
+		// normalized emails are their own sort key, so both indexes keep one copy
+		String email = emails.keyOf(client);
+		String previousEmail = sameEmail ? email : emails.keyOf(previous);
+		if (!uncheckedEmails)
+			emails.update(clientId, previousEmail, email, client);
+		byEmail.update(clientId, previous == null ? null : SortedIndex.text(previousEmail),
+				client == null ? null : SortedIndex.text(email), client);
+
+		String name = client == null ? null : client.getName();
+		String previousName = previous == null ? null : sameName ? name : previous.getName();
+		if (!sameName && previousName != null)
+			names.remove(previousName);
+		String nameKey = client == null ? null : !sameName && name != null ? names.add(name) : nameKey(name);
+		byName.update(clientId, previous == null ? null : sameName ? nameKey : nameKey(previousName), nameKey,
+				client);
+
+		if (client == null)
+			searchIndex.remove(clientId);
+		else if (!sameName || !client.hasSameAddress(previous) || !Objects.equals(client.getJob(), previous.getJob()))
+			searchIndex.put(clientId, searchText(name, client));
+
+		byBirthDate.update(clientId, byBirthDate.keyOf(previous), byBirthDate.keyOf(client), client);
+		genders.update(clientId, previous, client);
+		jobs.update(clientId, previous, client);
+		birthDates.update(therapistId, clientId, previous, client);
+	}
+
+	/**
+	 * Indexes the emails of the clients indexed while recovering, from the keys
+	 * of the email order so both keep sharing them. Called once the journal is
+	 * replayed.
+	 *
+	 * @throws DuplicateResourceException if two clients of the therapist have the
+	 *                                    same email.
+	 */
+	void checkEmails() {
+		if (!uncheckedEmails)
+			return;
+
+		for (Map.Entry<SortKey<UUID>, Client> entry : byEmail.entries().entrySet()) {
+			String key = entry.getKey().getKey();
+			String email = key.isEmpty() ? emails.keyOf(entry.getValue()) : key;
+			emails.update(entry.getKey().getId(), null, email, entry.getValue());
+		}
+		uncheckedEmails = false;
+	}
+
+	/**
+	 * Drops the birth dates of the therapist's clients from the index shared by
+	 * all therapists, the other indexes going with this holder.
+	 */
+	void clear() {
+		birthDates.clear(therapistId);
+	}
+
+	/**
+	 * Returns the number of clients indexed.
+	 */
+	int size() {
+		return searchIndex.size();
+	}
+
+	UniqueIndex<String, UUID, Client> emails() {
+		return emails;
+	}
+
+	FieldIndex<UUID, Client> genders() {
+		return genders;
+	}
+
+	FieldIndex<UUID, Client> jobs() {
+		return jobs;
+	}
+
+	SortedIndex<UUID, Client> sortOrder(String sort) {
+		sortKey(sort);
+		return sortOrders.get(sort);
+	}
+
+	NGramIndex<UUID> searchIndex() {
+		return searchIndex;
+	}
+
+	CompletionTrie names() {
+		return names;
+	}
+
+	/**
+	 * Returns the sort key of a name: the key of the name in the trie, so the
+	 * order ignores case and repeated blanks.
+	 */
+	private static String nameKey(String name) {
+		return name == null ? "" : CompletionTrie.normalize(name, false);
+	}
+
+	private static String searchText(String name, Client client) {
+		StringBuilder text = new StringBuilder();
+		for (String field : new String[] { name, client.getAddress(), client.getJob() })
+			if (field != null)
+				text.append(field).append(' ');
+		return text.toString();
+	}
+}
@@ -1,24 +1,1036 @@
 package com.sayedbaladoh.therapistms.repository;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.sayedbaladoh.therapistms.config.StorageProperties;
+import com.sayedbaladoh.therapistms.config.StorageProperties.MapType;
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
 import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.storage.Codec;
+import com.sayedbaladoh.therapistms.storage.Codecs;
+import com.sayedbaladoh.therapistms.storage.EntityStore;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.JournalFactory;
+import com.sayedbaladoh.therapistms.storage.SpillStore;
+import com.sayedbaladoh.therapistms.storage.StorageEngineFactory;
+import com.sayedbaladoh.therapistms.storage.Tables;
+import com.sayedbaladoh.therapistms.util.Emails;
 
+/**
+ * Stores the clients partitioned by their therapist id.
+ * 
+ * Each partition is created and mutated under the therapist's entry lock, so
+ * concurrent inserts into a new partition can not overwrite each other and an
+ * insert can not land in a partition that is being deleted.
+ * 
+ * A client id index (client id to therapist id) is maintained under the same
+ * lock, so a client can be found by its id alone in constant time. The
+ * partitions and the client id index are kept in the map chosen by the storage
+ * configuration, a <code>ConcurrentHashMap</code> or a {@link UuidHashMap}.
+ * 
+ * The clients of each therapist are indexed in their own {@link ClientIndexes},
+ * updated through a single hook under the therapist's lock: their normalized
+ * emails, so a write giving a client the email of another client of the same
+ * therapist is rejected before it is journaled and of concurrent inserts of the
+ * same email only one succeeds; their gender and job in {@link FieldIndex}es,
+ * so a filter query reads the clients having its most selective value instead
+ * of the whole partition; their name, address and job in an {@link NGramIndex},
+ * so they can be searched by partial words, and their names in a
+ * {@link CompletionTrie}, so a name prefix is completed without scanning the
+ * partition; and their name, email and birth date in {@link SortedIndex}es, so
+ * they are listed and paged through in any of these orders without sorting
+ * them. Their birth dates are indexed in a {@link RangeIndex}, per therapist
+ * and for all therapists, so the clients of an age band are counted and read
+ * without scanning either.
+ * 
+ * Partitions are <code>ConcurrentSkipListMap</code>s, so the clients of a
+ * therapist can be paged through in id order at a cost proportional to the
+ * page size.
+ * 
+ * Given a {@link SpillStore}, the repository keeps at most a budget of
+ * clients in memory. Once over it, the partitions of the therapists least
+ * recently read, as chosen by a {@link PartitionClock}, are serialized to the
+ * store and replaced by a placeholder, and their indexes are dropped; the
+ * client id index and the birth days of their clients are kept, so a client is
+ * still found by its id alone and the clients of all therapists are still
+ * counted by age band. Any read or write of a spilled partition loads it back
+ * and indexes it again, under the therapist's lock, and keeps it in memory
+ * until it returns. A snapshot reads the spilled partitions from the store.
+ * 
+ * Given an enabled {@link EntityStore}, every client saved or removed is also
+ * queued to the store under the therapist's lock and is durable in it when the
+ * write returns, and the clients are loaded from it on startup. Given a budget
+ * but no spill store, cold partitions are then dropped from memory rather than
+ * written anywhere, and read back from the entity store by therapist id.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
 @Repository
 public class ClientRepository extends InMemoryRepository<UUID, Map<UUID, Client>> {
 
+	private static final byte PUT_CLIENT = 16;
+	private static final byte REMOVE_CLIENT = 17;
+
+	/**
+	 * The heap held per client by the repository, indexes included, as measured
+	 * with clients of distinct names and emails, from which the number of
+	 * clients a memory budget holds is estimated.
+	 */
+	private static final long CLIENT_BYTES = 1_000;
+
+	/**
+	 * The location of the partitions spilled to the entity store, which holds
+	 * them already.
+	 */
+	private static final long IN_ENTITY_STORE = -1;
+
+	/**
+	 * The partition size from which a query that no index can serve scans the
+	 * partition in parallel, below which splitting the scan costs more than it
+	 * saves.
+	 */
+	static final int PARALLEL_SCAN_THRESHOLD = 10_000;
+
+	private final Map<UUID, UUID> therapistIds;
+	private final ConcurrentMap<UUID, ClientIndexes> indexes = new ConcurrentHashMap<>();
+	private final RangeIndex<Client> birthDates = new RangeIndex<>("birthDate", Client::getId, Client::getBirthDate);
+	private final EntityStore<Client> store;
+	private final SpillStore spillStore;
+	private final boolean spills;
+	private final long residentClients;
+	private final ConcurrentMap<UUID, AtomicInteger> partitionSizes = new ConcurrentHashMap<>();
+	private final PartitionClock clock = new PartitionClock();
+	private final ConcurrentMap<UUID, SpilledPartition> spilledPartitions = new ConcurrentHashMap<>();
+	private final AtomicBoolean spilling = new AtomicBoolean();
+	private final LongAdder partitionHits = new LongAdder();
+	private final LongAdder partitionFaults = new LongAdder();
+	private volatile boolean restoring;
+
+	public ClientRepository() {
+		this(Journal.NONE);
+	}
+
+	@Autowired
+	public ClientRepository(JournalFactory journalFactory, StorageEngineFactory storageEngineFactory,
+			StorageProperties properties) {
+		this(journalFactory.open("clients"), properties.getMap(), storageEngineFactory.open(Tables.CLIENTS),
+				openSpillStore(properties), residentClients(properties));
+	}
+
+	public ClientRepository(Journal journal) {
+		this(journal, MapType.CONCURRENT_HASH_MAP);
+	}
+
+	/**
+	 * @param journal the journal of the clients.
+	 * @param mapType the map to keep the partitions in, by therapist id, and the
+	 *                client id index in.
+	 */
+	public ClientRepository(Journal journal, MapType mapType) {
+		this(journal, mapType, null, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param journal         the journal of the clients.
+	 * @param mapType         the map to keep the partitions in, by therapist
+	 *                        id, and the client id index in.
+	 * @param spillStore      the store cold partitions are spilled to, or
+	 *                        {@literal null} to keep all of them in memory.
+	 * @param residentClients the number of clients kept in memory, beyond which
+	 *                        cold partitions are spilled.
+	 */
+	public ClientRepository(Journal journal, MapType mapType, SpillStore spillStore, long residentClients) {
+		this(journal, mapType, EntityStore.none(), spillStore, residentClients);
+	}
+
+	/**
+	 * @param journal         the journal of the clients.
+	 * @param mapType         the map to keep the partitions in, by therapist
+	 *                        id, and the client id index in.
+	 * @param store           the store the clients are written through to.
+	 * @param spillStore      the store cold partitions are spilled to, or
+	 *                        {@literal null} to drop them and read them back
+	 *                        from the entity store if enabled, or else to keep
+	 *                        all of them in memory.
+	 * @param residentClients the number of clients kept in memory, beyond which
+	 *                        cold partitions are spilled, {@link Long#MAX_VALUE}
+	 *                        for no limit.
+	 */
+	public ClientRepository(Journal journal, MapType mapType, EntityStore<Client> store, SpillStore spillStore,
+			long residentClients) {
+		this(journal, mapType, store, spillStore, residentClients, new PartitionCodec());
+	}
+
+	private ClientRepository(Journal journal, MapType mapType, EntityStore<Client> store, SpillStore spillStore,
+			long residentClients, PartitionCodec partitionCodec) {
+		super(journal, Codecs.UUID, partitionCodec, mapType.create());
+		partitionCodec.repository = this;
+		therapistIds = mapType.create();
+		this.store = store;
+		this.spillStore = spillStore;
+		this.spills = spillStore != null || store.isEnabled() && residentClients < Long.MAX_VALUE;
+		this.residentClients = residentClients;
+	}
+
+	/**
+	 * Saves a client in the therapist's partition, creating the partition if
+	 * needed.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param client      the client.
+	 * @return the saved client.
+	 * @throws DuplicateResourceException if another client of the therapist has
+	 *                                    the same email.
+	 */
 	public Client save(UUID therapistId, Client client) {
 		if (client.getId() == null)
 			client.setId(UUID.randomUUID());
 
-		Map<UUID, Client> clients = findById(therapistId).orElse(new ConcurrentHashMap<>());
-		clients.put(client.getId(), client);
-		save(therapistId, clients);
+		inMemory(therapistId, () -> compute(therapistId, (id, clients) -> {
+			clients = clients == null ? new ConcurrentSkipListMap<>() : load(therapistId, clients);
+			ClientIndexes therapistIndexes = indexesOf(therapistId, clients);
+			therapistIndexes.claim(client.getId(), clients.get(client.getId()), client);
+			logPut(therapistId, client);
+			therapistIds.put(client.getId(), therapistId);
+			Client previous = clients.put(client.getId(), client);
+			therapistIndexes.index(client.getId(), previous, client);
+			if (previous == null)
+				sizeOf(therapistId).incrementAndGet();
+			if (spills && previous == null)
+				clock.resize(therapistId, 1);
+			return clients;
+		}));
+		sync();
 
 		return client;
 	}
+
+	/**
+	 * Replaces the whole partition of a therapist.
+	 */
+	@Override
+	public Map<UUID, Client> save(UUID therapistId, Map<UUID, Client> clients) {
+		Map<UUID, Client> partition = clients instanceof ConcurrentNavigableMap ? clients
+				: new ConcurrentSkipListMap<>(clients);
+		inMemory(therapistId, () -> compute(therapistId, (id, current) -> {
+			Map<UUID, Client> previous = current == null ? null : load(therapistId, current);
+			logSave(therapistId, partition);
+			if (previous != null)
+				previous.keySet().forEach(therapistIds::remove);
+			unindex(therapistId);
+			ClientIndexes therapistIndexes = indexesOf(therapistId, partition);
+			partition.forEach((clientId, client) -> {
+				therapistIds.put(clientId, therapistId);
+				therapistIndexes.index(clientId, null, client);
+			});
+			partitionSizes.put(therapistId, new AtomicInteger(partition.size()));
+			if (spills)
+				clock.reset(therapistId, partition.size());
+			return partition;
+		}));
+		sync();
+		return partition;
+	}
+
+	/**
+	 * Returns a page of the clients of a therapist in id order.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param after       the id of the last client of the previous page, or
+	 *                    {@literal null} for the first page.
+	 * @param limit       the maximum number of clients.
+	 * @return the clients following the given id, empty if the therapist has no
+	 *         clients.
+	 */
+	public List<Client> findPage(UUID therapistId, UUID after, int limit) {
+		NavigableMap<UUID, Client> clients = (NavigableMap<UUID, Client>) findById(therapistId).orElse(null);
+		if (clients == null)
+			return Collections.emptyList();
+
+		List<Client> page = new ArrayList<>(Math.min(limit, 1024));
+		for (Client client : (after == null ? clients : clients.tailMap(after, false)).values()) {
+			page.add(client);
+			if (page.size() == limit)
+				break;
+		}
+		return page;
+	}
+
+	/**
+	 * Returns the names of the sort orders of the clients.
+	 */
+	public Collection<String> sorts() {
+		return ClientIndexes.sorts();
+	}
+
+	/**
+	 * Returns a live view of the clients of a therapist in a sort order.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param sort        the name of the sort order, one of {@link #sorts()}.
+	 * @return the clients in order, empty if the therapist has no clients.
+	 */
+	public Collection<Client> findAll(UUID therapistId, String sort) {
+		SortedIndex<UUID, Client> sortOrder = inMemory(therapistId, () -> sortOrder(therapistId, sort));
+		return sortOrder == null ? Collections.emptyList() : sortOrder.findAll();
+	}
+
+	/**
+	 * Returns a page of the clients of a therapist in a sort order.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param sort        the name of the sort order, one of {@link #sorts()}.
+	 * @param after       the sort key of the last client of the previous page,
+	 *                    or {@literal null} for the first page.
+	 * @param limit       the maximum number of clients.
+	 * @return the clients following the given sort key, empty if the therapist
+	 *         has no clients.
+	 */
+	public List<Client> findPage(UUID therapistId, String sort, SortKey<UUID> after, int limit) {
+		return inMemory(therapistId, () -> {
+			SortedIndex<UUID, Client> sortOrder = sortOrder(therapistId, sort);
+			return sortOrder == null ? Collections.<Client>emptyList() : sortOrder.findPage(after, limit);
+		});
+	}
+
+	/**
+	 * Returns the sort key of a client in a sort order.
+	 */
+	public SortKey<UUID> sortKeyOf(String sort, Client client) {
+		return new SortKey<>(ClientIndexes.sortKey(sort).apply(client), client.getId());
+	}
+
+	/**
+	 * Retrieves a client by its id, whatever its therapist.
+	 * 
+	 * @param clientId the client id.
+	 * @return the client or {@literal Optional#empty()} if none found.
+	 */
+	public Optional<Client> findClientById(UUID clientId) {
+		UUID therapistId = therapistIds.get(clientId);
+		if (therapistId == null)
+			return Optional.empty();
+
+		return findById(therapistId).map(clients -> clients.get(clientId));
+	}
+
+	/**
+	 * Retrieves a client of a therapist by its email, whatever its case.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param email       the email.
+	 * @return the client or {@literal Optional#empty()} if none found.
+	 */
+	public Optional<Client> findByEmail(UUID therapistId, String email) {
+		String key = Emails.normalize(email);
+		return inMemory(therapistId, () -> {
+			ClientIndexes therapistIndexes = indexes.get(therapistId);
+			return therapistIndexes == null || key == null ? Optional.<Client>empty()
+					: therapistIndexes.emails().find(key);
+		});
+	}
+
+	/**
+	 * Searches the clients of a therapist by partial words of their name,
+	 * address or job, whatever their case.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param query       the words searched.
+	 * @param limit       the maximum number of clients.
+	 * @return the best matching clients first, empty if none.
+	 */
+	public List<Client> search(UUID therapistId, String query, int limit) {
+		return inMemory(therapistId, () -> {
+			Map<UUID, Client> clients = partition(therapistId).orElse(null);
+			ClientIndexes therapistIndexes = indexes.get(therapistId);
+			if (clients == null || therapistIndexes == null)
+				return Collections.<Client>emptyList();
+
+			List<Client> found = new ArrayList<>();
+			for (UUID clientId : therapistIndexes.searchIndex().search(query, limit)) {
+				Client client = clients.get(clientId);
+				if (client != null)
+					found.add(client);
+			}
+			return found;
+		});
+	}
+
+	/**
+	 * Finds the clients of a therapist meeting a filter. The planner reads the
+	 * smallest of the index entries of the filter's indexed criteria and checks
+	 * the other criteria on the clients read; if no criterion is indexed, or the
+	 * smallest entry holds more than half the partition, it scans the partition,
+	 * in parallel if it is large and there is more than one core.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param filter      the filter.
+	 * @return the matching clients in id order, and the plan run.
+	 */
+	public QueryResult<Client> query(UUID therapistId, ClientFilter filter) {
+		return inMemory(therapistId, () -> plan(therapistId, filter));
+	}
+
+	private QueryResult<Client> plan(UUID therapistId, ClientFilter filter) {
+		ClientIndexes therapistIndexes = indexes.get(therapistId);
+		String index = null;
+		long estimatedRows = Long.MAX_VALUE;
+		Collection<Client> candidates = null;
+		if (filter.getGender() != null && therapistIndexes != null) {
+			candidates = therapistIndexes.genders().find(filter.getGender());
+			index = therapistIndexes.genders().getName();
+			estimatedRows = candidates.size();
+		}
+		if (filter.getJob() != null && therapistIndexes != null) {
+			Collection<Client> jobClients = therapistIndexes.jobs().find(filter.getJob());
+			if (jobClients.size() < estimatedRows) {
+				candidates = jobClients;
+				index = therapistIndexes.jobs().getName();
+				estimatedRows = jobClients.size();
+			}
+		}
+		if (filter.hasBirthDateRange()) {
+			long born = birthDates.count(therapistId, filter.getFirstBirthDay(), filter.getLastBirthDay());
+			if (born < estimatedRows) {
+				candidates = null;
+				index = birthDates.getName();
+				estimatedRows = born;
+			}
+		}
+
+		// the size of a skip list is counted node by node, the indexes know theirs
+		int size = therapistIndexes == null ? 0 : therapistIndexes.size();
+		if (index != null && estimatedRows <= size / 2) {
+			if (candidates == null)
+				candidates = birthDates.find(therapistId, filter.getFirstBirthDay(), filter.getLastBirthDay());
+			int touched = 0;
+			List<Client> found = new ArrayList<>();
+			for (Client client : candidates) {
+				touched++;
+				if (filter.matches(client))
+					found.add(client);
+			}
+			found.sort(Comparator.comparing(Client::getId));
+			return new QueryResult<>(found,
+					new QueryPlan(QueryPlan.INDEX, index, false, estimatedRows, touched, found.size()));
+		}
+
+		Map<UUID, Client> clients = partition(therapistId).orElse(Collections.emptyMap());
+		boolean parallel = size >= PARALLEL_SCAN_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+		Stream<Client> scan = parallel ? clients.values().parallelStream() : clients.values().stream();
+		List<Client> found = scan.filter(filter::matches).collect(Collectors.toList());
+		return new QueryResult<>(found, new QueryPlan(QueryPlan.SCAN, null, parallel, size, size, found.size()));
+	}
+
+	/**
+	 * Counts the clients of a therapist born within a range of days, from the
+	 * birth date index.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param from        the first epoch day, inclusive.
+	 * @param to          the last epoch day, inclusive.
+	 * @return the number of clients.
+	 */
+	public long countByBirthDate(UUID therapistId, long from, long to) {
+		return inMemory(therapistId, () -> birthDates.count(therapistId, from, to));
+	}
+
+	/**
+	 * Counts the clients of all therapists born within a range of days, from the
+	 * birth date index and the birth days of the spilled partitions. While a
+	 * partition is spilled or loaded, its clients may be counted twice.
+	 * 
+	 * @param from the first epoch day, inclusive.
+	 * @param to   the last epoch day, inclusive.
+	 * @return the number of clients.
+	 */
+	public long countByBirthDate(long from, long to) {
+		long count = birthDates.count(from, to);
+		for (SpilledPartition spilled : spilledPartitions.values())
+			count += spilled.countBorn(from, to);
+		return count;
+	}
+
+	/**
+	 * Completes a prefix of the name of the clients of a therapist, or of a word
+	 * of it, whatever its case.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param prefix      the prefix.
+	 * @param limit       the maximum number of names, at most
+	 *                    {@link CompletionTrie#K}.
+	 * @return the most frequent names first, empty if none.
+	 */
+	public List<String> completeName(UUID therapistId, String prefix, int limit) {
+		return inMemory(therapistId, () -> {
+			ClientIndexes therapistIndexes = indexes.get(therapistId);
+			return therapistIndexes == null ? Collections.<String>emptyList()
+					: therapistIndexes.names().complete(prefix, limit);
+		});
+	}
+
+	/**
+	 * Returns the number of clients of all therapists, from the client id index.
+	 *
+	 * @return the number of clients.
+	 */
+	public long countClients() {
+		return therapistIds.size();
+	}
+
+	/**
+	 * Returns the number of clients of the therapist having the most, spilled
+	 * or not, from the sizes of the partitions maintained on every write rather
+	 * than by counting the clients of each partition.
+	 */
+	public int maxPartitionSize() {
+		int max = 0;
+		for (AtomicInteger size : partitionSizes.values())
+			max = Math.max(max, size.get());
+		return max;
+	}
+
+	/**
+	 * Returns the number of clients in memory, that is of all therapists unless
+	 * partitions are spilled.
+	 */
+	public long countResidentClients() {
+		return spills ? clock.residentEntities() : countClients();
+	}
+
+	/**
+	 * Returns the number of partitions spilled.
+	 */
+	public long countSpilledPartitions() {
+		return spilledPartitions.size();
+	}
+
+	/**
+	 * Returns the number of reads and writes of a partition found in memory,
+	 * since the repository was created, when partitions can be spilled.
+	 */
+	public long countPartitionHits() {
+		return partitionHits.sum();
+	}
+
+	/**
+	 * Returns the number of reads and writes of a partition that had to load it
+	 * back from the spill store or the entity store.
+	 */
+	public long countPartitionFaults() {
+		return partitionFaults.sum();
+	}
+
+	/**
+	 * Publishes a new version of a client if the stored version is still the
+	 * given one (compared by identity), incrementing its version number.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param current     the version the update was based on.
+	 * @param updated     the new version.
+	 * @return {@literal true} if the new version was published, {@literal false}
+	 *         if the client was changed or removed in the meantime.
+	 * @throws DuplicateResourceException if another client of the therapist has
+	 *                                    the new email.
+	 */
+	public boolean replace(UUID therapistId, Client current, Client updated) {
+		AtomicBoolean replaced = new AtomicBoolean();
+		inMemory(therapistId, () -> computeIfPresent(therapistId, (id, partition) -> {
+			Map<UUID, Client> clients = load(therapistId, partition);
+			if (clients.get(current.getId()) != current)
+				return clients;
+			ClientIndexes therapistIndexes = indexesOf(therapistId, clients);
+			therapistIndexes.claim(updated.getId(), current, updated);
+			updated.setVersion(current.getVersion() + 1);
+			logPut(therapistId, updated);
+			replaced.set(clients.replace(current.getId(), current, updated));
+			therapistIndexes.index(updated.getId(), current, updated);
+			return clients;
+		}));
+		sync();
+		return replaced.get();
+	}
+
+	/**
+	 * Removes a client from the therapist's partition. The partition itself is
+	 * kept even if it becomes empty.
+	 * 
+	 * @param therapistId the therapist id.
+	 * @param clientId    the client id.
+	 * @return the removed client or {@literal Optional#empty()} if none found.
+	 */
+	public Optional<Client> remove(UUID therapistId, UUID clientId) {
+		AtomicReference<Client> removed = new AtomicReference<>();
+		inMemory(therapistId, () -> computeIfPresent(therapistId, (id, partition) -> {
+			Map<UUID, Client> clients = load(therapistId, partition);
+			removed.set(clients.remove(clientId));
+			if (removed.get() != null) {
+				logRemove(therapistId, clientId);
+				therapistIds.remove(clientId);
+				indexesOf(therapistId, clients).index(clientId, removed.get(), null);
+				sizeOf(therapistId).decrementAndGet();
+				if (spills)
+					clock.resize(therapistId, -1);
+			}
+			return clients;
+		}));
+		sync();
+		return Optional.ofNullable(removed.get());
+	}
+
+	/**
+	 * Retrieves the partition of a therapist, loading it back if it was spilled.
+	 */
+	@Override
+	public Optional<Map<UUID, Client>> findById(UUID therapistId) {
+		return inMemory(therapistId, () -> partition(therapistId));
+	}
+
+	@Override
+	protected void delete(UUID therapistId) {
+		inMemory(therapistId, () -> computeIfPresent(therapistId, (id, partition) -> {
+			Map<UUID, Client> clients = load(therapistId, partition);
+			logDelete(therapistId);
+			clients.keySet().forEach(therapistIds::remove);
+			unindex(therapistId);
+			partitionSizes.remove(therapistId);
+			if (spills)
+				clock.remove(therapistId);
+			return null;
+		}));
+	}
+
+	/**
+	 * Deletes the spill store files.
+	 * 
+	 * @throws IOException if they can not be deleted.
+	 */
+	@PreDestroy
+	public void close() throws IOException {
+		if (spillStore != null)
+			spillStore.close();
+	}
+
+	@Override
+	protected void replay(byte operation, DataInput record) throws IOException {
+		switch (operation) {
+		case PUT_CLIENT:
+			UUID therapistId = Codecs.UUID.read(record);
+			save(therapistId, Codecs.CLIENT.read(record));
+			break;
+		case REMOVE_CLIENT:
+			remove(Codecs.UUID.read(record), Codecs.UUID.read(record));
+			break;
+		default:
+			super.replay(operation, record);
+		}
+	}
+
+	/**
+	 * Returns the number of clients of a therapist, as maintained under the
+	 * therapist's lock, registering the partition if new.
+	 */
+	private AtomicInteger sizeOf(UUID therapistId) {
+		return partitionSizes.computeIfAbsent(therapistId, id -> new AtomicInteger());
+	}
+
+	/**
+	 * Returns the partition of a therapist as stored, a {@link SpilledPartition}
+	 * if it was spilled.
+	 */
+	private Optional<Map<UUID, Client>> partition(UUID therapistId) {
+		return super.findById(therapistId);
+	}
+
+	/**
+	 * Runs a read or a write of the partition of a therapist with the partition
+	 * in memory: pins it, loads it back if it was spilled or is being spilled,
+	 * and once done spills cold partitions if the clients in memory exceed their
+	 * budget. Just runs it if partitions are never spilled.
+	 */
+	private <R> R inMemory(UUID therapistId, Supplier<R> operation) {
+		if (!spills)
+			return operation.get();
+
+		PartitionClock.Frame frame = clock.pin(therapistId);
+		try {
+			Map<UUID, Client> partition = partition(therapistId).orElse(null);
+			if (partition instanceof SpilledPartition || frame != null && frame.spilling)
+				computeIfPresent(therapistId, this::load);
+			else if (partition != null)
+				partitionHits.increment();
+			return operation.get();
+		} finally {
+			clock.unpin(frame);
+			spillColdPartitions();
+		}
+	}
+
+	/**
+	 * Loads a spilled partition back from the spill store or the entity store
+	 * and indexes its clients, returning any other partition as is. Called under
+	 * the therapist's lock.
+	 */
+	private Map<UUID, Client> load(UUID therapistId, Map<UUID, Client> partition) {
+		if (!(partition instanceof SpilledPartition))
+			return partition;
+
+		partitionFaults.increment();
+		SpilledPartition spilled = (SpilledPartition) partition;
+		Map<UUID, Client> clients = read(spilled);
+		ClientIndexes therapistIndexes = indexesOf(therapistId, clients);
+		clients.forEach((clientId, client) -> therapistIndexes.index(clientId, null, client));
+		clock.reset(therapistId, spilled.size);
+		spilledPartitions.remove(therapistId, spilled);
+		if (spilled.location != IN_ENTITY_STORE)
+			spillStore.free(spilled.location);
+		return clients;
+	}
+
+	/**
+	 * Spills the coldest partitions until the clients in memory fit in their
+	 * budget, or every partition left was read within the last turns of the
+	 * clock. One thread spills at a time, the others go on.
+	 */
+	private void spillColdPartitions() {
+		if (clock.residentEntities() <= residentClients || !spilling.compareAndSet(false, true))
+			return;
+
+		try {
+			while (clock.residentEntities() > residentClients) {
+				UUID therapistId = clock.victim();
+				if (therapistId == null)
+					break;
+				computeIfPresent(therapistId, this::spill);
+				clock.endSpill(therapistId);
+			}
+		} finally {
+			spilling.set(false);
+		}
+	}
+
+	/**
+	 * Writes a partition to the spill store, if any, and drops its indexes,
+	 * returning the placeholder standing for it, unless it is pinned. Called
+	 * under the therapist's lock; the spill flag it sets is cleared once the
+	 * placeholder is published.
+	 */
+	private Map<UUID, Client> spill(UUID therapistId, Map<UUID, Client> clients) {
+		if (clients instanceof SpilledPartition || !clock.startSpill(therapistId))
+			return clients;
+
+		int size = 0;
+		int[] birthDays = new int[16];
+		int born = 0;
+		for (Client client : clients.values()) {
+			size++;
+			if (client.getBirthDate() == null)
+				continue;
+			if (born == birthDays.length)
+				birthDays = Arrays.copyOf(birthDays, born * 2);
+			birthDays[born++] = (int) RangeIndex.epochDay(client.getBirthDate());
+		}
+		birthDays = Arrays.copyOf(birthDays, born);
+		Arrays.sort(birthDays);
+
+		long location = spillStore == null ? IN_ENTITY_STORE : spillStore.write(encode(clients));
+		SpilledPartition spilled = new SpilledPartition(therapistId, location, size, birthDays);
+		spilledPartitions.put(therapistId, spilled);
+		unindex(therapistId);
+		clock.spilled(therapistId);
+		return spilled;
+	}
+
+	/**
+	 * Returns the serialized clients of a spilled partition for a snapshot,
+	 * reading them under the therapist's lock, from the spill store, the entity
+	 * store or from memory if the partition was loaded back in the meantime.
+	 */
+	private byte[] spilledBytes(SpilledPartition spilled) {
+		AtomicReference<byte[]> bytes = new AtomicReference<>();
+		computeIfPresent(spilled.therapistId, (id, partition) -> {
+			if (!(partition instanceof SpilledPartition))
+				bytes.set(encode(partition));
+			else if (((SpilledPartition) partition).location == IN_ENTITY_STORE)
+				bytes.set(encode(read((SpilledPartition) partition)));
+			else
+				bytes.set(spillStore.read(((SpilledPartition) partition).location));
+			return partition;
+		});
+		return bytes.get() == null ? encode(Collections.emptyMap()) : bytes.get();
+	}
+
+	/**
+	 * Reads the clients of a spilled partition, from the spill store or the
+	 * entity store.
+	 */
+	private Map<UUID, Client> read(SpilledPartition spilled) {
+		if (spilled.location != IN_ENTITY_STORE)
+			return decode(spillStore.read(spilled.location));
+
+		Map<UUID, Client> clients = new ConcurrentSkipListMap<>();
+		for (Client client : store.findByPartition(spilled.therapistId))
+			clients.put(client.getId(), client);
+		return clients;
+	}
+
+	private static byte[] encode(Map<UUID, Client> clients) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		try {
+			PartitionCodec.CLIENTS.write(new DataOutputStream(bytes), clients);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Map<UUID, Client> decode(byte[] bytes) {
+		try {
+			return PartitionCodec.CLIENTS.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens the spill store of a budget, unless the clients can be read back
+	 * from the storage engine.
+	 */
+	private static SpillStore openSpillStore(StorageProperties properties) {
+		if (properties.getClientMemoryBudget().toBytes() <= 0
+				|| properties.getEngine() != StorageProperties.Engine.MEMORY)
+			return null;
+
+		try {
+			return new SpillStore(properties.getDirectory(), "clients");
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can not open the spill store of clients", e);
+		}
+	}
+
+	private static long residentClients(StorageProperties properties) {
+		long budget = properties.getClientMemoryBudget().toBytes();
+		return budget <= 0 ? Long.MAX_VALUE : budget / CLIENT_BYTES;
+	}
+
+	/**
+	 * Returns the indexes of the clients of a therapist, created under the
+	 * therapist's lock for the partition written. A plain lookup first, as
+	 * <code>computeIfAbsent</code> locks even when the indexes are there.
+	 */
+	private ClientIndexes indexesOf(UUID therapistId, Map<UUID, Client> clients) {
+		ClientIndexes therapistIndexes = indexes.get(therapistId);
+		if (therapistIndexes == null) {
+			therapistIndexes = new ClientIndexes(therapistId, clients, birthDates, isRecovering());
+			indexes.put(therapistId, therapistIndexes);
+		}
+		return therapistIndexes;
+	}
+
+	/**
+	 * Drops the indexes of the clients of a therapist. Called under the
+	 * therapist's lock.
+	 */
+	private void unindex(UUID therapistId) {
+		ClientIndexes therapistIndexes = indexes.remove(therapistId);
+		if (therapistIndexes != null)
+			therapistIndexes.clear();
+	}
+
+	/**
+	 * Returns a sort order of the clients of a therapist, {@literal null} if the
+	 * therapist has no clients.
+	 * 
+	 * @throws IllegalArgumentException if the sort order does not exist.
+	 */
+	private SortedIndex<UUID, Client> sortOrder(UUID therapistId, String sort) {
+		ClientIndexes.sortKey(sort);
+		ClientIndexes therapistIndexes = indexes.get(therapistId);
+		return therapistIndexes == null ? null : therapistIndexes.sortOrder(sort);
+	}
+
+	private void logPut(UUID therapistId, Client client) {
+		log(out -> {
+			out.writeByte(PUT_CLIENT);
+			Codecs.UUID.write(out, therapistId);
+			Codecs.CLIENT.write(out, client);
+		});
+		if (store.isEnabled() && !restoring)
+			store.save(therapistId, client.getId(), client);
+	}
+
+	private void logRemove(UUID therapistId, UUID clientId) {
+		log(out -> {
+			out.writeByte(REMOVE_CLIENT);
+			Codecs.UUID.write(out, therapistId);
+			Codecs.UUID.write(out, clientId);
+		});
+		if (store.isEnabled() && !restoring)
+			store.delete(clientId);
+	}
+
+	/**
+	 * Journals the replacement of a partition, and replaces the clients of the
+	 * therapist in the entity store.
+	 */
+	@Override
+	protected void logSave(UUID therapistId, Map<UUID, Client> clients) {
+		super.logSave(therapistId, clients);
+		if (store.isEnabled() && !restoring) {
+			store.deletePartition(therapistId);
+			clients.forEach((clientId, client) -> store.save(therapistId, clientId, client));
+		}
+	}
+
+	@Override
+	protected void logDelete(UUID therapistId) {
+		super.logDelete(therapistId);
+		if (store.isEnabled() && !restoring)
+			store.deletePartition(therapistId);
+	}
+
+	@Override
+	protected void sync() {
+		super.sync();
+		if (!isRecovering())
+			store.sync();
+	}
+
+	/**
+	 * Checks the emails of the clients of each therapist in memory, the
+	 * partitions spilled meanwhile being indexed again when loaded back.
+	 */
+	@Override
+	protected void checkUniqueKeys() {
+		super.checkUniqueKeys();
+		indexes.values().forEach(ClientIndexes::checkEmails);
+	}
+
+	/**
+	 * Loads the clients from the entity store, therapist by therapist, spilling
+	 * cold partitions as they go beyond the budget.
+	 */
+	@Override
+	protected void restore() throws IOException {
+		restoring = true;
+		try {
+			store.load(this::save);
+		} finally {
+			restoring = false;
+		}
+	}
+
+	/**
+	 * Stands for a partition spilled to the spill store, in the map of the
+	 * partitions. It holds none of the clients, but its size is their number,
+	 * and it keeps their birth days, sorted, to count them by age band.
+	 */
+	private static final class SpilledPartition extends AbstractMap<UUID, Client> {
+
+		final UUID therapistId;
+		final long location;
+		final int size;
+		final int[] birthDays;
+
+		SpilledPartition(UUID therapistId, long location, int size, int[] birthDays) {
+			this.therapistId = therapistId;
+			this.location = location;
+			this.size = size;
+			this.birthDays = birthDays;
+		}
+
+		@Override
+		public Set<Entry<UUID, Client>> entrySet() {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		long countBorn(long from, long to) {
+			if (from > to)
+				return 0;
+			return firstAfter(Math.min(to, Integer.MAX_VALUE)) - firstAfter(Math.max(from, Integer.MIN_VALUE) - 1);
+		}
+
+		/**
+		 * Returns the index of the first birth day after a day.
+		 */
+		private int firstAfter(long day) {
+			int low = 0;
+			int high = birthDays.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (birthDays[middle] <= day)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * Serializes the partitions for the snapshots, reading the spilled ones from
+	 * the spill store.
+	 */
+	private static final class PartitionCodec implements Codec<Map<UUID, Client>> {
+
+		static final Codec<Map<UUID, Client>> CLIENTS = Codecs.mapOf(Codecs.UUID, Codecs.CLIENT,
+				ConcurrentSkipListMap::new);
+
+		ClientRepository repository;
+
+		@Override
+		public void write(DataOutput out, Map<UUID, Client> clients) throws IOException {
+			if (clients instanceof SpilledPartition)
+				out.write(repository.spilledBytes((SpilledPartition) clients));
+			else
+				CLIENTS.write(out, clients);
+		}
+
+		@Override
+		public Map<UUID, Client> read(DataInput in) throws IOException {
+			return CLIENTS.read(in);
+		}
+	}
 }
@@ -0,0 +1,523 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A radix trie of names where every node keeps the best completions of the
+ * prefix it ends, so a prefix is completed by walking its own characters,
+ * whatever the number of names.
+ *
+ * Names are indexed case insensitively from the start of each of their words,
+ * so "has" completes to "Ahmed Hassan". Completions are ranked by the number
+ * of times the name was added, then alphabetically.
+ *
+ * A write only changes the nodes on the paths of the name it adds or removes.
+ * An addition climbs each path until a node keeps better completions; a
+ * removal updates them deepest first, so a node losing a completion refills
+ * from children already up to date. Chains of nodes without a name of their own
+ * are merged into one node, so a name shares the nodes of its common prefixes
+ * and ends in a single node for the rest.
+ *
+ * Updates take a write lock and completions a read lock.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class CompletionTrie {
+
+	/**
+	 * The number of completions kept per node.
+	 */
+	public static final int K = 10;
+
+	private static final char[] NO_CHARS = {};
+	private static final Node[] NO_NODES = {};
+	private static final Completion[] NO_COMPLETIONS = {};
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Completion> completions = new HashMap<>();
+	private final Node root = new Node(NO_CHARS, 0);
+
+	/**
+	 * Adds a name, or one more occurrence of it.
+	 *
+	 * @param name the name, ignored if blank.
+	 * @return the normalized name, the same instance for every occurrence of it,
+	 *         so a caller keying on it shares the trie's copy.
+	 */
+	public String add(String name) {
+		String key = normalize(name, false);
+		if (key.isEmpty())
+			return key;
+
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			Completion completion = completions.get(key);
+			if (completion == null) {
+				completion = new Completion(key, name.trim());
+				completions.put(key, completion);
+			}
+			key = completion.key;
+			completion.count++;
+
+			List<Node> path = new ArrayList<>();
+			for (int start : wordStarts(key)) {
+				path.clear();
+				Node end = insert(key, start, path);
+				end.ends = with(end.ends, completion);
+				int i = path.size() - 1;
+				if (end.top.length == 0) {
+					// a new leaf: its only completion is its name, arrays are never changed
+					// in place so they can be shared
+					end.top = end.ends;
+					i--;
+				}
+				// a node it does not enter has better completions than it, and so do
+				// all of its ancestors
+				while (i >= 0 && offer(path.get(i), completion))
+					i--;
+			}
+		} finally {
+			writeLock.unlock();
+		}
+		return key;
+	}
+
+	/**
+	 * Removes an occurrence of a name.
+	 *
+	 * @param name the name.
+	 */
+	public void remove(String name) {
+		String key = normalize(name, false);
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			Completion completion = completions.get(key);
+			if (completion == null)
+				return;
+
+			completion.count--;
+			List<Node> nodes = new ArrayList<>();
+			for (int start : wordStarts(key)) {
+				Node end = find(key, start, nodes);
+				if (completion.count == 0)
+					end.ends = without(end.ends, completion);
+			}
+			if (completion.count == 0)
+				completions.remove(key);
+
+			// deepest first, so each node refills from children up to date
+			Node[] path = deepestFirst(nodes);
+			for (Node node : path)
+				withdraw(node, completion);
+			if (completion.count == 0)
+				for (Node node : path)
+					compact(node);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the best names starting with a prefix, or having a word starting
+	 * with it.
+	 *
+	 * @param prefix the prefix.
+	 * @param limit  the maximum number of names, at most {@link #K}.
+	 * @return the names, best first.
+	 */
+	public List<String> complete(String prefix, int limit) {
+		String key = normalize(prefix, true);
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			Node node = root;
+			int i = 0;
+			while (i < key.length()) {
+				node = node.child(key.charAt(i));
+				if (node == null)
+					return Collections.emptyList();
+				for (int j = 0; j < node.label.length && i < key.length(); j++, i++)
+					if (node.label[j] != key.charAt(i))
+						return Collections.emptyList();
+			}
+
+			Completion[] top = node.top;
+			List<String> names = new ArrayList<>(Math.min(limit, top.length));
+			for (int j = 0; j < top.length && j < limit; j++)
+				names.add(top[j].name);
+			return names;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of distinct names.
+	 */
+	public int size() {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return completions.size();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of nodes, root included.
+	 */
+	public int nodeCount() {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return root.count();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Lower cases a name and collapses its blanks, keeping a trailing one if
+	 * asked, so a prefix ending a word only completes names having that word.
+	 */
+	static String normalize(String name, boolean keepTrailingBlank) {
+		StringBuilder normalized = new StringBuilder(name.length());
+		boolean blank = false;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (Character.isWhitespace(c)) {
+				blank = normalized.length() > 0;
+			} else {
+				if (blank)
+					normalized.append(' ');
+				normalized.append(Character.toLowerCase(c));
+				blank = false;
+			}
+		}
+		if (blank && keepTrailingBlank)
+			normalized.append(' ');
+		return normalized.toString();
+	}
+
+	private static int[] wordStarts(String key) {
+		int words = 1;
+		for (int i = 0; i < key.length(); i++)
+			if (key.charAt(i) == ' ')
+				words++;
+		int[] starts = new int[words];
+		for (int i = 0, word = 1; i < key.length(); i++)
+			if (key.charAt(i) == ' ')
+				starts[word++] = i + 1;
+		return starts;
+	}
+
+	/**
+	 * Walks the path of a key from a start, creating or splitting nodes, and
+	 * returns its end node. Nodes of the path, root first, are added to the given
+	 * list.
+	 */
+	private Node insert(String key, int start, List<Node> path) {
+		Node node = root;
+		path.add(root);
+		int i = start;
+		while (i < key.length()) {
+			Node child = node.child(key.charAt(i));
+			if (child == null) {
+				child = new Node(key.substring(i).toCharArray(), key.length() - start);
+				node.addChild(child);
+				path.add(child);
+				return child;
+			}
+
+			int common = 0;
+			while (common < child.label.length && i + common < key.length()
+					&& child.label[common] == key.charAt(i + common))
+				common++;
+			if (common < child.label.length) {
+				// split the edge: the new node has the same names as the child so far
+				Node split = new Node(Arrays.copyOf(child.label, common), i - start + common);
+				split.top = child.top;
+				child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+				node.replaceChild(split);
+				split.addChild(child);
+				child = split;
+			}
+			path.add(child);
+			node = child;
+			i += common;
+		}
+		return node;
+	}
+
+	/**
+	 * Walks the existing path of a key from a start and returns its end node.
+	 * Nodes of the path, root included, are added to the given list.
+	 */
+	private Node find(String key, int start, List<Node> path) {
+		Node node = root;
+		path.add(root);
+		for (int i = start; i < key.length(); i += node.label.length) {
+			node = node.child(key.charAt(i));
+			path.add(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the distinct nodes of paths, descendants before their ancestors.
+	 */
+	private static Node[] deepestFirst(List<Node> nodes) {
+		Node[] sorted = new Node[nodes.size()];
+		int size = 0;
+		for (Node node : nodes) {
+			int i = size;
+			while (i > 0 && sorted[i - 1].length < node.length)
+				i--;
+			if (indexOf(sorted, size, node) >= 0)
+				continue;
+			System.arraycopy(sorted, i, sorted, i + 1, size - i);
+			sorted[i] = node;
+			size++;
+		}
+		return Arrays.copyOf(sorted, size);
+	}
+
+	/**
+	 * Ranks a completion whose count grew among the best of a node.
+	 *
+	 * @return {@literal false} if it is not among them.
+	 */
+	private static boolean offer(Node node, Completion completion) {
+		Completion[] top = node.top;
+		int position = indexOf(top, completion);
+		if (position < 0) {
+			if (top.length == K && compare(completion, top[K - 1]) > 0)
+				return false;
+			top = Arrays.copyOf(top, Math.min(top.length + 1, K));
+			position = top.length - 1;
+		} else {
+			top = top.clone();
+		}
+		// move it up to its rank
+		while (position > 0 && compare(completion, top[position - 1]) < 0) {
+			top[position] = top[position - 1];
+			position--;
+		}
+		top[position] = completion;
+		node.top = top;
+		return true;
+	}
+
+	/**
+	 * Ranks a completion whose count dropped among the best of a node. A node
+	 * keeping less than {@link #K} completions keeps all of those under it, so
+	 * only a full one looks for a replacement in its children.
+	 */
+	private static void withdraw(Node node, Completion completion) {
+		Completion[] top = node.top;
+		int position = indexOf(top, completion);
+		if (position < 0)
+			return;
+		if (top.length == K) {
+			node.top = best(node);
+			return;
+		}
+
+		top = top.clone();
+		if (completion.count == 0) {
+			System.arraycopy(top, position + 1, top, position, top.length - position - 1);
+			top = Arrays.copyOf(top, top.length - 1);
+		} else {
+			// move it down to its rank
+			while (position < top.length - 1 && compare(completion, top[position + 1]) > 0) {
+				top[position] = top[position + 1];
+				position++;
+			}
+			top[position] = completion;
+		}
+		node.top = top.length == 0 ? NO_COMPLETIONS : top;
+	}
+
+	/**
+	 * Recomputes the best completions of a node from its own names and the
+	 * best of its children, which are sorted already: each is merged until its
+	 * next completion can not make it.
+	 */
+	private static Completion[] best(Node node) {
+		Completion[] top = new Completion[K];
+		int size = merge(top, 0, node.ends, false);
+		for (Node child : node.children)
+			size = merge(top, size, child.top, true);
+		return size == K ? top : Arrays.copyOf(top, size);
+	}
+
+	private static int merge(Completion[] top, int size, Completion[] completions, boolean sorted) {
+		for (Completion completion : completions) {
+			if (completion.count == 0 || indexOf(top, size, completion) >= 0)
+				continue;
+			if (size == K && compare(completion, top[K - 1]) > 0) {
+				if (sorted)
+					break;
+				continue;
+			}
+			int position = size < K ? size++ : K - 1;
+			while (position > 0 && compare(completion, top[position - 1]) < 0) {
+				top[position] = top[position - 1];
+				position--;
+			}
+			top[position] = completion;
+		}
+		return size;
+	}
+
+	/**
+	 * Orders completions by decreasing count, then by key.
+	 */
+	private static int compare(Completion a, Completion b) {
+		return a.count != b.count ? Integer.compare(b.count, a.count) : a.key.compareTo(b.key);
+	}
+
+	private static int indexOf(Object[] array, Object element) {
+		return indexOf(array, array.length, element);
+	}
+
+	private static int indexOf(Object[] array, int size, Object element) {
+		for (int i = 0; i < size; i++)
+			if (array[i] == element)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Drops a node left without names, and merges a node without a name of its
+	 * own into its only child.
+	 */
+	private void compact(Node node) {
+		if (node == root || node.parent == null)
+			return;
+
+		Node parent = node.parent;
+		if (node.ends.length == 0 && node.children.length == 0) {
+			parent.removeChild(node);
+		} else if (node.ends.length == 0 && node.children.length == 1) {
+			Node child = node.children[0];
+			char[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+			System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+			child.label = label;
+			parent.replaceChild(child);
+			node.parent = null;
+		}
+	}
+
+	private static Completion[] with(Completion[] completions, Completion completion) {
+		if (indexOf(completions, completion) >= 0)
+			return completions;
+		Completion[] added = Arrays.copyOf(completions, completions.length + 1);
+		added[completions.length] = completion;
+		return added;
+	}
+
+	private static Completion[] without(Completion[] completions, Completion completion) {
+		int i = indexOf(completions, completion);
+		if (i < 0)
+			return completions;
+		Completion[] kept = new Completion[completions.length - 1];
+		System.arraycopy(completions, 0, kept, 0, i);
+		System.arraycopy(completions, i + 1, kept, i, kept.length - i);
+		return kept.length == 0 ? NO_COMPLETIONS : kept;
+	}
+
+	/**
+	 * A distinct name: its normalized key, the name as first added, and the
+	 * number of times it was added.
+	 */
+	private static final class Completion {
+
+		private final String key;
+		private final String name;
+		private int count;
+
+		Completion(String key, String name) {
+			this.key = key;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * A node of the trie, with the length of the prefix it ends, which splits and
+	 * merges do not change. Children are kept sorted by the first char of their
+	 * label, in parallel arrays.
+	 */
+	private static final class Node {
+
+		private final int length;
+		private char[] label;
+		private Node parent;
+		private char[] firsts = NO_CHARS;
+		private Node[] children = NO_NODES;
+		private Completion[] ends = NO_COMPLETIONS;
+		private Completion[] top = NO_COMPLETIONS;
+
+		Node(char[] label, int length) {
+			this.label = label;
+			this.length = length;
+		}
+
+		Node child(char first) {
+			int i = Arrays.binarySearch(firsts, first);
+			return i < 0 ? null : children[i];
+		}
+
+		void addChild(Node child) {
+			int i = -Arrays.binarySearch(firsts, child.label[0]) - 1;
+			char[] newFirsts = new char[firsts.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(firsts, 0, newFirsts, 0, i);
+			System.arraycopy(children, 0, newChildren, 0, i);
+			newFirsts[i] = child.label[0];
+			newChildren[i] = child;
+			System.arraycopy(firsts, i, newFirsts, i + 1, firsts.length - i);
+			System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+			firsts = newFirsts;
+			children = newChildren;
+			child.parent = this;
+		}
+
+		void replaceChild(Node child) {
+			children[Arrays.binarySearch(firsts, child.label[0])] = child;
+			child.parent = this;
+		}
+
+		void removeChild(Node child) {
+			int i = Arrays.binarySearch(firsts, child.label[0]);
+			char[] newFirsts = new char[firsts.length - 1];
+			Node[] newChildren = new Node[children.length - 1];
+			System.arraycopy(firsts, 0, newFirsts, 0, i);
+			System.arraycopy(children, 0, newChildren, 0, i);
+			System.arraycopy(firsts, i + 1, newFirsts, i, firsts.length - i - 1);
+			System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+			firsts = newFirsts;
+			children = newChildren;
+			child.parent = null;
+		}
+
+		int count() {
+			int count = 1;
+			for (Node child : children)
+				count += child.count();
+			return count;
+		}
+	}
+}
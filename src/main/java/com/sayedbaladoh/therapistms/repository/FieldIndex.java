@@ -0,0 +1,89 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A non-unique index of the entities by the value of a text field, whatever its
+ * case: the entities having each value by id, in concurrent maps, so a value is
+ * looked up and counted in constant time and its entities read without going
+ * through the repository. A value is dropped with its last entity.
+ *
+ * Every write of an indexed entity replaces its entry, even if its value did
+ * not change, so the index holds the current versions. The entities are
+ * written by a single writer at a time, holding the lock of their partition,
+ * while readers go through the concurrent maps without locking.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <ID> the type of the id of the entity
+ * @param <T>  the entity type
+ */
+public class FieldIndex<ID, T> extends SecondaryIndex<String, ID, T> {
+
+	private final ConcurrentMap<String, Map<ID, T>> values = new ConcurrentHashMap<>();
+
+	FieldIndex(String name, Function<? super T, String> field, Function<? super ID, ? extends T> entities) {
+		super(name, entity -> normalize(field.apply(entity)), entities);
+	}
+
+	/**
+	 * Returns a live view of the entities having a value.
+	 *
+	 * @param value the value, whatever its case.
+	 * @return the entities, empty if none.
+	 */
+	public Collection<T> find(String value) {
+		String key = normalize(value);
+		Map<ID, T> entities = key == null ? null : values.get(key);
+		return entities == null ? Collections.emptyList() : Collections.unmodifiableCollection(entities.values());
+	}
+
+	/**
+	 * Returns the number of entities having a value.
+	 */
+	public int count(String value) {
+		return find(value).size();
+	}
+
+	@Override
+	void update(ID id, String previousKey, String key, T entity) {
+		if (key != null && key.equals(previousKey))
+			add(key, id, entity);
+		else
+			super.update(id, previousKey, key, entity);
+	}
+
+	@Override
+	void add(String key, ID id, T entity) {
+		Map<ID, T> entities = values.get(key);
+		if (entities == null) {
+			entities = new ConcurrentHashMap<>();
+			values.put(key, entities);
+		}
+		entities.put(id, entity);
+	}
+
+	@Override
+	void remove(String key, ID id) {
+		Map<ID, T> entities = values.get(key);
+		if (entities != null && entities.remove(id) != null && entities.isEmpty())
+			values.remove(key);
+	}
+
+	/**
+	 * Returns a value as indexed: trimmed and lower cased, {@literal null} if
+	 * blank.
+	 */
+	static String normalize(String value) {
+		if (value == null)
+			return null;
+		String normalized = value.trim().toLowerCase(Locale.ROOT);
+		return normalized.isEmpty() ? null : normalized;
+	}
+}
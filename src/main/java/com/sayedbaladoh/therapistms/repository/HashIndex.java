@@ -0,0 +1,82 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A non-unique secondary index: the ids of the entities having each key, in a
+ * <code>ConcurrentHashMap</code> of concurrent sets. A key is dropped with its
+ * last id.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <K>  the type of the key
+ * @param <ID> the type of the id of the entity
+ * @param <T>  the entity type
+ */
+public class HashIndex<K, ID, T> extends SecondaryIndex<K, ID, T> {
+
+	private final ConcurrentMap<K, Set<ID>> ids = new ConcurrentHashMap<>();
+
+	HashIndex(String name, Function<? super T, ? extends K> key, Function<? super ID, ? extends T> entities) {
+		super(name, key, entities);
+	}
+
+	/**
+	 * Returns the entities having a key.
+	 *
+	 * @param key the key.
+	 * @return the entities, empty if none.
+	 */
+	public List<T> find(K key) {
+		Set<ID> keyIds = ids.get(key);
+		if (keyIds == null)
+			return Collections.emptyList();
+
+		List<T> found = new ArrayList<>(keyIds.size());
+		for (ID id : keyIds) {
+			T entity = entity(id, key);
+			if (entity != null)
+				found.add(entity);
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the number of entities having a key.
+	 */
+	public int count(K key) {
+		Set<ID> keyIds = ids.get(key);
+		return keyIds == null ? 0 : keyIds.size();
+	}
+
+	/**
+	 * Returns a live view of the keys of the index.
+	 */
+	public Set<K> keys() {
+		return Collections.unmodifiableSet(ids.keySet());
+	}
+
+	@Override
+	void add(K key, ID id, T entity) {
+		ids.compute(key, (k, keyIds) -> {
+			if (keyIds == null)
+				keyIds = ConcurrentHashMap.newKeySet();
+			keyIds.add(id);
+			return keyIds;
+		});
+	}
+
+	@Override
+	void remove(K key, ID id) {
+		ids.computeIfPresent(key, (k, keyIds) -> {
+			keyIds.remove(id);
+			return keyIds.isEmpty() ? null : keyIds;
+		});
+	}
+}
@@ -1,24 +1,132 @@
 package com.sayedbaladoh.therapistms.repository;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
+import javax.annotation.PostConstruct;
+
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
+import com.sayedbaladoh.therapistms.storage.Codec;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.Journal.RecordWriter;
+
+/**
+ * Repository keeping its entities in a <code>ConcurrentHashMap</code>, or in
+ * the concurrent map given by the subclass, such as a {@link UuidHashMap}.
+ * 
+ * The ids are also kept sorted in a skip list, updated under the entry lock,
+ * so the entities can be paged through in id order at a cost proportional to
+ * the page size.
+ * 
+ * Secondary indexes registered with {@link #addIndex}, {@link #addUniqueIndex}
+ * and {@link #addSortedIndex} are updated under the same entry lock, so they
+ * never diverge from the map. A save claims the unique keys of its entity before it
+ * is journaled, and is rejected with a
+ * <code>DuplicateResourceException</code> if another entity has one of them.
+ * 
+ * When given an enabled {@link Journal}, every write is recorded in the journal
+ * while the entry is locked, so the journal order matches the order in which
+ * writes to the same entry were applied, and the write returns once the record
+ * is durable. The journal is replayed on startup.
+ * 
+ * {@link #checkpoint()} snapshots the repository so startup only replays the
+ * records written since. Writes hold a shared lock while they record and apply
+ * themselves, which the checkpoint takes exclusively only while it starts a
+ * new log segment, so no write can be recorded in the old segment and applied
+ * after the snapshot has read its entry.
+ * 
+ * As the snapshot is read while writes go on, it may hold an entity with a
+ * unique key it gave up and, further on, the entity that took the key since;
+ * the journal replayed after the snapshot settles it. The unique indexes are
+ * therefore left alone while recovering and checked once the journal is
+ * replayed, by {@link #checkUniqueKeys()}.
+ * 
+ * @author Sayed Baladoh
+ *
+ * @param <ID> the type of the id of the entity
+ * @param <T>  the entity type
+ */
 public abstract class InMemoryRepository<ID, T> implements Repository<ID, T> {
 
-	private final Map<ID, T> map;
+	protected static final byte SAVE = 1;
+	protected static final byte DELETE = 2;
+
+	private final ConcurrentMap<ID, T> map;
+	private final NavigableSet<ID> orderedIds = new ConcurrentSkipListSet<>();
+	private final List<SecondaryIndex<?, ID, T>> indexes = new CopyOnWriteArrayList<>();
+	private final Journal journal;
+	private final Codec<ID> idCodec;
+	private final Codec<T> entityCodec;
+	private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+	private volatile boolean recovering;
 
 	public InMemoryRepository() {
-		map = new ConcurrentHashMap<>();
+		this(Journal.NONE, null, null);
+	}
+
+	protected InMemoryRepository(Journal journal, Codec<ID> idCodec, Codec<T> entityCodec) {
+		this(journal, idCodec, entityCodec, new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * @param map the empty map to keep the entities in.
+	 */
+	protected InMemoryRepository(Journal journal, Codec<ID> idCodec, Codec<T> entityCodec, ConcurrentMap<ID, T> map) {
+		if (!map.isEmpty())
+			throw new IllegalArgumentException("The map of a repository must be empty.");
+		this.map = map;
+		this.journal = journal;
+		this.idCodec = idCodec;
+		this.entityCodec = entityCodec;
 	}
 
 	@Override
 	public T save(ID id, T entity) {
-		map.put(id, entity);
+		compute(id, (key, previous) -> put(key, previous, entity));
+		sync();
 		return entity;
 	}
 
+	/**
+	 * Replaces an entity if the stored one is still the given one (compared by
+	 * identity). The check and the write are done under the entry lock, so
+	 * concurrent updates based on the same entity can not both succeed.
+	 * 
+	 * @param id       the id of the entity.
+	 * @param expected the entity the update was based on.
+	 * @param entity   the new entity.
+	 * @return {@literal true} if the new entity was saved, {@literal false} if
+	 *         the entity was changed or removed in the meantime.
+	 * @throws DuplicateResourceException if another entity has one of the unique
+	 *                                    keys of the new entity.
+	 */
+	protected boolean compareAndSet(ID id, T expected, T entity) {
+		T saved = computeIfPresent(id, (key, previous) -> previous == expected ? put(key, previous, entity) : previous);
+		if (saved != entity)
+			return false;
+		sync();
+		return true;
+	}
+
 	@Override
 	public Collection<T> findAll() {
 		return map.values();
@@ -41,11 +149,396 @@ public abstract class InMemoryRepository<ID, T> implements Repository<ID, T> {
 
 	@Override
 	public void deleteById(ID id) {
-		map.remove(id);
+		delete(id);
+		sync();
+	}
+
+	/**
+	 * Removes an entity and journals the removal under its entry lock, without
+	 * waiting for the record to be durable, so a caller removing several entities
+	 * syncs once.
+	 */
+	protected void delete(ID id) {
+		computeIfPresent(id, (key, previous) -> {
+			logDelete(key);
+			return null;
+		});
+	}
+
+	/**
+	 * Returns a page of entities in id order.
+	 * 
+	 * @param after the id of the last entity of the previous page, or
+	 *              {@literal null} for the first page.
+	 * @param limit the maximum number of entities.
+	 * @return the entities following the given id.
+	 */
+	public List<T> findPage(ID after, int limit) {
+		NavigableSet<ID> ids = after == null ? orderedIds : orderedIds.tailSet(after, false);
+		List<T> page = new ArrayList<>(Math.min(limit, 1024));
+		for (ID id : ids) {
+			T entity = map.get(id);
+			if (entity != null)
+				page.add(entity);
+			if (page.size() == limit)
+				break;
+		}
+		return page;
+	}
+
+	/**
+	 * Registers a non-unique index of the entities by a key. Indexes are
+	 * registered by the constructor of the repository, before any entity is
+	 * saved or recovered.
+	 * 
+	 * @param name the name of the index.
+	 * @param key  extracts the key of an entity, {@literal null} if it should not
+	 *             be indexed.
+	 * @return the index.
+	 */
+	protected <K> HashIndex<K, ID, T> addIndex(String name, Function<? super T, ? extends K> key) {
+		return register(new HashIndex<>(name, key, map::get));
+	}
+
+	/**
+	 * Registers a unique index of the entities by a key. Indexes are registered
+	 * by the constructor of the repository, before any entity is saved or
+	 * recovered.
+	 * 
+	 * @param name the name of the index.
+	 * @param key  extracts the key of an entity, {@literal null} if it should not
+	 *             be indexed.
+	 * @return the index.
+	 */
+	protected <K> UniqueIndex<K, ID, T> addUniqueIndex(String name, Function<? super T, ? extends K> key) {
+		return register(new UniqueIndex<>(name, key, map::get));
 	}
 
+	/**
+	 * Registers a sort order of the entities by a key. Sort orders are registered
+	 * by the constructor of the repository, before any entity is saved or
+	 * recovered.
+	 * 
+	 * @param name the name of the sort order.
+	 * @param key  extracts the sort key of an entity, never {@literal null}.
+	 * @return the sort order.
+	 */
+	protected SortedIndex<ID, T> addSortedIndex(String name, Function<? super T, String> key) {
+		return register(new SortedIndex<>(name, key, map::get));
+	}
+
+	/**
+	 * Unique indexes are kept first, so a write breaking a constraint fails before
+	 * the non-unique indexes are updated.
+	 */
+	private <I extends SecondaryIndex<?, ID, T>> I register(I index) {
+		if (!map.isEmpty())
+			throw new IllegalStateException("Index " + index.getName() + " registered on a non empty repository");
+		if (index instanceof UniqueIndex)
+			indexes.add(0, index);
+		else
+			indexes.add(index);
+		return index;
+	}
+
+	/**
+	 * Deletes the entities one by one, so each removal is journaled under its
+	 * entry lock like any other write, then waits once for the removals to be
+	 * durable.
+	 */
 	@Override
 	public void deleteAll() {
-		map.clear();
+		ids().forEach(this::delete);
+		sync();
+	}
+
+	/**
+	 * Restores the entities kept by the subclass beyond the journal, then loads
+	 * the latest snapshot and replays the journal written since into this
+	 * repository.
+	 * 
+	 * @throws IOException if the entities or the journal can not be read.
+	 */
+	@PostConstruct
+	public void recover() throws IOException {
+		recovering = true;
+		try {
+			restore();
+			journal.recover(snapshot -> {
+				while (snapshot.readBoolean())
+					save(idCodec.read(snapshot), entityCodec.read(snapshot));
+			}, record -> replay(record.readByte(), record));
+			checkUniqueKeys();
+		} finally {
+			recovering = false;
+		}
+		sync();
+	}
+
+	/**
+	 * Indexes the unique keys of the recovered entities, which are not indexed
+	 * while recovering. Called once the journal is replayed; subclasses keeping
+	 * unique keys of their own check them here too.
+	 * 
+	 * @throws DuplicateResourceException if two recovered entities have the same
+	 *                                    unique key.
+	 */
+	protected void checkUniqueKeys() {
+		for (SecondaryIndex<?, ID, T> index : indexes)
+			if (index instanceof UniqueIndex)
+				map.forEach((id, entity) -> index.update(id, null, entity));
+	}
+
+	/**
+	 * Saves the entities kept by the subclass elsewhere than in the journal,
+	 * such as in an entity store, before the journal is replayed. Called while
+	 * recovering, so the saves are not journaled.
+	 * 
+	 * @throws IOException if the entities can not be read.
+	 */
+	protected void restore() throws IOException {
+	}
+
+	/**
+	 * Returns whether the repository is being recovered, its writes being
+	 * neither journaled nor synced.
+	 */
+	protected boolean isRecovering() {
+		return recovering;
+	}
+
+	/**
+	 * Snapshots this repository and drops the journal records the snapshot
+	 * covers. Writes go on while the snapshot is written.
+	 * 
+	 * @throws IOException if the snapshot can not be written.
+	 */
+	public synchronized void checkpoint() throws IOException {
+		if (!journal.isEnabled())
+			return;
+
+		long segment;
+		checkpointLock.writeLock().lock();
+		try {
+			segment = journal.rotate();
+		} finally {
+			checkpointLock.writeLock().unlock();
+		}
+
+		journal.checkpoint(segment, out -> {
+			for (Map.Entry<ID, T> entry : map.entrySet()) {
+				out.writeBoolean(true);
+				idCodec.write(out, entry.getKey());
+				entityCodec.write(out, entry.getValue());
+			}
+			out.writeBoolean(false);
+		});
+	}
+
+	/**
+	 * Applies a journaled write. Subclasses journaling their own operations
+	 * handle them here and delegate the others.
+	 * 
+	 * @param operation the operation code.
+	 * @param record    the rest of the record.
+	 * @throws IOException if the record can not be read.
+	 */
+	protected void replay(byte operation, DataInput record) throws IOException {
+		switch (operation) {
+		case SAVE:
+			save(idCodec.read(record), entityCodec.read(record));
+			break;
+		case DELETE:
+			delete(idCodec.read(record));
+			break;
+		default:
+			throw new IOException("Unknown journal operation " + operation);
+		}
+	}
+
+	/**
+	 * Returns a live view of the ids of all entities.
+	 *
+	 * @return the ids of all entities.
+	 */
+	protected Set<ID> ids() {
+		return map.keySet();
+	}
+
+	/**
+	 * Atomically computes a new entity for the given id from the current one
+	 * (or {@literal null} if absent). Returning {@literal null} removes the
+	 * entity. The function runs while the entry is locked, so it must be short
+	 * and must not touch other entries of this repository.
+	 *
+	 * @param id                the id of the entity.
+	 * @param remappingFunction the function computing the new entity.
+	 * @return the new entity, or {@literal null} if none.
+	 */
+	protected T compute(ID id, BiFunction<? super ID, ? super T, ? extends T> remappingFunction) {
+		if (!journal.isEnabled())
+			return map.compute(id, ordered(remappingFunction));
+
+		Lock lock = checkpointLock.readLock();
+		lock.lock();
+		try {
+			return map.compute(id, ordered(remappingFunction));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Atomically computes a new entity for the given id if one is present.
+	 * Returning {@literal null} removes the entity.
+	 *
+	 * @param id                the id of the entity.
+	 * @param remappingFunction the function computing the new entity.
+	 * @return the new entity, or {@literal null} if none.
+	 */
+	protected T computeIfPresent(ID id, BiFunction<? super ID, ? super T, ? extends T> remappingFunction) {
+		if (!journal.isEnabled())
+			return map.computeIfPresent(id, ordered(remappingFunction));
+
+		Lock lock = checkpointLock.readLock();
+		lock.lock();
+		try {
+			return map.computeIfPresent(id, ordered(remappingFunction));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Claims the unique keys of a new entity, so a write can be rejected before
+	 * it is journaled. Must be called while the entry written is locked, i.e.
+	 * from a compute function. Writes that do not claim their keys are checked
+	 * when the indexes are updated, after they are journaled. Nothing is claimed
+	 * while recovering.
+	 * 
+	 * @param id       the id of the entity.
+	 * @param previous the current entity, {@literal null} if none.
+	 * @param entity   the new entity, {@literal null} if removed.
+	 * @throws DuplicateResourceException if another entity has one of the keys.
+	 */
+	protected void claim(ID id, T previous, T entity) {
+		if (recovering)
+			return;
+
+		int claimed = 0;
+		try {
+			for (; claimed < indexes.size(); claimed++)
+				indexes.get(claimed).claim(id, previous, entity);
+		} catch (RuntimeException e) {
+			while (claimed-- > 0)
+				indexes.get(claimed).unclaim(id, previous, entity);
+			throw e;
+		}
+	}
+
+	/**
+	 * Releases the unique keys claimed for a write that failed before it was
+	 * applied.
+	 */
+	protected void unclaim(ID id, T previous, T entity) {
+		if (recovering)
+			return;
+
+		for (SecondaryIndex<?, ID, T> index : indexes)
+			index.unclaim(id, previous, entity);
+	}
+
+	/**
+	 * Wraps a remapping function to keep the sorted ids and the indexes in step
+	 * with the map.
+	 */
+	private BiFunction<ID, T, T> ordered(BiFunction<? super ID, ? super T, ? extends T> remappingFunction) {
+		return (id, previous) -> {
+			T entity = remappingFunction.apply(id, previous);
+			if (!indexes.isEmpty())
+				index(id, previous, entity);
+			if (previous == null && entity != null)
+				orderedIds.add(id);
+			else if (previous != null && entity == null)
+				orderedIds.remove(id);
+			return entity;
+		};
+	}
+
+	/**
+	 * Moves an id from the keys of its previous entity to the keys of its new one
+	 * in every index, undoing the indexes already updated if a unique key is
+	 * taken. The unique indexes are skipped while recovering.
+	 */
+	private void index(ID id, T previous, T entity) {
+		int updated = 0;
+		try {
+			for (; updated < indexes.size(); updated++)
+				if (!recovering || !(indexes.get(updated) instanceof UniqueIndex))
+					indexes.get(updated).update(id, previous, entity);
+		} catch (RuntimeException e) {
+			while (updated-- > 0)
+				indexes.get(updated).update(id, entity, previous);
+			throw e;
+		}
+	}
+
+	/**
+	 * Claims the unique keys of an entity and journals it. Called from a compute
+	 * function.
+	 */
+	private T put(ID id, T previous, T entity) {
+		claim(id, previous, entity);
+		try {
+			logSave(id, entity);
+		} catch (RuntimeException e) {
+			unclaim(id, previous, entity);
+			throw e;
+		}
+		return entity;
+	}
+
+	protected void logSave(ID id, T entity) {
+		log(out -> {
+			out.writeByte(SAVE);
+			idCodec.write(out, id);
+			entityCodec.write(out, entity);
+		});
+	}
+
+	protected void logDelete(ID id) {
+		log(out -> {
+			out.writeByte(DELETE);
+			idCodec.write(out, id);
+		});
+	}
+
+	/**
+	 * Appends a record to the journal. Must be called while the entry written is
+	 * locked, i.e. from a compute function.
+	 * 
+	 * @param writer writes the operation code and its arguments.
+	 */
+	protected void log(RecordWriter writer) {
+		if (!journal.isEnabled() || recovering)
+			return;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try {
+			writer.write(new DataOutputStream(bytes));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		journal.append(bytes.toByteArray());
+	}
+
+	/**
+	 * Waits until the records appended so far are durable. Must be called once
+	 * the entry written is unlocked. Subclasses writing elsewhere too wait for
+	 * those writes here.
+	 */
+	protected void sync() {
+		if (!recovering)
+			journal.sync();
 	}
 }
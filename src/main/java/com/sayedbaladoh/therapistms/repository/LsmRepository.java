@@ -0,0 +1,871 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.sayedbaladoh.therapistms.storage.ByteBufferDataInput;
+import com.sayedbaladoh.therapistms.storage.Codec;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.SortedRun;
+import com.sayedbaladoh.therapistms.storage.SortedRun.Entry;
+
+/**
+ * Repository laid out as a log-structured merge tree, for write-heavy loads
+ * such as the bulk re-intake of clients, where writing every entity in place
+ * costs a random write per save.
+ *
+ * Writes go to a sorted memtable in memory, and to the journal if one is
+ * given. Once the memtable holds its size in records it is sealed, a new one
+ * takes the writes, and a flush thread writes it out as an immutable
+ * {@link SortedRun}. Deleting an id writes a tombstone, which hides the older
+ * records of the id until compaction drops them.
+ *
+ * Compaction is size-tiered and runs on its own pool: runs fall in tiers by
+ * size, each {@value #FANOUT} times the one below, and {@value #FANOUT}
+ * adjacent runs of a tier are merged into one of the next, in place of them.
+ * Tombstones are only dropped by the merges that include the oldest run, the
+ * only ones sure no older record of the id is left.
+ *
+ * A lookup reads the active memtable, the sealed ones, then the runs from the
+ * newest to the oldest, and stops at the first record of the id. The bloom
+ * filter of each run spares reading it for almost every id it does not hold.
+ * The runs and sealed memtables are read from an immutable version of the
+ * tree, swapped by flushes and compactions under a lock readers only share;
+ * the files of the runs a compaction replaced are deleted once no reader
+ * holds the previous version.
+ *
+ * Writes stall while {@value #MAX_SEALED_MEMTABLES} memtables wait for their
+ * flush or {@value #MAX_SMALLEST_RUNS} runs wait in the smallest tier, so
+ * background work keeps up with the ingest instead of reads slowing down
+ * without bound. {@link #writeAmplification()}, {@link #countStalls()} and
+ * {@link #stallNanos()} tell how much that costs.
+ *
+ * The runs in use are listed, newest first, in a manifest replaced atomically
+ * on every flush and compaction, so the files left by an interrupted one are
+ * deleted when the repository is opened. Without a journal, the records not
+ * flushed yet are lost on a crash; with one, they are replayed on open and
+ * the journal is checkpointed after every flush.
+ *
+ * Unlike the {@link InMemoryRepository}, it has no secondary indexes, and
+ * {@link #count()} and {@link #findAll()} merge the whole tree. The LSM
+ * storage engine keeps the entities of each table in one, the in-memory
+ * repositories writing through to it.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <T> the entity type
+ */
+public class LsmRepository<T> implements Repository<UUID, T>, Closeable {
+
+	public static final long DEFAULT_MEMTABLE_BYTES = 4 * 1024 * 1024;
+	public static final int DEFAULT_COMPACTION_THREADS = 2;
+
+	private static final int FANOUT = 4;
+	private static final int MAX_SEALED_MEMTABLES = 2;
+	private static final int MAX_SMALLEST_RUNS = 2 * FANOUT;
+	private static final int KEY_LOCKS = 64;
+
+	private final Codec<T> codec;
+	private final Path directory;
+	private final String name;
+	private final Journal journal;
+	private final long memtableBytes;
+	private final int compactionThreads;
+	private final ReadWriteLock memtableLock = new ReentrantReadWriteLock();
+	private final ReadWriteLock versionLock = new ReentrantReadWriteLock();
+	private final Object[] keyLocks = new Object[KEY_LOCKS];
+	private final Object stall = new Object();
+	private final Set<SortedRun> compacting = new HashSet<>();
+	private final AtomicInteger pendingFlushes = new AtomicInteger();
+	private final AtomicInteger scheduledCompactions = new AtomicInteger();
+	private final AtomicInteger nextRun = new AtomicInteger();
+	private final ExecutorService flusher;
+	private final ExecutorService compactor;
+	private final LongAdder userBytes = new LongAdder();
+	private final AtomicLong flushedBytes = new AtomicLong();
+	private final AtomicLong compactedBytes = new AtomicLong();
+	private final AtomicLong compactions = new AtomicLong();
+	private final LongAdder stalls = new LongAdder();
+	private final LongAdder stallNanos = new LongAdder();
+	private volatile Memtable active = new Memtable();
+	private volatile Version version;
+	private volatile IOException failure;
+	private volatile boolean closed;
+
+	public LsmRepository(Codec<T> codec, Path directory, String name) throws IOException {
+		this(codec, directory, name, Journal.NONE, DEFAULT_MEMTABLE_BYTES, DEFAULT_COMPACTION_THREADS);
+	}
+
+	/**
+	 * Opens the runs listed in the manifest, deleting the others, then replays
+	 * the journal.
+	 *
+	 * @param codec             the codec of the entities.
+	 * @param directory         the directory of the run files.
+	 * @param name              the name of the repository, used as the prefix of
+	 *                          its files.
+	 * @param journal           the journal of the writes not flushed yet.
+	 * @param memtableBytes     the bytes of records from which a memtable is
+	 *                          sealed, and the size of the smallest tier.
+	 * @param compactionThreads the threads of the compaction pool.
+	 * @throws IOException if the runs or the journal can not be read.
+	 */
+	public LsmRepository(Codec<T> codec, Path directory, String name, Journal journal, long memtableBytes,
+			int compactionThreads) throws IOException {
+		if (memtableBytes <= 0)
+			throw new IllegalArgumentException("memtableBytes must be positive.");
+		if (compactionThreads <= 0)
+			throw new IllegalArgumentException("compactionThreads must be positive.");
+		this.codec = codec;
+		this.directory = directory;
+		this.name = name;
+		this.journal = journal;
+		this.memtableBytes = memtableBytes;
+		this.compactionThreads = compactionThreads;
+		for (int i = 0; i < keyLocks.length; i++)
+			keyLocks[i] = new Object();
+		Files.createDirectories(directory);
+		version = new Version(Collections.emptyList(), openRuns());
+		flusher = Executors.newSingleThreadExecutor(daemonThreads(name + "-flush"));
+		compactor = Executors.newFixedThreadPool(compactionThreads, daemonThreads(name + "-compaction"));
+		if (journal.isEnabled())
+			journal.recover(snapshot -> {
+			}, this::replay);
+		if (active.bytes.get() >= memtableBytes)
+			seal(active);
+		scheduleCompaction();
+	}
+
+	@Override
+	public T save(UUID id, T entity) {
+		put(id, entity);
+		sync();
+		return entity;
+	}
+
+	/**
+	 * Saves an entity without waiting for its journal record to be durable, so
+	 * a caller writing several entities syncs once.
+	 */
+	public void put(UUID id, T entity) {
+		write(id, encode(entity));
+	}
+
+	/**
+	 * Returns all entities, merged from the whole tree while flushes and
+	 * compactions wait.
+	 */
+	@Override
+	public Collection<T> findAll() {
+		return scan(entries -> {
+			List<T> entities = new ArrayList<>();
+			while (entries.hasNext())
+				entities.add(decode(entries.next().getValue()));
+			return entities;
+		});
+	}
+
+	@Override
+	public Optional<T> findById(UUID id) {
+		byte[] value = lookup(id);
+		return value == null || value == SortedRun.TOMBSTONE ? Optional.empty() : Optional.of(decode(value));
+	}
+
+	@Override
+	public boolean existsById(UUID id) {
+		byte[] value = lookup(id);
+		return value != null && value != SortedRun.TOMBSTONE;
+	}
+
+	/**
+	 * Returns the number of entities, counted by merging the whole tree while
+	 * flushes and compactions wait.
+	 */
+	@Override
+	public long count() {
+		return scan(entries -> {
+			long count = 0;
+			for (; entries.hasNext(); entries.next())
+				count++;
+			return count;
+		});
+	}
+
+	@Override
+	public void deleteById(UUID id) {
+		remove(id);
+		sync();
+	}
+
+	/**
+	 * Deletes an entity without waiting for its journal record to be durable.
+	 */
+	public void remove(UUID id) {
+		write(id, SortedRun.TOMBSTONE);
+	}
+
+	/**
+	 * Deletes all entities, writing a tombstone for each of them, then waits
+	 * once for the tombstones to be durable.
+	 */
+	@Override
+	public void deleteAll() {
+		List<UUID> ids = scan(entries -> {
+			List<UUID> all = new ArrayList<>();
+			while (entries.hasNext())
+				all.add(entries.next().getId());
+			return all;
+		});
+		for (UUID id : ids)
+			remove(id);
+		sync();
+	}
+
+	/**
+	 * Passes every entity and its id to an action, in order of id, merged from
+	 * the whole tree while flushes and compactions wait.
+	 */
+	public void forEach(BiConsumer<UUID, ? super T> action) {
+		scan(entries -> {
+			while (entries.hasNext()) {
+				Entry entry = entries.next();
+				action.accept(entry.getId(), decode(entry.getValue()));
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Waits until the writes made so far are in the journal, if there is one.
+	 */
+	public void sync() {
+		journal.sync();
+	}
+
+	/**
+	 * Seals the active memtable and waits until it is flushed and the
+	 * compactions it calls for are done.
+	 */
+	public void flush() {
+		seal(active);
+		synchronized (stall) {
+			while (pendingFlushes.get() > 0 || scheduledCompactions.get() > 0) {
+				checkFailure();
+				try {
+					stall.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Returns the bytes of the records written by callers, values and headers.
+	 */
+	public long userBytes() {
+		return userBytes.sum();
+	}
+
+	/**
+	 * Returns the bytes of the runs written by flushes.
+	 */
+	public long flushedBytes() {
+		return flushedBytes.get();
+	}
+
+	/**
+	 * Returns the bytes of the runs written by compactions.
+	 */
+	public long compactedBytes() {
+		return compactedBytes.get();
+	}
+
+	/**
+	 * Returns the bytes written to runs per byte written by callers, not
+	 * counting the journal.
+	 */
+	public double writeAmplification() {
+		long user = userBytes();
+		return user == 0 ? 0 : (double) (flushedBytes() + compactedBytes()) / user;
+	}
+
+	/**
+	 * Returns the bytes of the runs in use.
+	 */
+	public long diskBytes() {
+		long bytes = 0;
+		for (SortedRun run : version.runs)
+			bytes += run.sizeInBytes();
+		return bytes;
+	}
+
+	public int countRuns() {
+		return version.runs.size();
+	}
+
+	public long countCompactions() {
+		return compactions.get();
+	}
+
+	/**
+	 * Returns the number of writes that waited for a flush or a compaction.
+	 */
+	public long countStalls() {
+		return stalls.sum();
+	}
+
+	/**
+	 * Returns the nanoseconds writes waited for flushes and compactions.
+	 */
+	public long stallNanos() {
+		return stallNanos.sum();
+	}
+
+	/**
+	 * Flushes the active memtable, waits for the flushes and compactions
+	 * under way and closes the runs. The journal is left open. Writes are
+	 * rejected from then on.
+	 */
+	@Override
+	public void close() throws IOException {
+		Lock lock = memtableLock.writeLock();
+		lock.lock();
+		try {
+			if (closed)
+				return;
+			seal(active);
+			closed = true;
+		} finally {
+			lock.unlock();
+		}
+		awaitTermination(flusher);
+		awaitTermination(compactor);
+		for (SortedRun run : version.runs)
+			run.close();
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Writes a record to the active memtable, under the read lock of the
+	 * memtables, so it is either in the memtable sealed by {@link #close()} or
+	 * rejected.
+	 *
+	 * @throws IllegalStateException if the repository is closed.
+	 */
+	private void write(UUID id, byte[] value) {
+		awaitCapacity();
+		Memtable memtable;
+		Lock lock = memtableLock.readLock();
+		lock.lock();
+		try {
+			if (closed)
+				throw new IllegalStateException("Repository " + name + " is closed.");
+			memtable = active;
+			if (journal.isEnabled()) {
+				synchronized (keyLocks[id.hashCode() & (KEY_LOCKS - 1)]) {
+					journal.append(record(id, value));
+					memtable.put(id, value);
+				}
+			} else {
+				memtable.put(id, value);
+			}
+		} finally {
+			lock.unlock();
+		}
+		userBytes.add(SortedRun.ENTRY_HEADER + value.length);
+		if (memtable.bytes.get() >= memtableBytes)
+			seal(memtable);
+	}
+
+	private byte[] lookup(UUID id) {
+		byte[] value = active.entries.get(id);
+		if (value != null)
+			return value;
+		Lock lock = versionLock.readLock();
+		lock.lock();
+		try {
+			Version current = version;
+			for (Memtable memtable : current.sealed) {
+				value = memtable.entries.get(id);
+				if (value != null)
+					return value;
+			}
+			for (SortedRun run : current.runs) {
+				value = run.get(id);
+				if (value != null)
+					return value;
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reads the live records of the whole tree, in order of id, under the read
+	 * lock of the version so no run is deleted meanwhile.
+	 */
+	private <R> R scan(Function<Iterator<Entry>, R> reader) {
+		Lock lock = versionLock.readLock();
+		lock.lock();
+		try {
+			Version current = version;
+			List<Iterator<Entry>> sources = new ArrayList<>();
+			sources.add(active.iterator());
+			for (Memtable memtable : current.sealed)
+				sources.add(memtable.iterator());
+			for (SortedRun run : current.runs)
+				sources.add(run.iterator());
+			return reader.apply(SortedRun.merge(sources, true));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Swaps the active memtable for a new one and hands it to the flush thread,
+	 * unless it is empty or was sealed already. It is handed over under the
+	 * lock, so the memtables are flushed in the order they were sealed and each
+	 * run is installed in front of the runs of the older ones.
+	 */
+	private void seal(Memtable memtable) {
+		Lock lock = memtableLock.writeLock();
+		lock.lock();
+		try {
+			if (active != memtable || memtable.entries.isEmpty() || closed)
+				return;
+			if (journal.isEnabled())
+				memtable.segment = journal.rotate();
+			synchronized (this) {
+				List<Memtable> sealed = new ArrayList<>();
+				sealed.add(memtable);
+				sealed.addAll(version.sealed);
+				publish(new Version(sealed, version.runs));
+			}
+			active = new Memtable();
+			pendingFlushes.incrementAndGet();
+			flusher.execute(() -> flush(memtable));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void flush(Memtable memtable) {
+		try {
+			SortedRun run = SortedRun.write(newRunFile(), memtable.iterator(), memtable.entries.size());
+			flushedBytes.addAndGet(run.sizeInBytes());
+			synchronized (this) {
+				List<Memtable> sealed = new ArrayList<>(version.sealed);
+				sealed.remove(memtable);
+				List<SortedRun> runs = new ArrayList<>();
+				runs.add(run);
+				runs.addAll(version.runs);
+				writeManifest(runs);
+				publish(new Version(sealed, runs));
+			}
+			if (journal.isEnabled())
+				journal.checkpoint(memtable.segment, out -> {
+				});
+			scheduleCompaction();
+		} catch (IOException | RuntimeException e) {
+			fail(e);
+		} finally {
+			pendingFlushes.decrementAndGet();
+			synchronized (stall) {
+				stall.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Hands a window of runs to the compaction pool, unless there is none or
+	 * every compaction thread is busy already. The busy threads look for
+	 * windows again before they stop, under the same monitor, so none is
+	 * missed.
+	 */
+	private void scheduleCompaction() {
+		synchronized (this) {
+			if (closed || failure != null || scheduledCompactions.get() >= compactionThreads
+					|| window(version.runs) < 0)
+				return;
+			scheduledCompactions.incrementAndGet();
+		}
+		try {
+			compactor.execute(this::compact);
+		} catch (RejectedExecutionException e) {
+			compactionDone();
+		}
+	}
+
+	/**
+	 * Merges windows of runs until none is left.
+	 */
+	private void compact() {
+		try {
+			List<SortedRun> window;
+			while ((window = pickWindow()) != null)
+				merge(window);
+		} catch (IOException | RuntimeException e) {
+			fail(e);
+			compactionDone();
+		}
+	}
+
+	private void compactionDone() {
+		scheduledCompactions.decrementAndGet();
+		synchronized (stall) {
+			stall.notifyAll();
+		}
+	}
+
+	private void merge(List<SortedRun> window) throws IOException {
+		boolean oldest;
+		synchronized (this) {
+			oldest = version.runs.get(version.runs.size() - 1) == window.get(window.size() - 1);
+		}
+		List<Iterator<Entry>> sources = new ArrayList<>();
+		long entries = 0;
+		for (SortedRun run : window) {
+			sources.add(run.iterator());
+			entries += run.entries();
+		}
+		SortedRun merged = SortedRun.write(newRunFile(), SortedRun.merge(sources, oldest), entries);
+		compactedBytes.addAndGet(merged.sizeInBytes());
+		compactions.incrementAndGet();
+		synchronized (this) {
+			List<SortedRun> runs = new ArrayList<>(version.runs);
+			int position = runs.indexOf(window.get(0));
+			runs.removeAll(window);
+			if (merged.entries() > 0)
+				runs.add(position, merged);
+			writeManifest(runs);
+			publish(new Version(version.sealed, runs));
+			compacting.removeAll(window);
+		}
+		if (merged.entries() == 0)
+			delete(merged);
+		for (SortedRun run : window)
+			delete(run);
+	}
+
+	/**
+	 * Returns {@value #FANOUT} adjacent runs of the same tier, none of them
+	 * being compacted, marking them as compacted. The oldest runs of the
+	 * newest such group are picked, so the smallest tiers, which stall writes,
+	 * are merged first.
+	 *
+	 * @return the runs, the newest first, {@literal null} if there are none,
+	 *         the compaction being then done.
+	 */
+	private synchronized List<SortedRun> pickWindow() {
+		List<SortedRun> runs = version.runs;
+		int end = closed || failure != null ? -1 : window(runs);
+		if (end < 0) {
+			compactionDone();
+			return null;
+		}
+		List<SortedRun> window = new ArrayList<>(runs.subList(end - FANOUT, end));
+		compacting.addAll(window);
+		return window;
+	}
+
+	/**
+	 * Returns the end of the first window of runs to compact, -1 if none.
+	 */
+	private int window(List<SortedRun> runs) {
+		int start = 0;
+		while (start < runs.size()) {
+			int tier = tier(runs.get(start));
+			int end = start;
+			while (end < runs.size() && !compacting.contains(runs.get(end)) && tier(runs.get(end)) == tier)
+				end++;
+			if (end - start >= FANOUT)
+				return end;
+			start = Math.max(end, start + 1);
+		}
+		return -1;
+	}
+
+	private int tier(SortedRun run) {
+		int tier = 0;
+		for (long limit = memtableBytes * FANOUT; run.sizeInBytes() >= limit && tier < 30; limit *= FANOUT)
+			tier++;
+		return tier;
+	}
+
+	/**
+	 * Installs a version, then wakes up the stalled writers. Called with the
+	 * monitor of the repository held, which serializes the changes of version.
+	 */
+	private void publish(Version next) {
+		Lock lock = versionLock.writeLock();
+		lock.lock();
+		try {
+			version = next;
+		} finally {
+			lock.unlock();
+		}
+		synchronized (stall) {
+			stall.notifyAll();
+		}
+	}
+
+	private void awaitCapacity() {
+		checkFailure();
+		if (!isStalled())
+			return;
+		long start = System.nanoTime();
+		boolean interrupted = false;
+		synchronized (stall) {
+			while (isStalled()) {
+				checkFailure();
+				try {
+					stall.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		stalls.increment();
+		stallNanos.add(System.nanoTime() - start);
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private boolean isStalled() {
+		Version current = version;
+		return !closed && (current.sealed.size() >= MAX_SEALED_MEMTABLES || current.smallestRuns >= MAX_SMALLEST_RUNS);
+	}
+
+	private void fail(Exception e) {
+		failure = e instanceof IOException ? (IOException) e : new IOException(e);
+		synchronized (stall) {
+			stall.notifyAll();
+		}
+	}
+
+	private void checkFailure() {
+		IOException cause = failure;
+		if (cause != null)
+			throw new UncheckedIOException("Background flush or compaction of " + name + " failed", cause);
+	}
+
+	private void replay(DataInput record) throws IOException {
+		byte operation = record.readByte();
+		UUID id = new UUID(record.readLong(), record.readLong());
+		switch (operation) {
+		case InMemoryRepository.SAVE:
+			byte[] value = new byte[record.readInt()];
+			record.readFully(value);
+			active.put(id, value);
+			break;
+		case InMemoryRepository.DELETE:
+			active.put(id, SortedRun.TOMBSTONE);
+			break;
+		default:
+			throw new IOException("Unknown journal operation " + operation);
+		}
+	}
+
+	private static byte[] record(UUID id, byte[] value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(SortedRun.ENTRY_HEADER + 1 + value.length);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(value == SortedRun.TOMBSTONE ? InMemoryRepository.DELETE : InMemoryRepository.SAVE);
+			out.writeLong(id.getMostSignificantBits());
+			out.writeLong(id.getLeastSignificantBits());
+			if (value != SortedRun.TOMBSTONE) {
+				out.writeInt(value.length);
+				out.write(value);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Opens the runs of the manifest and deletes the run files it does not
+	 * list, left by a flush or a compaction interrupted before it was installed
+	 * or by one that replaced them.
+	 *
+	 * @return the runs, the newest first.
+	 */
+	private List<SortedRun> openRuns() throws IOException {
+		Path manifest = manifest();
+		List<String> names = Files.exists(manifest) ? Files.readAllLines(manifest, StandardCharsets.UTF_8)
+				: Collections.emptyList();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, name + "-*.run*")) {
+			for (Path file : files)
+				if (!names.contains(file.getFileName().toString()))
+					Files.delete(file);
+		}
+		Files.deleteIfExists(manifest.resolveSibling(manifest.getFileName() + ".tmp"));
+		List<SortedRun> runs = new ArrayList<>();
+		int last = -1;
+		for (String runName : names) {
+			runs.add(SortedRun.open(directory.resolve(runName)));
+			last = Math.max(last, Integer.parseInt(runName.substring(name.length() + 1, runName.length() - 4)));
+		}
+		nextRun.set(last + 1);
+		return runs;
+	}
+
+	private void writeManifest(List<SortedRun> runs) throws IOException {
+		Path manifest = manifest();
+		Path temporary = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+			StringBuilder names = new StringBuilder();
+			for (SortedRun run : runs)
+				names.append(run.getFile().getFileName()).append('\n');
+			out.write(names.toString().getBytes(StandardCharsets.UTF_8));
+			out.getFD().sync();
+		}
+		Files.move(temporary, manifest, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private Path manifest() {
+		return directory.resolve(name + ".manifest");
+	}
+
+	private Path newRunFile() {
+		return directory.resolve(String.format("%s-%08d.run", name, nextRun.getAndIncrement()));
+	}
+
+	private static void delete(SortedRun run) throws IOException {
+		run.close();
+		Files.deleteIfExists(run.getFile());
+	}
+
+	private byte[] encode(T entity) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try {
+			codec.write(new DataOutputStream(bytes), entity);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private T decode(byte[] value) {
+		try {
+			return codec.read(new ByteBufferDataInput(ByteBuffer.wrap(value)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void awaitTermination(ExecutorService executor) throws InterruptedIOException {
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+				;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while closing");
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger threads = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * The records written since the memtable was created, by id. Sealed once
+	 * full, then only read until its run is installed.
+	 */
+	private static final class Memtable {
+
+		final ConcurrentSkipListMap<UUID, byte[]> entries = new ConcurrentSkipListMap<>();
+		final AtomicLong bytes = new AtomicLong();
+		volatile long segment;
+
+		void put(UUID id, byte[] value) {
+			entries.put(id, value);
+			bytes.addAndGet(SortedRun.ENTRY_HEADER + value.length);
+		}
+
+		Iterator<Entry> iterator() {
+			Iterator<Map.Entry<UUID, byte[]>> iterator = entries.entrySet().iterator();
+			return new Iterator<Entry>() {
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public Entry next() {
+					Map.Entry<UUID, byte[]> entry = iterator.next();
+					return new Entry(entry.getKey(), entry.getValue());
+				}
+			};
+		}
+	}
+
+	/**
+	 * The sealed memtables and the runs of the tree at one time, the newest
+	 * first. Never changed once published.
+	 */
+	private final class Version {
+
+		final List<Memtable> sealed;
+		final List<SortedRun> runs;
+		final int smallestRuns;
+
+		Version(List<Memtable> sealed, List<SortedRun> runs) {
+			this.sealed = sealed;
+			this.runs = runs;
+			int smallest = 0;
+			for (SortedRun run : runs)
+				if (tier(run) == 0)
+					smallest++;
+			this.smallestRuns = smallest;
+		}
+	}
+}
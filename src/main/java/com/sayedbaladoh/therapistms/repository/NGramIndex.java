@@ -0,0 +1,506 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index of the trigrams of a text per id, for partial, case
+ * insensitive text search. Results are ranked by the number of trigrams of the
+ * query they contain, then by whether they contain the query itself.
+ *
+ * Each word is indexed with a leading blank, so a query matching the start of
+ * a word scores one trigram more than the same query inside a word, and a two
+ * character query still matches the words it starts.
+ *
+ * Ids are numbered as documents and the posting list of a trigram is a set of
+ * document numbers, so a search counts its matches in an int array rather than
+ * in a map of ids. The numbers of removed documents are reused. Trigrams are
+ * packed in longs and posting lists found in an open addressing table, as
+ * boxed keys cost a cache miss more per trigram on every write.
+ *
+ * Updates take a write lock and searches a read lock, so a search sees each
+ * document either before or after an update, never half indexed.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <ID> the type of the id of the documents
+ */
+public class NGramIndex<ID> {
+
+	private static final int N = 3;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<ID, Integer> docs = new HashMap<>();
+	private final Postings postings = new Postings();
+	private Object[] ids = new Object[16];
+	private String[] texts = new String[16];
+	private int[] free = new int[16];
+	private int freeCount;
+	private int next;
+
+	/**
+	 * Indexes the text of an id, replacing its previous text.
+	 *
+	 * @param id   the id.
+	 * @param text the text, {@literal null} to remove the id.
+	 */
+	public void put(ID id, String text) {
+		if (text == null) {
+			remove(id);
+			return;
+		}
+
+		String normalized = normalize(text);
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			Integer doc = docs.get(id);
+			if (doc != null) {
+				if (texts[doc].equals(normalized))
+					return;
+				unindex(doc);
+			} else {
+				doc = allocate();
+				docs.put(id, doc);
+				ids[doc] = id;
+			}
+			texts[doc] = normalized;
+			for (long gram : grams(normalized)) {
+				IntSet posting = postings.get(gram);
+				if (posting == null) {
+					posting = new IntSet();
+					postings.put(gram, posting);
+				}
+				posting.add(doc);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes an id from the index.
+	 *
+	 * @param id the id.
+	 */
+	public void remove(ID id) {
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			Integer doc = docs.remove(id);
+			if (doc == null)
+				return;
+
+			unindex(doc);
+			ids[doc] = null;
+			texts[doc] = null;
+			if (freeCount == free.length)
+				free = Arrays.copyOf(free, freeCount * 2);
+			free[freeCount++] = doc;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids whose text best matches a query, best first. An id
+	 * matches if its text contains at least half of the trigrams of the query.
+	 *
+	 * @param query the query.
+	 * @param limit the maximum number of ids.
+	 * @return the ids, empty if the query has no trigram.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ID> search(String query, int limit) {
+		String normalized = normalize(query);
+		long[] grams = distinct(grams(normalized));
+		if (grams.length == 0)
+			return Collections.emptyList();
+
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			int[] scores = new int[next];
+			for (long gram : grams) {
+				IntSet posting = postings.get(gram);
+				if (posting != null)
+					posting.increment(scores);
+			}
+
+			int all = grams.length;
+			int min = (all + 1) / 2;
+			int[] histogram = new int[all + 1];
+			for (int matched : scores)
+				if (matched >= min)
+					histogram[matched]++;
+
+			// The fewest trigrams matched by a document kept
+			int cutoff = all;
+			int above = 0;
+			while (cutoff > min && above + histogram[cutoff] < limit)
+				above += histogram[cutoff--];
+
+			int[] ranked = new int[Math.min(limit, above + histogram[cutoff])];
+			int count = 0;
+			if (cutoff == all) {
+				// Only documents matching every trigram are kept, the ones containing
+				// the whole query first, so the scan can stop once enough of them are
+				// found.
+				int[] others = new int[ranked.length];
+				int otherCount = 0;
+				for (int doc = 0; doc < scores.length && count < ranked.length; doc++) {
+					if (scores[doc] != all)
+						continue;
+					if (contains(doc, normalized))
+						ranked[count++] = doc;
+					else if (otherCount < others.length)
+						others[otherCount++] = doc;
+				}
+				for (int i = 0; count < ranked.length; i++)
+					ranked[count++] = others[i];
+			} else {
+				// A document scores twice its matched trigrams, plus one if it contains
+				// the whole query, best score first, then lowest document number.
+				long[] keys = new long[ranked.length];
+				int atCutoff = ranked.length - above;
+				for (int doc = 0; doc < scores.length && count < keys.length; doc++) {
+					int matched = scores[doc];
+					if (matched < cutoff || matched == cutoff && atCutoff-- <= 0)
+						continue;
+					int score = 2 * matched + (matched == all && contains(doc, normalized) ? 1 : 0);
+					keys[count++] = ((long) -score << 32) | doc;
+				}
+				Arrays.sort(keys);
+				for (int i = 0; i < count; i++)
+					ranked[i] = (int) keys[i];
+			}
+
+			List<ID> found = new ArrayList<>(count);
+			for (int i = 0; i < count; i++)
+				found.add((ID) ids[ranked[i]]);
+			return found;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of ids indexed.
+	 */
+	public int size() {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return docs.size();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private boolean contains(int doc, String normalized) {
+		return normalized.length() == N || texts[doc].contains(normalized);
+	}
+
+	private int allocate() {
+		if (freeCount > 0)
+			return free[--freeCount];
+
+		if (next == ids.length) {
+			ids = Arrays.copyOf(ids, next * 2);
+			texts = Arrays.copyOf(texts, next * 2);
+		}
+		return next++;
+	}
+
+	private void unindex(int doc) {
+		for (long gram : grams(texts[doc])) {
+			IntSet posting = postings.get(gram);
+			if (posting != null && posting.remove(doc) && posting.isEmpty())
+				postings.remove(gram);
+		}
+	}
+
+	/**
+	 * Lower cases a text and reduces it to its words, each preceded by a blank.
+	 */
+	static String normalize(String text) {
+		char[] normalized = new char[2 * text.length()];
+		int length = 0;
+		boolean inWord = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				if (!inWord)
+					normalized[length++] = ' ';
+				normalized[length++] = Character.toLowerCase(c);
+				inWord = true;
+			} else {
+				inWord = false;
+			}
+		}
+		return new String(normalized, 0, length);
+	}
+
+	/**
+	 * Returns the trigrams of a normalized text, none crossing words, in text
+	 * order with duplicates. Each is packed in a long as three 16 bit chars,
+	 * multiplied by an odd constant to spread them over hash tables.
+	 */
+	static long[] grams(String normalized) {
+		long[] grams = new long[Math.max(normalized.length() - N + 1, 0)];
+		int count = 0;
+		int wordStart = 0;
+		for (int i = 0; i < normalized.length(); i++) {
+			if (normalized.charAt(i) == ' ')
+				wordStart = i;
+			if (i - wordStart >= N - 1)
+				grams[count++] = ((long) normalized.charAt(i - 2) << 32 | (long) normalized.charAt(i - 1) << 16
+						| normalized.charAt(i)) * 0x9E3779B97F4A7C15L;
+		}
+		return count == grams.length ? grams : Arrays.copyOf(grams, count);
+	}
+
+	/**
+	 * Returns the distinct values of an array, sorted. Writes only need the
+	 * trigrams, as posting lists are sets, but a search counts them.
+	 */
+	static long[] distinct(long[] grams) {
+		long[] sorted = grams.clone();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++)
+			if (distinct == 0 || sorted[i] != sorted[distinct - 1])
+				sorted[distinct++] = sorted[i];
+		return Arrays.copyOf(sorted, distinct);
+	}
+
+	/**
+	 * The posting lists by trigram, in an open addressing table with linear
+	 * probing.
+	 */
+	private static final class Postings {
+
+		private long[] grams = new long[16];
+		private IntSet[] sets = new IntSet[16];
+		private int size;
+
+		IntSet get(long gram) {
+			int mask = sets.length - 1;
+			for (int i = mix(gram) & mask; sets[i] != null; i = (i + 1) & mask)
+				if (grams[i] == gram)
+					return sets[i];
+			return null;
+		}
+
+		void put(long gram, IntSet set) {
+			if (2 * (size + 1) > sets.length)
+				resize(sets.length * 2);
+			int mask = sets.length - 1;
+			int i = mix(gram) & mask;
+			while (sets[i] != null && grams[i] != gram)
+				i = (i + 1) & mask;
+			if (sets[i] == null)
+				size++;
+			grams[i] = gram;
+			sets[i] = set;
+		}
+
+		void remove(long gram) {
+			int mask = sets.length - 1;
+			int i = mix(gram) & mask;
+			while (sets[i] != null && grams[i] != gram)
+				i = (i + 1) & mask;
+			if (sets[i] == null)
+				return;
+
+			// shift back the following entries of the probe run into the hole
+			int hole = i;
+			for (int j = (i + 1) & mask; sets[j] != null; j = (j + 1) & mask) {
+				int home = mix(grams[j]) & mask;
+				if (((j - home) & mask) >= ((j - hole) & mask)) {
+					grams[hole] = grams[j];
+					sets[hole] = sets[j];
+					hole = j;
+				}
+			}
+			sets[hole] = null;
+			size--;
+		}
+
+		private void resize(int capacity) {
+			long[] oldGrams = grams;
+			IntSet[] oldSets = sets;
+			grams = new long[capacity];
+			sets = new IntSet[capacity];
+			size = 0;
+			for (int i = 0; i < oldSets.length; i++)
+				if (oldSets[i] != null)
+					put(oldGrams[i], oldSets[i]);
+		}
+
+		private static int mix(long gram) {
+			// the high bits of the product depend on every char
+			return (int) (gram >>> 32) ^ (int) (gram >>> 16);
+		}
+	}
+
+	/**
+	 * A set of document numbers. Sparse sets are open addressing tables with
+	 * linear probing. A set of at least 64 documents is turned into a bitmap
+	 * once that takes at most a bit per document number per member, which is
+	 * less than the table, and lets a search count the documents in order. It
+	 * turns back into a table if the bitmap would grow to twice that.
+	 */
+	private static final class IntSet {
+
+		private static final int EMPTY = -1;
+
+		private int[] table = newTable(4);
+		private long[] bits;
+		private int size;
+
+		private static int[] newTable(int capacity) {
+			int[] table = new int[capacity];
+			Arrays.fill(table, EMPTY);
+			return table;
+		}
+
+		boolean add(int value) {
+			if (bits != null) {
+				if ((value >>> 6) < bits.length || (value >>> 6) < 2 * size)
+					return addBit(value);
+				toTable();
+			}
+
+			if (2 * (size + 1) > table.length) {
+				int max = value;
+				for (int present : table)
+					max = Math.max(max, present);
+				if (size >= 64 && (max >>> 6) < size) {
+					toBits(max);
+					return addBit(value);
+				}
+				resize(table.length * 2);
+			}
+			int mask = table.length - 1;
+			int i = mix(value) & mask;
+			while (table[i] != EMPTY) {
+				if (table[i] == value)
+					return false;
+				i = (i + 1) & mask;
+			}
+			table[i] = value;
+			size++;
+			return true;
+		}
+
+		boolean remove(int value) {
+			if (bits != null) {
+				int word = value >>> 6;
+				if (word >= bits.length || (bits[word] & (1L << value)) == 0)
+					return false;
+				bits[word] &= ~(1L << value);
+				size--;
+				return true;
+			}
+
+			int mask = table.length - 1;
+			int i = mix(value) & mask;
+			while (table[i] != value) {
+				if (table[i] == EMPTY)
+					return false;
+				i = (i + 1) & mask;
+			}
+			// shift back the following entries of the probe run into the hole
+			int hole = i;
+			for (int j = (i + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+				int home = mix(table[j]) & mask;
+				if (((j - home) & mask) >= ((j - hole) & mask)) {
+					table[hole] = table[j];
+					hole = j;
+				}
+			}
+			table[hole] = EMPTY;
+			size--;
+			return true;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		/**
+		 * Adds one to the count of each document of the set.
+		 */
+		void increment(int[] counts) {
+			if (bits == null) {
+				for (int value : table)
+					if (value != EMPTY)
+						counts[value]++;
+				return;
+			}
+
+			for (int word = 0; word < bits.length; word++) {
+				long remaining = bits[word];
+				while (remaining != 0) {
+					counts[(word << 6) + Long.numberOfTrailingZeros(remaining)]++;
+					remaining &= remaining - 1;
+				}
+			}
+		}
+
+		private boolean addBit(int value) {
+			int word = value >>> 6;
+			if (word >= bits.length)
+				bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+			if ((bits[word] & (1L << value)) != 0)
+				return false;
+			bits[word] |= 1L << value;
+			size++;
+			return true;
+		}
+
+		private void toBits(int max) {
+			bits = new long[(max >>> 6) + 1];
+			for (int value : table)
+				if (value != EMPTY)
+					bits[value >>> 6] |= 1L << value;
+			table = null;
+		}
+
+		private void toTable() {
+			long[] old = bits;
+			bits = null;
+			table = newTable(Integer.highestOneBit(4 * size + 4));
+			size = 0;
+			for (int word = 0; word < old.length; word++) {
+				long remaining = old[word];
+				while (remaining != 0) {
+					add((word << 6) + Long.numberOfTrailingZeros(remaining));
+					remaining &= remaining - 1;
+				}
+			}
+		}
+
+		private void resize(int capacity) {
+			int[] old = table;
+			table = newTable(capacity);
+			size = 0;
+			for (int value : old)
+				if (value != EMPTY)
+					add(value);
+		}
+
+		private static int mix(int value) {
+			int h = value * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the partitions to spill once the entities in memory exceed their
+ * budget, by the clock approximation of least recently used: the partitions in
+ * memory are kept in a ring, a read sets the reference bit of its partition,
+ * and the hand sweeping the ring clears the bits it finds set and stops at the
+ * first partition whose bit is clear, which was not read for a whole turn.
+ *
+ * A partition is pinned while it is read or written, and the hand passes over
+ * pinned partitions, so a partition is never spilled under a reader that has
+ * just brought it back in memory. A spill flags its partition before it checks
+ * the pins, and a reader pins it before it checks the flag, so either the
+ * spill sees the reader and gives up, or the reader sees the spill and waits
+ * for it under the partition lock.
+ *
+ * The number of entities of a partition and whether it is in memory are
+ * updated under the lock of the partition; the ring is guarded by the clock.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+final class PartitionClock {
+
+	private final ConcurrentMap<UUID, Frame> frames = new ConcurrentHashMap<>();
+	private final List<Frame> ring = new ArrayList<>();
+	private final AtomicLong residentEntities = new AtomicLong();
+	private int hand;
+
+	/**
+	 * Pins a partition and sets its reference bit.
+	 *
+	 * @return the frame to unpin, {@literal null} if the partition is unknown.
+	 */
+	Frame pin(UUID partitionId) {
+		Frame frame = frames.get(partitionId);
+		if (frame != null) {
+			frame.pins.incrementAndGet();
+			frame.referenced = true;
+		}
+		return frame;
+	}
+
+	void unpin(Frame frame) {
+		if (frame != null)
+			frame.pins.decrementAndGet();
+	}
+
+	/**
+	 * Flags a partition as being spilled, unless it is pinned. Called under its
+	 * lock.
+	 *
+	 * @return {@literal false} if the partition is pinned and must stay in
+	 *         memory.
+	 */
+	boolean startSpill(UUID partitionId) {
+		Frame frame = frames.get(partitionId);
+		if (frame == null)
+			return true;
+		frame.spilling = true;
+		if (frame.pins.get() == 0)
+			return true;
+		frame.spilling = false;
+		return false;
+	}
+
+	/**
+	 * Clears the spill flag of a partition, once the partition spilled is
+	 * published.
+	 */
+	void endSpill(UUID partitionId) {
+		Frame frame = frames.get(partitionId);
+		if (frame != null)
+			frame.spilling = false;
+	}
+
+	/**
+	 * Adds entities to a partition in memory, or removes them with a negative
+	 * delta, registering the partition if new. Called under its lock.
+	 */
+	void resize(UUID partitionId, int delta) {
+		Frame frame = frameOf(partitionId);
+		frame.entities += delta;
+		residentEntities.addAndGet(delta);
+	}
+
+	/**
+	 * Marks a partition in memory with the given number of entities, after it
+	 * was loaded or replaced. Called under its lock.
+	 */
+	void reset(UUID partitionId, int entities) {
+		Frame frame = frameOf(partitionId);
+		residentEntities.addAndGet(entities - frame.entities);
+		frame.entities = entities;
+		frame.referenced = true;
+		if (!frame.resident) {
+			frame.resident = true;
+			enter(frame);
+		}
+	}
+
+	/**
+	 * Marks a partition spilled. Called under its lock.
+	 */
+	void spilled(UUID partitionId) {
+		Frame frame = frames.get(partitionId);
+		if (frame == null || !frame.resident)
+			return;
+		residentEntities.addAndGet(-frame.entities);
+		frame.entities = 0;
+		frame.resident = false;
+	}
+
+	/**
+	 * Forgets a deleted partition. Called under its lock.
+	 */
+	void remove(UUID partitionId) {
+		Frame frame = frames.remove(partitionId);
+		if (frame != null) {
+			residentEntities.addAndGet(-frame.entities);
+			frame.resident = false;
+		}
+	}
+
+	/**
+	 * Returns the number of entities of the partitions in memory.
+	 */
+	long residentEntities() {
+		return residentEntities.get();
+	}
+
+	/**
+	 * Moves the hand to the next partition to spill, dropping from the ring the
+	 * partitions spilled or deleted since it last passed them.
+	 *
+	 * @return the id of the partition, {@literal null} if every partition in
+	 *         memory is pinned or was read within the last two turns.
+	 */
+	synchronized UUID victim() {
+		for (int steps = 2 * ring.size(); steps >= 0 && !ring.isEmpty(); steps--) {
+			if (hand >= ring.size())
+				hand = 0;
+			Frame frame = ring.get(hand);
+			if (!frame.resident || frames.get(frame.partitionId) != frame) {
+				Frame last = ring.remove(ring.size() - 1);
+				if (last != frame)
+					ring.set(hand, last);
+				frame.inRing = false;
+			} else if (frame.referenced || frame.pins.get() > 0) {
+				frame.referenced = false;
+				hand++;
+			} else {
+				hand++;
+				return frame.partitionId;
+			}
+		}
+		return null;
+	}
+
+	private Frame frameOf(UUID partitionId) {
+		Frame frame = frames.get(partitionId);
+		if (frame == null) {
+			frame = new Frame(partitionId);
+			frames.put(partitionId, frame);
+			enter(frame);
+		}
+		return frame;
+	}
+
+	private synchronized void enter(Frame frame) {
+		if (!frame.inRing) {
+			frame.inRing = true;
+			ring.add(frame);
+		}
+	}
+
+	/**
+	 * A partition of the clock.
+	 */
+	static final class Frame {
+
+		final UUID partitionId;
+		final AtomicInteger pins = new AtomicInteger();
+		volatile boolean referenced = true;
+		volatile boolean resident = true;
+		volatile boolean spilling;
+		int entities;
+		boolean inRing;
+
+		Frame(UUID partitionId) {
+			this.partitionId = partitionId;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * How a query was run: the access path the planner chose, the number of rows
+ * it expected to read, and the numbers of rows actually read and returned.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@Getter
+@AllArgsConstructor
+public class QueryPlan {
+
+	public static final String INDEX = "index";
+	public static final String SCAN = "scan";
+
+	/**
+	 * {@link #INDEX} or {@link #SCAN}.
+	 */
+	private final String access;
+
+	/**
+	 * The name of the index read, {@literal null} for a scan.
+	 */
+	private final String index;
+
+	private final boolean parallel;
+	private final long estimatedRows;
+	private final long rowsTouched;
+	private final long rowsReturned;
+}
@@ -0,0 +1,21 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The entities found by a query, with the plan it ran.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <T> the entity type
+ */
+@Getter
+@AllArgsConstructor
+public class QueryResult<T> {
+
+	private final List<T> items;
+	private final QueryPlan plan;
+}
@@ -0,0 +1,449 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A sorted index of the entities of each partition, and of all of them, by the
+ * UTC day of a date field, so the entities of a range of days are counted and
+ * read without going through the partition.
+ *
+ * Entries are kept in order in blocks of primitive keys and their entities,
+ * the key of an entry being its epoch day in the high half and a hash of its
+ * id in the low half, so entries of the same day are told apart without
+ * reading their entities. A range is found by binary searches over the blocks
+ * and within them, then counted block by block or read entry by entry, in
+ * O(log n + k). A write shifts the entries of a single block, splitting it once
+ * full, and merging it into the next one once mostly empty.
+ *
+ * Writes of a partition are made under its lock, then take the write lock of
+ * its entries and of the entries of all partitions; reads take a read lock.
+ * Every write of an indexed entity replaces its entry, so the index holds the
+ * current versions.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <T> the entity type
+ */
+public class RangeIndex<T> {
+
+	/**
+	 * The maximum number of entries of a block.
+	 */
+	static final int BLOCK_SIZE = 256;
+
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+	private static final long LOW_HALF = 0xFFFF_FFFFL;
+
+	private final String name;
+	private final Function<? super T, UUID> id;
+	private final Function<? super T, Date> field;
+	private final ConcurrentMap<UUID, Entries> partitions = new ConcurrentHashMap<>();
+	private final Entries all = new Entries();
+
+	public RangeIndex(String name, Function<? super T, UUID> id, Function<? super T, Date> field) {
+		this.name = name;
+		this.id = id;
+		this.field = field;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of entities of a partition within a range of days.
+	 *
+	 * @param partitionId the partition id.
+	 * @param from        the first epoch day, inclusive.
+	 * @param to          the last epoch day, inclusive.
+	 * @return the number of entities, 0 if none.
+	 */
+	public long count(UUID partitionId, long from, long to) {
+		Entries entries = partitions.get(partitionId);
+		return entries == null ? 0 : entries.count(from, to);
+	}
+
+	/**
+	 * Returns the number of entities of all partitions within a range of days.
+	 */
+	public long count(long from, long to) {
+		return all.count(from, to);
+	}
+
+	/**
+	 * Returns the entities of a partition within a range of days, in day order.
+	 *
+	 * @param partitionId the partition id.
+	 * @param from        the first epoch day, inclusive.
+	 * @param to          the last epoch day, inclusive.
+	 * @return the entities, empty if none.
+	 */
+	public List<T> find(UUID partitionId, long from, long to) {
+		Entries entries = partitions.get(partitionId);
+		return entries == null ? Collections.emptyList() : entries.find(from, to);
+	}
+
+	/**
+	 * Returns the entities of all partitions within a range of days, in day
+	 * order.
+	 */
+	public List<T> find(long from, long to) {
+		return all.find(from, to);
+	}
+
+	/**
+	 * Replaces the previous version of an entity by its new one, either being
+	 * {@literal null} for an insert or a removal. Called under the lock of the
+	 * partition.
+	 */
+	void update(UUID partitionId, UUID entityId, T previous, T entity) {
+		Date previousValue = previous == null ? null : field.apply(previous);
+		Date value = entity == null ? null : field.apply(entity);
+		if (previousValue == null && value == null)
+			return;
+
+		Entries entries = partitions.get(partitionId);
+		if (entries == null) {
+			entries = new Entries();
+			partitions.put(partitionId, entries);
+		}
+		long key = value == null ? 0 : key(epochDay(value), entityId);
+		if (previousValue != null) {
+			long previousKey = key(epochDay(previousValue), entityId);
+			if (value != null && previousKey == key) {
+				entries.replace(key, entityId, entity);
+				all.replace(key, entityId, entity);
+				return;
+			}
+			entries.remove(previousKey, entityId);
+			all.remove(previousKey, entityId);
+		}
+		if (value != null) {
+			entries.add(key, entity);
+			all.add(key, entity);
+		}
+	}
+
+	/**
+	 * Drops a partition, and its entities from the entities of all partitions.
+	 * Called under its lock.
+	 */
+	void clear(UUID partitionId) {
+		Entries entries = partitions.remove(partitionId);
+		if (entries != null)
+			entries.forEach(all::remove);
+	}
+
+	/**
+	 * Returns the number of days from 1970-01-01 to a date, in UTC.
+	 */
+	public static long epochDay(Date date) {
+		return Math.floorDiv(date.getTime(), MILLIS_PER_DAY);
+	}
+
+	private static long key(long day, UUID entityId) {
+		return dayKey(day) | (entityId.hashCode() & LOW_HALF);
+	}
+
+	/**
+	 * Returns the smallest key of a day, days out of the int range being clamped
+	 * to it.
+	 */
+	private static long dayKey(long day) {
+		return Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, day)) << 32;
+	}
+
+	private interface EntryConsumer {
+		void accept(long key, UUID entityId);
+	}
+
+	/**
+	 * A run of entries in key order, the keys in a primitive array and the
+	 * entities in a parallel one, grown as needed up to {@link #BLOCK_SIZE}.
+	 */
+	private static final class Block {
+
+		long[] keys;
+		Object[] values;
+		int size;
+
+		Block(int capacity) {
+			keys = new long[capacity];
+			values = new Object[capacity];
+		}
+
+		long last() {
+			return keys[size - 1];
+		}
+
+		/**
+		 * Returns the index of the first entry whose key is not less than a key,
+		 * {@link #size} if none.
+		 */
+		int lowerBound(long key) {
+			int low = 0;
+			int high = size - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (keys[mid] < key)
+					low = mid + 1;
+				else
+					high = mid - 1;
+			}
+			return low;
+		}
+
+		void insert(int index, long key, Object value) {
+			if (size == keys.length) {
+				int capacity = Math.min(BLOCK_SIZE, size * 2);
+				keys = Arrays.copyOf(keys, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+			System.arraycopy(keys, index, keys, index + 1, size - index);
+			System.arraycopy(values, index, values, index + 1, size - index);
+			keys[index] = key;
+			values[index] = value;
+			size++;
+		}
+
+		void delete(int index) {
+			System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+			System.arraycopy(values, index + 1, values, index, size - index - 1);
+			values[--size] = null;
+		}
+
+		/**
+		 * Moves the entries from an index on to a new block.
+		 */
+		Block split(int index) {
+			Block right = new Block(BLOCK_SIZE);
+			right.size = size - index;
+			System.arraycopy(keys, index, right.keys, 0, right.size);
+			System.arraycopy(values, index, right.values, 0, right.size);
+			Arrays.fill(values, index, size, null);
+			size = index;
+			return right;
+		}
+
+		/**
+		 * Appends the entries of the next block.
+		 */
+		void merge(Block next) {
+			if (keys.length < size + next.size) {
+				keys = Arrays.copyOf(keys, BLOCK_SIZE);
+				values = Arrays.copyOf(values, BLOCK_SIZE);
+			}
+			System.arraycopy(next.keys, 0, keys, size, next.size);
+			System.arraycopy(next.values, 0, values, size, next.size);
+			size += next.size;
+		}
+	}
+
+	/**
+	 * The entries of a partition, or of all of them: blocks in key order, none
+	 * of them empty.
+	 */
+	private final class Entries {
+
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+		private Block[] blocks = new Block[1];
+		private int blockCount;
+
+		long count(long from, long to) {
+			if (from > to)
+				return 0;
+
+			Lock readLock = lock.readLock();
+			readLock.lock();
+			try {
+				long first = dayKey(from);
+				long last = dayKey(to) | LOW_HALF;
+				int b = blockAtLeast(first);
+				if (b == blockCount)
+					return 0;
+				long count = -blocks[b].lowerBound(first);
+				for (; b < blockCount; b++) {
+					Block block = blocks[b];
+					if (block.last() > last)
+						return count + upperBound(block, last);
+					count += block.size;
+				}
+				return count;
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		List<T> find(long from, long to) {
+			if (from > to)
+				return Collections.emptyList();
+
+			Lock readLock = lock.readLock();
+			readLock.lock();
+			try {
+				long first = dayKey(from);
+				long last = dayKey(to) | LOW_HALF;
+				List<T> found = new ArrayList<>();
+				int b = blockAtLeast(first);
+				for (int i = b < blockCount ? blocks[b].lowerBound(first) : 0; b < blockCount; b++, i = 0) {
+					Block block = blocks[b];
+					int end = block.last() > last ? upperBound(block, last) : block.size;
+					for (; i < end; i++)
+						found.add((T) block.values[i]);
+					if (end < block.size)
+						break;
+				}
+				return found;
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		void add(long key, T entity) {
+			Lock writeLock = lock.writeLock();
+			writeLock.lock();
+			try {
+				insert(key, entity);
+			} finally {
+				writeLock.unlock();
+			}
+		}
+
+		void replace(long key, UUID entityId, T entity) {
+			Lock writeLock = lock.writeLock();
+			writeLock.lock();
+			try {
+				long position = locate(key, entityId);
+				if (position < 0)
+					insert(key, entity);
+				else
+					blocks[(int) (position >>> 32)].values[(int) position] = entity;
+			} finally {
+				writeLock.unlock();
+			}
+		}
+
+		void remove(long key, UUID entityId) {
+			Lock writeLock = lock.writeLock();
+			writeLock.lock();
+			try {
+				long position = locate(key, entityId);
+				if (position < 0)
+					return;
+				int b = (int) (position >>> 32);
+				Block block = blocks[b];
+				block.delete((int) position);
+				if (block.size == 0)
+					deleteBlock(b);
+				else if (b + 1 < blockCount && block.size + blocks[b + 1].size <= BLOCK_SIZE / 2) {
+					block.merge(blocks[b + 1]);
+					deleteBlock(b + 1);
+				}
+			} finally {
+				writeLock.unlock();
+			}
+		}
+
+		void forEach(EntryConsumer consumer) {
+			Lock readLock = lock.readLock();
+			readLock.lock();
+			try {
+				for (int b = 0; b < blockCount; b++) {
+					Block block = blocks[b];
+					for (int i = 0; i < block.size; i++)
+						consumer.accept(block.keys[i], entityId(block.values[i]));
+				}
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		private void insert(long key, T entity) {
+			if (blockCount == 0) {
+				Block first = new Block(4);
+				first.insert(0, key, entity);
+				blocks[blockCount++] = first;
+				return;
+			}
+			int b = Math.min(blockAtLeast(key), blockCount - 1);
+			Block block = blocks[b];
+			int index = block.lowerBound(key);
+			if (block.size == BLOCK_SIZE) {
+				Block right = block.split(BLOCK_SIZE / 2);
+				insertBlock(b + 1, right);
+				if (index > BLOCK_SIZE / 2) {
+					block = right;
+					index -= BLOCK_SIZE / 2;
+				}
+			}
+			block.insert(index, key, entity);
+		}
+
+		/**
+		 * Returns the position of the entry of an entity, its block in the high half
+		 * and its index in the low one, or -1 if none.
+		 */
+		private long locate(long key, UUID entityId) {
+			for (int b = blockAtLeast(key); b < blockCount; b++) {
+				Block block = blocks[b];
+				for (int i = block.lowerBound(key); i < block.size && block.keys[i] == key; i++)
+					if (entityId.equals(entityId(block.values[i])))
+						return (long) b << 32 | i;
+				if (block.last() != key)
+					break;
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the index of the first block whose last key is not less than a
+		 * key, the number of blocks if none.
+		 */
+		private int blockAtLeast(long key) {
+			int low = 0;
+			int high = blockCount - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (blocks[mid].last() < key)
+					low = mid + 1;
+				else
+					high = mid - 1;
+			}
+			return low;
+		}
+
+		private int upperBound(Block block, long key) {
+			return key == Long.MAX_VALUE ? block.size : block.lowerBound(key + 1);
+		}
+
+		private void insertBlock(int index, Block block) {
+			if (blockCount == blocks.length)
+				blocks = Arrays.copyOf(blocks, blockCount * 2);
+			System.arraycopy(blocks, index, blocks, index + 1, blockCount - index);
+			blocks[index] = block;
+			blockCount++;
+		}
+
+		private void deleteBlock(int index) {
+			System.arraycopy(blocks, index + 1, blocks, index, blockCount - index - 1);
+			blocks[--blockCount] = null;
+		}
+
+		@SuppressWarnings("unchecked")
+		private UUID entityId(Object value) {
+			return id.apply((T) value);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
+
+/**
+ * An index of the entities of an {@link InMemoryRepository} by a key extracted
+ * from them. Entities whose key is {@literal null} are not indexed.
+ *
+ * The repository updates its indexes while the entry written is locked, so the
+ * entries of one id are always changed in the order the writes were applied.
+ * Lookups go through the repository and only return entities whose current key
+ * is the one looked up, so a reader racing with a write never gets an entity
+ * that no longer matches.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <K>  the type of the key
+ * @param <ID> the type of the id of the entity
+ * @param <T>  the entity type
+ */
+public abstract class SecondaryIndex<K, ID, T> {
+
+	private final String name;
+	private final Function<? super T, ? extends K> key;
+	private final Function<? super ID, ? extends T> entities;
+
+	SecondaryIndex(String name, Function<? super T, ? extends K> key, Function<? super ID, ? extends T> entities) {
+		this.name = name;
+		this.key = key;
+		this.entities = entities;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the key of an entity, {@literal null} if the entity is
+	 * {@literal null} or not indexed.
+	 */
+	public K keyOf(T entity) {
+		return entity == null ? null : key.apply(entity);
+	}
+
+	/**
+	 * Returns the entity of an id if its current key is the given one.
+	 */
+	T entity(ID id, K key) {
+		T entity = entities.apply(id);
+		return entity != null && key.equals(keyOf(entity)) ? entity : null;
+	}
+
+	/**
+	 * Moves an id from the key of its previous entity to the key of its new one.
+	 * Called while the entry of the id is locked.
+	 */
+	void update(ID id, T previous, T entity) {
+		update(id, keyOf(previous), keyOf(entity), entity);
+	}
+
+	/**
+	 * Moves an id from the key of its previous entity to the key of its new one,
+	 * both already extracted, so a caller having them at hand does not extract
+	 * them again.
+	 */
+	void update(ID id, K previousKey, K key, T entity) {
+		if (Objects.equals(previousKey, key))
+			return;
+		if (key != null)
+			add(key, id, entity);
+		if (previousKey != null)
+			remove(previousKey, id);
+	}
+
+	/**
+	 * Reserves the key of a new entity for its id before the write is applied,
+	 * if the index is unique and the key changed. Called while the entry of the
+	 * id is locked.
+	 *
+	 * @throws DuplicateResourceException if another entity has the key.
+	 */
+	void claim(ID id, T previous, T entity) {
+	}
+
+	/**
+	 * Releases a key claimed for a write that was not applied.
+	 */
+	void unclaim(ID id, T previous, T entity) {
+	}
+
+	abstract void add(K key, ID id, T entity);
+
+	abstract void remove(K key, ID id);
+}
@@ -0,0 +1,22 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * The position of an entity in a {@link SortedIndex}: its sort key, then its
+ * id, which tells apart entities with the same key.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <ID> the type of the id of the entity
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class SortKey<ID> {
+
+	private final String key;
+	private final ID id;
+}
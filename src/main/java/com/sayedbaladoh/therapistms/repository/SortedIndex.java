@@ -0,0 +1,121 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * A sort order of the entities: the current version of each entity by its
+ * {@link SortKey}, in a <code>ConcurrentSkipListMap</code>, so the entities are
+ * read in order without sorting them, and a page following a given entity is
+ * found in O(log n + page size).
+ *
+ * Sort keys are text, compared by their chars, then by id; the key functions
+ * below build keys sorting like their values. Entities with no value have the
+ * empty key and come first.
+ *
+ * Every write of an entity replaces its entry, even if its key did not change,
+ * so the order holds the current versions and readers never look them up.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <ID> the type of the id of the entity
+ * @param <T>  the entity type
+ */
+public class SortedIndex<ID, T> extends SecondaryIndex<String, ID, T> {
+
+	private final ConcurrentNavigableMap<SortKey<ID>, T> entries = new ConcurrentSkipListMap<>(
+			SortedIndex::compare);
+
+	SortedIndex(String name, Function<? super T, String> key, Function<? super ID, ? extends T> entities) {
+		super(name, key, entities);
+	}
+
+	/**
+	 * Returns a live view of the entities in order.
+	 */
+	public Collection<T> findAll() {
+		return Collections.unmodifiableCollection(entries.values());
+	}
+
+	/**
+	 * Returns a page of entities in order.
+	 *
+	 * @param after the sort key of the last entity of the previous page, or
+	 *              {@literal null} for the first page.
+	 * @param limit the maximum number of entities.
+	 * @return the entities following the given sort key.
+	 */
+	public List<T> findPage(SortKey<ID> after, int limit) {
+		Collection<T> sorted = after == null ? entries.values() : entries.tailMap(after, false).values();
+		List<T> page = new ArrayList<>(Math.min(limit, 1024));
+		for (T entity : sorted) {
+			page.add(entity);
+			if (page.size() == limit)
+				break;
+		}
+		return page;
+	}
+
+	/**
+	 * Returns a live view of the entries, the entities by their sort keys.
+	 */
+	NavigableMap<SortKey<ID>, T> entries() {
+		return Collections.unmodifiableNavigableMap(entries);
+	}
+
+	/**
+	 * Returns the sort key of an entity, from which the next page starts.
+	 */
+	public SortKey<ID> sortKeyOf(ID id, T entity) {
+		return new SortKey<>(keyOf(entity), id);
+	}
+
+	@Override
+	void update(ID id, String previousKey, String key, T entity) {
+		if (key != null && key.equals(previousKey))
+			add(key, id, entity);
+		else
+			super.update(id, previousKey, key, entity);
+	}
+
+	@Override
+	void add(String key, ID id, T entity) {
+		entries.put(new SortKey<>(key, id), entity);
+	}
+
+	@Override
+	void remove(String key, ID id) {
+		entries.remove(new SortKey<>(key, id));
+	}
+
+	/**
+	 * Returns the sort key of a text: trimmed and lower cased, so the order
+	 * ignores case.
+	 */
+	public static String text(String value) {
+		return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the sort key of a date: its UTC day in ISO format, which sorts like
+	 * the days for the years 0 to 9999.
+	 */
+	public static String day(Date date) {
+		return date == null ? "" : LocalDate.ofEpochDay(RangeIndex.epochDay(date)).toString();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(SortKey<?> first, SortKey<?> second) {
+		int byKey = first.getKey().compareTo(second.getKey());
+		return byKey != 0 ? byKey : ((Comparable) first.getId()).compareTo(second.getId());
+	}
+}
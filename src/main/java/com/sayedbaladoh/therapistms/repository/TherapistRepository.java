@@ -1,14 +1,134 @@
 package com.sayedbaladoh.therapistms.repository;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.sayedbaladoh.therapistms.config.StorageProperties;
+import com.sayedbaladoh.therapistms.config.StorageProperties.MapType;
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
 import com.sayedbaladoh.therapistms.model.Therapist;
+import com.sayedbaladoh.therapistms.storage.Codecs;
+import com.sayedbaladoh.therapistms.storage.EntityStore;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.JournalFactory;
+import com.sayedbaladoh.therapistms.storage.StorageEngineFactory;
+import com.sayedbaladoh.therapistms.storage.Tables;
+import com.sayedbaladoh.therapistms.util.Emails;
 
+/**
+ * Stores the therapists, indexed by their practice so the therapists of a
+ * practice are found in time proportional to their number, and by their
+ * normalized email, which is unique.
+ * 
+ * The therapists are also kept sorted by name and by email, whatever their
+ * case, so they are listed and paged through in either order without sorting
+ * them.
+ * 
+ * Given an enabled {@link EntityStore}, every write is also queued to the store
+ * under the entry lock and is durable in it when the write returns, and the
+ * therapists are loaded from it on startup.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
 @Repository
 public class TherapistRepository extends InMemoryRepository<UUID, Therapist> {
 
+	private final HashIndex<UUID, UUID, Therapist> practiceIndex;
+	private final UniqueIndex<String, UUID, Therapist> emailIndex;
+	private final Map<String, SortedIndex<UUID, Therapist>> sortOrders = new LinkedHashMap<>();
+	private final EntityStore<Therapist> store;
+	private volatile boolean restoring;
+
+	public TherapistRepository() {
+		this(Journal.NONE);
+	}
+
+	@Autowired
+	public TherapistRepository(JournalFactory journalFactory, StorageEngineFactory storageEngineFactory,
+			StorageProperties properties) {
+		this(journalFactory.open("therapists"), properties.getMap(), storageEngineFactory.open(Tables.THERAPISTS));
+	}
+
+	public TherapistRepository(Journal journal) {
+		this(journal, MapType.CONCURRENT_HASH_MAP);
+	}
+
+	/**
+	 * @param journal the journal of the therapists.
+	 * @param mapType the map to keep the therapists in, by id.
+	 */
+	public TherapistRepository(Journal journal, MapType mapType) {
+		this(journal, mapType, EntityStore.none());
+	}
+
+	/**
+	 * @param journal the journal of the therapists.
+	 * @param mapType the map to keep the therapists in, by id.
+	 * @param store   the store the therapists are written through to.
+	 */
+	public TherapistRepository(Journal journal, MapType mapType, EntityStore<Therapist> store) {
+		super(journal, Codecs.UUID, Codecs.THERAPIST, mapType.create());
+		this.store = store;
+		practiceIndex = addIndex("practiceId", Therapist::getPracticeId);
+		emailIndex = addUniqueIndex("Therapist email", therapist -> Emails.normalize(therapist.getEmail()));
+		sortOrders.put("name", addSortedIndex("name", therapist -> SortedIndex.text(therapist.getName())));
+		sortOrders.put("email", addSortedIndex("email", therapist -> SortedIndex.text(therapist.getEmail())));
+	}
+
+	/**
+	 * Returns the names of the sort orders of the therapists.
+	 */
+	public Collection<String> sorts() {
+		return Collections.unmodifiableSet(sortOrders.keySet());
+	}
+
+	/**
+	 * Returns a live view of the therapists in a sort order.
+	 * 
+	 * @param sort the name of the sort order, one of {@link #sorts()}.
+	 * @return the therapists in order.
+	 */
+	public Collection<Therapist> findAll(String sort) {
+		return sortOrder(sort).findAll();
+	}
+
+	/**
+	 * Returns a page of the therapists in a sort order.
+	 * 
+	 * @param sort  the name of the sort order, one of {@link #sorts()}.
+	 * @param after the sort key of the last therapist of the previous page, or
+	 *              {@literal null} for the first page.
+	 * @param limit the maximum number of therapists.
+	 * @return the therapists following the given sort key.
+	 */
+	public List<Therapist> findPage(String sort, SortKey<UUID> after, int limit) {
+		return sortOrder(sort).findPage(after, limit);
+	}
+
+	/**
+	 * Returns the sort key of a therapist in a sort order.
+	 */
+	public SortKey<UUID> sortKeyOf(String sort, Therapist therapist) {
+		return sortOrder(sort).sortKeyOf(therapist.getId(), therapist);
+	}
+
+	/**
+	 * Saves a therapist, giving it an id if it has none.
+	 * 
+	 * @param therapist the therapist.
+	 * @return the saved therapist.
+	 * @throws DuplicateResourceException if another therapist has the same email.
+	 */
 	public Therapist saveOrUpdate(Therapist therapist) {
 		if (therapist.getId() == null) {
 			therapist.setId(UUID.randomUUID());
@@ -16,4 +136,80 @@ public class TherapistRepository extends InMemoryRepository<UUID, Therapist> {
 		save(therapist.getId(), therapist);
 		return therapist;
 	}
+
+	/**
+	 * Publishes a new version of a therapist if the stored version is still the
+	 * given one (compared by identity), incrementing its version number.
+	 * 
+	 * @param current the version the update was based on.
+	 * @param updated the new version.
+	 * @return {@literal true} if the new version was published, {@literal false}
+	 *         if the therapist was changed or removed in the meantime.
+	 * @throws DuplicateResourceException if another therapist has the new email.
+	 */
+	public boolean replace(Therapist current, Therapist updated) {
+		updated.setVersion(current.getVersion() + 1);
+		return compareAndSet(current.getId(), current, updated);
+	}
+
+	/**
+	 * Returns the therapists of a practice, from the practice index.
+	 * 
+	 * @param practiceId the practice id.
+	 * @return the therapists of the practice, empty if none.
+	 */
+	public List<Therapist> findByPracticeId(UUID practiceId) {
+		return practiceIndex.find(practiceId);
+	}
+
+	/**
+	 * Retrieves a therapist by its email, whatever its case.
+	 * 
+	 * @param email the email.
+	 * @return the therapist or {@literal Optional#empty()} if none found.
+	 */
+	public Optional<Therapist> findByEmail(String email) {
+		return emailIndex.find(Emails.normalize(email));
+	}
+
+	@Override
+	protected void logSave(UUID id, Therapist therapist) {
+		super.logSave(id, therapist);
+		if (store.isEnabled() && !restoring)
+			store.save(therapist.getPracticeId(), id, therapist);
+	}
+
+	@Override
+	protected void logDelete(UUID id) {
+		super.logDelete(id);
+		if (store.isEnabled() && !restoring)
+			store.delete(id);
+	}
+
+	@Override
+	protected void sync() {
+		super.sync();
+		if (!isRecovering())
+			store.sync();
+	}
+
+	/**
+	 * Loads the therapists from the entity store.
+	 */
+	@Override
+	protected void restore() throws IOException {
+		restoring = true;
+		try {
+			store.load((practiceId, therapist) -> save(therapist.getId(), therapist));
+		} finally {
+			restoring = false;
+		}
+	}
+
+	private SortedIndex<UUID, Therapist> sortOrder(String sort) {
+		SortedIndex<UUID, Therapist> sortOrder = sortOrders.get(sort);
+		if (sortOrder == null)
+			throw new IllegalArgumentException("sort must be one of " + String.join(", ", sorts()) + ".");
+		return sortOrder;
+	}
 }
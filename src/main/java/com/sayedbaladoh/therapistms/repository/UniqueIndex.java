@@ -0,0 +1,90 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
+
+/**
+ * A unique secondary index: the id of the entity having each key, in a
+ * <code>ConcurrentHashMap</code>.
+ *
+ * A write claims the key of its new entity with <code>putIfAbsent</code> before
+ * it is journaled or applied, so of concurrent writes giving the same key to
+ * different ids exactly one succeeds and the others fail without a trace.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <K>  the type of the key
+ * @param <ID> the type of the id of the entity
+ * @param <T>  the entity type
+ */
+public class UniqueIndex<K, ID, T> extends SecondaryIndex<K, ID, T> {
+
+	private final ConcurrentMap<K, ID> ids = new ConcurrentHashMap<>();
+
+	UniqueIndex(String name, Function<? super T, ? extends K> key, Function<? super ID, ? extends T> entities) {
+		super(name, key, entities);
+	}
+
+	/**
+	 * Retrieves the entity having a key.
+	 *
+	 * @param key the key.
+	 * @return the entity or {@literal Optional#empty()} if none found.
+	 */
+	public Optional<T> find(K key) {
+		ID id = ids.get(key);
+		return id == null ? Optional.empty() : Optional.ofNullable(entity(id, key));
+	}
+
+	/**
+	 * Returns the id owning a key, even if the write claiming it is not applied
+	 * yet.
+	 */
+	public Optional<ID> findId(K key) {
+		return Optional.ofNullable(ids.get(key));
+	}
+
+	/**
+	 * Returns a live view of the keys of the index.
+	 */
+	public Set<K> keys() {
+		return Collections.unmodifiableSet(ids.keySet());
+	}
+
+	@Override
+	void claim(ID id, T previous, T entity) {
+		K key = keyOf(entity);
+		if (key != null && !key.equals(keyOf(previous)))
+			add(key, id, entity);
+	}
+
+	@Override
+	void unclaim(ID id, T previous, T entity) {
+		K key = keyOf(entity);
+		if (key != null && !Objects.equals(key, keyOf(previous)))
+			remove(key, id);
+	}
+
+	@Override
+	void add(K key, ID id, T entity) {
+		// a write adds the key it claimed once more, which a lookup settles without
+		// the bin lock putIfAbsent takes even on a present key
+		ID owner = ids.get(key);
+		if (owner == null)
+			owner = ids.putIfAbsent(key, id);
+		if (owner != null && !owner.equals(id))
+			throw new DuplicateResourceException(getName() + " " + key + " already exists.");
+	}
+
+	@Override
+	void remove(K key, ID id) {
+		ids.remove(key, id);
+	}
+}
@@ -0,0 +1,546 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A concurrent map keyed by UUIDs, with open addressing on the two halves of
+ * the keys: the keys are held in a <code>long[]</code> and the values in an
+ * <code>Object[]</code>, so an entry costs no node and no <code>UUID</code>,
+ * and a lookup neither calls <code>UUID.hashCode()</code> nor follows a
+ * pointer to compare a key.
+ *
+ * The map is split into segments, each a linear probing table of its own with
+ * its own <code>StampedLock</code>. Writes lock their segment; reads are
+ * optimistic, and retry under the read lock only if a write of their segment
+ * got in the way. A read from the function of a {@link #compute} on the same
+ * segment reads it directly, as it holds its lock.
+ *
+ * As with a <code>ConcurrentHashMap</code>, neither keys nor values can be
+ * {@literal null}, the functions of the compute methods run once, under the
+ * lock, and must not update the map, and the views are weakly consistent:
+ * their iterators read a segment at a time, so they return each entry present
+ * during the whole iteration exactly once and never throw a
+ * <code>ConcurrentModificationException</code>. Their entries and keys are
+ * copies, not the <code>UUID</code>s given to the map.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <V> the value type
+ */
+public class UuidHashMap<V> extends AbstractMap<UUID, V> implements ConcurrentMap<UUID, V> {
+
+	private static final int SEGMENTS = 64;
+	private static final int MIN_CAPACITY = 8;
+
+	private final Segment<V>[] segments;
+	private final int segmentShift;
+	private Set<Map.Entry<UUID, V>> entrySet;
+
+	public UuidHashMap() {
+		this(SEGMENTS);
+	}
+
+	/**
+	 * @param concurrency the number of segments, rounded up to a power of two.
+	 */
+	@SuppressWarnings("unchecked")
+	public UuidHashMap(int concurrency) {
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("concurrency must be positive.");
+		int bits = 32 - Integer.numberOfLeadingZeros(Math.max(concurrency, 2) - 1);
+		segments = new Segment[1 << bits];
+		segmentShift = 64 - bits;
+		for (int i = 0; i < segments.length; i++)
+			segments[i] = new Segment<>();
+	}
+
+	@Override
+	public V get(Object key) {
+		if (!(key instanceof UUID)) {
+			Objects.requireNonNull(key);
+			return null;
+		}
+		UUID id = (UUID) key;
+		long msb = id.getMostSignificantBits();
+		long lsb = id.getLeastSignificantBits();
+		long hash = hash(msb, lsb);
+		Segment<V> segment = segmentFor(hash);
+		if (segment.owner == Thread.currentThread())
+			return segment.get(hash, msb, lsb);
+
+		long stamp = segment.tryOptimisticRead();
+		V value = segment.get(hash, msb, lsb);
+		if (segment.validate(stamp))
+			return value;
+
+		stamp = segment.readLock();
+		try {
+			return segment.get(hash, msb, lsb);
+		} finally {
+			segment.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public V put(UUID key, V value) {
+		Objects.requireNonNull(value);
+		long msb = key.getMostSignificantBits();
+		long lsb = key.getLeastSignificantBits();
+		long hash = hash(msb, lsb);
+		Segment<V> segment = segmentFor(hash);
+		long stamp = segment.acquire();
+		try {
+			int slot = segment.find(hash, msb, lsb);
+			if (slot >= 0)
+				return segment.set(slot, value);
+			segment.insert(~slot, hash, msb, lsb, value);
+			return null;
+		} finally {
+			segment.release(stamp);
+		}
+	}
+
+	@Override
+	public V remove(Object key) {
+		if (!(key instanceof UUID)) {
+			Objects.requireNonNull(key);
+			return null;
+		}
+		UUID id = (UUID) key;
+		long msb = id.getMostSignificantBits();
+		long lsb = id.getLeastSignificantBits();
+		long hash = hash(msb, lsb);
+		Segment<V> segment = segmentFor(hash);
+		long stamp = segment.acquire();
+		try {
+			int slot = segment.find(hash, msb, lsb);
+			return slot >= 0 ? segment.delete(slot) : null;
+		} finally {
+			segment.release(stamp);
+		}
+	}
+
+	@Override
+	public V compute(UUID key, BiFunction<? super UUID, ? super V, ? extends V> remappingFunction) {
+		return update(key, remappingFunction, false);
+	}
+
+	@Override
+	public V computeIfPresent(UUID key, BiFunction<? super UUID, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(remappingFunction);
+		return update(key, (id, value) -> value == null ? null : remappingFunction.apply(id, value), false);
+	}
+
+	@Override
+	public V computeIfAbsent(UUID key, Function<? super UUID, ? extends V> mappingFunction) {
+		Objects.requireNonNull(mappingFunction);
+		V value = get(key);
+		if (value != null)
+			return value;
+		return update(key, (id, current) -> current != null ? current : mappingFunction.apply(id), false);
+	}
+
+	@Override
+	public V merge(UUID key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+		return update(key, (id, current) -> current == null ? value : remappingFunction.apply(current, value), false);
+	}
+
+	@Override
+	public V putIfAbsent(UUID key, V value) {
+		Objects.requireNonNull(value);
+		return update(key, (id, current) -> current != null ? current : value, true);
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		if (!(key instanceof UUID) || value == null) {
+			Objects.requireNonNull(key);
+			return false;
+		}
+		V previous = update((UUID) key, (id, current) -> value.equals(current) ? null : current, true);
+		return value.equals(previous);
+	}
+
+	@Override
+	public boolean replace(UUID key, V oldValue, V newValue) {
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+		V previous = update(key, (id, current) -> oldValue.equals(current) ? newValue : current, true);
+		return oldValue.equals(previous);
+	}
+
+	@Override
+	public V replace(UUID key, V value) {
+		Objects.requireNonNull(value);
+		return update(key, (id, current) -> current == null ? null : value, true);
+	}
+
+	@Override
+	public int size() {
+		long size = 0;
+		for (Segment<V> segment : segments)
+			size += segment.size;
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (Segment<V> segment : segments)
+			if (segment.size != 0)
+				return false;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		for (Segment<V> segment : segments) {
+			long stamp = segment.acquire();
+			try {
+				segment.clear();
+			} finally {
+				segment.release(stamp);
+			}
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<UUID, V>> entrySet() {
+		if (entrySet == null)
+			entrySet = new EntrySet();
+		return entrySet;
+	}
+
+	/**
+	 * Applies a function to the current value of a key under the lock of its
+	 * segment and stores its result, removing the key if {@literal null}.
+	 *
+	 * @return the previous value if asked, the new one otherwise.
+	 */
+	private V update(UUID key, BiFunction<? super UUID, ? super V, ? extends V> remappingFunction,
+			boolean previous) {
+		long msb = key.getMostSignificantBits();
+		long lsb = key.getLeastSignificantBits();
+		long hash = hash(msb, lsb);
+		Segment<V> segment = segmentFor(hash);
+		long stamp = segment.acquire();
+		try {
+			int slot = segment.find(hash, msb, lsb);
+			V current = slot >= 0 ? segment.valueAt(slot) : null;
+			V value = remappingFunction.apply(key, current);
+			if (value == null) {
+				if (slot >= 0)
+					segment.delete(slot);
+			} else if (slot >= 0) {
+				segment.set(slot, value);
+			} else {
+				segment.insert(~slot, hash, msb, lsb, value);
+			}
+			return previous ? current : value;
+		} finally {
+			segment.release(stamp);
+		}
+	}
+
+	private Segment<V> segmentFor(long hash) {
+		return segments[(int) (hash >>> segmentShift)];
+	}
+
+	/**
+	 * Mixes the two halves of a key, so its segment (the high bits) and its
+	 * slot (the low bits) depend on all of them.
+	 */
+	static long hash(long msb, long lsb) {
+		long hash = msb ^ Long.rotateLeft(lsb, 32);
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	/**
+	 * The slots of a segment: the halves of the key of slot i at 2i and 2i + 1,
+	 * and its value at i, {@literal null} if the slot is free. Replaced as a
+	 * whole when the segment grows, so a reader never sees arrays of different
+	 * tables.
+	 */
+	private static final class Table {
+
+		final long[] keys;
+		final Object[] values;
+
+		Table(int capacity) {
+			keys = new long[2 * capacity];
+			values = new Object[capacity];
+		}
+	}
+
+	private static final class Segment<V> extends StampedLock {
+
+		private static final long serialVersionUID = 1L;
+
+		private Table table = new Table(MIN_CAPACITY);
+		private volatile int size;
+
+		/**
+		 * The thread holding the write lock. Only the thread itself can see it set
+		 * to itself.
+		 */
+		private Thread owner;
+
+		long acquire() {
+			long stamp = writeLock();
+			owner = Thread.currentThread();
+			return stamp;
+		}
+
+		void release(long stamp) {
+			owner = null;
+			unlockWrite(stamp);
+		}
+
+		/**
+		 * Returns the value of a key. Called under a lock or optimistically, in
+		 * which case it may read a table being written, and its result is only
+		 * used if the read is validated.
+		 */
+		@SuppressWarnings("unchecked")
+		V get(long hash, long msb, long lsb) {
+			Table table = this.table;
+			Object[] values = table.values;
+			long[] keys = table.keys;
+			int mask = values.length - 1;
+			for (int slot = (int) hash & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+				Object value = values[slot];
+				if (value == null)
+					return null;
+				if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb)
+					return (V) value;
+			}
+			return null;
+		}
+
+		/**
+		 * Returns the slot of a key, or the complement of the free slot where it
+		 * would be inserted. Called under the write lock.
+		 */
+		int find(long hash, long msb, long lsb) {
+			Object[] values = table.values;
+			long[] keys = table.keys;
+			int mask = values.length - 1;
+			int slot = (int) hash & mask;
+			while (values[slot] != null) {
+				if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb)
+					return slot;
+				slot = (slot + 1) & mask;
+			}
+			return ~slot;
+		}
+
+		@SuppressWarnings("unchecked")
+		V valueAt(int slot) {
+			return (V) table.values[slot];
+		}
+
+		V set(int slot, V value) {
+			V previous = valueAt(slot);
+			table.values[slot] = value;
+			return previous;
+		}
+
+		/**
+		 * Inserts a key in a free slot, growing the table first if it would be
+		 * more than three quarters full.
+		 */
+		void insert(int slot, long hash, long msb, long lsb, V value) {
+			if (size + 1 > table.values.length / 4 * 3) {
+				resize(table.values.length * 2);
+				slot = ~find(hash, msb, lsb);
+			}
+			table.keys[2 * slot] = msb;
+			table.keys[2 * slot + 1] = lsb;
+			table.values[slot] = value;
+			size++;
+		}
+
+		/**
+		 * Removes the key of a slot, shifting back the keys following it that
+		 * probed past it, so no slot is left deleted and lookups stop at the first
+		 * free slot.
+		 */
+		V delete(int slot) {
+			V previous = valueAt(slot);
+			Object[] values = table.values;
+			long[] keys = table.keys;
+			int mask = values.length - 1;
+			int hole = slot;
+			for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+				int home = (int) hash(keys[2 * next], keys[2 * next + 1]) & mask;
+				if (((next - home) & mask) >= ((next - hole) & mask)) {
+					keys[2 * hole] = keys[2 * next];
+					keys[2 * hole + 1] = keys[2 * next + 1];
+					values[hole] = values[next];
+					hole = next;
+				}
+			}
+			values[hole] = null;
+			size--;
+			return previous;
+		}
+
+		void clear() {
+			table = new Table(MIN_CAPACITY);
+			size = 0;
+		}
+
+		private void resize(int capacity) {
+			Table previous = table;
+			table = new Table(capacity);
+			int mask = capacity - 1;
+			for (int i = 0; i < previous.values.length; i++) {
+				Object value = previous.values[i];
+				if (value == null)
+					continue;
+				long msb = previous.keys[2 * i];
+				long lsb = previous.keys[2 * i + 1];
+				int slot = (int) hash(msb, lsb) & mask;
+				while (table.values[slot] != null)
+					slot = (slot + 1) & mask;
+				table.keys[2 * slot] = msb;
+				table.keys[2 * slot + 1] = lsb;
+				table.values[slot] = value;
+			}
+		}
+
+		/**
+		 * Copies the entries of the segment to the first slots of a table, a new
+		 * one if the given one has no room for them, under the read lock of the
+		 * segment, or directly if the current thread holds its write lock.
+		 */
+		Table copy(Table copy) {
+			if (owner == Thread.currentThread())
+				return copyLocked(copy);
+			long stamp = readLock();
+			try {
+				return copyLocked(copy);
+			} finally {
+				unlockRead(stamp);
+			}
+		}
+
+		private Table copyLocked(Table copy) {
+			if (copy.values.length < size)
+				copy = new Table(size);
+			int count = 0;
+			for (int i = 0; i < table.values.length; i++) {
+				if (table.values[i] == null)
+					continue;
+				copy.keys[2 * count] = table.keys[2 * i];
+				copy.keys[2 * count + 1] = table.keys[2 * i + 1];
+				copy.values[count++] = table.values[i];
+			}
+			return copy;
+		}
+	}
+
+	private final class EntrySet extends AbstractSet<Map.Entry<UUID, V>> {
+
+		@Override
+		public Iterator<Map.Entry<UUID, V>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+			Object value = entry.getKey() == null ? null : get(entry.getKey());
+			return value != null && value.equals(entry.getValue());
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+			return entry.getKey() != null && UuidHashMap.this.remove(entry.getKey(), entry.getValue());
+		}
+
+		@Override
+		public int size() {
+			return UuidHashMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			UuidHashMap.this.clear();
+		}
+	}
+
+	/**
+	 * Iterates over a copy of the entries of one segment at a time.
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<UUID, V>> {
+
+		private int segment;
+		private Table copy = new Table(0);
+		private int index;
+		private UUID last;
+
+		/**
+		 * The entries of the current segment are the first slots of the copy,
+		 * freed once returned, so the copy is free when moving to the next one.
+		 */
+		@Override
+		public boolean hasNext() {
+			while (!copied() && segment < segments.length) {
+				Segment<V> next = segments[segment++];
+				if (next.size == 0)
+					continue;
+				copy = next.copy(copy);
+				index = 0;
+			}
+			return copied();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Map.Entry<UUID, V> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			last = new UUID(copy.keys[2 * index], copy.keys[2 * index + 1]);
+			V value = (V) copy.values[index];
+			copy.values[index++] = null;
+			return new AbstractMap.SimpleImmutableEntry<>(last, value);
+		}
+
+		private boolean copied() {
+			return index < copy.values.length && copy.values[index] != null;
+		}
+
+		@Override
+		public void remove() {
+			if (last == null)
+				throw new IllegalStateException();
+			UuidHashMap.this.remove(last);
+			last = null;
+		}
+	}
+}
@@ -1,21 +1,45 @@
 package com.sayedbaladoh.therapistms.service;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import com.sayedbaladoh.therapistms.dto.ClientQueryResponseDto;
 import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
 import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
 import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.dto.PageDto;
 
 public interface ClientService {
 
 	ClientResponseDto addClient(UUID therapistId, ClientRequestDto client);
 
-	List<ClientResponseDto> getAllClients(UUID therapistId);
+	List<ClientResponseDto> getAllClients(UUID therapistId, String sort);
 
-	ClientResponseDto getClient(UUID therapistId, UUID clientId);
+	Stream<ClientResponseDto> streamAllClients(UUID therapistId);
 
-	ClientResponseDto updateClient(UUID therapistId, UUID clientId, ClientUpdateRequestDto clientDto);
+	PageDto<ClientResponseDto> getClients(UUID therapistId, String cursor, int limit, String sort);
+
+	ClientResponseDto getClient(UUID therapistId, UUID clientId, String ifNoneMatch);
+
+	ClientResponseDto getClient(UUID clientId, String ifNoneMatch);
+
+	ClientResponseDto getClientByEmail(UUID therapistId, String email);
+
+	List<ClientResponseDto> searchClients(UUID therapistId, String query, int limit);
+
+	List<String> completeClientNames(UUID therapistId, String prefix, int limit);
+
+	ClientQueryResponseDto queryClients(UUID therapistId, String gender, String job, LocalDate bornAfter,
+			LocalDate bornBefore, boolean explain);
+
+	long countClients(UUID therapistId, LocalDate bornAfter, LocalDate bornBefore);
+
+	long countClients(LocalDate bornAfter, LocalDate bornBefore);
+
+	ClientResponseDto updateClient(UUID therapistId, UUID clientId, ClientUpdateRequestDto clientDto,
+			String ifMatch);
 
 	void removeClient(UUID therapistId, UUID clientId);
 
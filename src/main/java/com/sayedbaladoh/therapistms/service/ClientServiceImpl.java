@@ -1,20 +1,33 @@
 package com.sayedbaladoh.therapistms.service;
 
+import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
 
+import com.sayedbaladoh.therapistms.dto.ClientQueryResponseDto;
 import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
 import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
 import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.dto.PageDto;
+import com.sayedbaladoh.therapistms.dto.QueryPlanDto;
+import com.sayedbaladoh.therapistms.exception.NotModifiedException;
+import com.sayedbaladoh.therapistms.exception.PreconditionFailedException;
 import com.sayedbaladoh.therapistms.exception.ResourceNotFoundException;
 import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientFilter;
 import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.repository.CompletionTrie;
+import com.sayedbaladoh.therapistms.repository.QueryPlan;
+import com.sayedbaladoh.therapistms.repository.QueryResult;
+import com.sayedbaladoh.therapistms.util.ETags;
 import com.sayedbaladoh.therapistms.util.ObjectMapperHelper;
+import com.sayedbaladoh.therapistms.util.Pagination;
 
 import lombok.RequiredArgsConstructor;
 
@@ -35,40 +48,138 @@ public class ClientServiceImpl implements ClientService {
 	}
 
 	@Override
-	public List<ClientResponseDto> getAllClients(UUID therapistId) {
+	public List<ClientResponseDto> getAllClients(UUID therapistId, String sort) {
 
 		Collection<Client> clients = getAllByTherapistId(therapistId).values();
+		if (sort != null)
+			clients = clientRepository.findAll(therapistId, sort);
 		return objectMapperHelper.mapAll(clients, ClientResponseDto.class);
 	}
 
 	@Override
-	public ClientResponseDto getClient(UUID therapistId, UUID clientId) {
+	public Stream<ClientResponseDto> streamAllClients(UUID therapistId) {
 
-		Map<UUID, Client> clients = getAllByTherapistId(therapistId);
-		Client client = get(clients, clientId);
-		return objectMapperHelper.map(client, ClientResponseDto.class);
+		Collection<Client> clients = getAllByTherapistId(therapistId).values();
+		return objectMapperHelper.mapEach(clients, ClientResponseDto.class);
 	}
 
 	@Override
-	public ClientResponseDto updateClient(UUID therapistId, UUID clientId, ClientUpdateRequestDto clientDto) {
+	public PageDto<ClientResponseDto> getClients(UUID therapistId, String cursor, int limit, String sort) {
+
+		Pagination.checkLimit(limit);
+		getAllByTherapistId(therapistId);
+		if (sort == null) {
+			List<Client> clients = clientRepository.findPage(therapistId, Pagination.decodeCursor(cursor), limit + 1);
+			return objectMapperHelper.mapPage(clients, limit, client -> Pagination.encodeCursor(client.getId()),
+					ClientResponseDto.class);
+		}
+
+		List<Client> clients = clientRepository.findPage(therapistId, sort, Pagination.decodeSortCursor(cursor),
+				limit + 1);
+		return objectMapperHelper.mapPage(clients, limit,
+				client -> Pagination.encodeCursor(clientRepository.sortKeyOf(sort, client)), ClientResponseDto.class);
+	}
+
+	@Override
+	public ClientResponseDto getClient(UUID therapistId, UUID clientId, String ifNoneMatch) {
 
 		Map<UUID, Client> clients = getAllByTherapistId(therapistId);
 		Client client = get(clients, clientId);
-		client = objectMapperHelper.map(clientDto, client);
+		return mapIfModified(client, ifNoneMatch);
+	}
 
-		clients.put(clientId, client);
-		clientRepository.save(therapistId, clients);
+	@Override
+	public ClientResponseDto getClient(UUID clientId, String ifNoneMatch) {
 
+		Client client = clientRepository.findClientById(clientId).orElseThrow(() -> new ResourceNotFoundException(
+				String.format("No client found with id: %s.", clientId.toString())));
+		return mapIfModified(client, ifNoneMatch);
+	}
+
+	@Override
+	public ClientResponseDto getClientByEmail(UUID therapistId, String email) {
+
+		getAllByTherapistId(therapistId);
+		Client client = clientRepository.findByEmail(therapistId, email).orElseThrow(() -> new ResourceNotFoundException(
+				String.format("No client found with email: %s.", email)));
 		return objectMapperHelper.map(client, ClientResponseDto.class);
 	}
 
+	@Override
+	public List<ClientResponseDto> searchClients(UUID therapistId, String query, int limit) {
+
+		if (query == null || query.trim().length() < 2)
+			throw new IllegalArgumentException("q must have at least 2 characters.");
+		Pagination.checkLimit(limit);
+		getAllByTherapistId(therapistId);
+		return objectMapperHelper.mapAll(clientRepository.search(therapistId, query, limit), ClientResponseDto.class);
+	}
+
+	@Override
+	public List<String> completeClientNames(UUID therapistId, String prefix, int limit) {
+
+		if (limit < 1 || limit > CompletionTrie.K)
+			throw new IllegalArgumentException("limit must be between 1 and " + CompletionTrie.K + ".");
+		getAllByTherapistId(therapistId);
+		return clientRepository.completeName(therapistId, prefix, limit);
+	}
+
+	@Override
+	public ClientQueryResponseDto queryClients(UUID therapistId, String gender, String job, LocalDate bornAfter,
+			LocalDate bornBefore, boolean explain) {
+
+		getAllByTherapistId(therapistId);
+		QueryResult<Client> result = clientRepository.query(therapistId,
+				new ClientFilter(gender, job, bornAfter, bornBefore));
+		List<ClientResponseDto> clients = objectMapperHelper.mapAll(result.getItems(), ClientResponseDto.class);
+		if (!explain)
+			return new ClientQueryResponseDto(clients, null);
+
+		QueryPlan plan = result.getPlan();
+		return new ClientQueryResponseDto(clients, new QueryPlanDto(plan.getAccess(), plan.getIndex(),
+				plan.isParallel(), plan.getEstimatedRows(), plan.getRowsTouched(), plan.getRowsReturned()));
+	}
+
+	@Override
+	public long countClients(UUID therapistId, LocalDate bornAfter, LocalDate bornBefore) {
+
+		getAllByTherapistId(therapistId);
+		ClientFilter filter = new ClientFilter(null, null, bornAfter, bornBefore);
+		return clientRepository.countByBirthDate(therapistId, filter.getFirstBirthDay(), filter.getLastBirthDay());
+	}
+
+	@Override
+	public long countClients(LocalDate bornAfter, LocalDate bornBefore) {
+
+		ClientFilter filter = new ClientFilter(null, null, bornAfter, bornBefore);
+		return clientRepository.countByBirthDate(filter.getFirstBirthDay(), filter.getLastBirthDay());
+	}
+
+	@Override
+	public ClientResponseDto updateClient(UUID therapistId, UUID clientId, ClientUpdateRequestDto clientDto,
+			String ifMatch) {
+
+		// Stored clients are shared with concurrent readers, so the update is applied
+		// to a copy and published only if nobody else changed the client meanwhile.
+		// A conditional update fails rather than retries.
+		while (true) {
+			Client current = get(getAllByTherapistId(therapistId), clientId);
+			if (!ETags.isPreconditionMet(ifMatch, current.getVersion()))
+				throw new PreconditionFailedException(
+						String.format("Client with id: %s has been modified.", clientId.toString()));
+			Client updated = objectMapperHelper.map(clientDto, new Client(current));
+
+			if (clientRepository.replace(therapistId, current, updated))
+				return objectMapperHelper.map(updated, ClientResponseDto.class);
+		}
+	}
+
 	@Override
 	public void removeClient(UUID therapistId, UUID clientId) {
 
-		Map<UUID, Client> clients = getAllByTherapistId(therapistId);
-		get(clients, clientId);
-		clients.remove(clientId);
-		clientRepository.save(therapistId, clients);
+		getAllByTherapistId(therapistId);
+		clientRepository.remove(therapistId, clientId).orElseThrow(() -> new ResourceNotFoundException(
+				String.format("No client found with id: %s.", clientId.toString())));
 	}
 
 	@Override
@@ -86,6 +197,16 @@ public class ClientServiceImpl implements ClientService {
 				String.format("No clients found with therapist id: %s.", therapistId.toString())));
 	}
 
+	/**
+	 * Maps a client unless it matches the <code>If-None-Match</code> header, in
+	 * which case the response is a <code>304 Not Modified</code>.
+	 */
+	private ClientResponseDto mapIfModified(Client client, String ifNoneMatch) {
+		if (ETags.isNotModified(ifNoneMatch, client.getVersion()))
+			throw new NotModifiedException(client.getVersion());
+		return objectMapperHelper.map(client, ClientResponseDto.class);
+	}
+
 	private Client get(Map<UUID, Client> clients, UUID clientId) {
 		Client client = Optional.ofNullable(clients.get(clientId)).orElseThrow(() -> new ResourceNotFoundException(
 				String.format("No client found with id: %s.", clientId.toString())));
@@ -2,7 +2,9 @@ package com.sayedbaladoh.therapistms.service;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import com.sayedbaladoh.therapistms.dto.PageDto;
 import com.sayedbaladoh.therapistms.dto.TherapistRequestDto;
 import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
 import com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto;
@@ -11,9 +13,17 @@ public interface TherapistService {
 
 	TherapistResponseDto addTherapist(TherapistRequestDto therapist);
 
-	List<TherapistResponseDto> getAllTherapists();
+	List<TherapistResponseDto> getAllTherapists(String sort);
 
-	TherapistResponseDto getTherapist(UUID id);
+	Stream<TherapistResponseDto> streamAllTherapists();
 
-	TherapistResponseDto updateTherapist(UUID id, TherapistUpdateRequestDto therapistDto);
+	PageDto<TherapistResponseDto> getTherapists(String cursor, int limit, String sort);
+
+	TherapistResponseDto getTherapist(UUID id, String ifNoneMatch);
+
+	TherapistResponseDto getTherapistByEmail(String email);
+
+	List<TherapistResponseDto> getPracticeTherapists(UUID practiceId);
+
+	TherapistResponseDto updateTherapist(UUID id, TherapistUpdateRequestDto therapistDto, String ifMatch);
 }
@@ -1,17 +1,24 @@
 package com.sayedbaladoh.therapistms.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
 
+import com.sayedbaladoh.therapistms.dto.PageDto;
 import com.sayedbaladoh.therapistms.dto.TherapistRequestDto;
 import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
 import com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto;
+import com.sayedbaladoh.therapistms.exception.NotModifiedException;
+import com.sayedbaladoh.therapistms.exception.PreconditionFailedException;
 import com.sayedbaladoh.therapistms.exception.ResourceNotFoundException;
 import com.sayedbaladoh.therapistms.model.Therapist;
 import com.sayedbaladoh.therapistms.repository.TherapistRepository;
+import com.sayedbaladoh.therapistms.util.ETags;
 import com.sayedbaladoh.therapistms.util.ObjectMapperHelper;
+import com.sayedbaladoh.therapistms.util.Pagination;
 
 import lombok.RequiredArgsConstructor;
 
@@ -29,20 +36,68 @@ public class TherapistServiceImpl implements TherapistService {
 	}
 
 	@Override
-	public List<TherapistResponseDto> getAllTherapists() {
-		return objectMapperHelper.mapAll(therapistRepository.findAll(), TherapistResponseDto.class);
+	public List<TherapistResponseDto> getAllTherapists(String sort) {
+		Collection<Therapist> therapists = sort == null ? therapistRepository.findAll()
+				: therapistRepository.findAll(sort);
+		return objectMapperHelper.mapAll(therapists, TherapistResponseDto.class);
 	}
 
 	@Override
-	public TherapistResponseDto getTherapist(UUID id) {
-		return objectMapperHelper.map(get(id), TherapistResponseDto.class);
+	public Stream<TherapistResponseDto> streamAllTherapists() {
+		return objectMapperHelper.mapEach(therapistRepository.findAll(), TherapistResponseDto.class);
 	}
 
 	@Override
-	public TherapistResponseDto updateTherapist(UUID id, TherapistUpdateRequestDto therapistDto) {
+	public PageDto<TherapistResponseDto> getTherapists(String cursor, int limit, String sort) {
+		Pagination.checkLimit(limit);
+		if (sort == null) {
+			List<Therapist> therapists = therapistRepository.findPage(Pagination.decodeCursor(cursor), limit + 1);
+			return objectMapperHelper.mapPage(therapists, limit,
+					therapist -> Pagination.encodeCursor(therapist.getId()), TherapistResponseDto.class);
+		}
+
+		List<Therapist> therapists = therapistRepository.findPage(sort, Pagination.decodeSortCursor(cursor),
+				limit + 1);
+		return objectMapperHelper.mapPage(therapists, limit,
+				therapist -> Pagination.encodeCursor(therapistRepository.sortKeyOf(sort, therapist)),
+				TherapistResponseDto.class);
+	}
+
+	@Override
+	public TherapistResponseDto getTherapist(UUID id, String ifNoneMatch) {
 		Therapist therapist = get(id);
-		objectMapperHelper.map(therapistDto, therapist);
-		return save(therapist);
+		if (ETags.isNotModified(ifNoneMatch, therapist.getVersion()))
+			throw new NotModifiedException(therapist.getVersion());
+		return objectMapperHelper.map(therapist, TherapistResponseDto.class);
+	}
+
+	@Override
+	public TherapistResponseDto getTherapistByEmail(String email) {
+		Therapist therapist = therapistRepository.findByEmail(email).orElseThrow(() -> new ResourceNotFoundException(
+				String.format("Therapist with email: %s is not found.", email)));
+		return objectMapperHelper.map(therapist, TherapistResponseDto.class);
+	}
+
+	@Override
+	public List<TherapistResponseDto> getPracticeTherapists(UUID practiceId) {
+		return objectMapperHelper.mapAll(therapistRepository.findByPracticeId(practiceId), TherapistResponseDto.class);
+	}
+
+	@Override
+	public TherapistResponseDto updateTherapist(UUID id, TherapistUpdateRequestDto therapistDto, String ifMatch) {
+		// Stored therapists are shared with concurrent readers, so the update is
+		// applied to a copy and published only if nobody else changed the therapist
+		// meanwhile. A conditional update fails rather than retries.
+		while (true) {
+			Therapist current = get(id);
+			if (!ETags.isPreconditionMet(ifMatch, current.getVersion()))
+				throw new PreconditionFailedException(
+						String.format("Therapist with id: %s has been modified.", id.toString()));
+			Therapist updated = objectMapperHelper.map(therapistDto, new Therapist(current));
+
+			if (therapistRepository.replace(current, updated))
+				return objectMapperHelper.map(updated, TherapistResponseDto.class);
+		}
 	}
 
 	private Therapist get(UUID id) {
@@ -0,0 +1,92 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter of UUIDs: a set that may answer that an id it does not hold
+ * is in it, about once in a hundred times with its 10 bits and 7 probes per id,
+ * but never that an id it holds is not.
+ *
+ * The probes are derived from two hashes of the id by double hashing, so an id
+ * is hashed twice whatever the number of probes. The filter is not thread
+ * safe while ids are added; once built it can be read concurrently.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public final class BloomFilter {
+
+	public static final int BITS_PER_ID = 10;
+	private static final int PROBES = 7;
+
+	private final long[] words;
+	private final long bits;
+
+	/**
+	 * @param ids the number of ids the filter is sized for.
+	 */
+	public BloomFilter(long ids) {
+		this(new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (ids * BITS_PER_ID + 63) / 64))]);
+	}
+
+	private BloomFilter(long[] words) {
+		this.words = words;
+		this.bits = (long) words.length * 64;
+	}
+
+	public void add(long msb, long lsb) {
+		long first = mix(msb ^ Long.rotateLeft(lsb, 32));
+		long second = mix(lsb ^ Long.rotateLeft(msb, 32)) | 1;
+		for (int probe = 0; probe < PROBES; probe++) {
+			long bit = Long.remainderUnsigned(first + probe * second, bits);
+			words[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Returns {@literal false} if the id was never added, {@literal true} if it
+	 * may have been.
+	 */
+	public boolean mightContain(long msb, long lsb) {
+		long first = mix(msb ^ Long.rotateLeft(lsb, 32));
+		long second = mix(lsb ^ Long.rotateLeft(msb, 32)) | 1;
+		for (int probe = 0; probe < PROBES; probe++) {
+			long bit = Long.remainderUnsigned(first + probe * second, bits);
+			if ((words[(int) (bit >>> 6)] & 1L << bit) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(words.length);
+		for (long word : words)
+			out.writeLong(word);
+	}
+
+	public static BloomFilter read(DataInput in) throws IOException {
+		long[] words = new long[in.readInt()];
+		for (int i = 0; i < words.length; i++)
+			words[i] = in.readLong();
+		return new BloomFilter(words);
+	}
+
+	/**
+	 * Returns the bytes of the filter once written.
+	 */
+	public long sizeInBytes() {
+		return Integer.BYTES + (long) words.length * Long.BYTES;
+	}
+
+	/**
+	 * The finalizer of MurmurHash3, spreading every bit of its input over the
+	 * whole hash.
+	 */
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+}
@@ -0,0 +1,33 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of a value, used to persist entities.
+ * 
+ * @author Sayed Baladoh
+ *
+ * @param <T> the type of the value
+ */
+public interface Codec<T> {
+
+	/**
+	 * Writes a value.
+	 * 
+	 * @param out   the output.
+	 * @param value the value, may be {@literal null} if the codec allows it.
+	 * @throws IOException if the value can not be written.
+	 */
+	void write(DataOutput out, T value) throws IOException;
+
+	/**
+	 * Reads a value written by {@link #write(DataOutput, Object)}.
+	 * 
+	 * @param in the input.
+	 * @return the value.
+	 * @throws IOException if the value can not be read.
+	 */
+	T read(DataInput in) throws IOException;
+}
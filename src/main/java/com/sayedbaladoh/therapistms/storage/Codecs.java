@@ -0,0 +1,179 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.model.Therapist;
+
+/**
+ * The codecs of the entities and of their field types. Nullable fields are
+ * prefixed by a presence flag, except strings, written as their length in
+ * UTF-8 bytes, -1 for {@literal null}, then the bytes, so a value of any
+ * length can be written.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public final class Codecs {
+
+	/**
+	 * The version of the encodings, written in the headers of the files holding
+	 * them, such as the journal segments and snapshots, so files written with
+	 * other encodings are rejected rather than misread. Bumped whenever an
+	 * encoding changes.
+	 */
+	public static final byte FORMAT_VERSION = 1;
+
+	public static final Codec<UUID> UUID = new Codec<UUID>() {
+
+		@Override
+		public void write(DataOutput out, UUID value) throws IOException {
+			out.writeLong(value.getMostSignificantBits());
+			out.writeLong(value.getLeastSignificantBits());
+		}
+
+		@Override
+		public UUID read(DataInput in) throws IOException {
+			return new UUID(in.readLong(), in.readLong());
+		}
+	};
+
+	public static final Codec<Therapist> THERAPIST = new Codec<Therapist>() {
+
+		@Override
+		public void write(DataOutput out, Therapist therapist) throws IOException {
+			writeUuid(out, therapist.getId());
+			out.writeLong(therapist.getVersion());
+			writeString(out, therapist.getName());
+			writeString(out, therapist.getEmail());
+			writeUuid(out, therapist.getPracticeId());
+		}
+
+		@Override
+		public Therapist read(DataInput in) throws IOException {
+			Therapist therapist = new Therapist();
+			therapist.setId(readUuid(in));
+			therapist.setVersion(in.readLong());
+			therapist.setName(readString(in));
+			therapist.setEmail(readString(in));
+			therapist.setPracticeId(readUuid(in));
+			return therapist;
+		}
+	};
+
+	public static final Codec<Client> CLIENT = new Codec<Client>() {
+
+		@Override
+		public void write(DataOutput out, Client client) throws IOException {
+			writeUuid(out, client.getId());
+			out.writeLong(client.getVersion());
+			writeString(out, client.getName());
+			writeString(out, client.getEmail());
+			writeUuid(out, client.getTherapistId());
+			writeString(out, client.getPhoneNumber());
+			writeString(out, client.getAddress());
+			writeString(out, client.getJob());
+			writeDate(out, client.getBirthDate());
+			writeString(out, client.getGender());
+		}
+
+		@Override
+		public Client read(DataInput in) throws IOException {
+			Client client = new Client();
+			client.setId(readUuid(in));
+			client.setVersion(in.readLong());
+			client.setName(readString(in));
+			client.setEmail(readString(in));
+			client.setTherapistId(readUuid(in));
+			client.setPhoneNumber(readString(in));
+			client.setAddress(readString(in));
+			client.setJob(readString(in));
+			client.setBirthDate(readDate(in));
+			client.setGender(readString(in));
+			return client;
+		}
+	};
+
+	private Codecs() {
+	}
+
+	/**
+	 * Returns a codec of maps. Each entry is preceded by a continuation flag
+	 * rather than the map being preceded by its size, so a map being modified
+	 * concurrently can be written.
+	 * 
+	 * @param keyCodec   the codec of the keys.
+	 * @param valueCodec the codec of the values.
+	 * @param factory    creates the maps read back.
+	 * @return the map codec.
+	 */
+	public static <K, V> Codec<Map<K, V>> mapOf(Codec<K> keyCodec, Codec<V> valueCodec,
+			Supplier<Map<K, V>> factory) {
+		return new Codec<Map<K, V>>() {
+
+			@Override
+			public void write(DataOutput out, Map<K, V> map) throws IOException {
+				for (Map.Entry<K, V> entry : map.entrySet()) {
+					out.writeBoolean(true);
+					keyCodec.write(out, entry.getKey());
+					valueCodec.write(out, entry.getValue());
+				}
+				out.writeBoolean(false);
+			}
+
+			@Override
+			public Map<K, V> read(DataInput in) throws IOException {
+				Map<K, V> map = factory.get();
+				while (in.readBoolean())
+					map.put(keyCodec.read(in), valueCodec.read(in));
+				return map;
+			}
+		};
+	}
+
+	private static void writeUuid(DataOutput out, UUID value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			UUID.write(out, value);
+	}
+
+	private static UUID readUuid(DataInput in) throws IOException {
+		return in.readBoolean() ? UUID.read(in) : null;
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeDate(DataOutput out, Date value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeLong(value.getTime());
+	}
+
+	private static Date readDate(DataInput in) throws IOException {
+		return in.readBoolean() ? new Date(in.readLong()) : null;
+	}
+}
@@ -0,0 +1,137 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The entities of a repository as kept by a {@link StorageEngine}, each with
+ * the id of the partition it belongs to, such as the therapist of a client.
+ * 
+ * Writes are queued by the repository while the entity written is locked, so
+ * the store applies the writes to an entity in the order the repository applied
+ * them, and a write is durable once {@link #sync()} returns.
+ * 
+ * @author Sayed Baladoh
+ *
+ * @param <T> the entity type
+ */
+public interface EntityStore<T> extends Closeable {
+
+	/**
+	 * Returns the store of a repository kept in memory only: writes are dropped
+	 * and nothing is loaded.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> EntityStore<T> none() {
+		return (EntityStore<T>) None.INSTANCE;
+	}
+
+	/**
+	 * Returns whether entities are kept, so callers can skip queuing writes.
+	 * 
+	 * @return {@literal true} if entities are kept.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Queues the insert or the update of an entity.
+	 * 
+	 * @param partitionId the id of the partition of the entity.
+	 * @param id          the id of the entity.
+	 * @param entity      the entity.
+	 */
+	void save(UUID partitionId, UUID id, T entity);
+
+	/**
+	 * Queues the removal of an entity.
+	 * 
+	 * @param id the id of the entity.
+	 */
+	void delete(UUID id);
+
+	/**
+	 * Queues the removal of all entities of a partition.
+	 * 
+	 * @param partitionId the id of the partition.
+	 */
+	void deletePartition(UUID partitionId);
+
+	/**
+	 * Blocks until every write queued before this call is durable.
+	 */
+	void sync();
+
+	/**
+	 * Passes every entity kept, grouped by partition, to a handler.
+	 * 
+	 * @param handler the handler.
+	 * @throws IOException if the entities can not be read.
+	 */
+	void load(EntityHandler<T> handler) throws IOException;
+
+	/**
+	 * Returns the entities of a partition, once the writes queued so far are
+	 * durable.
+	 * 
+	 * @param partitionId the id of the partition.
+	 * @return the entities, empty if none.
+	 */
+	List<T> findByPartition(UUID partitionId);
+
+	/**
+	 * Reads a loaded entity.
+	 */
+	@FunctionalInterface
+	interface EntityHandler<T> {
+
+		void handle(UUID partitionId, T entity);
+	}
+
+	/**
+	 * The store of the repositories kept in memory only.
+	 */
+	final class None implements EntityStore<Object> {
+
+		static final None INSTANCE = new None();
+
+		private None() {
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public void save(UUID partitionId, UUID id, Object entity) {
+		}
+
+		@Override
+		public void delete(UUID id) {
+		}
+
+		@Override
+		public void deletePartition(UUID partitionId) {
+		}
+
+		@Override
+		public void sync() {
+		}
+
+		@Override
+		public void load(EntityHandler<Object> handler) {
+		}
+
+		@Override
+		public List<Object> findByPartition(UUID partitionId) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
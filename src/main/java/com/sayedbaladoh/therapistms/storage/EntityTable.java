@@ -0,0 +1,59 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The table of an entity in a relational {@link StorageEngine}: its columns,
+ * the statements creating it and its indexes, and how an entity is written to
+ * and read from a row. The first column is the id of the entity and the second
+ * the id of its partition. Engines keeping the entities as records rather
+ * than rows use the name and the {@link Codec} of the table.
+ * 
+ * @author Sayed Baladoh
+ *
+ * @param <T> the entity type
+ */
+public interface EntityTable<T> {
+
+	String getName();
+
+	/**
+	 * Returns the columns, the id first and the partition id second.
+	 */
+	List<String> getColumns();
+
+	/**
+	 * Returns the statements creating the table and its indexes if they do not
+	 * exist.
+	 */
+	List<String> getDefinitions();
+
+	/**
+	 * Binds the columns of an entity to the parameters of a statement, in the
+	 * order of {@link #getColumns()}.
+	 */
+	void write(PreparedStatement statement, UUID partitionId, T entity) throws SQLException;
+
+	/**
+	 * Reads an entity from the columns of a row, in the order of
+	 * {@link #getColumns()}.
+	 */
+	T read(ResultSet row) throws SQLException;
+
+	/**
+	 * Returns the codec of the entities.
+	 */
+	Codec<T> getCodec();
+
+	default String getIdColumn() {
+		return getColumns().get(0);
+	}
+
+	default String getPartitionColumn() {
+		return getColumns().get(1);
+	}
+}
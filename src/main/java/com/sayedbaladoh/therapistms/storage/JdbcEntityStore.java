@@ -0,0 +1,277 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+/**
+ * An entity store kept in a table of a relational database.
+ * 
+ * Writes are queued in memory and committed by group: like the write-ahead
+ * log, the first writer calling {@link #sync()} becomes the leader, waits for
+ * the group commit window so concurrent writers can queue theirs, then applies
+ * the whole queue in a single transaction while the others wait for it.
+ * Consecutive writes of the same kind are sent as one JDBC batch of a prepared
+ * statement, so a group of inserts costs one round trip rather than one per
+ * row, and writes of different kinds are applied in the order they were
+ * queued.
+ * 
+ * A failed commit fails every later sync, as memory and the table no longer
+ * match.
+ * 
+ * @author Sayed Baladoh
+ *
+ * @param <T> the entity type
+ */
+class JdbcEntityStore<T> implements EntityStore<T> {
+
+	private static final int FETCH_SIZE = 1_000;
+
+	private final DataSource dataSource;
+	private final EntityTable<T> table;
+	private final long windowNanos;
+	private final String select;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition flushed = lock.newCondition();
+	private final Condition window = lock.newCondition();
+
+	// Guarded by lock
+	private List<Write<T>> pending = new ArrayList<>();
+	private long appended;
+	private long durable;
+	private boolean flushing;
+	private SQLException failure;
+
+	JdbcEntityStore(DataSource dataSource, EntityTable<T> table, Duration groupCommitWindow) {
+		this.dataSource = dataSource;
+		this.table = table;
+		this.windowNanos = groupCommitWindow.toNanos();
+		this.select = "SELECT " + String.join(", ", table.getColumns()) + " FROM " + table.getName();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void save(UUID partitionId, UUID id, T entity) {
+		queue(new Write<>(Kind.SAVE, partitionId, id, entity));
+	}
+
+	@Override
+	public void delete(UUID id) {
+		queue(new Write<>(Kind.DELETE, null, id, null));
+	}
+
+	@Override
+	public void deletePartition(UUID partitionId) {
+		queue(new Write<>(Kind.DELETE_PARTITION, partitionId, null, null));
+	}
+
+	private void queue(Write<T> write) {
+		lock.lock();
+		try {
+			checkFailure();
+			pending.add(write);
+			appended++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void sync() {
+		lock.lock();
+		try {
+			long target = appended;
+			while (durable < target) {
+				checkFailure();
+				if (flushing) {
+					flushed.awaitUninterruptibly();
+					continue;
+				}
+				flushing = true;
+				try {
+					flush();
+				} finally {
+					flushing = false;
+					flushed.signalAll();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for the group commit window, then commits the queued writes without
+	 * holding the lock. Called by the leader with the lock held.
+	 */
+	private void flush() {
+		long remaining = windowNanos;
+		while (remaining > 0) {
+			try {
+				remaining = window.awaitNanos(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		List<Write<T>> batch = pending;
+		pending = new ArrayList<>();
+		long batchEnd = appended;
+		SQLException error = null;
+
+		lock.unlock();
+		try {
+			commit(batch);
+		} catch (SQLException e) {
+			error = e;
+		} finally {
+			lock.lock();
+		}
+
+		if (error != null)
+			failure = error;
+		else
+			durable = batchEnd;
+	}
+
+	/**
+	 * Applies writes in one transaction, sending each run of writes of the same
+	 * kind as one batch.
+	 */
+	private void commit(List<Write<T>> writes) throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try {
+				int start = 0;
+				while (start < writes.size()) {
+					Kind kind = writes.get(start).kind;
+					int end = start;
+					try (PreparedStatement statement = connection.prepareStatement(sql(kind))) {
+						for (; end < writes.size() && writes.get(end).kind == kind; end++) {
+							bind(statement, writes.get(end));
+							statement.addBatch();
+						}
+						statement.executeBatch();
+					}
+					start = end;
+				}
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			}
+		}
+	}
+
+	private String sql(Kind kind) {
+		switch (kind) {
+		case SAVE:
+			List<String> columns = table.getColumns();
+			return "MERGE INTO " + table.getName() + " (" + String.join(", ", columns) + ") KEY ("
+					+ table.getIdColumn() + ") VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?"))
+					+ ")";
+		case DELETE:
+			return "DELETE FROM " + table.getName() + " WHERE " + table.getIdColumn() + " = ?";
+		default:
+			return "DELETE FROM " + table.getName() + " WHERE " + table.getPartitionColumn() + " = ?";
+		}
+	}
+
+	private void bind(PreparedStatement statement, Write<T> write) throws SQLException {
+		switch (write.kind) {
+		case SAVE:
+			table.write(statement, write.partitionId, write.entity);
+			break;
+		case DELETE:
+			statement.setObject(1, write.id);
+			break;
+		default:
+			statement.setObject(1, write.partitionId);
+		}
+	}
+
+	@Override
+	public void load(EntityHandler<T> handler) throws IOException {
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection
+						.prepareStatement(select + " ORDER BY " + table.getPartitionColumn())) {
+			statement.setFetchSize(FETCH_SIZE);
+			try (ResultSet rows = statement.executeQuery()) {
+				while (rows.next())
+					handler.handle(rows.getObject(2, UUID.class), table.read(rows));
+			}
+		} catch (SQLException e) {
+			throw new IOException("Can not load the " + table.getName(), e);
+		}
+	}
+
+	/**
+	 * Reads the entities of a partition from the index of the partition column.
+	 */
+	@Override
+	public List<T> findByPartition(UUID partitionId) {
+		sync();
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection
+						.prepareStatement(select + " WHERE " + table.getPartitionColumn() + " = ?")) {
+			statement.setObject(1, partitionId);
+			List<T> entities = new ArrayList<>();
+			try (ResultSet rows = statement.executeQuery()) {
+				while (rows.next())
+					entities.add(table.read(rows));
+			}
+			return entities;
+		} catch (SQLException e) {
+			throw new StorageException("Can not read the " + table.getName() + " of " + partitionId, e);
+		}
+	}
+
+	/**
+	 * Commits the writes queued so far.
+	 */
+	@Override
+	public void close() {
+		sync();
+	}
+
+	private void checkFailure() {
+		if (failure != null)
+			throw new StorageException("Can not write the " + table.getName(), failure);
+	}
+
+	private enum Kind {
+		SAVE, DELETE, DELETE_PARTITION
+	}
+
+	private static final class Write<T> {
+
+		final Kind kind;
+		final UUID partitionId;
+		final UUID id;
+		final T entity;
+
+		Write(Kind kind, UUID partitionId, UUID id, T entity) {
+			this.kind = kind;
+			this.partitionId = partitionId;
+			this.id = id;
+			this.entity = entity;
+		}
+	}
+}
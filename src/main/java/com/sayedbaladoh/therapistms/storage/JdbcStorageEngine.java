@@ -0,0 +1,72 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * A storage engine keeping the entities in an embedded H2 database, in a file
+ * of the storage directory, through a pool of connections.
+ * 
+ * H2 writes a transaction to its file when it is committed
+ * (<code>WRITE_DELAY=0</code>) rather than up to a second later, so a synced
+ * write survives a crash of the process.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public class JdbcStorageEngine implements StorageEngine {
+
+	private final HikariDataSource dataSource;
+	private final Duration groupCommitWindow;
+
+	/**
+	 * @param directory         the directory of the database file.
+	 * @param poolSize          the maximum number of connections.
+	 * @param groupCommitWindow how long a commit waits for concurrent writers to
+	 *                          share its transaction.
+	 * @throws IOException if the directory can not be created.
+	 */
+	public JdbcStorageEngine(Path directory, int poolSize, Duration groupCommitWindow) throws IOException {
+		this("jdbc:h2:file:" + Files.createDirectories(directory).toAbsolutePath().resolve("therapistms")
+				+ ";WRITE_DELAY=0;DB_CLOSE_ON_EXIT=FALSE", poolSize, groupCommitWindow);
+	}
+
+	/**
+	 * @param url               the JDBC URL of the database.
+	 * @param poolSize          the maximum number of connections.
+	 * @param groupCommitWindow how long a commit waits for concurrent writers to
+	 *                          share its transaction.
+	 */
+	public JdbcStorageEngine(String url, int poolSize, Duration groupCommitWindow) {
+		HikariConfig config = new HikariConfig();
+		config.setPoolName("therapistms");
+		config.setJdbcUrl(url);
+		config.setMaximumPoolSize(poolSize);
+		this.dataSource = new HikariDataSource(config);
+		this.groupCommitWindow = groupCommitWindow;
+	}
+
+	@Override
+	public <T> EntityStore<T> open(EntityTable<T> table) {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			for (String definition : table.getDefinitions())
+				statement.execute(definition);
+		} catch (SQLException e) {
+			throw new StorageException("Can not create the table " + table.getName(), e);
+		}
+		return new JdbcEntityStore<>(dataSource, table, groupCommitWindow);
+	}
+
+	@Override
+	public void close() {
+		dataSource.close();
+	}
+}
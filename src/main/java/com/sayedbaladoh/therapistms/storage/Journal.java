@@ -0,0 +1,122 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An append-only log of the writes applied to a repository, together with the
+ * latest snapshot of the repository, used to rebuild the repository on startup.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public interface Journal extends Closeable {
+
+	/**
+	 * The journal of a repository that is not durable: records are dropped and
+	 * nothing is recovered.
+	 */
+	Journal NONE = new Journal() {
+
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public void append(byte[] record) {
+		}
+
+		@Override
+		public void sync() {
+		}
+
+		@Override
+		public long rotate() {
+			return 0;
+		}
+
+		@Override
+		public void checkpoint(long segment, RecordWriter snapshot) {
+		}
+
+		@Override
+		public void recover(RecordHandler snapshot, RecordHandler record) {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	/**
+	 * Returns whether records are kept, so callers can skip encoding them.
+	 * 
+	 * @return {@literal true} if records are kept.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Appends a record. The record is not durable before {@link #sync()}
+	 * returns.
+	 * 
+	 * @param record the record.
+	 */
+	void append(byte[] record);
+
+	/**
+	 * Blocks until every record appended before this call is durable.
+	 */
+	void sync();
+
+	/**
+	 * Makes the records appended so far durable and starts a new segment for the
+	 * next ones.
+	 * 
+	 * @return the number of the new segment.
+	 */
+	long rotate();
+
+	/**
+	 * Writes a snapshot from which recovery replays the records of the given
+	 * segment onwards, then drops the older segments. The snapshot may include
+	 * writes recorded in the given segment or later, so replaying them over the
+	 * snapshot must be idempotent.
+	 * 
+	 * @param segment  the segment returned by {@link #rotate()} before the
+	 *                 snapshot was started.
+	 * @param snapshot writes the snapshot content.
+	 * @throws IOException if the snapshot can not be written.
+	 */
+	void checkpoint(long segment, RecordWriter snapshot) throws IOException;
+
+	/**
+	 * Passes the latest snapshot, if any, to the snapshot handler, then every
+	 * durable record written after it, in append order, to the record handler.
+	 * 
+	 * @param snapshot the snapshot handler.
+	 * @param record   the record handler.
+	 * @throws IOException if the journal can not be read.
+	 */
+	void recover(RecordHandler snapshot, RecordHandler record) throws IOException;
+
+	/**
+	 * Writes a record or a snapshot.
+	 */
+	@FunctionalInterface
+	interface RecordWriter {
+
+		void write(DataOutput out) throws IOException;
+	}
+
+	/**
+	 * Reads a recovered record or snapshot.
+	 */
+	@FunctionalInterface
+	interface RecordHandler {
+
+		void handle(DataInput in) throws IOException;
+	}
+}
@@ -0,0 +1,63 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+
+import com.sayedbaladoh.therapistms.config.StorageProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opens the journals of the repositories according to the storage
+ * configuration and closes them on shutdown.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class JournalFactory {
+
+	private final StorageProperties properties;
+	private final List<Journal> journals = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Opens the journal of a repository.
+	 * 
+	 * @param name the repository name, used as the file name.
+	 * @return the journal, or {@link Journal#NONE} if storage is not durable.
+	 */
+	public Journal open(String name) {
+		if (!properties.isDurable())
+			return Journal.NONE;
+
+		try {
+			Files.createDirectories(properties.getDirectory());
+			Journal journal = new WriteAheadLog(properties.getDirectory(), name, properties.getGroupCommitWindow());
+			journals.add(journal);
+			return journal;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can not open the journal of " + name, e);
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		for (Journal journal : journals) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				log.warn("Can not close journal", e);
+			}
+		}
+	}
+}
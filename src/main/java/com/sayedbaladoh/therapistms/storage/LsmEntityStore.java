@@ -0,0 +1,195 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.sayedbaladoh.therapistms.repository.LsmRepository;
+
+/**
+ * An entity store kept in an {@link LsmRepository}, each entity being recorded
+ * with the id of its partition, and its writes in a {@link WriteAheadLog} until
+ * the memtable holding them is flushed.
+ *
+ * Writes are applied to the memtable when they are queued, so they are read
+ * back at once, and {@link #sync()} waits for the journal, sharing its fsync
+ * with concurrent writers. The tree is keyed by entity id only, so the store
+ * keeps the ids of the entities of each partition in memory, read from the
+ * tree when the store is opened, to find and delete a partition without
+ * merging the whole tree.
+ *
+ * @author Sayed Baladoh
+ *
+ * @param <T> the entity type
+ */
+class LsmEntityStore<T> implements EntityStore<T> {
+
+	private final WriteAheadLog journal;
+	private final LsmRepository<Row<T>> tree;
+	private final ConcurrentMap<UUID, UUID> partitionIds = new ConcurrentHashMap<>();
+	private final ConcurrentMap<UUID, Set<UUID>> partitions = new ConcurrentHashMap<>();
+
+	/**
+	 * Opens the tree of a table, replaying its journal, and reads the partition
+	 * of every entity.
+	 *
+	 * @param directory         the directory of the files of the tree.
+	 * @param table             the table.
+	 * @param groupCommitWindow how long a sync waits for concurrent writers to
+	 *                          share its fsync.
+	 * @throws IOException if the tree or its journal can not be read.
+	 */
+	LsmEntityStore(Path directory, EntityTable<T> table, Duration groupCommitWindow) throws IOException {
+		this.journal = new WriteAheadLog(directory, table.getName(), groupCommitWindow);
+		try {
+			this.tree = new LsmRepository<>(new RowCodec<>(table.getCodec()), directory, table.getName(), journal,
+					LsmRepository.DEFAULT_MEMTABLE_BYTES, LsmRepository.DEFAULT_COMPACTION_THREADS);
+		} catch (IOException | RuntimeException e) {
+			journal.close();
+			throw e;
+		}
+		tree.forEach((id, row) -> {
+			partitionIds.put(id, row.partitionId);
+			index(row.partitionId, id);
+		});
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void save(UUID partitionId, UUID id, T entity) {
+		UUID previous = partitionIds.put(id, partitionId);
+		if (previous != null && !previous.equals(partitionId))
+			unindex(previous, id);
+		index(partitionId, id);
+		tree.put(id, new Row<>(partitionId, entity));
+	}
+
+	@Override
+	public void delete(UUID id) {
+		UUID partitionId = partitionIds.remove(id);
+		if (partitionId == null)
+			return;
+		unindex(partitionId, id);
+		tree.remove(id);
+	}
+
+	@Override
+	public void deletePartition(UUID partitionId) {
+		Set<UUID> ids = partitions.remove(partitionId);
+		if (ids == null)
+			return;
+		for (UUID id : ids) {
+			partitionIds.remove(id, partitionId);
+			tree.remove(id);
+		}
+	}
+
+	@Override
+	public void sync() {
+		tree.sync();
+	}
+
+	/**
+	 * Passes the entities of each partition in turn, looked up by id.
+	 */
+	@Override
+	public void load(EntityHandler<T> handler) {
+		for (Map.Entry<UUID, Set<UUID>> partition : partitions.entrySet())
+			for (T entity : findByPartition(partition.getKey()))
+				handler.handle(partition.getKey(), entity);
+	}
+
+	/**
+	 * Looks the entities of a partition up by id, the writes being read back
+	 * before they are durable.
+	 */
+	@Override
+	public List<T> findByPartition(UUID partitionId) {
+		Set<UUID> ids = partitions.get(partitionId);
+		if (ids == null)
+			return Collections.emptyList();
+
+		List<T> entities = new ArrayList<>(ids.size());
+		for (UUID id : ids)
+			tree.findById(id).ifPresent(row -> entities.add(row.entity));
+		return entities;
+	}
+
+	/**
+	 * Flushes the memtable and closes the tree, then its journal.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			tree.close();
+		} finally {
+			journal.close();
+		}
+	}
+
+	private void index(UUID partitionId, UUID id) {
+		partitions.compute(partitionId, (key, ids) -> {
+			Set<UUID> partition = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+			partition.add(id);
+			return partition;
+		});
+	}
+
+	private void unindex(UUID partitionId, UUID id) {
+		partitions.computeIfPresent(partitionId, (key, ids) -> {
+			ids.remove(id);
+			return ids.isEmpty() ? null : ids;
+		});
+	}
+
+	/**
+	 * An entity and the id of its partition.
+	 */
+	private static final class Row<T> {
+
+		final UUID partitionId;
+		final T entity;
+
+		Row(UUID partitionId, T entity) {
+			this.partitionId = partitionId;
+			this.entity = entity;
+		}
+	}
+
+	/**
+	 * Writes the partition id of a row, then its entity.
+	 */
+	private static final class RowCodec<T> implements Codec<Row<T>> {
+
+		private final Codec<T> entityCodec;
+
+		RowCodec(Codec<T> entityCodec) {
+			this.entityCodec = entityCodec;
+		}
+
+		@Override
+		public void write(DataOutput out, Row<T> row) throws IOException {
+			Codecs.UUID.write(out, row.partitionId);
+			entityCodec.write(out, row.entity);
+		}
+
+		@Override
+		public Row<T> read(DataInput in) throws IOException {
+			return new Row<>(Codecs.UUID.read(in), entityCodec.read(in));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A storage engine keeping the entities of each table in a log-structured
+ * merge tree, in the <code>lsm</code> subdirectory of the storage directory,
+ * for write-heavy loads such as the bulk re-intake of clients: a write only
+ * appends to the journal of the tree, whose memtables are flushed and
+ * compacted in the background.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public class LsmStorageEngine implements StorageEngine {
+
+	private final Path directory;
+	private final Duration groupCommitWindow;
+	private final List<EntityStore<?>> stores = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param directory         the storage directory.
+	 * @param groupCommitWindow how long a sync waits for concurrent writers to
+	 *                          share its fsync.
+	 * @throws IOException if the directory can not be created.
+	 */
+	public LsmStorageEngine(Path directory, Duration groupCommitWindow) throws IOException {
+		this.directory = Files.createDirectories(directory.resolve("lsm"));
+		this.groupCommitWindow = groupCommitWindow;
+	}
+
+	@Override
+	public <T> EntityStore<T> open(EntityTable<T> table) {
+		try {
+			EntityStore<T> store = new LsmEntityStore<>(directory, table, groupCommitWindow);
+			stores.add(store);
+			return store;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can not open the tree of the " + table.getName(), e);
+		}
+	}
+
+	/**
+	 * Closes the stores opened, flushing their memtables.
+	 * 
+	 * @throws IOException if a store can not be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for (EntityStore<?> store : stores) {
+			try {
+				store.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+}
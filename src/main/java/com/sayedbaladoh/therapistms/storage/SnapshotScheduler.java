@@ -0,0 +1,39 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.sayedbaladoh.therapistms.repository.InMemoryRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Periodically snapshots the durable repositories in the background.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+@ConditionalOnProperty(name = "therapistms.storage.durable", havingValue = "true")
+public class SnapshotScheduler {
+
+	private final List<InMemoryRepository<?, ?>> repositories;
+
+	@Scheduled(initialDelayString = "${therapistms.storage.snapshot-interval}", fixedDelayString = "${therapistms.storage.snapshot-interval}")
+	public void snapshot() {
+		for (InMemoryRepository<?, ?> repository : repositories) {
+			try {
+				repository.checkpoint();
+			} catch (IOException e) {
+				log.error("Can not snapshot {}", repository.getClass().getSimpleName(), e);
+			}
+		}
+	}
+}
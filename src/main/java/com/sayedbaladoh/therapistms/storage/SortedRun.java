@@ -0,0 +1,407 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * An immutable file of records sorted by id, as flushed or compacted by a
+ * log-structured merge repository.
+ *
+ * The records are laid out in order, each as its id, the length of its value
+ * and the value, a length of -1 marking a deleted id. They are followed by a
+ * sparse index, the first id and the offset of every block of about
+ * {@value #BLOCK_SIZE} bytes, a {@link BloomFilter} of the ids and a trailer
+ * locating both. The index and the filter are kept on the heap once the run
+ * is opened, so looking an id up reads nothing from the file unless the filter
+ * lets it through, and then one block.
+ *
+ * A run is written to a temporary file, forced to disk and renamed, so a run
+ * file is either complete or absent. Reads are positional, so any number of
+ * threads can read a run at once.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public final class SortedRun implements Closeable {
+
+	/**
+	 * The value of a deleted id, compared by identity.
+	 */
+	public static final byte[] TOMBSTONE = new byte[0];
+
+	public static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * The bytes of a record besides its value.
+	 */
+	public static final int ENTRY_HEADER = 2 * Long.BYTES + Integer.BYTES;
+
+	private static final long MAGIC = 0x5468657261707953L;
+	private static final int TRAILER = 4 * Long.BYTES;
+
+	private final Path file;
+	private final FileChannel channel;
+	private final UUID[] blockIds;
+	private final long[] blockOffsets;
+	private final BloomFilter filter;
+	private final long indexOffset;
+	private final long entries;
+	private final long size;
+
+	private SortedRun(Path file, FileChannel channel, UUID[] blockIds, long[] blockOffsets, BloomFilter filter,
+			long indexOffset, long entries, long size) {
+		this.file = file;
+		this.channel = channel;
+		this.blockIds = blockIds;
+		this.blockOffsets = blockOffsets;
+		this.filter = filter;
+		this.indexOffset = indexOffset;
+		this.entries = entries;
+		this.size = size;
+	}
+
+	/**
+	 * Writes a run and opens it.
+	 *
+	 * @param file            the file of the run.
+	 * @param entries         the records, in increasing order of id.
+	 * @param expectedEntries about the number of records, to size the filter.
+	 * @return the run.
+	 * @throws IOException if the run can not be written.
+	 */
+	public static SortedRun write(Path file, Iterator<Entry> entries, long expectedEntries) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		BloomFilter filter = new BloomFilter(expectedEntries);
+		List<UUID> blockIds = new ArrayList<>();
+		List<Long> blockOffsets = new ArrayList<>();
+		long count = 0;
+		try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+			long position = 0;
+			long blockStart = -BLOCK_SIZE;
+			UUID previous = null;
+			while (entries.hasNext()) {
+				Entry entry = entries.next();
+				if (previous != null && previous.compareTo(entry.getId()) >= 0)
+					throw new IllegalArgumentException("Entries out of order: " + entry.getId() + " after " + previous);
+				previous = entry.getId();
+				if (position - blockStart >= BLOCK_SIZE) {
+					blockIds.add(entry.getId());
+					blockOffsets.add(position);
+					blockStart = position;
+				}
+				long msb = entry.getId().getMostSignificantBits();
+				long lsb = entry.getId().getLeastSignificantBits();
+				out.writeLong(msb);
+				out.writeLong(lsb);
+				if (entry.isDeleted()) {
+					out.writeInt(-1);
+				} else {
+					out.writeInt(entry.getValue().length);
+					out.write(entry.getValue());
+				}
+				position += ENTRY_HEADER + (entry.isDeleted() ? 0 : entry.getValue().length);
+				filter.add(msb, lsb);
+				count++;
+			}
+			long indexOffset = position;
+			out.writeInt(blockIds.size());
+			for (int i = 0; i < blockIds.size(); i++) {
+				out.writeLong(blockIds.get(i).getMostSignificantBits());
+				out.writeLong(blockIds.get(i).getLeastSignificantBits());
+				out.writeLong(blockOffsets.get(i));
+			}
+			long filterOffset = indexOffset + Integer.BYTES + (long) blockIds.size() * 3 * Long.BYTES;
+			filter.write(out);
+			out.writeLong(indexOffset);
+			out.writeLong(filterOffset);
+			out.writeLong(count);
+			out.writeLong(MAGIC);
+			out.flush();
+			stream.getFD().sync();
+		}
+		Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+		return open(file);
+	}
+
+	/**
+	 * Opens a run, reading its index and filter.
+	 *
+	 * @param file the file of the run.
+	 * @return the run.
+	 * @throws IOException if the run can not be read or is not a complete run.
+	 */
+	public static SortedRun open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < TRAILER)
+				throw new IOException("Truncated run " + file);
+			ByteBuffer trailer = ByteBuffer.allocate(TRAILER);
+			readFully(channel, trailer, size - TRAILER);
+			long indexOffset = trailer.getLong(0);
+			long filterOffset = trailer.getLong(Long.BYTES);
+			long entries = trailer.getLong(2 * Long.BYTES);
+			if (trailer.getLong(3 * Long.BYTES) != MAGIC || indexOffset > filterOffset || filterOffset > size)
+				throw new IOException("Not a run " + file);
+			ByteBuffer metadata = ByteBuffer.allocate((int) (size - TRAILER - indexOffset));
+			readFully(channel, metadata, indexOffset);
+			metadata.flip();
+			ByteBufferDataInput in = new ByteBufferDataInput(metadata);
+			int blocks = in.readInt();
+			UUID[] blockIds = new UUID[blocks];
+			long[] blockOffsets = new long[blocks];
+			for (int i = 0; i < blocks; i++) {
+				blockIds[i] = new UUID(in.readLong(), in.readLong());
+				blockOffsets[i] = in.readLong();
+			}
+			BloomFilter filter = BloomFilter.read(in);
+			return new SortedRun(file, channel, blockIds, blockOffsets, filter, indexOffset, entries, size);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Looks an id up.
+	 *
+	 * @param id the id.
+	 * @return the value of the id, {@link #TOMBSTONE} if it is deleted in this
+	 *         run, {@literal null} if the run does not hold it.
+	 */
+	public byte[] get(UUID id) {
+		long msb = id.getMostSignificantBits();
+		long lsb = id.getLeastSignificantBits();
+		if (!filter.mightContain(msb, lsb))
+			return null;
+		int block = block(id);
+		if (block < 0)
+			return null;
+		ByteBuffer buffer = readBlock(block);
+		while (buffer.hasRemaining()) {
+			long entryMsb = buffer.getLong();
+			long entryLsb = buffer.getLong();
+			int length = buffer.getInt();
+			int order = entryMsb != msb ? Long.compare(entryMsb, msb) : Long.compare(entryLsb, lsb);
+			if (order > 0)
+				return null;
+			if (order == 0) {
+				if (length < 0)
+					return TOMBSTONE;
+				byte[] value = new byte[length];
+				buffer.get(value);
+				return value;
+			}
+			if (length > 0)
+				buffer.position(buffer.position() + length);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the records of the run in order, reading one block at a time.
+	 */
+	public Iterator<Entry> iterator() {
+		return new Iterator<Entry>() {
+
+			private int block;
+			private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+			@Override
+			public boolean hasNext() {
+				while (!buffer.hasRemaining() && block < blockOffsets.length)
+					buffer = readBlock(block++);
+				return buffer.hasRemaining();
+			}
+
+			@Override
+			public Entry next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				UUID id = new UUID(buffer.getLong(), buffer.getLong());
+				int length = buffer.getInt();
+				if (length < 0)
+					return new Entry(id, TOMBSTONE);
+				byte[] value = new byte[length];
+				buffer.get(value);
+				return new Entry(id, value);
+			}
+		};
+	}
+
+	/**
+	 * Merges runs, or any iterators of records in increasing order of id, into
+	 * one, keeping only the record from the first of the sources holding an id.
+	 *
+	 * @param sources the sources, the newest first.
+	 * @param live    whether to skip the ids whose kept record is a deletion.
+	 * @return the records in increasing order of id.
+	 */
+	public static Iterator<Entry> merge(List<Iterator<Entry>> sources, boolean live) {
+		PriorityQueue<Head> heads = new PriorityQueue<>();
+		for (int i = 0; i < sources.size(); i++)
+			if (sources.get(i).hasNext())
+				heads.add(new Head(i, sources.get(i)));
+		return new Iterator<Entry>() {
+
+			private Entry next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && !heads.isEmpty()) {
+					Head head = heads.poll();
+					Entry entry = head.entry;
+					advance(head);
+					while (!heads.isEmpty() && heads.peek().entry.getId().equals(entry.getId()))
+						advance(heads.poll());
+					if (!live || !entry.isDeleted())
+						next = entry;
+				}
+				return next != null;
+			}
+
+			@Override
+			public Entry next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Entry entry = next;
+				next = null;
+				return entry;
+			}
+
+			private void advance(Head head) {
+				if (head.source.hasNext()) {
+					head.entry = head.source.next();
+					heads.add(head);
+				}
+			}
+		};
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the number of records, deleted ids included.
+	 */
+	public long entries() {
+		return entries;
+	}
+
+	/**
+	 * Returns the bytes of the file.
+	 */
+	public long sizeInBytes() {
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns the last block whose first id is not after the given one, -1 if
+	 * the id is before the first block.
+	 */
+	private int block(UUID id) {
+		int low = 0;
+		int high = blockIds.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (blockIds[middle].compareTo(id) <= 0)
+				low = middle + 1;
+			else
+				high = middle - 1;
+		}
+		return high;
+	}
+
+	private ByteBuffer readBlock(int block) {
+		long start = blockOffsets[block];
+		long end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : indexOffset;
+		ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+		try {
+			readFully(channel, buffer, start);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can not read " + file, e);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException();
+	}
+
+	/**
+	 * A record of a run: an id and its value, {@link #TOMBSTONE} if the id is
+	 * deleted.
+	 */
+	public static final class Entry {
+
+		private final UUID id;
+		private final byte[] value;
+
+		public Entry(UUID id, byte[] value) {
+			this.id = id;
+			this.value = value;
+		}
+
+		public UUID getId() {
+			return id;
+		}
+
+		public byte[] getValue() {
+			return value;
+		}
+
+		public boolean isDeleted() {
+			return value == TOMBSTONE;
+		}
+	}
+
+	/**
+	 * The current record of a merged source, ordered by id, then by source so
+	 * the newest source comes first.
+	 */
+	private static final class Head implements Comparable<Head> {
+
+		final int order;
+		final Iterator<Entry> source;
+		Entry entry;
+
+		Head(int order, Iterator<Entry> source) {
+			this.order = order;
+			this.source = source;
+			this.entry = source.next();
+		}
+
+		@Override
+		public int compareTo(Head other) {
+			int compare = entry.getId().compareTo(other.entry.getId());
+			return compare != 0 ? compare : Integer.compare(order, other.order);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps records evicted from memory in segment files until they are read back.
+ *
+ * Records are appended to the current segment, after their length, and a
+ * segment is rolled once it reaches its size. The location of a record is its
+ * segment number in the high 24 bits and its offset in the low 40. Freeing a
+ * record counts it out of its segment, and a segment is deleted once none of
+ * its records is live and it is not the current one, so the files hold the
+ * records spilled in the meantime rather than all records ever spilled.
+ *
+ * Spilled records are a cache of the records in memory, not a durable copy:
+ * the files left by a previous run are deleted when the store is opened.
+ * Records are read with positional reads, which do not block each other;
+ * appends and frees are serialized. A record must not be read once freed.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class SpillStore implements Closeable {
+
+	public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final int HEADER = Integer.BYTES;
+	private static final int OFFSET_BITS = 40;
+	private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+	private final Path directory;
+	private final String name;
+	private final long segmentSize;
+	private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+	private Segment current;
+	private int nextNumber;
+
+	public SpillStore(Path directory, String name) throws IOException {
+		this(directory, name, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param directory   the directory of the segment files.
+	 * @param name        the name of the store, used as the prefix of its files.
+	 * @param segmentSize the size from which a segment is rolled.
+	 * @throws IOException if the directory can not be created or cleaned.
+	 */
+	public SpillStore(Path directory, String name, long segmentSize) throws IOException {
+		if (segmentSize <= 0 || segmentSize > OFFSET_MASK)
+			throw new IllegalArgumentException("segmentSize must be positive and less than 1 TB.");
+		this.directory = directory;
+		this.name = name;
+		this.segmentSize = segmentSize;
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, name + "-*.spill")) {
+			for (Path file : files)
+				Files.delete(file);
+		}
+	}
+
+	/**
+	 * Appends a record to the current segment.
+	 *
+	 * @param record the bytes of the record.
+	 * @return the location of the record.
+	 */
+	public synchronized long write(byte[] record) {
+		try {
+			if (current == null || current.size >= segmentSize)
+				roll();
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER + record.length);
+			buffer.putInt(record.length).put(record).flip();
+			long offset = current.size;
+			while (buffer.hasRemaining())
+				current.channel.write(buffer, offset + buffer.position());
+			current.size += buffer.limit();
+			current.live++;
+			return (long) current.number << OFFSET_BITS | offset;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can not spill to " + directory, e);
+		}
+	}
+
+	/**
+	 * Reads a record back.
+	 *
+	 * @param location the location returned when it was written.
+	 * @return the bytes of the record.
+	 */
+	public byte[] read(long location) {
+		Segment segment = segment(location);
+		long offset = location & OFFSET_MASK;
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			readFully(segment.channel, header, offset);
+			ByteBuffer record = ByteBuffer.allocate(header.getInt(0));
+			readFully(segment.channel, record, offset + HEADER);
+			return record.array();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can not read back " + segment.file, e);
+		}
+	}
+
+	/**
+	 * Frees a record, deleting its segment if it was the last live one of a
+	 * segment no longer written.
+	 */
+	public synchronized void free(long location) {
+		Segment segment = segment(location);
+		if (--segment.live == 0 && segment != current)
+			delete(segment);
+	}
+
+	/**
+	 * Returns the bytes of the segment files, freed records included.
+	 */
+	public long fileBytes() {
+		long bytes = 0;
+		for (Segment segment : segments.values())
+			bytes += segment.size;
+		return bytes;
+	}
+
+	/**
+	 * Closes and deletes the segment files.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		for (Segment segment : segments.values())
+			delete(segment);
+		current = null;
+	}
+
+	private void roll() throws IOException {
+		if (current != null && current.live == 0)
+			delete(current);
+		int number = nextNumber++;
+		Path file = directory.resolve(String.format("%s-%08d.spill", name, number));
+		current = new Segment(number, file, FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE));
+		segments.put(number, current);
+	}
+
+	private void delete(Segment segment) {
+		segments.remove(segment.number);
+		try {
+			segment.channel.close();
+			Files.deleteIfExists(segment.file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can not delete " + segment.file, e);
+		}
+	}
+
+	private Segment segment(long location) {
+		Segment segment = segments.get((int) (location >>> OFFSET_BITS));
+		if (segment == null)
+			throw new IllegalArgumentException("No record at " + Long.toHexString(location));
+		return segment;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException();
+	}
+
+	private static final class Segment {
+
+		final int number;
+		final Path file;
+		final FileChannel channel;
+		volatile long size;
+		int live;
+
+		Segment(int number, Path file, FileChannel channel) {
+			this.number = number;
+			this.file = file;
+			this.channel = channel;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.Closeable;
+
+/**
+ * Where the repositories keep their entities beyond their memory: the
+ * repositories serve every read from memory and write through to the stores
+ * the engine opens, from which they are loaded on startup.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public interface StorageEngine extends Closeable {
+
+	/**
+	 * The engine of repositories kept in memory only, or in their journals.
+	 */
+	StorageEngine MEMORY = new StorageEngine() {
+
+		@Override
+		public <T> EntityStore<T> open(EntityTable<T> table) {
+			return EntityStore.none();
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	/**
+	 * Opens the store of the entities of a table, creating the table if needed.
+	 * 
+	 * @param table the table.
+	 * @return the store.
+	 */
+	<T> EntityStore<T> open(EntityTable<T> table);
+}
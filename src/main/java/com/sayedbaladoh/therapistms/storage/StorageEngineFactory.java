@@ -0,0 +1,79 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+
+import com.sayedbaladoh.therapistms.config.StorageProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Starts the storage engine chosen by the storage configuration, opens the
+ * entity stores of the repositories on it, and closes them on shutdown.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class StorageEngineFactory {
+
+	private final StorageProperties properties;
+	private final List<EntityStore<?>> stores = new CopyOnWriteArrayList<>();
+	private StorageEngine engine;
+
+	/**
+	 * Opens the entity store of a repository.
+	 * 
+	 * @param table the table of the entities.
+	 * @return the store, or {@link EntityStore#none()} if the entities are kept
+	 *         in memory only.
+	 */
+	public synchronized <T> EntityStore<T> open(EntityTable<T> table) {
+		if (engine == null)
+			engine = start();
+		EntityStore<T> store = engine.open(table);
+		stores.add(store);
+		return store;
+	}
+
+	private StorageEngine start() {
+		if (properties.getEngine() == StorageProperties.Engine.MEMORY)
+			return StorageEngine.MEMORY;
+
+		try {
+			if (properties.getEngine() == StorageProperties.Engine.LSM)
+				return new LsmStorageEngine(properties.getDirectory(), properties.getGroupCommitWindow());
+			return new JdbcStorageEngine(properties.getDirectory(), properties.getConnectionPoolSize(),
+					properties.getGroupCommitWindow());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can not start the storage engine", e);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void close() {
+		for (EntityStore<?> store : stores) {
+			try {
+				store.close();
+			} catch (IOException | RuntimeException e) {
+				log.warn("Can not close entity store", e);
+			}
+		}
+		if (engine != null) {
+			try {
+				engine.close();
+			} catch (IOException e) {
+				log.warn("Can not close storage engine", e);
+			}
+		}
+	}
+}
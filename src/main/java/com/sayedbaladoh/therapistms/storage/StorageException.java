@@ -0,0 +1,16 @@
+package com.sayedbaladoh.therapistms.storage;
+
+/**
+ * Thrown when a {@link StorageEngine} can not apply or read back a write.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public class StorageException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public StorageException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
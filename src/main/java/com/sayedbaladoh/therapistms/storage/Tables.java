@@ -0,0 +1,145 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.model.Therapist;
+
+/**
+ * The tables of the entities, one column per field. The clients are
+ * partitioned by therapist and indexed by therapist id, so the clients of a
+ * therapist are read without scanning the table; the therapists are
+ * partitioned by practice.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public final class Tables {
+
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+
+	public static final EntityTable<Therapist> THERAPISTS = new EntityTable<Therapist>() {
+
+		@Override
+		public String getName() {
+			return "therapists";
+		}
+
+		@Override
+		public List<String> getColumns() {
+			return Arrays.asList("id", "practice_id", "version", "name", "email");
+		}
+
+		@Override
+		public List<String> getDefinitions() {
+			return Arrays.asList("CREATE TABLE IF NOT EXISTS therapists (id UUID PRIMARY KEY, practice_id UUID, "
+					+ "version BIGINT NOT NULL, name VARCHAR(255), email VARCHAR(255))",
+					"CREATE INDEX IF NOT EXISTS therapists_practice_id ON therapists (practice_id)");
+		}
+
+		@Override
+		public void write(PreparedStatement statement, UUID practiceId, Therapist therapist) throws SQLException {
+			statement.setObject(1, therapist.getId());
+			statement.setObject(2, practiceId);
+			statement.setLong(3, therapist.getVersion());
+			statement.setString(4, therapist.getName());
+			statement.setString(5, therapist.getEmail());
+		}
+
+		@Override
+		public Therapist read(ResultSet row) throws SQLException {
+			Therapist therapist = new Therapist();
+			therapist.setId(row.getObject(1, UUID.class));
+			therapist.setPracticeId(row.getObject(2, UUID.class));
+			therapist.setVersion(row.getLong(3));
+			therapist.setName(row.getString(4));
+			therapist.setEmail(row.getString(5));
+			return therapist;
+		}
+
+		@Override
+		public Codec<Therapist> getCodec() {
+			return Codecs.THERAPIST;
+		}
+	};
+
+	public static final EntityTable<Client> CLIENTS = new EntityTable<Client>() {
+
+		@Override
+		public String getName() {
+			return "clients";
+		}
+
+		@Override
+		public List<String> getColumns() {
+			return Arrays.asList("id", "therapist_id", "version", "name", "email", "phone_number", "address", "job",
+					"birth_date", "gender");
+		}
+
+		@Override
+		public List<String> getDefinitions() {
+			return Arrays.asList("CREATE TABLE IF NOT EXISTS clients (id UUID PRIMARY KEY, therapist_id UUID NOT NULL, "
+					+ "version BIGINT NOT NULL, name VARCHAR(255), email VARCHAR(255), phone_number VARCHAR(64), "
+					+ "address VARCHAR(1024), job VARCHAR(255), birth_date DATE, gender VARCHAR(16))",
+					"CREATE INDEX IF NOT EXISTS clients_therapist_id ON clients (therapist_id)");
+		}
+
+		@Override
+		public void write(PreparedStatement statement, UUID therapistId, Client client) throws SQLException {
+			statement.setObject(1, client.getId());
+			statement.setObject(2, therapistId);
+			statement.setLong(3, client.getVersion());
+			statement.setString(4, client.getName());
+			statement.setString(5, client.getEmail());
+			statement.setString(6, client.getPhoneNumber());
+			statement.setString(7, client.getAddress());
+			statement.setString(8, client.getJob());
+			statement.setObject(9, day(client.getBirthDate()));
+			statement.setString(10, client.getGender());
+		}
+
+		@Override
+		public Client read(ResultSet row) throws SQLException {
+			Client client = new Client();
+			client.setId(row.getObject(1, UUID.class));
+			client.setTherapistId(row.getObject(2, UUID.class));
+			client.setVersion(row.getLong(3));
+			client.setName(row.getString(4));
+			client.setEmail(row.getString(5));
+			client.setPhoneNumber(row.getString(6));
+			client.setAddress(row.getString(7));
+			client.setJob(row.getString(8));
+			client.setBirthDate(date(row.getObject(9, LocalDate.class)));
+			client.setGender(row.getString(10));
+			return client;
+		}
+
+		@Override
+		public Codec<Client> getCodec() {
+			return Codecs.CLIENT;
+		}
+	};
+
+	private Tables() {
+	}
+
+	/**
+	 * Returns the UTC day of a date, the clients keeping their birth date as a
+	 * day.
+	 */
+	private static LocalDate day(Date date) {
+		return date == null ? null : LocalDate.ofEpochDay(Math.floorDiv(date.getTime(), MILLIS_PER_DAY));
+	}
+
+	private static Date date(LocalDate day) {
+		return day == null ? null : Date.from(day.atStartOfDay(ZoneOffset.UTC).toInstant());
+	}
+}
@@ -0,0 +1,394 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A journal kept in local files: numbered log segments
+ * (<code>name.00000001.wal</code>, ...) and a snapshot
+ * (<code>name.snapshot</code>) telling from which segment to replay.
+ * 
+ * Each record is framed by its length and its CRC32, so a record torn by a
+ * crash is detected and dropped on replay. Records are never empty, so a tail
+ * the crash left zero filled, whose zero length and checksum would pass the
+ * CRC32 of nothing, is dropped too. Segments and snapshots start with a
+ * header holding the {@link Codecs#FORMAT_VERSION} they were written with, and
+ * recovery fails on files of another version rather than misreading them.
+ * 
+ * With a group commit window, the first writer calling {@link #sync()} becomes
+ * the leader: it waits for the window so concurrent writers can append, then
+ * writes the whole batch with a single fsync while the others wait for it.
+ * With a zero window every record is written and fsynced by
+ * {@link #append(byte[])} itself.
+ * 
+ * The snapshot is written to a temporary file, fsynced and atomically renamed,
+ * and is read back through a <code>MappedByteBuffer</code>.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+@Slf4j
+public class WriteAheadLog implements Journal {
+
+	private static final int SNAPSHOT_MAGIC = 0x544d5353;
+	private static final int SEGMENT_MAGIC = 0x544d574c;
+	private static final int SEGMENT_HEADER = Integer.BYTES + Byte.BYTES;
+
+	private final Path directory;
+	private final String name;
+	private final Pattern segmentPattern;
+	private final long windowNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition flushed = lock.newCondition();
+	private final Condition window = lock.newCondition();
+
+	// Guarded by lock
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private final DataOutputStream pendingOut = new DataOutputStream(pending);
+	private FileChannel channel;
+	private long segment;
+	private long appended;
+	private long durable;
+	private boolean flushing;
+	private IOException failure;
+
+	public WriteAheadLog(Path directory, String name, Duration groupCommitWindow) throws IOException {
+		this.directory = directory;
+		this.name = name;
+		this.segmentPattern = Pattern.compile(Pattern.quote(name) + "\\.(\\d+)\\.wal");
+		this.windowNanos = groupCommitWindow.toNanos();
+
+		List<Long> segments = segments();
+		this.segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+		this.channel = openSegment(segment);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void append(byte[] record) {
+		if (record.length == 0)
+			throw new IllegalArgumentException("A journal record can not be empty.");
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, record.length);
+
+		lock.lock();
+		try {
+			checkFailure();
+			try {
+				pendingOut.writeInt(record.length);
+				pendingOut.writeInt((int) crc.getValue());
+				pendingOut.write(record);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			appended++;
+
+			if (windowNanos == 0)
+				flushNow();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void sync() {
+		lock.lock();
+		try {
+			long target = appended;
+			while (durable < target) {
+				checkFailure();
+				if (flushing) {
+					flushed.awaitUninterruptibly();
+					continue;
+				}
+				flushing = true;
+				try {
+					flush();
+				} finally {
+					flushing = false;
+					flushed.signalAll();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for the group commit window, then writes and fsyncs the pending batch
+	 * without holding the lock. Called by the leader with the lock held.
+	 */
+	private void flush() {
+		long remaining = windowNanos;
+		while (remaining > 0) {
+			try {
+				remaining = window.awaitNanos(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		ByteBuffer batch = takePending();
+		long batchEnd = appended;
+		FileChannel target = channel;
+		IOException error = null;
+
+		lock.unlock();
+		try {
+			write(target, batch);
+			target.force(false);
+		} catch (IOException e) {
+			error = e;
+		} finally {
+			lock.lock();
+		}
+
+		if (error != null)
+			failure = error;
+		else
+			durable = batchEnd;
+	}
+
+	/**
+	 * Writes and fsyncs the pending records while holding the lock.
+	 */
+	private void flushNow() {
+		try {
+			write(channel, takePending());
+			channel.force(false);
+			durable = appended;
+		} catch (IOException e) {
+			failure = e;
+			checkFailure();
+		}
+	}
+
+	@Override
+	public long rotate() {
+		lock.lock();
+		try {
+			while (flushing)
+				flushed.awaitUninterruptibly();
+			checkFailure();
+			flushNow();
+			try {
+				channel.close();
+				channel = openSegment(++segment);
+			} catch (IOException e) {
+				failure = e;
+				checkFailure();
+			}
+			return segment;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void checkpoint(long fromSegment, RecordWriter snapshot) throws IOException {
+		Path temporary = directory.resolve(name + ".snapshot.tmp");
+		try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeByte(Codecs.FORMAT_VERSION);
+			out.writeLong(fromSegment);
+			snapshot.write(out);
+			out.flush();
+			file.getFD().sync();
+		}
+		Files.move(temporary, snapshotPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		for (long old : segments())
+			if (old < fromSegment)
+				Files.deleteIfExists(segmentPath(old));
+		log.info("Wrote snapshot {} replaying from segment {}", snapshotPath(), fromSegment);
+	}
+
+	/**
+	 * Loads the snapshot, then replays the segments it does not cover. A torn
+	 * record at the end of the last segment is dropped and the segment truncated,
+	 * so it is not followed by new records.
+	 */
+	@Override
+	public void recover(RecordHandler snapshot, RecordHandler record) throws IOException {
+		lock.lock();
+		try {
+			long fromSegment = 0;
+			if (Files.exists(snapshotPath()))
+				fromSegment = loadSnapshot(snapshot);
+
+			long records = 0;
+			for (long replayed : segments()) {
+				if (replayed < fromSegment)
+					continue;
+				try (FileChannel segmentChannel = FileChannel.open(segmentPath(replayed), StandardOpenOption.READ)) {
+					records += replay(replayed, segmentChannel, record);
+				}
+			}
+			log.info("Replayed {} records of {} from segment {}", records, name, fromSegment);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private long loadSnapshot(RecordHandler handler) throws IOException {
+		try (FileChannel snapshotChannel = FileChannel.open(snapshotPath(), StandardOpenOption.READ)) {
+			if (snapshotChannel.size() > Integer.MAX_VALUE)
+				throw new IOException("Snapshot " + snapshotPath() + " is larger than 2GB");
+			MappedByteBuffer buffer = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotChannel.size());
+			ByteBufferDataInput in = new ByteBufferDataInput(buffer);
+			if (in.readInt() != SNAPSHOT_MAGIC)
+				throw new IOException("Invalid snapshot " + snapshotPath());
+			checkVersion(in.readByte(), snapshotPath());
+			long fromSegment = in.readLong();
+			handler.handle(in);
+			return fromSegment;
+		}
+	}
+
+	private long replay(long replayed, FileChannel segmentChannel, RecordHandler handler) throws IOException {
+		long size = segmentChannel.size();
+		if (size < SEGMENT_HEADER)
+			return 0;
+		long valid = SEGMENT_HEADER;
+		long records = 0;
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Channels.newInputStream(segmentChannel), 1 << 16));
+		if (in.readInt() != SEGMENT_MAGIC)
+			throw new IOException("Invalid journal segment " + segmentPath(replayed));
+		checkVersion(in.readByte(), segmentPath(replayed));
+		while (true) {
+			byte[] record;
+			try {
+				int length = in.readInt();
+				int checksum = in.readInt();
+				if (length <= 0 || length > size - valid)
+					break;
+				record = new byte[length];
+				in.readFully(record);
+				CRC32 crc = new CRC32();
+				crc.update(record, 0, length);
+				if ((int) crc.getValue() != checksum)
+					break;
+			} catch (EOFException e) {
+				break;
+			}
+			handler.handle(new DataInputStream(new ByteArrayInputStream(record)));
+			valid += 8 + record.length;
+			records++;
+		}
+
+		if (valid < size) {
+			if (replayed != segment)
+				throw new IOException("Corrupt record in sealed segment " + segmentPath(replayed));
+			log.warn("Truncating {} bytes of torn records at the end of {}", size - valid, segmentPath(replayed));
+			channel.truncate(valid);
+			channel.position(valid);
+		}
+		return records;
+	}
+
+	private List<Long> segments() throws IOException {
+		List<Long> segments = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Matcher matcher = segmentPattern.matcher(file.getFileName().toString());
+				if (matcher.matches())
+					segments.add(Long.parseLong(matcher.group(1)));
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	/**
+	 * Opens a segment for appending, writing its header if it is new or was
+	 * created but not written by a crashed process.
+	 */
+	private FileChannel openSegment(long number) throws IOException {
+		FileChannel opened = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (opened.size() < SEGMENT_HEADER) {
+			opened.truncate(0);
+			write(opened, (ByteBuffer) ByteBuffer.allocate(SEGMENT_HEADER).putInt(SEGMENT_MAGIC)
+					.put(Codecs.FORMAT_VERSION).flip());
+		}
+		opened.position(opened.size());
+		return opened;
+	}
+
+	private static void checkVersion(byte version, Path file) throws IOException {
+		if (version != Codecs.FORMAT_VERSION)
+			throw new IOException("Unsupported format version " + version + " of " + file + ", expected "
+					+ Codecs.FORMAT_VERSION);
+	}
+
+	private Path segmentPath(long number) {
+		return directory.resolve(String.format("%s.%08d.wal", name, number));
+	}
+
+	private Path snapshotPath() {
+		return directory.resolve(name + ".snapshot");
+	}
+
+	private ByteBuffer takePending() {
+		ByteBuffer batch = ByteBuffer.wrap(pending.toByteArray());
+		pending.reset();
+		return batch;
+	}
+
+	private static void write(FileChannel target, ByteBuffer batch) throws IOException {
+		while (batch.hasRemaining())
+			target.write(batch);
+	}
+
+	private void checkFailure() {
+		if (failure != null)
+			throw new UncheckedIOException("Write-ahead log " + name + " failed", failure);
+	}
+
+	@Override
+	public void close() throws IOException {
+		sync();
+		lock.lock();
+		try {
+			channel.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.sayedbaladoh.therapistms.util;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Entity tag helpers. The tag of an entity is its version, quoted, so it is
+ * checked against the <code>If-Match</code> and <code>If-None-Match</code>
+ * headers without mapping the entity.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public final class ETags {
+
+	private ETags() {
+	}
+
+	public static String of(long version) {
+		return "\"" + version + "\"";
+	}
+
+	/**
+	 * Returns the headers of a response holding an entity: its
+	 * <code>ETag</code>.
+	 * 
+	 * @param version the version of the entity.
+	 * @return the headers.
+	 */
+	public static HttpHeaders headers(long version) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(of(version));
+		return headers;
+	}
+
+	/**
+	 * Tells whether an entity matches an <code>If-None-Match</code> header,
+	 * comparing the tags weakly, so a GET is answered with
+	 * <code>304 Not Modified</code>.
+	 * 
+	 * @param ifNoneMatch the header, may be {@literal null}.
+	 * @param version     the version of the entity.
+	 * @return {@literal true} if the entity was not modified.
+	 */
+	public static boolean isNotModified(String ifNoneMatch, long version) {
+		return ifNoneMatch != null && matches(ifNoneMatch, version, true);
+	}
+
+	/**
+	 * Tells whether an entity matches an <code>If-Match</code> header, comparing
+	 * the tags strongly, so an update of the entity may go on.
+	 * 
+	 * @param ifMatch the header, may be {@literal null} for an unconditional
+	 *                update.
+	 * @param version the version of the entity.
+	 * @return {@literal true} if the update may go on.
+	 */
+	public static boolean isPreconditionMet(String ifMatch, long version) {
+		return ifMatch == null || matches(ifMatch, version, false);
+	}
+
+	private static boolean matches(String header, long version, boolean weak) {
+		String tag = of(version);
+		for (String candidate : header.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*"))
+				return true;
+			if (weak && candidate.startsWith("W/"))
+				candidate = candidate.substring(2);
+			if (candidate.equals(tag))
+				return true;
+		}
+		return false;
+	}
+}
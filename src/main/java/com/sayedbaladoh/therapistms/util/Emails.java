@@ -0,0 +1,45 @@
+package com.sayedbaladoh.therapistms.util;
+
+import java.util.Locale;
+
+/**
+ * Email helpers.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public final class Emails {
+
+	private Emails() {
+	}
+
+	/**
+	 * Normalizes an email for the unique email indexes, so emails differing only
+	 * by case or surrounding blanks are the same.
+	 *
+	 * Emails are normalized on every write, and most are already lower case
+	 * ASCII, which is checked first as <code>toLowerCase</code> costs about as
+	 * much as the index update itself.
+	 *
+	 * @param email the email, may be {@literal null}.
+	 * @return the normalized email, {@literal null} if none.
+	 */
+	public static String normalize(String email) {
+		if (email == null)
+			return null;
+
+		int length = email.length();
+		if (length > 0 && email.charAt(0) > ' ' && email.charAt(length - 1) > ' ') {
+			int i = 0;
+			while (i < length) {
+				char c = email.charAt(i);
+				if ((c >= 'A' && c <= 'Z') || c > 0x7f)
+					break;
+				i++;
+			}
+			if (i == length)
+				return email;
+		}
+		return email.trim().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,55 @@
+package com.sayedbaladoh.therapistms.util;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Streaming JSON helpers. The items of a streamed list are serialized one at a
+ * time straight to the response output stream as they are pulled from a lazy
+ * <code>Stream</code>, so a response holds one item in memory whatever the
+ * size of the list.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public final class JsonStreaming {
+
+	private JsonStreaming() {
+	}
+
+	/**
+	 * Returns a body writing the items as a JSON array, the same one the message
+	 * converters would write for a list of them.
+	 *
+	 * @param objectMapper the object mapper of the message converters.
+	 * @param items        the lazy stream of items, closed once written.
+	 * @return the streaming body.
+	 */
+	public static StreamingResponseBody array(ObjectMapper objectMapper, Stream<?> items) {
+		return out -> {
+			try (Stream<?> closing = items;
+					JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+				// The servlet output stream belongs to the container.
+				generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				generator.writeStartArray();
+				Iterator<?> iterator = closing.iterator();
+				while (iterator.hasNext())
+					generator.writeObject(iterator.next());
+				generator.writeEndArray();
+			}
+		};
+	}
+
+	public static HttpHeaders headers() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		return headers;
+	}
+}
@@ -1,44 +1,115 @@
 package com.sayedbaladoh.therapistms.util;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
-import javax.annotation.PostConstruct;
-
-import org.modelmapper.Conditions;
-import org.modelmapper.ModelMapper;
-import org.modelmapper.convention.MatchingStrategies;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
+import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.dto.PageDto;
+import com.sayedbaladoh.therapistms.dto.TherapistRequestDto;
+import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
+import com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto;
+import com.sayedbaladoh.therapistms.mapper.ClientMapper;
+import com.sayedbaladoh.therapistms.mapper.TherapistMapper;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.model.Therapist;
+
+/**
+ * Maps entities and DTOs with the hand written mappings of the
+ * <code>mapper</code> package, looked up by source and destination class.
+ * Null source properties are never mapped.
+ */
 @Component
 public class ObjectMapperHelper {
 
-	private final ModelMapper modelMapper;
+	private final Map<Class<?>, Map<Class<?>, Mapping<?, ?>>> mappings = new HashMap<>();
 
-	@Autowired
-	public ObjectMapperHelper(ModelMapper modelMapper) {
-		this.modelMapper = modelMapper;
-	}
-
-	@PostConstruct
-	public void init() {
-		modelMapper.getConfiguration().setMatchingStrategy(MatchingStrategies.STRICT);
-		modelMapper.getConfiguration().setPropertyCondition(Conditions.isNotNull());
+	public ObjectMapperHelper() {
+		register(ClientRequestDto.class, Client.class, Client::new, ClientMapper::toClient);
+		register(ClientUpdateRequestDto.class, Client.class, Client::new, ClientMapper::toClient);
+		register(Client.class, ClientResponseDto.class, ClientResponseDto::new, ClientMapper::toResponse);
+		register(TherapistRequestDto.class, Therapist.class, Therapist::new, TherapistMapper::toTherapist);
+		register(TherapistUpdateRequestDto.class, Therapist.class, Therapist::new, TherapistMapper::toTherapist);
+		register(Therapist.class, TherapistResponseDto.class, TherapistResponseDto::new, TherapistMapper::toResponse);
 	}
 
 	public <S, D> D map(final S source, Class<D> outClass) {
-		return modelMapper.map(source, outClass);
+		Mapping<S, D> mapping = mapping(source, outClass);
+		return mapping.function.apply(source, mapping.factory.get());
 	}
 
+	@SuppressWarnings("unchecked")
 	public <S, D> D map(final S source, D destination) {
-		modelMapper.map(source, destination);
-		return destination;
+		Mapping<S, D> mapping = mapping(source, (Class<D>) destination.getClass());
+		return mapping.function.apply(source, destination);
 	}
 
 	public <S, D> List<D> mapAll(final Collection<S> sourceList, Class<D> outClass) {
-		return sourceList.stream().map(entity -> map(entity, outClass)).collect(Collectors.toList());
+		List<D> list = new ArrayList<>(sourceList.size());
+		for (S source : sourceList)
+			list.add(map(source, outClass));
+		return list;
+	}
+
+	/**
+	 * Maps lazily, one entity at a time as the returned stream is consumed.
+	 */
+	public <S, D> Stream<D> mapEach(final Collection<S> sourceList, Class<D> outClass) {
+		return sourceList.stream().map(entity -> map(entity, outClass));
+	}
+
+	/**
+	 * Maps a page fetched with one extra entity, which only tells whether a next
+	 * page exists.
+	 * 
+	 * @param cursorOf encodes the cursor of the next page from the last entity of
+	 *                 the page.
+	 */
+	public <S, D> PageDto<D> mapPage(final List<S> sourceList, int limit, Function<S, String> cursorOf,
+			Class<D> outClass) {
+		if (sourceList.size() <= limit)
+			return new PageDto<>(mapAll(sourceList, outClass), null);
+
+		List<S> page = sourceList.subList(0, limit);
+		return new PageDto<>(mapAll(page, outClass), cursorOf.apply(page.get(limit - 1)));
+	}
+
+	private <S, D> void register(Class<S> sourceClass, Class<D> outClass, Supplier<D> factory,
+			BiFunction<S, D, D> function) {
+		mappings.computeIfAbsent(sourceClass, key -> new HashMap<>()).put(outClass, new Mapping<>(factory, function));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <S, D> Mapping<S, D> mapping(S source, Class<D> outClass) {
+		for (Class<?> sourceClass = source.getClass(); sourceClass != null; sourceClass = sourceClass.getSuperclass()) {
+			Map<Class<?>, Mapping<?, ?>> byOutClass = mappings.get(sourceClass);
+			Mapping<?, ?> mapping = byOutClass == null ? null : byOutClass.get(outClass);
+			if (mapping != null)
+				return (Mapping<S, D>) mapping;
+		}
+		throw new IllegalStateException(
+				String.format("No mapping from %s to %s.", source.getClass().getName(), outClass.getName()));
+	}
+
+	private static final class Mapping<S, D> {
+
+		private final Supplier<D> factory;
+		private final BiFunction<S, D, D> function;
+
+		private Mapping(Supplier<D> factory, BiFunction<S, D, D> function) {
+			this.factory = factory;
+			this.function = function;
+		}
 	}
 
 }
@@ -0,0 +1,104 @@
+package com.sayedbaladoh.therapistms.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.sayedbaladoh.therapistms.dto.PageDto;
+import com.sayedbaladoh.therapistms.repository.SortKey;
+
+/**
+ * Cursor pagination helpers. A cursor is the URL-safe Base64 of the id of the
+ * last item of a page, followed by its sort key for a page in a sort order, so
+ * the next page starts right after it whatever was added or removed in the
+ * meantime.
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public final class Pagination {
+
+	public static final int MAX_LIMIT = 1000;
+
+	private Pagination() {
+	}
+
+	public static void checkLimit(int limit) {
+		if (limit < 1 || limit > MAX_LIMIT)
+			throw new IllegalArgumentException(String.format("limit must be between 1 and %d.", MAX_LIMIT));
+	}
+
+	public static String encodeCursor(UUID id) {
+		ByteBuffer bytes = ByteBuffer.allocate(16);
+		bytes.putLong(id.getMostSignificantBits());
+		bytes.putLong(id.getLeastSignificantBits());
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+	}
+
+	public static String encodeCursor(SortKey<UUID> sortKey) {
+		byte[] key = sortKey.getKey().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer bytes = ByteBuffer.allocate(16 + key.length);
+		bytes.putLong(sortKey.getId().getMostSignificantBits());
+		bytes.putLong(sortKey.getId().getLeastSignificantBits());
+		bytes.put(key);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+	}
+
+	/**
+	 * Decodes a cursor.
+	 * 
+	 * @param cursor the cursor, may be {@literal null} for the first page.
+	 * @return the id to start after, or {@literal null} for the first page.
+	 * @throws IllegalArgumentException if the cursor is invalid.
+	 */
+	public static UUID decodeCursor(String cursor) {
+		if (cursor == null || cursor.isEmpty())
+			return null;
+
+		byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+		if (bytes.length != 16)
+			throw new IllegalArgumentException(String.format("Invalid cursor: %s.", cursor));
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+
+	/**
+	 * Decodes the cursor of a page in a sort order.
+	 * 
+	 * @param cursor the cursor, may be {@literal null} for the first page.
+	 * @return the sort key to start after, or {@literal null} for the first page.
+	 * @throws IllegalArgumentException if the cursor is invalid.
+	 */
+	public static SortKey<UUID> decodeSortCursor(String cursor) {
+		if (cursor == null || cursor.isEmpty())
+			return null;
+
+		byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+		if (bytes.length < 16)
+			throw new IllegalArgumentException(String.format("Invalid cursor: %s.", cursor));
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		UUID id = new UUID(buffer.getLong(), buffer.getLong());
+		return new SortKey<>(new String(bytes, 16, bytes.length - 16, StandardCharsets.UTF_8), id);
+	}
+
+	/**
+	 * Returns the headers of a page response: a <code>Link</code> header to the
+	 * next page (RFC 5988), if any.
+	 * 
+	 * @param page the page.
+	 * @return the headers.
+	 */
+	public static HttpHeaders headers(PageDto<?> page) {
+		HttpHeaders headers = new HttpHeaders();
+		if (page.getNextCursor() != null) {
+			String next = ServletUriComponentsBuilder.fromCurrentRequest()
+					.replaceQueryParam("cursor", page.getNextCursor()).toUriString();
+			headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+		}
+		return headers;
+	}
+}
@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
@@ -17,10 +18,13 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -36,9 +40,11 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedbaladoh.therapistms.dto.ClientQueryResponseDto;
 import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
 import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
 import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.dto.QueryPlanDto;
 import com.sayedbaladoh.therapistms.exception.ResourceNotFoundException;
 import com.sayedbaladoh.therapistms.model.Client;
 import com.sayedbaladoh.therapistms.service.ClientService;
@@ -89,7 +95,7 @@ class ClientControllerTest {
 				.map(this::mockClientResponseDto)
 				.collect(Collectors.toList());
 		
-		given(clientService.getAllClients(therapistId))
+		given(clientService.getAllClients(therapistId, null))
 				.willReturn(mockedClientsResponseDto);
 
 		//API call and Verification
@@ -106,7 +112,7 @@ class ClientControllerTest {
 				.andReturn();
 		
 		assertEquals("application/json", mvcResult.getResponse().getContentType());
-		verify(clientService, times(1)).getAllClients(therapistId);
+		verify(clientService, times(1)).getAllClients(therapistId, null);
 		Mockito.verifyNoMoreInteractions(clientService);
 	}
 	
@@ -123,7 +129,7 @@ class ClientControllerTest {
 		// Data preparation
 		UUID therapistId = UUID.randomUUID();
 	
-		given(clientService.getAllClients(therapistId))
+		given(clientService.getAllClients(therapistId, null))
 				.willThrow(new ResourceNotFoundException());
 
 		//API call and Verification		
@@ -133,7 +139,7 @@ class ClientControllerTest {
 				.andReturn();
 		
 		assertEquals("application/json", mvcResult.getResponse().getContentType());
-		verify(clientService, times(1)).getAllClients(therapistId);
+		verify(clientService, times(1)).getAllClients(therapistId, null);
 		Mockito.verifyNoMoreInteractions(clientService);
 	}
 	
@@ -141,7 +147,7 @@ class ClientControllerTest {
 	 * Verify get client with valid Id and therapist Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClient(UUID, UUID)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClient(UUID, UUID, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -151,7 +157,7 @@ class ClientControllerTest {
 		UUID therapistId = UUID.randomUUID();
 		Client client = mockClient(UUID.randomUUID(), therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
 
-		given(clientService.getClient(therapistId, client.getId()))
+		given(clientService.getClient(therapistId, client.getId(), null))
 				.willReturn(mockClientResponseDto(client));
 
 		//API call and Verification
@@ -176,15 +182,185 @@ class ClientControllerTest {
 		 
 		 assertClient(clientResponseDto, client);
 		
-		verify(clientService, times(1)).getClient(therapistId, client.getId());
+		verify(clientService, times(1)).getClient(therapistId, client.getId(), null);
 		Mockito.verifyNoMoreInteractions(clientService);
 	}
 	
+	/**
+	 * Verify get client by email and therapist Id
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClientByEmail(UUID, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClient_whenGetClientByEmail_thenReturnClientResponse() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = mockClient(UUID.randomUUID(), therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+
+		given(clientService.getClientByEmail(therapistId, "ahmed@test.com"))
+				.willReturn(mockClientResponseDto(client));
+
+		//API call and Verification
+		mvc.perform(get("/therapists/{therapistId}/clients?email=ahmed@test.com", therapistId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(client.getId().toString()))
+				.andExpect(jsonPath("$.email", is(client.getEmail())));
+
+		verify(clientService, times(1)).getClientByEmail(therapistId, "ahmed@test.com");
+		Mockito.verifyNoMoreInteractions(clientService);
+	}
+
+	/**
+	 * Verify search the clients of a therapist
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#searchClients(UUID, String, int)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClients_whenSearchClients_thenReturnMatchingClients() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = mockClient(UUID.randomUUID(), therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+
+		given(clientService.searchClients(therapistId, "ahm", 20))
+				.willReturn(Collections.singletonList(mockClientResponseDto(client)));
+
+		//API call and Verification
+		mvc.perform(get("/therapists/{therapistId}/clients/search?q=ahm", therapistId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].name", is(client.getName())));
+
+		verify(clientService, times(1)).searchClients(therapistId, "ahm", 20);
+		Mockito.verifyNoMoreInteractions(clientService);
+	}
+
+	/**
+	 * Verify query the clients of a therapist with the plan explained
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#queryClients(UUID, String, String, LocalDate, LocalDate, boolean)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClients_whenQueryClientsWithExplain_thenReturnClientsAndPlan() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = mockClient(UUID.randomUUID(), therapistId, "Mariam", "mariam@test.com", "female", "+2012345789");
+		LocalDate bornAfter = LocalDate.of(1990, 1, 1);
+
+		given(clientService.queryClients(therapistId, "female", "teacher", bornAfter, null, true))
+				.willReturn(new ClientQueryResponseDto(Collections.singletonList(mockClientResponseDto(client)),
+						new QueryPlanDto("index", "job", false, 3, 3, 1)));
+
+		//API call and Verification
+		mvc.perform(get("/therapists/{therapistId}/clients/query?gender=female&job=teacher&bornAfter=1990-01-01&explain=true", therapistId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.clients", hasSize(1)))
+				.andExpect(jsonPath("$.clients[0].name", is(client.getName())))
+				.andExpect(jsonPath("$.plan.access", is("index")))
+				.andExpect(jsonPath("$.plan.index", is("job")))
+				.andExpect(jsonPath("$.plan.rowsTouched", is(3)));
+
+		verify(clientService, times(1)).queryClients(therapistId, "female", "teacher", bornAfter, null, true);
+		Mockito.verifyNoMoreInteractions(clientService);
+	}
+
+	/**
+	 * Verify query the clients of a therapist with an invalid birth date
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#queryClients(UUID, String, String, LocalDate, LocalDate, boolean)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenInvalidBornAfter_whenQueryClients_thenReturn400BadRequest() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+
+		//API call and Verification
+		mvc.perform(get("/therapists/{therapistId}/clients/query?bornAfter=01/01/1990", therapistId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest());
+
+		Mockito.verifyNoInteractions(clientService);
+	}
+
+	/**
+	 * Verify count the clients of a therapist born in an age band
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#countClients(UUID, LocalDate, LocalDate)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClients_whenCountClientsByBirthDate_thenReturnCount() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		LocalDate bornAfter = LocalDate.of(1995, 10, 17);
+		LocalDate bornBefore = LocalDate.of(2008, 10, 18);
+
+		given(clientService.countClients(therapistId, bornAfter, bornBefore)).willReturn(42L);
+
+		//API call and Verification
+		mvc.perform(get("/therapists/{therapistId}/clients/count?bornAfter=1995-10-17&bornBefore=2008-10-18", therapistId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(content().string("42"));
+
+		verify(clientService, times(1)).countClients(therapistId, bornAfter, bornBefore);
+		Mockito.verifyNoMoreInteractions(clientService);
+	}
+
+	/**
+	 * Verify complete the names of the clients of a therapist
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#completeClientNames(UUID, String, int)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClients_whenCompleteClientNames_thenReturnNames() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+
+		given(clientService.completeClientNames(therapistId, "ah", 10))
+				.willReturn(Arrays.asList("Ahmed Hassan", "Ahmed Ali"));
+
+		//API call and Verification
+		mvc.perform(get("/therapists/{therapistId}/clients/autocomplete?prefix=ah", therapistId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0]", is("Ahmed Hassan")));
+
+		verify(clientService, times(1)).completeClientNames(therapistId, "ah", 10);
+		Mockito.verifyNoMoreInteractions(clientService);
+	}
+
 	/**
 	 * Verify get client with invalid Id and therapist Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClient(UUID, UUID)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClient(UUID, UUID, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -194,7 +370,7 @@ class ClientControllerTest {
 		UUID therapistId = UUID.randomUUID();
 		UUID invalidClientId = UUID.randomUUID();
 
-		given(clientService.getClient(therapistId, invalidClientId))
+		given(clientService.getClient(therapistId, invalidClientId, null))
 				.willThrow(new ResourceNotFoundException());
 
 		// Verification
@@ -203,7 +379,7 @@ class ClientControllerTest {
 				.accept(MediaType.APPLICATION_JSON))
 				.andExpect(status().isNotFound())
 				.andDo(print());
-		verify(clientService, times(1)).getClient(therapistId, invalidClientId);
+		verify(clientService, times(1)).getClient(therapistId, invalidClientId, null);
 		Mockito.verifyNoMoreInteractions(clientService);
 	}
 	
@@ -273,7 +449,7 @@ class ClientControllerTest {
 	 * Verify update valid client
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -288,7 +464,7 @@ class ClientControllerTest {
 		
 		client.setName(clientUpdateRequest.getName());
 
-		given(clientService.updateClient(eq(therapistId), eq(client.getId()), any(ClientUpdateRequestDto.class)))
+		given(clientService.updateClient(eq(therapistId), eq(client.getId()), any(ClientUpdateRequestDto.class), isNull()))
 				.willReturn(mockClientResponseDto(client));
 
 		//API call and Verification
@@ -305,7 +481,7 @@ class ClientControllerTest {
 				.andExpect(jsonPath("$.therapistId", is(client.getTherapistId().toString())))
 				.andDo(print());
 		
-		verify(clientService, times(1)).updateClient(eq(therapistId), eq(client.getId()), any(ClientUpdateRequestDto.class));
+		verify(clientService, times(1)).updateClient(eq(therapistId), eq(client.getId()), any(ClientUpdateRequestDto.class), isNull());
 		Mockito.verifyNoMoreInteractions(clientService);
 	}
 
@@ -313,7 +489,7 @@ class ClientControllerTest {
 	 * Verify update client with invalid Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -325,7 +501,7 @@ class ClientControllerTest {
 		ClientUpdateRequestDto clientUpdateRequest = new ClientUpdateRequestDto();
 		clientUpdateRequest.setName("Ahmed Mohamed");
 		
-		given(clientService.updateClient(eq(therapistId), eq(invalidClientId), any(ClientUpdateRequestDto.class)))
+		given(clientService.updateClient(eq(therapistId), eq(invalidClientId), any(ClientUpdateRequestDto.class), isNull()))
 		.willThrow(new ResourceNotFoundException());
 		
 		//API call and Verification
@@ -335,7 +511,7 @@ class ClientControllerTest {
 				.andExpect(status().isNotFound())
 				.andDo(print());
 		
-		verify(clientService, times(1)).updateClient(eq(therapistId), eq(invalidClientId), any(ClientUpdateRequestDto.class));
+		verify(clientService, times(1)).updateClient(eq(therapistId), eq(invalidClientId), any(ClientUpdateRequestDto.class), isNull());
 		Mockito.verifyNoMoreInteractions(clientService);
 	}
 	
@@ -369,7 +545,7 @@ class ClientControllerTest {
 	 * Verify delete client with invalid Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -0,0 +1,116 @@
+package com.sayedbaladoh.therapistms.controller;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
+import com.sayedbaladoh.therapistms.service.TherapistService;
+
+/**
+ * Practice controller unit tests
+ *
+ * Test the Practice rest APIs unit tests
+ *
+ * @author Sayed Baladoh
+ */
+@WebMvcTest(value = PracticeController.class)
+class PracticeControllerTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@MockBean
+	private TherapistService therapistService;
+
+	@AfterEach
+	void tearDown() throws Exception {
+		reset(therapistService);
+	}
+
+	/**
+	 * Validate get the therapists of a practice
+	 *
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.PracticeController#getPracticeTherapists(UUID)}.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void givenPracticeTherapists_whenGetPracticeTherapists_thenReturnTherapistList() throws Exception {
+		// Data preparation
+		UUID practiceId = UUID.randomUUID();
+		TherapistResponseDto therapist1 = mockTherapistResponseDto("Ahmed", practiceId);
+		TherapistResponseDto therapist2 = mockTherapistResponseDto("Ali", practiceId);
+
+		given(therapistService.getPracticeTherapists(practiceId))
+				.willReturn(Arrays.asList(therapist1, therapist2));
+
+		// API call and Verification
+		mvc.perform(get("/practices/{practiceId}/therapists", practiceId)
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].id", is(therapist1.getId().toString())))
+				.andExpect(jsonPath("$[1].practiceId", is(practiceId.toString())));
+
+		verify(therapistService, times(1)).getPracticeTherapists(practiceId);
+		Mockito.verifyNoMoreInteractions(therapistService);
+	}
+
+	/**
+	 * Validate get the therapists of a practice without therapists returns an
+	 * empty list
+	 *
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.PracticeController#getPracticeTherapists(UUID)}.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void givenEmptyPractice_whenGetPracticeTherapists_thenReturnEmptyList() throws Exception {
+		// Data preparation
+		UUID practiceId = UUID.randomUUID();
+
+		given(therapistService.getPracticeTherapists(practiceId))
+				.willReturn(Collections.emptyList());
+
+		// API call and Verification
+		mvc.perform(get("/practices/{practiceId}/therapists", practiceId)
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(0)));
+
+		verify(therapistService, times(1)).getPracticeTherapists(practiceId);
+		Mockito.verifyNoMoreInteractions(therapistService);
+	}
+
+	private TherapistResponseDto mockTherapistResponseDto(String name, UUID practiceId) {
+
+		TherapistResponseDto therapistResponse = new TherapistResponseDto();
+		therapistResponse.setId(UUID.randomUUID());
+		therapistResponse.setName(name);
+		therapistResponse.setEmail(name.toLowerCase() + "@test.com");
+		therapistResponse.setPracticeId(practiceId);
+		return therapistResponse;
+	}
+}
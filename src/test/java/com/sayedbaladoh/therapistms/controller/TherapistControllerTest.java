@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
@@ -14,6 +15,8 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -29,14 +32,19 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedbaladoh.therapistms.dto.PageDto;
 import com.sayedbaladoh.therapistms.dto.TherapistRequestDto;
 import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
 import com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto;
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
+import com.sayedbaladoh.therapistms.exception.NotModifiedException;
+import com.sayedbaladoh.therapistms.exception.PreconditionFailedException;
 import com.sayedbaladoh.therapistms.exception.ResourceNotFoundException;
 import com.sayedbaladoh.therapistms.model.Therapist;
 import com.sayedbaladoh.therapistms.service.TherapistService;
@@ -88,7 +96,7 @@ class TherapistControllerTest {
 				.map(this::mockTherapistResponseDto)
 				.collect(Collectors.toList());
 		
-		given(therapistService.getAllTherapists())
+		given(therapistService.getAllTherapists(null))
 				.willReturn(mockedTherapistsResponseDto);
 
 		//API call and Verification
@@ -105,10 +113,74 @@ class TherapistControllerTest {
 				.andReturn();
 		
 		assertEquals("application/json", mvcResult.getResponse().getContentType());
-		verify(therapistService, times(1)).getAllTherapists();
+		verify(therapistService, times(1)).getAllTherapists(null);
 		Mockito.verifyNoMoreInteractions(therapistService);
 	}
 	
+	/**
+	 * Validate get a page of therapists returns the link to the next page
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#getAllTherapists(Integer, String, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenLimit_whenGetAllTherapists_thenReturnPageWithNextLink() throws Exception {
+		// Data preparation
+		Therapist therapist1 = mockTherapist(UUID.randomUUID(), "Ahmed", "ahmed@test.com", UUID.randomUUID());
+		Therapist therapist2 = mockTherapist(UUID.randomUUID(), "Mohamed", "mohamed@test.com", UUID.randomUUID());
+		List<TherapistResponseDto> items = Arrays.asList(mockTherapistResponseDto(therapist1),
+				mockTherapistResponseDto(therapist2));
+
+		given(therapistService.getTherapists("abc", 2, null))
+				.willReturn(new PageDto<>(items, "def"));
+
+		//API call and Verification
+		mvc.perform(get("/therapists?limit=2&cursor=abc")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].id", is(therapist1.getId().toString())))
+				.andExpect(header().string("Link", "<http://localhost/therapists?limit=2&cursor=def>; rel=\"next\""));
+
+		verify(therapistService, times(1)).getTherapists("abc", 2, null);
+		Mockito.verifyNoMoreInteractions(therapistService);
+	}
+
+	/**
+	 * Validate get a sorted page of therapists keeps the sort in the link to the
+	 * next page
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#getAllTherapists(Integer, String, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenSort_whenGetAllTherapists_thenReturnSortedPageWithNextLink() throws Exception {
+		// Data preparation
+		Therapist therapist1 = mockTherapist(UUID.randomUUID(), "Ahmed", "ahmed@test.com", UUID.randomUUID());
+		Therapist therapist2 = mockTherapist(UUID.randomUUID(), "Ali", "ali@test.com", UUID.randomUUID());
+		List<TherapistResponseDto> items = Arrays.asList(mockTherapistResponseDto(therapist1),
+				mockTherapistResponseDto(therapist2));
+
+		given(therapistService.getTherapists(null, 2, "name"))
+				.willReturn(new PageDto<>(items, "def"));
+
+		//API call and Verification
+		mvc.perform(get("/therapists?sort=name&limit=2")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[1].name", is(therapist2.getName())))
+				.andExpect(header().string("Link",
+						"<http://localhost/therapists?sort=name&limit=2&cursor=def>; rel=\"next\""));
+
+		verify(therapistService, times(1)).getTherapists(null, 2, "name");
+		Mockito.verifyNoMoreInteractions(therapistService);
+	}
+
 	/**
 	 * Validate get all therapists with empty list
 	 * 
@@ -122,7 +194,7 @@ class TherapistControllerTest {
 		// Data preparation
 		List<TherapistResponseDto> mockedTherapistsResponseDto = Collections.emptyList();
 		
-		given(therapistService.getAllTherapists())
+		given(therapistService.getAllTherapists(null))
 				.willReturn(mockedTherapistsResponseDto);
 
 		//API call and Verification		
@@ -133,7 +205,7 @@ class TherapistControllerTest {
 				.andReturn();
 		
 		assertEquals("application/json", mvcResult.getResponse().getContentType());
-		verify(therapistService, times(1)).getAllTherapists();
+		verify(therapistService, times(1)).getAllTherapists(null);
 		Mockito.verifyNoMoreInteractions(therapistService);
 	}
 	
@@ -141,7 +213,7 @@ class TherapistControllerTest {
 	 * Verify get therapist with valid Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#getTherapist(UUID)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#getTherapist(UUID, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -151,7 +223,7 @@ class TherapistControllerTest {
 		UUID practiceId = UUID.randomUUID();
 		Therapist therapist = mockTherapist(UUID.randomUUID(), "Ahmed", "ahmed@test.com", practiceId);
 
-		given(therapistService.getTherapist(therapist.getId()))
+		given(therapistService.getTherapist(therapist.getId(), null))
 				.willReturn(mockTherapistResponseDto(therapist));
 
 		//API call and Verification
@@ -176,7 +248,7 @@ class TherapistControllerTest {
 		 
 		 assertTherapist(therapistResponseDto, therapist);
 		
-		verify(therapistService, times(1)).getTherapist(therapist.getId());
+		verify(therapistService, times(1)).getTherapist(therapist.getId(), null);
 		Mockito.verifyNoMoreInteractions(therapistService);
 	}
 	
@@ -184,7 +256,7 @@ class TherapistControllerTest {
 	 * Verify get therapist with invalid Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#getTherapist(UUID)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#getTherapist(UUID, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -193,7 +265,7 @@ class TherapistControllerTest {
 		// Data preparation
 		UUID invalidTherapistId = UUID.randomUUID();
 
-		given(therapistService.getTherapist(invalidTherapistId))
+		given(therapistService.getTherapist(invalidTherapistId, null))
 				.willThrow(new ResourceNotFoundException());
 
 		// Verification
@@ -202,10 +274,63 @@ class TherapistControllerTest {
 				.accept(MediaType.APPLICATION_JSON))
 				.andExpect(status().isNotFound())
 				.andDo(print());
-		verify(therapistService, times(1)).getTherapist(invalidTherapistId);
+		verify(therapistService, times(1)).getTherapist(invalidTherapistId, null);
 		Mockito.verifyNoMoreInteractions(therapistService);
 	}
 	
+	/**
+	 * Verify get therapist still matching the If-None-Match header returns 304
+	 * with its ETag and no body
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#getTherapist(UUID, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenMatchingETag_whenGetTherapist_thenReturn304NotModified() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+
+		given(therapistService.getTherapist(therapistId, "\"4\""))
+				.willThrow(new NotModifiedException(4));
+
+		//API call and Verification
+		mvc.perform(get("/therapists/{therapistId}", therapistId)
+				.header(HttpHeaders.IF_NONE_MATCH, "\"4\""))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+				.andExpect(content().string(""));
+		verify(therapistService, times(1)).getTherapist(therapistId, "\"4\"");
+		Mockito.verifyNoMoreInteractions(therapistService);
+	}
+
+	/**
+	 * Verify update therapist with a stale If-Match header returns 412
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#updateTherapist(UUID, com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenStaleETag_whenUpdateTherapist_thenReturn412PreconditionFailed() throws Exception {
+		// Data preparation
+		Therapist therapist = mockTherapist(UUID.randomUUID(), "Ahmed", "ahmed@test.com", UUID.randomUUID());
+
+		given(therapistService.updateTherapist(eq(therapist.getId()), any(TherapistUpdateRequestDto.class), eq("\"1\"")))
+				.willThrow(new PreconditionFailedException("Therapist has been modified."));
+
+		//API call and Verification
+		mvc.perform(put("/therapists/{therapistId}", therapist.getId())
+				.header(HttpHeaders.IF_MATCH, "\"1\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(JsonUtil.toJson(therapist)))
+				.andExpect(status().isPreconditionFailed());
+		verify(therapistService, times(1)).updateTherapist(eq(therapist.getId()), any(TherapistUpdateRequestDto.class), eq("\"1\""));
+		Mockito.verifyNoMoreInteractions(therapistService);
+	}
+
 	/**
 	 * Verify add a valid Therapist
 	 *
@@ -241,6 +366,59 @@ class TherapistControllerTest {
 		Mockito.verifyNoMoreInteractions(therapistService);
 	}
 
+	/**
+	 * Verify add a Therapist with the email of another one
+	 *
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#addTherapist(com.sayedbaladoh.therapistms.dto.TherapistRequestDto)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenTakenEmail_whenAddTherapist_thenReturn409Conflict() throws Exception {
+		// Data preparation
+		TherapistRequestDto therapistRequest = mockTherapistRequestDto("Ahmed", "ahmed@test.com", UUID.randomUUID());
+
+		given(therapistService.addTherapist(any(TherapistRequestDto.class)))
+				.willThrow(new DuplicateResourceException("Therapist email ahmed@test.com already exists."));
+
+		// API call and Verification
+		mvc.perform(
+				post("/therapists").contentType(MediaType.APPLICATION_JSON).content(JsonUtil.toJson(therapistRequest)))
+				.andExpect(status().isConflict())
+				.andExpect(jsonPath("$.message", is("Therapist email ahmed@test.com already exists.")));
+
+		verify(therapistService, times(1)).addTherapist(any(TherapistRequestDto.class));
+		Mockito.verifyNoMoreInteractions(therapistService);
+	}
+
+	/**
+	 * Verify get a therapist by its email
+	 *
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#getTherapistByEmail(String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenTherapist_whenGetTherapistByEmail_thenReturnTherapist() throws Exception {
+		// Data preparation
+		Therapist therapist = mockTherapist(UUID.randomUUID(), "Ahmed", "ahmed@test.com", UUID.randomUUID());
+
+		given(therapistService.getTherapistByEmail("Ahmed@test.com"))
+				.willReturn(mockTherapistResponseDto(therapist));
+
+		// API call and Verification
+		mvc.perform(get("/therapists?email=Ahmed@test.com")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id", is(therapist.getId().toString())))
+				.andExpect(jsonPath("$.email", is(therapist.getEmail())));
+
+		verify(therapistService, times(1)).getTherapistByEmail("Ahmed@test.com");
+		Mockito.verifyNoMoreInteractions(therapistService);
+	}
+
 	/**
 	 * Verify add an invalid Therapist
 	 *
@@ -270,7 +448,7 @@ class TherapistControllerTest {
 	 * Verify update valid therapist
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#updateTherapist(UUID, com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#updateTherapist(UUID, com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -282,7 +460,7 @@ class TherapistControllerTest {
 		TherapistUpdateRequestDto therapistRequest = new TherapistUpdateRequestDto(practiceId, "Mohamed", "ahmed@test.com");
 		therapist.setName(therapistRequest.getName());
 
-		given(therapistService.updateTherapist(eq(therapist.getId()), any(TherapistUpdateRequestDto.class)))
+		given(therapistService.updateTherapist(eq(therapist.getId()), any(TherapistUpdateRequestDto.class), isNull()))
 				.willReturn(mockTherapistResponseDto(therapist));
 
 		//API call and Verification
@@ -299,7 +477,7 @@ class TherapistControllerTest {
 				.andExpect(jsonPath("$.practiceId", is(therapist.getPracticeId().toString())))
 				.andDo(print());
 		
-		verify(therapistService, times(1)).updateTherapist(eq(therapist.getId()), any(TherapistUpdateRequestDto.class));
+		verify(therapistService, times(1)).updateTherapist(eq(therapist.getId()), any(TherapistUpdateRequestDto.class), isNull());
 		Mockito.verifyNoMoreInteractions(therapistService);
 	}
 
@@ -307,7 +485,7 @@ class TherapistControllerTest {
 	 * Verify update therapist with invalid Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#updateTherapist(UUID, com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.TherapistController#updateTherapist(UUID, com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -319,7 +497,7 @@ class TherapistControllerTest {
 		UUID practiceId = UUID.randomUUID();
 		TherapistUpdateRequestDto therapistRequest = new TherapistUpdateRequestDto(practiceId, "Mohamed", "ahmed@test.com");
 		
-		given(therapistService.updateTherapist(eq(invalidTherapistId), any(TherapistUpdateRequestDto.class)))
+		given(therapistService.updateTherapist(eq(invalidTherapistId), any(TherapistUpdateRequestDto.class), isNull()))
 		.willThrow(new ResourceNotFoundException());
 		
 		//API call and Verification
@@ -329,7 +507,7 @@ class TherapistControllerTest {
 				.andExpect(status().isNotFound())
 				.andDo(print());
 		
-		verify(therapistService, times(1)).updateTherapist(eq(invalidTherapistId), any(TherapistUpdateRequestDto.class));
+		verify(therapistService, times(1)).updateTherapist(eq(invalidTherapistId), any(TherapistUpdateRequestDto.class), isNull());
 		Mockito.verifyNoMoreInteractions(therapistService);
 	}
 	
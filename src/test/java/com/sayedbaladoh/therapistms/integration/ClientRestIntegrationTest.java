@@ -4,17 +4,34 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -22,6 +39,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -100,6 +118,178 @@ public class ClientRestIntegrationTest {
 		assertEquals("application/json", mvcResult.getResponse().getContentType());
 	}
 	
+	/**
+	 * Validate paging through all clients of a therapist with the next page links
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getAllClients(UUID, Integer, String, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClients_whenGetAllClientsByPage_thenEveryClientReturnedOnce() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Set<String> expectedIds = new HashSet<>();
+		for (int i = 0; i < 7; i++)
+			expectedIds.add(createClient(therapistId, "Client " + i, "client" + i + "@test.com", "male", "+2012345789")
+					.getId().toString());
+
+		// API call and Verification
+		Set<String> returnedIds = new HashSet<>();
+		String url = API_URL.replace("{therapistId}", therapistId.toString()) + "?limit=3";
+		int pages = 0;
+		while (url != null) {
+			MvcResult mvcResult = mvc.perform(get(URI.create(url))
+					.contentType(MediaType.APPLICATION_JSON))
+					.andExpect(status().isOk())
+					.andReturn();
+			ClientResponseDto[] page = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+					ClientResponseDto[].class);
+			Arrays.stream(page).forEach(client -> returnedIds.add(client.getId().toString()));
+			String link = mvcResult.getResponse().getHeader("Link");
+			url = link == null ? null : link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+			pages++;
+		}
+
+		assertEquals(3, pages);
+		assertEquals(expectedIds, returnedIds);
+	}
+
+	/**
+	 * Validate paging through the clients of a therapist sorted by name, whatever
+	 * its case, with the next page links
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getAllClients(UUID, Integer, String, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClients_whenGetAllClientsSortedByPage_thenClientsInNameOrder() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		String[] names = { "mariam", "Ahmed", "Omar", "hana", "Ahmed", "Karim", "sara" };
+		for (int i = 0; i < names.length; i++)
+			createClient(therapistId, names[i], "client" + i + "@test.com", "male", "+2012345789");
+
+		// API call and Verification
+		List<String> returnedNames = new ArrayList<>();
+		String url = API_URL.replace("{therapistId}", therapistId.toString()) + "?limit=3&sort=name";
+		while (url != null) {
+			MvcResult mvcResult = mvc.perform(get(URI.create(url))
+					.contentType(MediaType.APPLICATION_JSON))
+					.andExpect(status().isOk())
+					.andReturn();
+			ClientResponseDto[] page = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+					ClientResponseDto[].class);
+			Arrays.stream(page).forEach(client -> returnedNames.add(client.getName()));
+			String link = mvcResult.getResponse().getHeader("Link");
+			url = link == null ? null : link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+		}
+
+		assertEquals(Arrays.asList("Ahmed", "Ahmed", "hana", "Karim", "mariam", "Omar", "sara"), returnedNames);
+		mvc.perform(get(API_URL, therapistId)
+				.param("sort", "name")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[2].name", is("hana")))
+				.andExpect(jsonPath("$[6].name", is("sara")));
+	}
+
+	/**
+	 * Validate get the clients of a therapist in an unknown sort order
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getAllClients(UUID, Integer, String, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenUnknownSort_whenGetAllClients_thenReturnBadRequest() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		createClient(therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+
+		// API call and Verification
+		mvc.perform(get(API_URL, therapistId)
+				.param("sort", "phoneNumber")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Validate get a page of clients with an invalid cursor
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getAllClients(UUID, Integer, String, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenInvalidCursor_whenGetAllClientsByPage_thenReturnBadRequest() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		createClient(therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+
+		// API call and Verification
+		mvc.perform(get(API_URL, therapistId)
+				.param("limit", "3")
+				.param("cursor", "not-a-cursor")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Validate streaming all clients returns the same JSON as the full list
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#streamAllClients(UUID)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClients_whenStreamAllClients_thenReturnSameJsonAsList() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		createClient(therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+		createClient(therapistId, "Mariam", "mariam@test.com", "female", "+2012345987");
+		createClient(therapistId, "Mohamed", "mohamed@test.com", "male", "+0212345879");
+		String list = mvc.perform(get(API_URL, therapistId)
+				.contentType(MediaType.APPLICATION_JSON))
+				.andReturn().getResponse().getContentAsString();
+
+		// API call and Verification
+		MvcResult mvcResult = mvc.perform(get(API_URL, therapistId)
+				.param("stream", "true")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mvc.perform(asyncDispatch(mvcResult))
+				.andExpect(status().isOk())
+				.andExpect(content()
+						.contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$", hasSize(3)))
+				.andExpect(content().string(list));
+	}
+
+	/**
+	 * Validate streaming all clients for an invalid therapist Id
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#streamAllClients(UUID)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenInvalidTherapistId_whenStreamAllClients_thenReturn404NotFound() throws Exception {
+		// API call and Verification
+		mvc.perform(get(API_URL, UUID.randomUUID())
+				.param("stream", "true")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotFound());
+	}
+
 	/**
 	 * Validate get all clients for an invalid therapist Id
 	 * 
@@ -126,7 +316,7 @@ public class ClientRestIntegrationTest {
 	 * Verify get client with valid Id and therapist Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClient(UUID, UUID)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClient(UUID, UUID, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -163,7 +353,7 @@ public class ClientRestIntegrationTest {
 	 * Verify get client with invalid Id and therapist Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClient(UUID, UUID)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClient(UUID, UUID, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -176,6 +366,81 @@ public class ClientRestIntegrationTest {
 				.andExpect(status().isNotFound());
 	}
 
+	/**
+	 * Verify get client by Id alone
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientLookupController#getClient(UUID, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClient_whenGetClientById_thenReturnClientResponse() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = createClient(therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+		createClient(UUID.randomUUID(), "Mariam", "mariam@test.com", "female", "+2012345987");
+
+		// API call and Verification
+		mvc.perform(get("/clients/{clientId}", client.getId())
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(client.getId().toString()))
+				.andExpect(jsonPath("$.name").value(client.getName()))
+				.andExpect(jsonPath("$.therapistId", is(therapistId.toString())));
+	}
+
+	/**
+	 * Verify get a removed client by Id alone
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientLookupController#getClient(UUID, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenRemovedClient_whenGetClientById_thenReturn404NotFound() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = createClient(therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+		clientRepository.deleteById(therapistId);
+
+		// API call and Verification
+		mvc.perform(get("/clients/{clientId}", client.getId())
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotFound());
+	}
+
+	/**
+	 * Verify count the clients of all therapists born in an age band
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientLookupController#countClients(LocalDate, LocalDate)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClientsOfTherapists_whenCountClientsByBirthDate_thenReturnCountOfAllTherapists() throws Exception {
+		// Data preparation
+		Client ahmed = createClient(UUID.randomUUID(), "Ahmed", "ahmed@test.com", "male", "+2012345789");
+		Client mariam = createClient(UUID.randomUUID(), "Mariam", "mariam@test.com", "female", "+2012345987");
+		Client omar = createClient(UUID.randomUUID(), "Omar", "omar@test.com", "male", "+2012345897");
+		for (Client client : new Client[] { ahmed, mariam, omar }) {
+			Client updated = new Client(client);
+			updated.setBirthDate(Date.from(LocalDate.of(client == omar ? 1980 : 2000, 5, 1)
+					.atStartOfDay(ZoneOffset.UTC).toInstant()));
+			clientRepository.replace(client.getTherapistId(), client, updated);
+		}
+
+		// API call and Verification
+		mvc.perform(get("/clients/count?bornAfter=1990-01-01&bornBefore=2005-01-01")
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", is(2)));
+	}
+
 	/**
 	 * Verify add a valid Client to an therapist client’s list
 	 *
@@ -213,6 +478,77 @@ public class ClientRestIntegrationTest {
 		 assertClient(clientResponseDto, clientRequestDto);	
 	}
 
+	/**
+	 * Verify of concurrent adds of the same email to a therapist's clients, only
+	 * one is created and the others conflict
+	 *
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#addClient(UUID, ClientRequestDto)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenConcurrentDuplicateEmails_whenAddClient_thenOnlyOneCreated() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		byte[] content = JsonUtil.toJson(mockClientRequestDto("Ahmed", "ahmed@test.com", "male", "+2012345789"));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		CountDownLatch start = new CountDownLatch(1);
+		Set<Future<Integer>> statuses = new HashSet<>();
+
+		// API call
+		for (int i = 0; i < 8; i++)
+			statuses.add(executor.submit(() -> {
+				start.await();
+				return mvc.perform(post(API_URL, therapistId)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(content))
+						.andReturn().getResponse().getStatus();
+			}));
+		start.countDown();
+		int created = 0;
+		int conflicts = 0;
+		for (Future<Integer> status : statuses) {
+			int code = status.get(30, TimeUnit.SECONDS);
+			if (code == 201)
+				created++;
+			else if (code == 409)
+				conflicts++;
+		}
+		executor.shutdown();
+
+		// Verification
+		assertEquals(1, created);
+		assertEquals(7, conflicts);
+		mvc.perform(get(API_URL, therapistId)
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$", hasSize(1)));
+	}
+
+	/**
+	 * Verify get a client by its email whatever its case
+	 *
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#getClientByEmail(UUID, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenClient_whenGetClientByEmail_thenReturnClient() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = createClient(therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+
+		// API call and Verification
+		mvc.perform(get(API_URL + "?email=Ahmed@Test.com", therapistId)
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id", is(client.getId().toString())));
+		mvc.perform(get(API_URL + "?email=mariam@test.com", therapistId)
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotFound());
+	}
+
 	/**
 	 * Verify add an invalid Client to an therapist client’s list
 	 *
@@ -239,7 +575,7 @@ public class ClientRestIntegrationTest {
 	 * Verify update valid client
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -270,7 +606,7 @@ public class ClientRestIntegrationTest {
 	 * Verify update client with invalid Id
 	 * 
 	 * Test method for
-	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto)}.
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto, String)}.
 	 * 
 	 * @throws Exception
 	 */
@@ -290,6 +626,50 @@ public class ClientRestIntegrationTest {
 				.andExpect(status().isNotFound());
 	}
 	
+	/**
+	 * Verify a client is polled with its ETag, answered with 304 until it changes,
+	 * and only updated with the ETag of its current version
+	 * 
+	 * Test method for
+	 * {@link com.sayedbaladoh.therapistms.controller.ClientController#updateClient(UUID, UUID, ClientUpdateRequestDto, String)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void givenETag_whenConditionalGetAndUpdateClient_thenNotModifiedOrPreconditionFailed() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = createClient(therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+		client.setName("Mohamed");
+
+		// Method call and Verification
+		mvc.perform(get(API_URL + "/{clientId}", therapistId, client.getId()))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+		mvc.perform(get(API_URL + "/{clientId}", therapistId, client.getId())
+				.header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+				.andExpect(content().string(""));
+		mvc.perform(put(API_URL + "/{clientId}", therapistId, client.getId())
+				.header(HttpHeaders.IF_MATCH, "\"0\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(JsonUtil.toJson(client)))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+				.andExpect(jsonPath("$.version", is(1)));
+		mvc.perform(put(API_URL + "/{clientId}", therapistId, client.getId())
+				.header(HttpHeaders.IF_MATCH, "\"0\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(JsonUtil.toJson(client)))
+				.andExpect(status().isPreconditionFailed());
+		mvc.perform(get("/clients/{clientId}", client.getId())
+				.header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+				.andExpect(jsonPath("$.name", is("Mohamed")));
+	}
+
 	/**
 	 * Verify delete client with valid id and therapist Id
 	 * 
@@ -0,0 +1,163 @@
+package com.sayedbaladoh.therapistms.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.sayedbaladoh.therapistms.TherapistApplication;
+import com.sayedbaladoh.therapistms.metrics.RequestMetrics;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.FunctionTimer;
+
+/**
+ * Metrics Integration tests
+ *
+ * Test the request phase timers, the repository gauges and the latency
+ * endpoint
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = { TherapistApplication.class })
+@AutoConfigureMockMvc
+public class MetricsIntegrationTest {
+
+	private final String API_URL = "/therapists/{therapistId}/clients";
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@AfterEach
+	public void cleanUp() {
+		clientRepository.deleteAll();
+	}
+
+	/**
+	 * Validate every phase of a list request is timed
+	 */
+	@Test
+	public void givenClients_whenGetAllClients_thenEveryPhaseTimed() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		createClient(therapistId, "Ahmed");
+		long[] before = counts("ClientController.getAllClients");
+
+		// API call
+		mvc.perform(get(API_URL, therapistId))
+				.andExpect(status().isOk());
+
+		// Verification
+		long[] after = counts("ClientController.getAllClients");
+		for (int phase = 0; phase < after.length; phase++)
+			assertEquals(before[phase] + 1, after[phase], PHASES[phase]);
+	}
+
+	/**
+	 * Validate the asynchronous write of a streamed list is timed as its
+	 * serialization
+	 */
+	@Test
+	public void givenClients_whenStreamAllClients_thenSerializationTimed() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		createClient(therapistId, "Ahmed");
+		long[] before = counts("ClientController.streamAllClients");
+
+		// API call
+		MvcResult mvcResult = mvc.perform(get(API_URL, therapistId).param("stream", "true"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mvc.perform(asyncDispatch(mvcResult))
+				.andExpect(status().isOk());
+
+		// Verification
+		long[] after = counts("ClientController.streamAllClients");
+		assertEquals(before[0] + 1, after[0], "repository");
+		assertEquals(before[2] + 1, after[2], "serialization");
+		assertEquals(before[3] + 1, after[3], "total");
+	}
+
+	/**
+	 * Validate the client gauges
+	 */
+	@Test
+	public void givenClients_whenReadGauges_thenReturnClientCounts() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		createClient(therapistId, "Ahmed");
+		createClient(therapistId, "Mariam");
+		createClient(UUID.randomUUID(), "Mohamed");
+
+		// Verification
+		assertEquals(3, registry.get("therapistms.clients").gauge().value());
+		assertEquals(2, registry.get("therapistms.clients.partition.size").tag("statistic", "max").gauge().value());
+		assertEquals(1.5, registry.get("therapistms.clients.partition.size").tag("statistic", "mean").gauge().value());
+	}
+
+	/**
+	 * Validate the latency endpoint returns the percentiles of each phase
+	 */
+	@Test
+	public void givenTimedRequest_whenGetLatency_thenReturnPercentiles() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		createClient(therapistId, "Ahmed");
+		mvc.perform(get(API_URL, therapistId));
+
+		// API call and Verification
+		mvc.perform(get("/actuator/latency"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$['ClientController.getAllClients'].repository.count").isNumber())
+				.andExpect(jsonPath("$['ClientController.getAllClients'].total.p50").isNumber())
+				.andExpect(jsonPath("$['ClientController.getAllClients'].total.p99").isNumber())
+				.andExpect(jsonPath("$['ClientController.getAllClients'].total.p999").isNumber())
+				.andExpect(jsonPath("$['ClientController.getAllClients'].total.max").isNumber());
+	}
+
+	private static final String[] PHASES = { "repository", "mapping", "serialization", "total" };
+
+	private long[] counts(String endpoint) {
+		long[] counts = new long[PHASES.length];
+		for (int phase = 0; phase < PHASES.length; phase++) {
+			FunctionTimer timer = registry.find(RequestMetrics.TIMER).tag("endpoint", endpoint)
+					.tag("phase", PHASES[phase]).functionTimer();
+			counts[phase] = timer == null ? 0 : (long) timer.count();
+		}
+		return counts;
+	}
+
+	private Client createClient(UUID therapistId, String name) {
+
+		Client client = new Client();
+		client.setTherapistId(therapistId);
+		client.setName(name);
+		client.setEmail(name.toLowerCase() + "@test.com");
+
+		return clientRepository.save(client.getTherapistId(), client);
+	}
+}
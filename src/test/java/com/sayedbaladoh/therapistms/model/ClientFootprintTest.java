@@ -0,0 +1,102 @@
+package com.sayedbaladoh.therapistms.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+
+/**
+ * Client footprint tests
+ *
+ * Measure the heap retained per client with JOL: the objects reachable from
+ * the clients are counted once, so values shared by many clients are spread
+ * over all of them, and checked against a budget.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class ClientFootprintTest {
+
+	private static final int CLIENTS = 10_000;
+	private static final String[] FIRST_NAMES = { "Ahmed", "Mariam", "Omar", "Hana", "Karim", "Sara", "Youssef",
+			"Nour", "Mohamed", "Laila" };
+	private static final String[] LAST_NAMES = { "Ali", "Hassan", "Ibrahim", "Mahmoud", "Mostafa", "Salem", "Fathy",
+			"Kamal" };
+	private static final String[] CITIES = { "Cairo", "Giza", "Alexandria", "Mansoura", "Aswan", "Luxor" };
+	private static final String[] JOBS = { "Engineer", "Teacher", "Doctor", "Accountant", "Designer", "Nurse",
+			"Student", "Lawyer" };
+
+	/**
+	 * Validate a client, with the copies of its values it was built from, fits in
+	 * the per client budget
+	 */
+	@Test
+	public void givenClients_whenMeasureFootprint_thenWithinBudget() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client[] clients = mockClients(therapistId).toArray(new Client[0]);
+
+		// Method call
+		long bytesPerClient = (GraphLayout.parseInstance((Object) clients).totalSize()
+				- VM.current().sizeOf(clients)) / CLIENTS;
+
+		// Verification
+		assertThat(bytesPerClient).isLessThanOrEqualTo(256);
+	}
+
+	/**
+	 * Validate a client held by the repository, with its share of the partition,
+	 * of the client id index and of the secondary indexes, fits in the per client
+	 * budget
+	 */
+	@Test
+	public void givenRepository_whenMeasureFootprint_thenWithinBudget() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		ClientRepository clientRepository = new ClientRepository();
+		long empty = GraphLayout.parseInstance(clientRepository).totalSize();
+		mockClients(therapistId).forEach(client -> clientRepository.save(therapistId, client));
+
+		// Method call
+		long bytesPerClient = (GraphLayout.parseInstance(clientRepository).totalSize() - empty) / CLIENTS;
+
+		// Verification
+		assertThat(bytesPerClient).isLessThanOrEqualTo(1024);
+	}
+
+	/**
+	 * Clients as built from requests: every value is a distinct copy.
+	 */
+	private static List<Client> mockClients(UUID therapistId) {
+		Random random = new Random(42);
+		List<Client> clients = new ArrayList<>(CLIENTS);
+		for (int i = 0; i < CLIENTS; i++) {
+			Client client = new Client();
+			client.setId(UUID.randomUUID());
+			client.setTherapistId(new UUID(therapistId.getMostSignificantBits(),
+					therapistId.getLeastSignificantBits()));
+			client.setName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+					+ LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+			client.setEmail("client" + i + "@test.com");
+			client.setPhoneNumber("+20" + (1_000_000_000L + random.nextInt(1_000_000_000)));
+			client.setAddress(new String(CITIES[random.nextInt(CITIES.length)]));
+			client.setJob(new String(JOBS[random.nextInt(JOBS.length)]));
+			client.setGender(new String(random.nextBoolean() ? "male" : "female"));
+			client.setBirthDate(Date.from(LocalDate.ofEpochDay(random.nextInt(25_000) - 10_000)
+					.atStartOfDay(ZoneOffset.UTC).toInstant()));
+			clients.add(client);
+		}
+		return clients;
+	}
+}
@@ -0,0 +1,329 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sayedbaladoh.therapistms.config.StorageProperties.MapType;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.storage.JdbcStorageEngine;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.LsmStorageEngine;
+import com.sayedbaladoh.therapistms.storage.SpillStore;
+import com.sayedbaladoh.therapistms.storage.Tables;
+import com.sayedbaladoh.therapistms.storage.WriteAheadLog;
+
+/**
+ * Client repository spill unit tests
+ *
+ * Test the Client repository keeps its clients within a memory budget by
+ * spilling cold partitions, and loads them back transparently on any read or
+ * write
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class ClientRepositorySpillTest {
+
+	private static final int THERAPISTS = 50;
+	private static final int CLIENTS_PER_THERAPIST = 20;
+	private static final int RESIDENT_CLIENTS = 100;
+
+	@TempDir
+	Path directory;
+
+	private ClientRepository clientRepository;
+	private List<UUID> therapistIds;
+	private List<Client> clients;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		clientRepository = new ClientRepository(Journal.NONE, MapType.CONCURRENT_HASH_MAP,
+				new SpillStore(directory.resolve("spill"), "clients", 64 * 1024), RESIDENT_CLIENTS);
+		therapistIds = new ArrayList<>();
+		clients = new ArrayList<>();
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		clientRepository.close();
+	}
+
+	/**
+	 * Validate the clients in memory stay within the budget, and the clients of
+	 * spilled partitions are read by every lookup, search and count as if they
+	 * were never spilled
+	 */
+	@Test
+	public void givenBudget_whenSaveManyTherapists_thenColdPartitionsSpilledAndReadBack() throws IOException {
+		// Data preparation
+		saveClients(clientRepository);
+
+		// Method call
+		long spilled = clientRepository.countSpilledPartitions();
+		long resident = clientRepository.countResidentClients();
+
+		// Verification
+		assertThat(resident).isLessThanOrEqualTo(RESIDENT_CLIENTS);
+		assertThat(spilled).isGreaterThanOrEqualTo(THERAPISTS - RESIDENT_CLIENTS / CLIENTS_PER_THERAPIST);
+		assertThat(spillFiles()).isNotEmpty();
+		assertThat(clientRepository.count()).isEqualTo(THERAPISTS);
+		assertThat(clientRepository.countClients()).isEqualTo(THERAPISTS * CLIENTS_PER_THERAPIST);
+		long from = LocalDate.of(1990, 1, 1).toEpochDay();
+		long to = LocalDate.of(1994, 12, 31).toEpochDay();
+		assertThat(clientRepository.countByBirthDate(from, to)).isEqualTo(THERAPISTS * 5);
+		for (Client client : clients) {
+			UUID therapistId = client.getTherapistId();
+			assertThat(clientRepository.findClientById(client.getId()).get()).usingRecursiveComparison()
+					.isEqualTo(client);
+			assertThat(clientRepository.findByEmail(therapistId, client.getEmail()).get().getId())
+					.isEqualTo(client.getId());
+		}
+		for (UUID therapistId : therapistIds) {
+			assertThat(clientRepository.findById(therapistId).get()).hasSize(CLIENTS_PER_THERAPIST);
+			assertThat(clientRepository.search(therapistId, "cairo", 100)).hasSize(CLIENTS_PER_THERAPIST);
+			assertThat(clientRepository.completeName(therapistId, "client 1", 10)).hasSize(10);
+			assertThat(clientRepository.findAll(therapistId, "birthDate")).hasSize(CLIENTS_PER_THERAPIST);
+			assertThat(clientRepository.countByBirthDate(therapistId, from, to)).isEqualTo(5);
+			assertThat(clientRepository.query(therapistId, new ClientFilter("female", null, null, null))
+					.getItems()).hasSize(CLIENTS_PER_THERAPIST / 2);
+		}
+		assertThat(clientRepository.countPartitionFaults()).isGreaterThan(0);
+		assertThat(clientRepository.countPartitionHits()).isGreaterThan(0);
+		assertThat(clientRepository.countResidentClients()).isLessThanOrEqualTo(RESIDENT_CLIENTS);
+		assertThat(clientRepository.countByBirthDate(from, to)).isEqualTo(THERAPISTS * 5);
+		clientRepository.close();
+		assertThat(spillFiles()).isEmpty();
+	}
+
+	/**
+	 * Validate writes to spilled partitions load them back first, so updates,
+	 * removals, email checks and deletions see all their clients
+	 */
+	@Test
+	public void givenSpilledPartitions_whenWrite_thenAppliedToAllClients() throws IOException {
+		// Data preparation
+		saveClients(clientRepository);
+		Client updated = clients.get(0);
+		Client removed = clients.get(1);
+		UUID deletedTherapistId = therapistIds.get(1);
+
+		// Method call
+		Client renamed = new Client(clientRepository.findClientById(updated.getId()).get());
+		renamed.setName("Mohamed");
+		boolean replaced = clientRepository.replace(updated.getTherapistId(),
+				clientRepository.findClientById(updated.getId()).get(), renamed);
+		saveClients(clientRepository);
+		clientRepository.remove(removed.getTherapistId(), removed.getId());
+		saveClients(clientRepository);
+		clientRepository.deleteById(deletedTherapistId);
+
+		// Verification
+		assertThat(replaced).isTrue();
+		assertThat(clientRepository.findClientById(updated.getId()).get().getName()).isEqualTo("Mohamed");
+		assertThat(clientRepository.search(updated.getTherapistId(), "moham", 10)).extracting(Client::getId)
+				.containsExactly(updated.getId());
+		assertThat(clientRepository.findClientById(removed.getId())).isEmpty();
+		assertThat(clientRepository.findById(removed.getTherapistId()).get())
+				.hasSize(3 * CLIENTS_PER_THERAPIST - 1);
+		assertThat(clientRepository.existsById(deletedTherapistId)).isFalse();
+		assertThat(clientRepository.countClients()).isEqualTo(3 * THERAPISTS * CLIENTS_PER_THERAPIST - 1
+				- 3 * CLIENTS_PER_THERAPIST);
+		assertThat(clientRepository.countByBirthDate(Long.MIN_VALUE, Long.MAX_VALUE))
+				.isEqualTo(clientRepository.countClients());
+	}
+
+	/**
+	 * Validate a snapshot taken while partitions are spilled holds their clients,
+	 * and the repository recovered from it spills within its budget too
+	 */
+	@Test
+	public void givenSpilledPartitions_whenCheckpointAndRecover_thenSameClients() throws Exception {
+		// Data preparation
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ofMillis(1))) {
+			ClientRepository durableRepository = new ClientRepository(journal, MapType.OPEN_ADDRESSING,
+					new SpillStore(directory.resolve("durable"), "clients"), RESIDENT_CLIENTS);
+			saveClients(durableRepository);
+			durableRepository.checkpoint();
+			durableRepository.close();
+		}
+
+		// Method call
+		ClientRepository recoveredRepository;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ofMillis(1))) {
+			recoveredRepository = new ClientRepository(journal, MapType.OPEN_ADDRESSING,
+					new SpillStore(directory.resolve("durable"), "clients"), RESIDENT_CLIENTS);
+			recoveredRepository.recover();
+		}
+
+		// Verification
+		assertThat(recoveredRepository.countClients()).isEqualTo(THERAPISTS * CLIENTS_PER_THERAPIST);
+		assertThat(recoveredRepository.countResidentClients()).isLessThanOrEqualTo(RESIDENT_CLIENTS);
+		for (Client client : clients)
+			assertThat(recoveredRepository.findClientById(client.getId()).get()).usingRecursiveComparison()
+					.isEqualTo(client);
+		recoveredRepository.close();
+	}
+
+	/**
+	 * Validate partitions dropped from memory under a budget are read back from
+	 * the JDBC engine by therapist id, with writes made to them before and after
+	 */
+	@Test
+	public void givenJdbcStore_whenSpill_thenReadBackFromDatabase() throws IOException {
+		try (JdbcStorageEngine engine = new JdbcStorageEngine(directory.resolve("database"), 2, Duration.ZERO)) {
+			// Data preparation
+			ClientRepository storedRepository = new ClientRepository(Journal.NONE, MapType.CONCURRENT_HASH_MAP,
+					engine.open(Tables.CLIENTS), null, RESIDENT_CLIENTS);
+			saveClients(storedRepository);
+			Client removed = clients.get(0);
+			UUID therapistId = clients.get(CLIENTS_PER_THERAPIST).getTherapistId();
+
+			// Method call
+			storedRepository.remove(removed.getTherapistId(), removed.getId());
+			clients.add(storedRepository.save(therapistId, mockClient(therapistId, CLIENTS_PER_THERAPIST)));
+
+			// Verification
+			assertThat(storedRepository.countResidentClients()).isLessThanOrEqualTo(RESIDENT_CLIENTS);
+			assertThat(storedRepository.countSpilledPartitions()).isGreaterThan(0);
+			assertThat(spillFiles()).isEmpty();
+			assertThat(storedRepository.countClients()).isEqualTo(THERAPISTS * CLIENTS_PER_THERAPIST);
+			for (Client client : clients.subList(1, clients.size()))
+				assertThat(storedRepository.findClientById(client.getId()).get()).usingRecursiveComparison()
+						.isEqualTo(client);
+			assertThat(storedRepository.findClientById(removed.getId())).isEmpty();
+			assertThat(storedRepository.countPartitionFaults()).isGreaterThan(0);
+		}
+	}
+
+	/**
+	 * Validate partitions dropped from memory under a budget are read back from
+	 * the LSM engine by therapist id, with writes made to them before and after
+	 */
+	@Test
+	public void givenLsmStore_whenSpill_thenReadBackFromTree() throws IOException {
+		try (LsmStorageEngine engine = new LsmStorageEngine(directory.resolve("database"), Duration.ZERO)) {
+			// Data preparation
+			ClientRepository storedRepository = new ClientRepository(Journal.NONE, MapType.CONCURRENT_HASH_MAP,
+					engine.open(Tables.CLIENTS), null, RESIDENT_CLIENTS);
+			saveClients(storedRepository);
+			Client removed = clients.get(0);
+			UUID therapistId = clients.get(CLIENTS_PER_THERAPIST).getTherapistId();
+
+			// Method call
+			storedRepository.remove(removed.getTherapistId(), removed.getId());
+			clients.add(storedRepository.save(therapistId, mockClient(therapistId, CLIENTS_PER_THERAPIST)));
+
+			// Verification
+			assertThat(storedRepository.countResidentClients()).isLessThanOrEqualTo(RESIDENT_CLIENTS);
+			assertThat(storedRepository.countSpilledPartitions()).isGreaterThan(0);
+			assertThat(spillFiles()).isEmpty();
+			assertThat(storedRepository.countClients()).isEqualTo(THERAPISTS * CLIENTS_PER_THERAPIST);
+			for (Client client : clients.subList(1, clients.size()))
+				assertThat(storedRepository.findClientById(client.getId()).get()).usingRecursiveComparison()
+						.isEqualTo(client);
+			assertThat(storedRepository.findClientById(removed.getId())).isEmpty();
+			assertThat(storedRepository.countPartitionFaults()).isGreaterThan(0);
+		}
+	}
+
+	/**
+	 * Validate concurrent readers and writers of random therapists, spilling and
+	 * loading partitions back, lose no client
+	 */
+	@Test
+	public void givenConcurrentReadsAndWrites_whenSpilling_thenNoClientLost() throws Exception {
+		// Data preparation
+		for (int t = 0; t < THERAPISTS; t++)
+			therapistIds.add(UUID.randomUUID());
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<List<Client>>> futures = new ArrayList<>();
+
+		// Method call
+		for (int thread = 0; thread < threads; thread++) {
+			futures.add(executor.submit(() -> {
+				List<Client> saved = new ArrayList<>();
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < 250; i++) {
+					UUID therapistId = therapistIds.get(random.nextInt(THERAPISTS));
+					saved.add(clientRepository.save(therapistId, mockClient(therapistId, i)));
+					Client read = saved.get(random.nextInt(saved.size()));
+					assertThat(clientRepository.findClientById(read.getId())).isPresent();
+					assertThat(clientRepository.findByEmail(read.getTherapistId(), read.getEmail())).isPresent();
+				}
+				return saved;
+			}));
+		}
+		List<Client> saved = new ArrayList<>();
+		for (Future<List<Client>> future : futures)
+			saved.addAll(future.get(60, TimeUnit.SECONDS));
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+
+		// Verification
+		assertThat(clientRepository.countClients()).isEqualTo(saved.size());
+		assertThat(clientRepository.countResidentClients()).isLessThanOrEqualTo(RESIDENT_CLIENTS);
+		for (Client client : saved)
+			assertThat(clientRepository.findClientById(client.getId()).get().getEmail())
+					.isEqualTo(client.getEmail());
+		long total = 0;
+		for (UUID therapistId : therapistIds)
+			total += clientRepository.findById(therapistId).map(partition -> partition.size()).orElse(0);
+		assertThat(total).isEqualTo(saved.size());
+		assertThat(clientRepository.countByBirthDate(Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(saved.size());
+	}
+
+	/**
+	 * Saves the clients of new therapists, with one birth year per client from
+	 * 1980.
+	 */
+	private void saveClients(ClientRepository repository) {
+		for (int t = 0; t < THERAPISTS; t++) {
+			UUID therapistId = therapistIds.size() < THERAPISTS ? UUID.randomUUID() : therapistIds.get(t);
+			if (therapistIds.size() < THERAPISTS)
+				therapistIds.add(therapistId);
+			for (int i = 0; i < CLIENTS_PER_THERAPIST; i++)
+				clients.add(repository.save(therapistId, mockClient(therapistId, i)));
+		}
+	}
+
+	private List<Path> spillFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory.resolve("spill"))) {
+			return files.collect(Collectors.toList());
+		}
+	}
+
+	private static Client mockClient(UUID therapistId, int i) {
+		Client client = new Client();
+		client.setTherapistId(therapistId);
+		client.setName("Client " + i);
+		client.setEmail("client" + UUID.randomUUID() + "@test.com");
+		client.setAddress("Cairo");
+		client.setJob("Engineer");
+		client.setGender(i % 2 == 0 ? "male" : "female");
+		client.setBirthDate(Date.from(LocalDate.of(1980 + i, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+		return client;
+	}
+}
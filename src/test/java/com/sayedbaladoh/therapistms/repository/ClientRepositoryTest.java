@@ -0,0 +1,750 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.config.StorageProperties.MapType;
+import com.sayedbaladoh.therapistms.storage.JdbcStorageEngine;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.Tables;
+import com.sayedbaladoh.therapistms.storage.WriteAheadLog;
+
+/**
+ * Client repository unit tests
+ * 
+ * Test the Client repository under concurrent writers
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public class ClientRepositoryTest {
+
+	private static final int THREADS = 64;
+	private static final int CLIENTS_PER_THREAD = 500;
+	private static final int MOVERS = 16;
+	private static final int CHECKPOINTS = 10;
+
+	private final AtomicInteger sequence = new AtomicInteger();
+
+	private ClientRepository clientRepository;
+	private ExecutorService executor;
+
+	@BeforeEach
+	public void setUp() {
+		clientRepository = new ClientRepository();
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@AfterEach
+	public void tearDown() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Validate no insert is lost when many threads add clients to the same new
+	 * therapist at once
+	 */
+	@Test
+	public void givenNewTherapist_whenConcurrentSave_thenNoClientLost() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+
+		// Method call
+		runConcurrently(() -> {
+			for (int i = 0; i < CLIENTS_PER_THREAD; i++)
+				clientRepository.save(therapistId, mockClient(therapistId));
+		});
+
+		// Verification
+		Map<UUID, Client> clients = clientRepository.findById(therapistId).get();
+		assertThat(clients).hasSize(THREADS * CLIENTS_PER_THREAD);
+	}
+
+	/**
+	 * Validate the first insert of every therapist survives when all threads race
+	 * on creating the same partitions
+	 */
+	@Test
+	public void givenManyNewTherapists_whenConcurrentFirstSave_thenNoClientLost() throws Exception {
+		// Data preparation
+		List<UUID> therapistIds = new ArrayList<>();
+		for (int i = 0; i < CLIENTS_PER_THREAD; i++)
+			therapistIds.add(UUID.randomUUID());
+		CyclicBarrier round = new CyclicBarrier(THREADS);
+
+		// Method call
+		runConcurrently(() -> {
+			for (UUID id : therapistIds) {
+				await(round);
+				clientRepository.save(id, mockClient(id));
+			}
+		});
+
+		// Verification
+		assertThat(clientRepository.count()).isEqualTo(therapistIds.size());
+		therapistIds.forEach(id -> assertThat(clientRepository.findById(id).get()).hasSize(THREADS));
+	}
+
+	/**
+	 * Validate concurrent removals only remove their own clients, and the
+	 * maintained partition size counts the others
+	 */
+	@Test
+	public void givenClients_whenConcurrentSaveAndRemove_thenOnlyRemovedClientsMissing() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		List<Client> removable = new ArrayList<>();
+		for (int i = 0; i < THREADS * 10; i++)
+			removable.add(clientRepository.save(therapistId, mockClient(therapistId)));
+
+		// Method call
+		runConcurrently(() -> {
+			for (int i = 0; i < CLIENTS_PER_THREAD; i++)
+				clientRepository.save(therapistId, mockClient(therapistId));
+		}, () -> removable.forEach(client -> clientRepository.remove(therapistId, client.getId())));
+
+		// Verification
+		assertThat(clientRepository.findById(therapistId).get()).hasSize((THREADS / 2) * CLIENTS_PER_THREAD);
+		assertThat(clientRepository.maxPartitionSize()).isEqualTo((THREADS / 2) * CLIENTS_PER_THREAD);
+	}
+
+	/**
+	 * Validate the client id index matches the partitions after concurrent saves
+	 * and removals
+	 */
+	@Test
+	public void givenConcurrentSaveAndRemove_whenFindClientById_thenIndexMatchesPartitions() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		List<Client> removable = new ArrayList<>();
+		for (int i = 0; i < THREADS * 10; i++)
+			removable.add(clientRepository.save(therapistId, mockClient(therapistId)));
+
+		// Method call
+		runConcurrently(() -> {
+			for (int i = 0; i < CLIENTS_PER_THREAD; i++) {
+				UUID otherTherapistId = UUID.randomUUID();
+				clientRepository.save(otherTherapistId, mockClient(otherTherapistId));
+			}
+		}, () -> removable.forEach(client -> clientRepository.remove(therapistId, client.getId())));
+
+		// Verification
+		removable.forEach(client -> assertThat(clientRepository.findClientById(client.getId())).isEmpty());
+		clientRepository.findAll().forEach(clients -> clients.values()
+				.forEach(client -> assertThat(clientRepository.findClientById(client.getId())).containsSame(client)));
+	}
+
+	/**
+	 * Validate a new version is only published when based on the stored one,
+	 * with the next version number
+	 */
+	@Test
+	public void givenStaleSnapshot_whenReplace_thenRejected() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client current = clientRepository.save(therapistId, mockClient(therapistId));
+		Client first = new Client(current);
+		first.setName("Mohamed");
+		Client second = new Client(current);
+		second.setName("Mariam");
+
+		// Method call and Verification
+		assertThat(clientRepository.replace(therapistId, current, first)).isTrue();
+		assertThat(clientRepository.replace(therapistId, current, second)).isFalse();
+		assertThat(clientRepository.findById(therapistId).get().get(current.getId())).isSameAs(first);
+		assertThat(current.getName()).isEqualTo("Ahmed");
+		assertThat(current.getVersion()).isZero();
+		assertThat(first.getVersion()).isEqualTo(1);
+	}
+
+	/**
+	 * Validate concurrent updates of one client are all applied, none of them
+	 * overwriting another
+	 */
+	@Test
+	public void givenClient_whenConcurrentReplace_thenNoUpdateLost() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = mockClient(therapistId);
+		client.setJob("");
+		clientRepository.save(therapistId, client);
+
+		// Method call
+		runConcurrently(() -> {
+			for (int i = 0; i < 100; i++) {
+				boolean replaced;
+				do {
+					Client current = clientRepository.findById(therapistId).get().get(client.getId());
+					Client updated = new Client(current);
+					updated.setJob(current.getJob() + "x");
+					replaced = clientRepository.replace(therapistId, current, updated);
+				} while (!replaced);
+			}
+		});
+
+		// Verification
+		assertThat(clientRepository.findById(therapistId).get().get(client.getId()).getJob())
+				.hasSize(THREADS * 100);
+		assertThat(clientRepository.findById(therapistId).get().get(client.getId()).getVersion())
+				.isEqualTo(THREADS * 100);
+	}
+
+	/**
+	 * Validate only one of many concurrent inserts of the same email, whatever
+	 * its case, into a therapist's clients succeeds
+	 */
+	@Test
+	public void givenConcurrentSaveOfSameEmail_whenFindByEmail_thenOnlyOneSaved() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		AtomicInteger rejected = new AtomicInteger();
+
+		// Method call
+		runConcurrently(() -> {
+			Client client = mockClient(therapistId);
+			client.setEmail(Thread.currentThread().getId() % 2 == 0 ? "Same@Test.com" : "same@test.com");
+			try {
+				clientRepository.save(therapistId, client);
+			} catch (DuplicateResourceException e) {
+				rejected.incrementAndGet();
+			}
+		});
+
+		// Verification
+		assertThat(rejected.get()).isEqualTo(THREADS - 1);
+		assertThat(clientRepository.findById(therapistId).get()).hasSize(1);
+		Client saved = clientRepository.findById(therapistId).get().values().iterator().next();
+		assertThat(clientRepository.findByEmail(therapistId, "SAME@test.com")).containsSame(saved);
+	}
+
+	/**
+	 * Validate an email is unique within a therapist's clients only, and an
+	 * update can not take the email of another client
+	 */
+	@Test
+	public void givenTakenEmail_whenSaveOrReplace_thenRejectedWithinTherapistOnly() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		UUID otherTherapistId = UUID.randomUUID();
+		Client ahmed = mockClient(therapistId);
+		ahmed.setEmail("ahmed@test.com");
+		clientRepository.save(therapistId, ahmed);
+		Client mariam = mockClient(therapistId);
+		mariam.setEmail("mariam@test.com");
+		clientRepository.save(therapistId, mariam);
+		Client otherAhmed = mockClient(otherTherapistId);
+		otherAhmed.setEmail("Ahmed@test.com");
+		Client duplicate = mockClient(therapistId);
+		duplicate.setEmail("AHMED@test.com");
+		Client renamed = new Client(mariam);
+		renamed.setEmail("ahmed@test.com");
+		Client moved = new Client(mariam);
+		moved.setEmail("mariam@other.com");
+
+		// Method call and Verification
+		assertThat(clientRepository.save(otherTherapistId, otherAhmed)).isSameAs(otherAhmed);
+		assertThatThrownBy(() -> clientRepository.save(therapistId, duplicate))
+				.isInstanceOf(DuplicateResourceException.class);
+		assertThatThrownBy(() -> clientRepository.replace(therapistId, mariam, renamed))
+				.isInstanceOf(DuplicateResourceException.class);
+		assertThat(clientRepository.replace(therapistId, mariam, moved)).isTrue();
+		assertThat(clientRepository.findById(therapistId).get()).hasSize(2);
+		assertThat(clientRepository.findByEmail(therapistId, "ahmed@test.com")).containsSame(ahmed);
+		assertThat(clientRepository.findByEmail(otherTherapistId, "ahmed@test.com")).containsSame(otherAhmed);
+		assertThat(clientRepository.findByEmail(therapistId, "mariam@test.com")).isEmpty();
+		assertThat(clientRepository.findByEmail(therapistId, "mariam@other.com")).containsSame(moved);
+	}
+
+	/**
+	 * Validate an update the journal fails to record is not published and frees
+	 * the email it claimed
+	 */
+	@Test
+	public void givenFailingJournal_whenReplace_thenNotPublishedAndEmailFreed() {
+		// Data preparation
+		FailingJournal journal = new FailingJournal();
+		clientRepository = new ClientRepository(journal);
+		UUID therapistId = UUID.randomUUID();
+		Client current = clientRepository.save(therapistId, mockClient(therapistId));
+		Client updated = new Client(current);
+		updated.setEmail("moved@test.com");
+		Client other = mockClient(therapistId);
+		other.setEmail("moved@test.com");
+
+		// Method call
+		journal.failing = true;
+		assertThatThrownBy(() -> clientRepository.replace(therapistId, current, updated))
+				.isInstanceOf(UncheckedIOException.class);
+		journal.failing = false;
+
+		// Verification
+		assertThat(clientRepository.findById(therapistId).get().get(current.getId())).isSameAs(current);
+		assertThat(clientRepository.findByEmail(therapistId, current.getEmail())).containsSame(current);
+		assertThat(clientRepository.findByEmail(therapistId, "moved@test.com")).isEmpty();
+		assertThat(clientRepository.save(therapistId, other)).isSameAs(other);
+		assertThat(clientRepository.findByEmail(therapistId, "moved@test.com")).containsSame(other);
+	}
+
+	/**
+	 * Validate a filter query reads the smallest index entry of its criteria,
+	 * follows updates and removals, and scans the partition, in parallel once it
+	 * is large on several cores, when no criterion is indexed
+	 */
+	@Test
+	public void givenClients_whenQuery_thenMostSelectiveIndexOrScan() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		List<Client> teachers = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Client client = mockClient(therapistId);
+			client.setGender(i < 8 ? "female" : "male");
+			client.setJob(i < 3 ? "Teacher" : "Engineer");
+			client.setBirthDate(Date.from(LocalDate.of(1985 + i, 6, 1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+			clientRepository.save(therapistId, client);
+			if (i < 3)
+				teachers.add(client);
+		}
+		Client retired = new Client(teachers.get(2));
+		retired.setJob("Retired");
+		clientRepository.replace(therapistId, teachers.get(2), retired);
+		clientRepository.remove(therapistId, teachers.get(1).getId());
+
+		// Method call
+		QueryResult<Client> byJob = clientRepository.query(therapistId,
+				new ClientFilter("female", " TEACHER", LocalDate.of(1980, 1, 1), null));
+		QueryResult<Client> byGender = clientRepository.query(therapistId,
+				new ClientFilter("male", "engineer", null, null));
+		QueryResult<Client> byBirthDate = clientRepository.query(therapistId,
+				new ClientFilter(null, null, LocalDate.of(1992, 6, 1), null));
+		QueryResult<Client> scan = clientRepository.query(therapistId,
+				new ClientFilter(null, null, null, LocalDate.of(1995, 1, 1)));
+
+		// Verification
+		assertThat(byJob.getItems()).containsExactly(teachers.get(0));
+		assertThat(byJob.getPlan().getAccess()).isEqualTo(QueryPlan.INDEX);
+		assertThat(byJob.getPlan().getIndex()).isEqualTo("job");
+		assertThat(byJob.getPlan().getRowsTouched()).isEqualTo(1);
+		assertThat(byGender.getItems()).hasSize(2).allMatch(client -> client.getGender().equals("male"));
+		assertThat(byGender.getPlan().getIndex()).isEqualTo("gender");
+		assertThat(byGender.getPlan().getRowsTouched()).isEqualTo(2);
+		assertThat(byBirthDate.getItems()).extracting(Client::getGender).containsExactlyInAnyOrder("male", "male");
+		assertThat(byBirthDate.getPlan().getIndex()).isEqualTo("birthDate");
+		assertThat(byBirthDate.getPlan().getRowsTouched()).isEqualTo(2);
+		assertThat(scan.getItems()).hasSize(9);
+		assertThat(scan.getPlan().getAccess()).isEqualTo(QueryPlan.SCAN);
+		assertThat(scan.getPlan().isParallel()).isFalse();
+		assertThat(scan.getPlan().getRowsTouched()).isEqualTo(9);
+
+		for (int i = 0; i < ClientRepository.PARALLEL_SCAN_THRESHOLD; i++)
+			clientRepository.save(therapistId, mockClient(therapistId));
+		QueryResult<Client> parallel = clientRepository.query(therapistId, new ClientFilter("male", null, null, null));
+		assertThat(parallel.getItems()).hasSize(ClientRepository.PARALLEL_SCAN_THRESHOLD + 2);
+		assertThat(parallel.getPlan().getAccess()).isEqualTo(QueryPlan.SCAN);
+		assertThat(parallel.getPlan().isParallel()).isEqualTo(ForkJoinPool.getCommonPoolParallelism() > 1);
+	}
+
+	/**
+	 * Validate the clients of a therapist and of all therapists are counted by
+	 * birth date range, following updates and deletions
+	 */
+	@Test
+	public void givenClients_whenCountByBirthDate_thenClientsBornInRange() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		UUID otherTherapistId = UUID.randomUUID();
+		UUID deletedTherapistId = UUID.randomUUID();
+		List<Client> clients = new ArrayList<>();
+		for (int year = 1980; year < 2000; year++) {
+			Client client = mockClient(therapistId);
+			client.setBirthDate(Date.from(LocalDate.of(year, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+			clients.add(clientRepository.save(therapistId, client));
+		}
+		clientRepository.save(therapistId, mockClient(therapistId));
+		Client other = mockClient(otherTherapistId);
+		other.setBirthDate(clients.get(10).getBirthDate());
+		clientRepository.save(otherTherapistId, other);
+		Client deleted = mockClient(deletedTherapistId);
+		deleted.setBirthDate(clients.get(10).getBirthDate());
+		clientRepository.save(deletedTherapistId, deleted);
+
+		Client older = new Client(clients.get(12));
+		older.setBirthDate(Date.from(LocalDate.of(1970, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+		clientRepository.replace(therapistId, clients.get(12), older);
+		clientRepository.remove(therapistId, clients.get(13).getId());
+		clientRepository.deleteById(deletedTherapistId);
+
+		// Method call
+		long from = LocalDate.of(1990, 1, 1).toEpochDay();
+		long to = LocalDate.of(1994, 1, 1).toEpochDay();
+		long therapistCount = clientRepository.countByBirthDate(therapistId, from, to);
+		long allCount = clientRepository.countByBirthDate(from, to);
+
+		// Verification
+		assertThat(therapistCount).isEqualTo(3);
+		assertThat(allCount).isEqualTo(4);
+		assertThat(clientRepository.countByBirthDate(therapistId, Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(19);
+		assertThat(clientRepository.countByBirthDate(therapistId, Long.MIN_VALUE, 0)).isEqualTo(1);
+		assertThat(clientRepository.countByBirthDate(deletedTherapistId, from, to)).isZero();
+		assertThat(clientRepository.countByBirthDate(to, from)).isZero();
+	}
+
+	/**
+	 * Validate the clients of a therapist are read in name, email and birth date
+	 * order, page after page, following updates and deletions
+	 */
+	@Test
+	public void givenClients_whenFindSorted_thenClientsInSortOrder() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		String[] names = { "mariam", "Ahmed", "Omar", "hana", "Karim", "sara" };
+		List<Client> clients = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			Client client = mockClient(therapistId);
+			client.setName(names[i]);
+			client.setEmail("client" + (names.length - i) + "@test.com");
+			if (i > 0)
+				client.setBirthDate(Date.from(LocalDate.of(2000 - i, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+			clients.add(clientRepository.save(therapistId, client));
+		}
+		UUID otherTherapistId = UUID.randomUUID();
+		clientRepository.save(otherTherapistId, mockClient(otherTherapistId));
+
+		Client renamed = new Client(clients.get(2));
+		renamed.setName("Basma");
+		clientRepository.replace(therapistId, clients.get(2), renamed);
+		Client moved = new Client(clients.get(0));
+		moved.setPhoneNumber("+2012345789");
+		clientRepository.replace(therapistId, clients.get(0), moved);
+		clientRepository.remove(therapistId, clients.get(4).getId());
+
+		// Method call
+		List<Client> byName = new ArrayList<>(clientRepository.findAll(therapistId, "name"));
+		List<Client> firstPage = clientRepository.findPage(therapistId, "name", null, 2);
+		List<Client> nextPage = clientRepository.findPage(therapistId, "name",
+				clientRepository.sortKeyOf("name", firstPage.get(1)), 2);
+
+		// Verification
+		assertThat(byName).extracting(Client::getName).containsExactly("Ahmed", "Basma", "hana", "mariam", "sara");
+		assertThat(byName.get(3)).isSameAs(clientRepository.findClientById(moved.getId()).get());
+		assertThat(firstPage).containsExactlyElementsOf(byName.subList(0, 2));
+		assertThat(nextPage).containsExactlyElementsOf(byName.subList(2, 4));
+		assertThat(clientRepository.findAll(therapistId, "email")).extracting(Client::getName)
+				.containsExactly("sara", "hana", "Basma", "Ahmed", "mariam");
+		assertThat(clientRepository.findAll(therapistId, "birthDate")).extracting(Client::getName)
+				.containsExactly("mariam", "sara", "hana", "Basma", "Ahmed");
+		assertThat(clientRepository.findAll(UUID.randomUUID(), "name")).isEmpty();
+		assertThatThrownBy(() -> clientRepository.findAll(therapistId, "phoneNumber"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	/**
+	 * Validate a durable repository is rebuilt from its snapshot and journal,
+	 * client id, email and search indexes and name completions included
+	 */
+	@Test
+	public void givenJournaledWrites_whenRecover_thenSameClients(@TempDir Path directory) throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		UUID deletedTherapistId = UUID.randomUUID();
+		Client kept;
+		Client updated;
+		Client removed;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ofMillis(1))) {
+			ClientRepository durableRepository = new ClientRepository(journal);
+			kept = durableRepository.save(therapistId, mockClient(therapistId));
+			Client current = durableRepository.save(therapistId, mockClient(therapistId));
+			durableRepository.checkpoint();
+			updated = new Client(current);
+			updated.setName("Mohamed");
+			durableRepository.replace(therapistId, current, updated);
+			removed = durableRepository.save(therapistId, mockClient(therapistId));
+			durableRepository.remove(therapistId, removed.getId());
+			durableRepository.save(deletedTherapistId, mockClient(deletedTherapistId));
+			durableRepository.deleteById(deletedTherapistId);
+		}
+
+		// Method call
+		ClientRepository recoveredRepository;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ofMillis(1))) {
+			recoveredRepository = new ClientRepository(journal);
+			recoveredRepository.recover();
+		}
+
+		// Verification
+		assertThat(recoveredRepository.count()).isEqualTo(1);
+		assertThat(recoveredRepository.findById(therapistId).get()).containsOnlyKeys(kept.getId(), updated.getId());
+		assertThat(recoveredRepository.findClientById(updated.getId()).get().getName()).isEqualTo("Mohamed");
+		assertThat(recoveredRepository.findClientById(updated.getId()).get().getVersion()).isEqualTo(1);
+		assertThat(recoveredRepository.findClientById(removed.getId())).isEmpty();
+		assertThat(recoveredRepository.findByEmail(therapistId, kept.getEmail()).get().getId())
+				.isEqualTo(kept.getId());
+		assertThat(recoveredRepository.findByEmail(therapistId, removed.getEmail())).isEmpty();
+		assertThat(recoveredRepository.search(therapistId, "moham", 10)).extracting(Client::getId)
+				.containsExactly(updated.getId());
+		assertThat(recoveredRepository.search(therapistId, "ahmed", 10)).extracting(Client::getId)
+				.containsExactly(kept.getId());
+		assertThat(recoveredRepository.completeName(therapistId, "mo", 10)).containsExactly("Mohamed");
+		assertThat(recoveredRepository.completeName(therapistId, "ah", 10)).containsExactly(kept.getName());
+	}
+
+	/**
+	 * Validate snapshots taken while emails move from client to client are
+	 * recovered, the journal settling the emails a snapshot gives to two clients
+	 */
+	@Test
+	public void givenEmailsMovingDuringCheckpoints_whenRecover_thenSameClients(@TempDir Path directory)
+			throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Map<String, UUID> owners = new ConcurrentHashMap<>();
+		AtomicInteger moves = new AtomicInteger();
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ofMillis(1))) {
+			ClientRepository durableRepository = new ClientRepository(journal);
+			runConcurrently(() -> {
+				for (int i = 0; i < CLIENTS_PER_THREAD; i++)
+					durableRepository.save(therapistId, mockClient(therapistId));
+			});
+			AtomicBoolean moving = new AtomicBoolean(true);
+			List<Future<?>> movers = new ArrayList<>();
+			for (int i = 0; i < MOVERS; i++) {
+				String email = "moving" + i + "@test.com";
+				movers.add(executor.submit(() -> {
+					Client owner = mockClient(therapistId);
+					owner.setEmail(email);
+					durableRepository.save(therapistId, owner);
+					while (moving.get()) {
+						// the email moves away from its owner, then to a new client
+						Client moved = new Client(owner);
+						moved.setEmail(UUID.randomUUID() + "@test.com");
+						assertThat(durableRepository.replace(therapistId, owner, moved)).isTrue();
+						owner = mockClient(therapistId);
+						owner.setEmail(email);
+						durableRepository.save(therapistId, owner);
+						moves.incrementAndGet();
+					}
+					owners.put(email, owner.getId());
+					return null;
+				}));
+			}
+			for (int i = 0; i < CHECKPOINTS; i++)
+				durableRepository.checkpoint();
+			moving.set(false);
+			for (Future<?> mover : movers)
+				mover.get(60, TimeUnit.SECONDS);
+		}
+
+		// Method call
+		ClientRepository recoveredRepository;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ofMillis(1))) {
+			recoveredRepository = new ClientRepository(journal);
+			recoveredRepository.recover();
+		}
+
+		// Verification
+		assertThat(recoveredRepository.findById(therapistId).get())
+				.hasSize(THREADS * CLIENTS_PER_THREAD + MOVERS + moves.get());
+		owners.forEach((email, id) -> assertThat(recoveredRepository.findByEmail(therapistId, email).get().getId())
+				.isEqualTo(id));
+		assertThatThrownBy(() -> {
+			Client duplicate = mockClient(therapistId);
+			duplicate.setEmail("moving0@test.com");
+			recoveredRepository.save(therapistId, duplicate);
+		}).isInstanceOf(DuplicateResourceException.class);
+	}
+
+	/**
+	 * Validate a client whose values take more than 64 KB of UTF-8 is journaled
+	 * and recovered whole
+	 */
+	@Test
+	public void givenLongValues_whenRecover_thenSameClient(@TempDir Path directory) throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = mockClient(therapistId);
+		StringBuilder address = new StringBuilder();
+		while (address.length() < 70_000)
+			address.append("Shar\u00e9 El Nil ");
+		client.setAddress(address.toString());
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ZERO)) {
+			new ClientRepository(journal).save(therapistId, client);
+		}
+
+		// Method call
+		ClientRepository recoveredRepository;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ZERO)) {
+			recoveredRepository = new ClientRepository(journal);
+			recoveredRepository.recover();
+		}
+
+		// Verification
+		assertThat(recoveredRepository.findClientById(client.getId()).get().getAddress())
+				.isEqualTo(address.toString());
+	}
+
+	/**
+	 * Validate a repository written through to the JDBC engine is rebuilt from
+	 * its tables, client id, email and search indexes included
+	 */
+	@Test
+	public void givenJdbcStore_whenRecover_thenSameClients(@TempDir Path directory) throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		UUID replacedTherapistId = UUID.randomUUID();
+		UUID deletedTherapistId = UUID.randomUUID();
+		Client kept;
+		Client updated;
+		Client removed;
+		Client replacing;
+		try (JdbcStorageEngine engine = new JdbcStorageEngine(directory, 2, Duration.ofMillis(1))) {
+			ClientRepository storedRepository = new ClientRepository(Journal.NONE, MapType.CONCURRENT_HASH_MAP,
+					engine.open(Tables.CLIENTS), null, Long.MAX_VALUE);
+			kept = storedRepository.save(therapistId, mockClient(therapistId));
+			Client current = storedRepository.save(therapistId, mockClient(therapistId));
+			updated = new Client(current);
+			updated.setName("Mohamed");
+			storedRepository.replace(therapistId, current, updated);
+			removed = storedRepository.save(therapistId, mockClient(therapistId));
+			storedRepository.remove(therapistId, removed.getId());
+			storedRepository.save(replacedTherapistId, mockClient(replacedTherapistId));
+			replacing = mockClient(replacedTherapistId);
+			replacing.setId(UUID.randomUUID());
+			storedRepository.save(replacedTherapistId, Collections.singletonMap(replacing.getId(), replacing));
+			storedRepository.save(deletedTherapistId, mockClient(deletedTherapistId));
+			storedRepository.deleteById(deletedTherapistId);
+		}
+
+		// Method call
+		ClientRepository recoveredRepository;
+		try (JdbcStorageEngine engine = new JdbcStorageEngine(directory, 2, Duration.ofMillis(1))) {
+			recoveredRepository = new ClientRepository(Journal.NONE, MapType.CONCURRENT_HASH_MAP,
+					engine.open(Tables.CLIENTS), null, Long.MAX_VALUE);
+			recoveredRepository.recover();
+		}
+
+		// Verification
+		assertThat(recoveredRepository.count()).isEqualTo(2);
+		assertThat(recoveredRepository.findById(therapistId).get()).containsOnlyKeys(kept.getId(), updated.getId());
+		assertThat(recoveredRepository.findById(replacedTherapistId).get()).containsOnlyKeys(replacing.getId());
+		assertThat(recoveredRepository.findClientById(updated.getId()).get().getName()).isEqualTo("Mohamed");
+		assertThat(recoveredRepository.findClientById(updated.getId()).get().getVersion()).isEqualTo(1);
+		assertThat(recoveredRepository.findClientById(removed.getId())).isEmpty();
+		assertThat(recoveredRepository.findByEmail(therapistId, kept.getEmail()).get().getId())
+				.isEqualTo(kept.getId());
+		assertThat(recoveredRepository.search(therapistId, "moham", 10)).extracting(Client::getId)
+				.containsExactly(updated.getId());
+	}
+
+	private void runConcurrently(Runnable task) throws Exception {
+		runConcurrently(task, task);
+	}
+
+	/**
+	 * Runs the even task on half of the threads and the odd task on the other
+	 * half, all released at the same time.
+	 */
+	private void runConcurrently(Runnable even, Runnable odd) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			Runnable task = i % 2 == 0 ? even : odd;
+			futures.add(executor.submit(() -> {
+				start.await();
+				task.run();
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures)
+			future.get(60, TimeUnit.SECONDS);
+	}
+
+	private void await(CyclicBarrier barrier) {
+		try {
+			barrier.await(60, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Client mockClient(UUID therapistId) {
+
+		Client client = new Client();
+		client.setTherapistId(therapistId);
+		client.setName("Ahmed");
+		client.setEmail("ahmed" + sequence.incrementAndGet() + "@test.com");
+		client.setGender("male");
+
+		return client;
+	}
+
+	/**
+	 * A journal dropping its records, failing to append them on demand.
+	 */
+	private static class FailingJournal implements Journal {
+
+		volatile boolean failing;
+
+		@Override
+		public boolean isEnabled() {
+			return true;
+		}
+
+		@Override
+		public void append(byte[] record) {
+			if (failing)
+				throw new UncheckedIOException(new IOException("Disk full"));
+		}
+
+		@Override
+		public void sync() {
+		}
+
+		@Override
+		public long rotate() {
+			return 0;
+		}
+
+		@Override
+		public void checkpoint(long segment, RecordWriter snapshot) {
+		}
+
+		@Override
+		public void recover(RecordHandler snapshot, RecordHandler record) {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Completion trie unit tests
+ *
+ * Test the completion trie ranks names by frequency and follows additions and
+ * removals
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class CompletionTrieTest {
+
+	private CompletionTrie trie;
+
+	@BeforeEach
+	public void setUp() {
+		trie = new CompletionTrie();
+	}
+
+	/**
+	 * Validate prefixes of names and of their words complete to the most frequent
+	 * names first, whatever their case and blanks
+	 */
+	@Test
+	public void givenNames_whenComplete_thenMostFrequentFirst() {
+		// Data preparation
+		trie.add("Ahmed Hassan");
+		trie.add("Ahmed Ali");
+		trie.add("ahmed  ali");
+		trie.add("Ahmedy Samir");
+		trie.add("Hassan Omar");
+
+		// Method call and Verification
+		assertThat(trie.complete("ah", 10)).containsExactly("Ahmed Ali", "Ahmed Hassan", "Ahmedy Samir");
+		assertThat(trie.complete("AHMED ", 10)).containsExactly("Ahmed Ali", "Ahmed Hassan");
+		assertThat(trie.complete("ahmed h", 10)).containsExactly("Ahmed Hassan");
+		assertThat(trie.complete("has", 10)).containsExactly("Ahmed Hassan", "Hassan Omar");
+		assertThat(trie.complete("ah", 1)).containsExactly("Ahmed Ali");
+		assertThat(trie.complete("x", 10)).isEmpty();
+		assertThat(trie.size()).isEqualTo(4);
+	}
+
+	/**
+	 * Validate removed names are no longer completed, and nodes left without
+	 * names are dropped or merged
+	 */
+	@Test
+	public void givenRemovedNames_whenComplete_thenRemainingNames() {
+		// Data preparation
+		trie.add("Mariam");
+		int nodes = trie.nodeCount();
+		trie.add("Mariam Saleh");
+		trie.add("Maria");
+		trie.add("Mariam");
+
+		// Method call
+		trie.remove("Mariam Saleh");
+		trie.remove("maria");
+		trie.remove("Mariam");
+		trie.remove("Omar");
+
+		// Verification
+		assertThat(trie.complete("mar", 10)).containsExactly("Mariam");
+		assertThat(trie.complete("sal", 10)).isEmpty();
+		assertThat(trie.size()).isEqualTo(1);
+		assertThat(trie.nodeCount()).isEqualTo(nodes);
+
+		trie.remove("Mariam");
+		assertThat(trie.complete("", 10)).isEmpty();
+		assertThat(trie.nodeCount()).isEqualTo(1);
+	}
+
+	/**
+	 * Validate random additions and removals, more names than a node keeps,
+	 * complete like ranking every matching name
+	 */
+	@Test
+	public void givenRandomWrites_whenComplete_thenSameAsRankingAllNames() {
+		// Data preparation
+		Random random = new Random(42);
+		String[] words = { "ahmed", "ahmedy", "ali", "alia", "hassan", "has", "omar", "mariam", "maria", "sara" };
+		Map<String, Integer> counts = new HashMap<>();
+		List<String> added = new ArrayList<>();
+
+		// Method call
+		for (int i = 0; i < 20_000; i++) {
+			if (!added.isEmpty() && random.nextInt(3) == 0) {
+				String name = added.remove(random.nextInt(added.size()));
+				trie.remove(name);
+				counts.merge(name, -1, Integer::sum);
+				counts.remove(name, 0);
+			} else {
+				String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]
+						+ (random.nextBoolean() ? "" : " " + words[random.nextInt(words.length)]);
+				trie.add(name);
+				added.add(name);
+				counts.merge(name, 1, Integer::sum);
+			}
+		}
+
+		// Verification
+		for (String prefix : new String[] { "", "a", "ah", "ahmed", "ahmed ", "ahmed a", "ali ali", "mari", "s" }) {
+			List<String> expected = counts.keySet().stream()
+					.filter(name -> name.startsWith(prefix) || name.contains(" " + prefix))
+					.sorted(Comparator.comparing((String name) -> -counts.get(name))
+							.thenComparing(Comparator.naturalOrder()))
+					.limit(CompletionTrie.K).collect(Collectors.toList());
+			assertThat(trie.complete(prefix, CompletionTrie.K)).as(prefix).containsExactlyElementsOf(expected);
+		}
+		assertThat(trie.size()).isEqualTo(counts.size());
+	}
+}
@@ -0,0 +1,249 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.storage.Codecs;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.WriteAheadLog;
+
+/**
+ * Log-structured merge repository unit tests
+ *
+ * Test the LSM repository reads back the last write of every id across
+ * flushes and compactions, drops what compaction replaced, recovers its runs
+ * and journal, and stays consistent under concurrent writes
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class LsmRepositoryTest {
+
+	private static final long MEMTABLE_BYTES = 16 * 1024;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Validate saved, updated and deleted clients are read back as last written
+	 * once flushed and compacted, and that compaction of the oldest runs drops
+	 * deleted and overwritten records
+	 */
+	@Test
+	public void givenWritesAcrossRuns_whenCompacted_thenLastWritesRead() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		List<Client> clients = new ArrayList<>();
+		try (LsmRepository<Client> repository = open(Journal.NONE)) {
+			for (int i = 0; i < 2_000; i++)
+				clients.add(save(repository, mockClient(therapistId, i)));
+
+			// Method call
+			for (int round = 0; round < 3; round++)
+				for (int i = 0; i < clients.size(); i += 2) {
+					Client renamed = new Client(clients.get(i));
+					renamed.setName("Renamed " + round);
+					clients.set(i, save(repository, renamed));
+				}
+			for (int i = 1; i < clients.size(); i += 4)
+				repository.deleteById(clients.get(i).getId());
+			repository.flush();
+
+			// Verification
+			assertThat(repository.countCompactions()).isPositive();
+			assertThat(repository.writeAmplification()).isGreaterThan(1);
+			assertThat(repository.diskBytes()).isLessThan(repository.userBytes());
+			assertThat(repository.count()).isEqualTo(1_500);
+			for (int i = 0; i < clients.size(); i++) {
+				Client client = clients.get(i);
+				if (i % 4 == 1) {
+					assertThat(repository.findById(client.getId())).isEmpty();
+					assertThat(repository.existsById(client.getId())).isFalse();
+				} else {
+					assertThat(repository.findById(client.getId()).get()).usingRecursiveComparison().isEqualTo(client);
+				}
+			}
+			assertThat(repository.findAll()).hasSize(1_500).extracting(Client::getId).doesNotHaveDuplicates()
+					.doesNotContain(clients.get(1).getId());
+			repository.deleteAll();
+			assertThat(repository.count()).isZero();
+			assertThat(repository.findById(clients.get(0).getId())).isEmpty();
+		}
+	}
+
+	/**
+	 * Validate a closed repository is reopened from its manifest, the files of
+	 * the runs it does not list being deleted
+	 */
+	@Test
+	public void givenClosedRepository_whenReopen_thenSameClients() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		List<Client> clients = new ArrayList<>();
+		try (LsmRepository<Client> repository = open(Journal.NONE)) {
+			for (int i = 0; i < 1_000; i++)
+				clients.add(save(repository, mockClient(therapistId, i)));
+			repository.deleteById(clients.get(0).getId());
+		}
+		Files.write(directory.resolve("clients-99999999.run"), new byte[] { 1, 2, 3 });
+
+		// Method call
+		try (LsmRepository<Client> repository = open(Journal.NONE)) {
+			repository.flush();
+
+			// Verification
+			assertThat(repository.count()).isEqualTo(999);
+			assertThat(repository.findById(clients.get(0).getId())).isEmpty();
+			assertThat(repository.findById(clients.get(999).getId()).get()).usingRecursiveComparison()
+					.isEqualTo(clients.get(999));
+			assertThat(runFiles()).hasSize(repository.countRuns());
+		}
+	}
+
+	/**
+	 * Validate writes to a closed repository are rejected rather than lost in a
+	 * memtable never flushed
+	 */
+	@Test
+	public void givenClosedRepository_whenWrite_thenRejected() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = mockClient(therapistId, 0);
+		LsmRepository<Client> repository = open(Journal.NONE);
+		repository.close();
+
+		// Method call and Verification
+		assertThatThrownBy(() -> save(repository, client)).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> repository.deleteById(client.getId())).isInstanceOf(IllegalStateException.class);
+		try (LsmRepository<Client> reopened = open(Journal.NONE)) {
+			assertThat(reopened.count()).isZero();
+		}
+	}
+
+	/**
+	 * Validate the writes not flushed when the repository was last left are
+	 * replayed from the journal, over the runs already flushed
+	 */
+	@Test
+	public void givenJournaledWrites_whenReopenWithoutClose_thenReplayed() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		List<Client> clients = new ArrayList<>();
+		Client renamed;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ZERO)) {
+			LsmRepository<Client> repository = open(journal);
+			for (int i = 0; i < 500; i++)
+				clients.add(save(repository, mockClient(therapistId, i)));
+			repository.flush();
+			renamed = new Client(clients.get(0));
+			renamed.setName("Mohamed");
+			save(repository, renamed);
+			repository.deleteById(clients.get(1).getId());
+			clients.add(save(repository, mockClient(therapistId, 500)));
+		}
+
+		// Method call
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "clients", Duration.ZERO);
+				LsmRepository<Client> repository = open(journal)) {
+
+			// Verification
+			assertThat(repository.count()).isEqualTo(500);
+			assertThat(repository.findById(renamed.getId()).get().getName()).isEqualTo("Mohamed");
+			assertThat(repository.existsById(clients.get(1).getId())).isFalse();
+			assertThat(repository.findById(clients.get(500).getId()).get()).usingRecursiveComparison()
+					.isEqualTo(clients.get(500));
+		}
+	}
+
+	/**
+	 * Validate concurrent writers saving and deleting clients while flushes and
+	 * compactions run: the clients left are the last saved
+	 */
+	@Test
+	public void givenConcurrentWrites_whenFlushed_thenLastWritesRead() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		int writers = 4;
+		List<List<Client>> written = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		List<Future<?>> futures = new ArrayList<>();
+
+		try (LsmRepository<Client> repository = open(Journal.NONE)) {
+			// Method call
+			for (int w = 0; w < writers; w++) {
+				List<Client> clients = new ArrayList<>();
+				written.add(clients);
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 3_000; i++) {
+						Client client = save(repository, mockClient(therapistId, i));
+						if (i % 3 == 0)
+							repository.deleteById(client.getId());
+						else
+							clients.add(client);
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+			repository.flush();
+
+			// Verification
+			long expected = 0;
+			for (List<Client> clients : written) {
+				expected += clients.size();
+				for (Client client : clients)
+					assertThat(repository.findById(client.getId()).get().getName()).isEqualTo(client.getName());
+			}
+			assertThat(repository.count()).isEqualTo(expected);
+			assertThat(repository.countCompactions()).isPositive();
+		}
+	}
+
+	private LsmRepository<Client> open(Journal journal) throws Exception {
+		return new LsmRepository<>(Codecs.CLIENT, directory, "clients", journal, MEMTABLE_BYTES, 2);
+	}
+
+	private List<Path> runFiles() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".run")).collect(Collectors.toList());
+		}
+	}
+
+	private static Client save(LsmRepository<Client> repository, Client client) {
+		return repository.save(client.getId(), client);
+	}
+
+	private static Client mockClient(UUID therapistId, int i) {
+		Client client = new Client();
+		client.setId(UUID.randomUUID());
+		client.setTherapistId(therapistId);
+		client.setName("Client " + i);
+		client.setEmail("client" + i + "@test.com");
+		client.setPhoneNumber("+20" + (1_000_000_000L + i));
+		client.setAddress("Cairo");
+		client.setJob("Engineer");
+		client.setBirthDate(new Date(0));
+		client.setGender(i % 2 == 0 ? "male" : "female");
+		return client;
+	}
+}
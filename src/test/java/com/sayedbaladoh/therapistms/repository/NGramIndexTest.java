@@ -0,0 +1,137 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * N-gram index unit tests
+ *
+ * Test the n-gram index ranks partial matches and follows updates and removals
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class NGramIndexTest {
+
+	private NGramIndex<Integer> index;
+
+	@BeforeEach
+	public void setUp() {
+		index = new NGramIndex<>();
+	}
+
+	/**
+	 * Validate word starts rank above matches inside words, whole query matches
+	 * above scattered trigrams, and the limit keeps the best matches
+	 */
+	@Test
+	public void givenTexts_whenSearch_thenBestMatchesFirst() {
+		// Data preparation
+		index.put(1, "Samir Ahmed, Giza, Doctor");
+		index.put(2, "Ahmed Hassan, Cairo, Engineer");
+		index.put(3, "Hamed Samir, Alexandria, Teacher");
+		index.put(4, "Mariam Saleh, Cairo, Accountant");
+
+		// Method call and Verification
+		assertThat(index.search("ham", 10)).containsExactly(3, 2);
+		assertThat(index.search("AHMED SAMIR", 10)).containsExactly(1, 3, 2);
+		assertThat(index.search("ahmed samir", 2)).containsExactly(1, 3);
+		assertThat(index.search("cairo", 10)).containsExactly(2, 4);
+		assertThat(index.search("ca", 10)).containsExactly(2, 4);
+		assertThat(index.search("zzz", 10)).isEmpty();
+		assertThat(index.search("a", 10)).isEmpty();
+	}
+
+	/**
+	 * Validate searches follow updates and removals, and reused document numbers
+	 * do not keep the trigrams of their previous text
+	 */
+	@Test
+	public void givenUpdatesAndRemovals_whenSearch_thenCurrentTextsMatch() {
+		// Data preparation
+		index.put(1, "Ahmed Hassan");
+		index.put(2, "Mariam Saleh");
+
+		// Method call
+		index.put(1, "Ali Hassan");
+		index.remove(2);
+		index.put(3, "Omar Nabil");
+
+		// Verification
+		assertThat(index.search("ahmed", 10)).isEmpty();
+		assertThat(index.search("ali", 10)).containsExactly(1);
+		assertThat(index.search("mariam", 10)).isEmpty();
+		assertThat(index.search("omar", 10)).containsExactly(3);
+		assertThat(index.size()).isEqualTo(2);
+	}
+
+	/**
+	 * Validate a large index keeps every document of a common trigram
+	 */
+	@Test
+	public void givenManyTexts_whenSearchCommonTrigram_thenAllFound() {
+		// Data preparation
+		for (int i = 0; i < 10_000; i++)
+			index.put(i, "Client " + i);
+		for (int i = 0; i < 10_000; i += 2)
+			index.remove(i);
+
+		// Method call and Verification
+		assertThat(index.search("client", 100_000)).hasSize(5_000).allMatch(id -> id % 2 == 1);
+		assertThat(index.search("client 4321", 10)).startsWith(4321);
+	}
+
+	/**
+	 * Validate random puts and removals, which turn posting lists into bitmaps
+	 * and back, find the same ids as matching every text one by one
+	 */
+	@Test
+	public void givenRandomWrites_whenSearch_thenSameIdsAsScan() {
+		// Data preparation
+		Random random = new Random(42);
+		String[] words = { "ahmed", "mariam", "hassan", "cairo", "giza", "engineer", "doctor", "omar" };
+		Map<Integer, String> texts = new HashMap<>();
+
+		// Method call
+		for (int i = 0; i < 50_000; i++) {
+			int id = random.nextInt(i < 25_000 ? 400 : 100_000);
+			if (random.nextInt(4) == 0) {
+				index.remove(id);
+				texts.remove(id);
+			} else {
+				String text = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " " + id;
+				index.put(id, text);
+				texts.put(id, text);
+			}
+		}
+
+		// Verification
+		for (String query : new String[] { "ahm", "cairo eng", "mariam omar", "12" }) {
+			Set<Long> grams = grams(query);
+			Set<Integer> expected = new HashSet<>();
+			texts.forEach((id, text) -> {
+				Set<Long> matched = grams(text);
+				matched.retainAll(grams);
+				if (matched.size() >= (grams.size() + 1) / 2)
+					expected.add(id);
+			});
+			assertThat(index.search(query, Integer.MAX_VALUE)).containsExactlyInAnyOrderElementsOf(expected);
+		}
+		assertThat(index.size()).isEqualTo(texts.size());
+	}
+
+	private Set<Long> grams(String text) {
+		Set<Long> grams = new HashSet<>();
+		for (long gram : NGramIndex.grams(NGramIndex.normalize(text)))
+			grams.add(gram);
+		return grams;
+	}
+}
@@ -0,0 +1,136 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sayedbaladoh.therapistms.model.Client;
+
+/**
+ * Range index unit tests
+ *
+ * Test the range index counts and finds the entities of a range of days per
+ * partition and for all partitions, following inserts, updates and removals
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class RangeIndexTest {
+
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+
+	private RangeIndex<Client> index;
+
+	@BeforeEach
+	public void setUp() {
+		index = new RangeIndex<>("birthDate", Client::getId, Client::getBirthDate);
+	}
+
+	/**
+	 * Validate the entities of a range of days are found in day order, in their
+	 * current version, whatever the time of day and before 1970 too
+	 */
+	@Test
+	public void givenEntities_whenFind_thenEntitiesOfRangeInDayOrder() {
+		// Data preparation
+		UUID partitionId = UUID.randomUUID();
+		Client late = client(-3, 23 * 3_600_000L);
+		Client early = client(-3, 0);
+		Client next = client(-2, 0);
+		Client recent = client(10, 0);
+		for (Client client : new Client[] { recent, late, next, early })
+			index.update(partitionId, client.getId(), null, client);
+		Client renamed = new Client(next);
+		renamed.setName("Mariam");
+		index.update(partitionId, next.getId(), next, renamed);
+		index.update(partitionId, UUID.randomUUID(), null, new Client());
+
+		// Method call
+		List<Client> found = index.find(partitionId, -3, -2);
+
+		// Verification
+		assertThat(found).hasSize(3);
+		assertThat(found.subList(0, 2)).containsExactlyInAnyOrder(late, early);
+		assertThat(found.get(2)).isSameAs(renamed);
+		assertThat(index.count(partitionId, -3, -2)).isEqualTo(3);
+		assertThat(index.count(partitionId, Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(4);
+		assertThat(index.find(partitionId, 11, Long.MAX_VALUE)).isEmpty();
+		assertThat(index.count(UUID.randomUUID(), Long.MIN_VALUE, Long.MAX_VALUE)).isZero();
+	}
+
+	/**
+	 * Validate random writes over many blocks, partitions dropped included, count
+	 * and find like filtering every entity
+	 */
+	@Test
+	public void givenRandomWrites_whenCountAndFind_thenSameAsFilteringAllEntities() {
+		// Data preparation
+		Random random = new Random(42);
+		UUID[] partitionIds = { UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID() };
+		Map<UUID, Map<UUID, Client>> partitions = new HashMap<>();
+
+		// Method call
+		for (int i = 0; i < 30_000; i++) {
+			UUID partitionId = partitionIds[random.nextInt(partitionIds.length)];
+			Map<UUID, Client> clients = partitions.computeIfAbsent(partitionId, id -> new HashMap<>());
+			int operation = random.nextInt(10);
+			if (operation == 0 && random.nextInt(100) == 0) {
+				index.clear(partitionId);
+				partitions.remove(partitionId);
+			} else if (operation < 3 && !clients.isEmpty()) {
+				Client previous = clients.values().iterator().next();
+				Client client = operation == 1 ? null : client(random.nextInt(500) - 250, 0);
+				if (client == null)
+					clients.remove(previous.getId());
+				else {
+					client.setId(previous.getId());
+					clients.put(client.getId(), client);
+				}
+				index.update(partitionId, previous.getId(), previous, client);
+			} else {
+				Client client = client(random.nextInt(500) - 250, random.nextInt(1000));
+				clients.put(client.getId(), client);
+				index.update(partitionId, client.getId(), null, client);
+			}
+		}
+
+		// Verification
+		for (int i = 0; i < 100; i++) {
+			long from = random.nextInt(600) - 300;
+			long to = from + random.nextInt(200);
+			List<Client> all = new ArrayList<>();
+			for (UUID partitionId : partitionIds) {
+				List<Client> expected = partitions.getOrDefault(partitionId, new HashMap<>()).values().stream()
+						.filter(client -> day(client) >= from && day(client) <= to).collect(Collectors.toList());
+				List<Client> found = index.find(partitionId, from, to);
+				assertThat(found).containsExactlyInAnyOrderElementsOf(expected);
+				assertThat(found).extracting(RangeIndexTest::day).isSorted();
+				assertThat(index.count(partitionId, from, to)).isEqualTo(expected.size());
+				all.addAll(expected);
+			}
+			assertThat(index.find(from, to)).containsExactlyInAnyOrderElementsOf(all);
+			assertThat(index.count(from, to)).isEqualTo(all.size());
+		}
+	}
+
+	private static Client client(long day, long millis) {
+		Client client = new Client();
+		client.setId(UUID.randomUUID());
+		client.setBirthDate(new Date(day * MILLIS_PER_DAY + millis));
+		return client;
+	}
+
+	private static long day(Client client) {
+		return RangeIndex.epochDay(client.getBirthDate());
+	}
+}
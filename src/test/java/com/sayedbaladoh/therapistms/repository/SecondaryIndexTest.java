@@ -0,0 +1,422 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
+import com.sayedbaladoh.therapistms.model.Therapist;
+import com.sayedbaladoh.therapistms.storage.Codecs;
+import com.sayedbaladoh.therapistms.storage.Journal;
+import com.sayedbaladoh.therapistms.storage.WriteAheadLog;
+
+/**
+ * Secondary index unit tests
+ *
+ * Test the unique and non-unique indexes of an in memory repository stay in
+ * step with its entities under concurrent writers
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class SecondaryIndexTest {
+
+	private static final int THREADS = 16;
+	private static final int WRITES_PER_THREAD = 5_000;
+	private static final int IDS = 256;
+	private static final int KEYS = 32;
+	private static final int SNAPSHOT_THERAPISTS = 20_000;
+	private static final int CHECKPOINTS = 10;
+
+	private IndexedRepository repository;
+	private ExecutorService executor;
+
+	@BeforeEach
+	public void setUp() {
+		repository = new IndexedRepository(Journal.NONE);
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@AfterEach
+	public void tearDown() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Validate lookups follow saves, updates and deletes
+	 */
+	@Test
+	public void givenIndexedEntities_whenUpdateAndDelete_thenLookupsFollow() {
+		// Data preparation
+		UUID practiceId = UUID.randomUUID();
+		Therapist ahmed = repository.saveOrUpdate(mockTherapist("Ahmed@Test.com", practiceId));
+		Therapist mariam = repository.saveOrUpdate(mockTherapist("mariam@test.com", practiceId));
+
+		// Method call
+		Therapist moved = mockTherapist("ahmed@other.com", UUID.randomUUID());
+		moved.setId(ahmed.getId());
+		repository.saveOrUpdate(moved);
+		repository.deleteById(mariam.getId());
+
+		// Verification
+		assertThat(repository.byEmail.find("ahmed@test.com")).isEmpty();
+		assertThat(repository.byEmail.find("ahmed@other.com")).containsSame(moved);
+		assertThat(repository.byEmail.find("mariam@test.com")).isEmpty();
+		assertThat(repository.byPractice.find(practiceId)).isEmpty();
+		assertThat(repository.byPractice.find(moved.getPracticeId())).containsExactly(moved);
+		assertThat(repository.byPractice.keys()).containsExactly(moved.getPracticeId());
+	}
+
+	/**
+	 * Validate a save taking a unique key from another entity is rejected and
+	 * leaves the repository unchanged
+	 */
+	@Test
+	public void givenTakenKey_whenSave_thenRejected() {
+		// Data preparation
+		Therapist ahmed = repository.saveOrUpdate(mockTherapist("ahmed@test.com", UUID.randomUUID()));
+		Therapist mariam = repository.saveOrUpdate(mockTherapist("mariam@test.com", UUID.randomUUID()));
+		Therapist duplicate = mockTherapist("AHMED@test.com", UUID.randomUUID());
+		duplicate.setId(mariam.getId());
+
+		// Method call and Verification
+		assertThatThrownBy(() -> repository.saveOrUpdate(duplicate)).isInstanceOf(DuplicateResourceException.class);
+		assertThat(repository.findById(mariam.getId())).containsSame(mariam);
+		assertThat(repository.byEmail.find("ahmed@test.com")).containsSame(ahmed);
+		assertThat(repository.byEmail.find("mariam@test.com")).containsSame(mariam);
+		assertThat(repository.byPractice.find(duplicate.getPracticeId())).isEmpty();
+	}
+
+	/**
+	 * Validate the indexes and the sort order match the entities after concurrent
+	 * saves, key changes and deletes of the same ids
+	 */
+	@Test
+	public void givenConcurrentWrites_whenCompareIndexes_thenMatchEntities() throws Exception {
+		// Data preparation
+		List<UUID> ids = new ArrayList<>();
+		for (int i = 0; i < IDS; i++)
+			ids.add(UUID.randomUUID());
+		List<UUID> practiceIds = new ArrayList<>();
+		for (int i = 0; i < KEYS; i++)
+			practiceIds.add(UUID.randomUUID());
+
+		// Method call
+		runConcurrently(() -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = 0; i < WRITES_PER_THREAD; i++) {
+				UUID id = ids.get(random.nextInt(IDS));
+				if (random.nextInt(4) == 0) {
+					repository.deleteById(id);
+					continue;
+				}
+				Therapist therapist = mockTherapist("user" + random.nextInt(IDS * 2) + "@test.com",
+						practiceIds.get(random.nextInt(KEYS)));
+				therapist.setId(id);
+				therapist.setName("Therapist " + random.nextInt(KEYS));
+				try {
+					repository.saveOrUpdate(therapist);
+				} catch (DuplicateResourceException e) {
+					// Another id holds the email
+				}
+			}
+		});
+
+		// Verification
+		assertIndexesMatch();
+	}
+
+	/**
+	 * Validate only one of many concurrent saves of the same unique key to
+	 * different ids succeeds
+	 */
+	@Test
+	public void givenConcurrentDuplicateSaves_whenUniqueKey_thenOnlyOneSucceeds() throws Exception {
+		// Data preparation
+		AtomicInteger saved = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+
+		// Method call
+		runConcurrently(() -> {
+			for (int i = 0; i < 1_000; i++) {
+				try {
+					repository.saveOrUpdate(mockTherapist("same" + i + "@test.com", UUID.randomUUID()));
+					saved.incrementAndGet();
+				} catch (DuplicateResourceException e) {
+					rejected.incrementAndGet();
+				}
+			}
+		});
+
+		// Verification
+		assertThat(saved.get()).isEqualTo(1_000);
+		assertThat(rejected.get()).isEqualTo((THREADS - 1) * 1_000);
+		assertThat(repository.count()).isEqualTo(1_000);
+		assertIndexesMatch();
+	}
+
+	/**
+	 * Validate rejected saves are not journaled, and the indexes are rebuilt on
+	 * recovery
+	 */
+	@Test
+	public void givenRejectedSave_whenRecover_thenIndexesRebuilt(@TempDir Path directory) throws Exception {
+		// Data preparation
+		Therapist ahmed;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "therapists", Duration.ofMillis(1))) {
+			IndexedRepository durableRepository = new IndexedRepository(journal);
+			ahmed = durableRepository.saveOrUpdate(mockTherapist("ahmed@test.com", UUID.randomUUID()));
+			durableRepository.checkpoint();
+			assertThatThrownBy(
+					() -> durableRepository.saveOrUpdate(mockTherapist("ahmed@test.com", UUID.randomUUID())))
+							.isInstanceOf(DuplicateResourceException.class);
+			durableRepository.saveOrUpdate(mockTherapist("mariam@test.com", ahmed.getPracticeId()));
+		}
+
+		// Method call
+		IndexedRepository recoveredRepository;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "therapists", Duration.ofMillis(1))) {
+			recoveredRepository = new IndexedRepository(journal);
+			recoveredRepository.recover();
+		}
+
+		// Verification
+		assertThat(recoveredRepository.count()).isEqualTo(2);
+		assertThat(recoveredRepository.byEmail.find("ahmed@test.com").get().getId()).isEqualTo(ahmed.getId());
+		assertThat(recoveredRepository.byPractice.find(ahmed.getPracticeId())).hasSize(2);
+	}
+
+	/**
+	 * Validate a delete of all the therapists journals each removal but waits
+	 * once for them to be durable, and is recovered
+	 */
+	@Test
+	public void givenTherapists_whenDeleteAll_thenSyncedOnce(@TempDir Path directory) throws Exception {
+		// Data preparation
+		UUID practiceId = UUID.randomUUID();
+		try (WriteAheadLog log = new WriteAheadLog(directory, "therapists", Duration.ofMillis(1))) {
+			SyncCountingJournal journal = new SyncCountingJournal(log);
+			IndexedRepository durableRepository = new IndexedRepository(journal);
+			for (int i = 0; i < 10; i++)
+				durableRepository.saveOrUpdate(mockTherapist("therapist" + i + "@test.com", practiceId));
+			journal.syncs.set(0);
+
+			// Method call
+			durableRepository.deleteAll();
+
+			// Verification
+			assertThat(journal.syncs).hasValue(1);
+			assertThat(durableRepository.count()).isZero();
+		}
+		IndexedRepository recoveredRepository;
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "therapists", Duration.ofMillis(1))) {
+			recoveredRepository = new IndexedRepository(journal);
+			recoveredRepository.recover();
+		}
+		assertThat(recoveredRepository.count()).isZero();
+		assertThat(recoveredRepository.byEmail.find("therapist0@test.com")).isEmpty();
+		assertThat(recoveredRepository.byPractice.find(practiceId)).isEmpty();
+	}
+
+	/**
+	 * Validate snapshots taken while emails move from therapist to therapist are
+	 * recovered, the journal settling the emails a snapshot gives to two of them
+	 */
+	@Test
+	public void givenEmailsMovingDuringCheckpoints_whenRecover_thenSameTherapists(@TempDir Path directory)
+			throws Exception {
+		// Data preparation
+		Map<String, UUID> owners = new ConcurrentHashMap<>();
+		AtomicInteger moves = new AtomicInteger();
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "therapists", Duration.ofMillis(1))) {
+			IndexedRepository durableRepository = new IndexedRepository(journal);
+			runConcurrently(() -> {
+				for (int i = 0; i < SNAPSHOT_THERAPISTS / THREADS; i++)
+					durableRepository.saveOrUpdate(mockTherapist(UUID.randomUUID() + "@test.com", UUID.randomUUID()));
+			});
+			AtomicBoolean moving = new AtomicBoolean(true);
+			List<Future<?>> movers = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				String email = "moving" + i + "@test.com";
+				movers.add(executor.submit(() -> {
+					Therapist owner = durableRepository.saveOrUpdate(mockTherapist(email, UUID.randomUUID()));
+					while (moving.get()) {
+						// the email moves away from its owner, then to a new therapist
+						Therapist moved = mockTherapist(UUID.randomUUID() + "@test.com", owner.getPracticeId());
+						moved.setId(owner.getId());
+						durableRepository.saveOrUpdate(moved);
+						owner = durableRepository.saveOrUpdate(mockTherapist(email, UUID.randomUUID()));
+						moves.incrementAndGet();
+					}
+					owners.put(email, owner.getId());
+				}));
+			}
+			for (int i = 0; i < CHECKPOINTS; i++)
+				durableRepository.checkpoint();
+			moving.set(false);
+			for (Future<?> mover : movers)
+				mover.get(60, TimeUnit.SECONDS);
+		}
+
+		// Method call
+		try (WriteAheadLog journal = new WriteAheadLog(directory, "therapists", Duration.ofMillis(1))) {
+			repository = new IndexedRepository(journal);
+			repository.recover();
+		}
+
+		// Verification
+		assertThat(repository.count()).isEqualTo(SNAPSHOT_THERAPISTS + THREADS + moves.get());
+		owners.forEach((email, id) -> assertThat(repository.byEmail.find(email).get().getId()).isEqualTo(id));
+		assertIndexesMatch();
+	}
+
+	private void assertIndexesMatch() {
+		Map<String, UUID> emails = new HashMap<>();
+		Map<UUID, Set<UUID>> practices = new HashMap<>();
+		List<Therapist> sorted = new ArrayList<>(repository.findAll());
+		sorted.sort(Comparator.comparing((Therapist therapist) -> SortedIndex.text(therapist.getName()))
+				.thenComparing(Therapist::getId));
+		for (Therapist therapist : repository.findAll()) {
+			assertThat(emails.put(therapist.getEmail().toLowerCase(), therapist.getId())).isNull();
+			practices.computeIfAbsent(therapist.getPracticeId(), key -> new HashSet<>()).add(therapist.getId());
+		}
+
+		assertThat(repository.byEmail.keys()).isEqualTo(emails.keySet());
+		emails.forEach((email, id) -> assertThat(repository.byEmail.find(email).get().getId()).isEqualTo(id));
+		assertThat(repository.byPractice.keys()).isEqualTo(practices.keySet());
+		practices.forEach((practiceId, practiceIds) -> {
+			Set<UUID> found = ConcurrentHashMap.newKeySet();
+			repository.byPractice.find(practiceId).forEach(therapist -> found.add(therapist.getId()));
+			assertThat(found).isEqualTo(practiceIds);
+			assertThat(repository.byPractice.count(practiceId)).isEqualTo(practiceIds.size());
+		});
+		List<Therapist> page = repository.byName.findPage(null, sorted.size());
+		assertThat(page).containsExactlyElementsOf(sorted);
+		for (int i = 0; i < sorted.size(); i++)
+			assertThat(page.get(i)).isSameAs(repository.findById(sorted.get(i).getId()).get());
+	}
+
+	private void runConcurrently(Runnable task) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				task.run();
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures)
+			future.get(60, TimeUnit.SECONDS);
+	}
+
+	private Therapist mockTherapist(String email, UUID practiceId) {
+
+		Therapist therapist = new Therapist();
+		therapist.setName("Ahmed");
+		therapist.setEmail(email);
+		therapist.setPracticeId(practiceId);
+
+		return therapist;
+	}
+
+	/**
+	 * A therapist repository with a unique case insensitive email index, a
+	 * practice index and a name sort order.
+	 */
+	private static class IndexedRepository extends InMemoryRepository<UUID, Therapist> {
+
+		private final UniqueIndex<String, UUID, Therapist> byEmail;
+		private final HashIndex<UUID, UUID, Therapist> byPractice;
+		private final SortedIndex<UUID, Therapist> byName;
+
+		IndexedRepository(Journal journal) {
+			super(journal, Codecs.UUID, Codecs.THERAPIST);
+			byEmail = addUniqueIndex("email", therapist -> therapist.getEmail().toLowerCase());
+			byPractice = addIndex("practiceId", Therapist::getPracticeId);
+			byName = addSortedIndex("name", therapist -> SortedIndex.text(therapist.getName()));
+		}
+
+		Therapist saveOrUpdate(Therapist therapist) {
+			if (therapist.getId() == null)
+				therapist.setId(UUID.randomUUID());
+			return save(therapist.getId(), therapist);
+		}
+	}
+
+	/**
+	 * A journal counting the waits for its records to be durable.
+	 */
+	private static class SyncCountingJournal implements Journal {
+
+		private final Journal journal;
+		private final AtomicInteger syncs = new AtomicInteger();
+
+		SyncCountingJournal(Journal journal) {
+			this.journal = journal;
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return journal.isEnabled();
+		}
+
+		@Override
+		public void append(byte[] record) {
+			journal.append(record);
+		}
+
+		@Override
+		public void sync() {
+			syncs.incrementAndGet();
+			journal.sync();
+		}
+
+		@Override
+		public long rotate() {
+			return journal.rotate();
+		}
+
+		@Override
+		public void checkpoint(long segment, RecordWriter snapshot) throws IOException {
+			journal.checkpoint(segment, snapshot);
+		}
+
+		@Override
+		public void recover(RecordHandler snapshot, RecordHandler record) throws IOException {
+			journal.recover(snapshot, record);
+		}
+
+		@Override
+		public void close() throws IOException {
+			journal.close();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sayedbaladoh.therapistms.exception.DuplicateResourceException;
+import com.sayedbaladoh.therapistms.model.Therapist;
+
+/**
+ * Therapist repository unit tests
+ *
+ * Test the Therapist repository practice and email indexes and its
+ * compare-and-set replace
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class TherapistRepositoryTest {
+
+	private TherapistRepository therapistRepository;
+
+	@BeforeEach
+	public void setUp() {
+		therapistRepository = new TherapistRepository();
+	}
+
+	/**
+	 * Validate the therapists of a practice follow saves, copied updates moving a
+	 * therapist to another practice, and deletes
+	 */
+	@Test
+	public void givenPracticeChanges_whenFindByPracticeId_thenReturnCurrentTherapists() {
+		// Data preparation
+		UUID practiceId = UUID.randomUUID();
+		UUID otherPracticeId = UUID.randomUUID();
+		Therapist ahmed = therapistRepository.saveOrUpdate(mockTherapist("Ahmed", practiceId));
+		Therapist mariam = therapistRepository.saveOrUpdate(mockTherapist("Mariam", practiceId));
+		Therapist ali = therapistRepository.saveOrUpdate(mockTherapist("Ali", practiceId));
+
+		// Method call
+		Therapist moved = new Therapist(mariam);
+		moved.setPracticeId(otherPracticeId);
+		therapistRepository.saveOrUpdate(moved);
+		therapistRepository.deleteById(ali.getId());
+
+		// Verification
+		assertThat(therapistRepository.findByPracticeId(practiceId)).containsExactly(ahmed);
+		assertThat(therapistRepository.findByPracticeId(otherPracticeId)).containsExactly(moved);
+		assertThat(therapistRepository.findByPracticeId(UUID.randomUUID())).isEmpty();
+	}
+
+	/**
+	 * Validate a therapist can not take the email of another one, whatever its
+	 * case, and is found by its email
+	 */
+	@Test
+	public void givenTakenEmail_whenSaveOrUpdate_thenRejected() {
+		// Data preparation
+		Therapist ahmed = therapistRepository.saveOrUpdate(mockTherapist("Ahmed", UUID.randomUUID()));
+		Therapist duplicate = mockTherapist("Ahmed", UUID.randomUUID());
+		duplicate.setEmail(" AHMED@test.com");
+
+		// Method call and Verification
+		assertThatThrownBy(() -> therapistRepository.saveOrUpdate(duplicate))
+				.isInstanceOf(DuplicateResourceException.class);
+		assertThat(therapistRepository.count()).isEqualTo(1);
+		assertThat(therapistRepository.findByEmail("Ahmed@Test.com")).containsSame(ahmed);
+		assertThat(therapistRepository.findByEmail("mariam@test.com")).isEmpty();
+	}
+
+	/**
+	 * Validate a therapist is replaced only if it was not changed since it was
+	 * read, and its version is incremented on every replace
+	 */
+	@Test
+	public void givenStaleTherapist_whenReplace_thenRejected() {
+		// Data preparation
+		Therapist ahmed = therapistRepository.saveOrUpdate(mockTherapist("Ahmed", UUID.randomUUID()));
+		Therapist first = new Therapist(ahmed);
+		first.setName("Ahmed Ali");
+		Therapist second = new Therapist(ahmed);
+		second.setName("Ahmed Omar");
+		Therapist taken = therapistRepository.saveOrUpdate(mockTherapist("Mariam", UUID.randomUUID()));
+
+		// Method call
+		boolean firstReplaced = therapistRepository.replace(ahmed, first);
+		boolean secondReplaced = therapistRepository.replace(ahmed, second);
+
+		// Verification
+		assertThat(firstReplaced).isTrue();
+		assertThat(secondReplaced).isFalse();
+		assertThat(therapistRepository.findById(ahmed.getId())).containsSame(first);
+		assertThat(ahmed.getVersion()).isZero();
+		assertThat(first.getVersion()).isEqualTo(1);
+		Therapist duplicate = new Therapist(first);
+		duplicate.setEmail(taken.getEmail());
+		assertThatThrownBy(() -> therapistRepository.replace(first, duplicate))
+				.isInstanceOf(DuplicateResourceException.class);
+		assertThat(therapistRepository.findById(ahmed.getId())).containsSame(first);
+		therapistRepository.deleteById(ahmed.getId());
+		assertThat(therapistRepository.replace(first, new Therapist(first))).isFalse();
+		assertThat(therapistRepository.count()).isEqualTo(1);
+	}
+
+	private Therapist mockTherapist(String name, UUID practiceId) {
+
+		Therapist therapist = new Therapist();
+		therapist.setName(name);
+		therapist.setEmail(name.toLowerCase() + "@test.com");
+		therapist.setPracticeId(practiceId);
+
+		return therapist;
+	}
+}
@@ -0,0 +1,210 @@
+package com.sayedbaladoh.therapistms.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Test;
+
+import com.sayedbaladoh.therapistms.config.StorageProperties.MapType;
+import com.sayedbaladoh.therapistms.model.Therapist;
+import com.sayedbaladoh.therapistms.storage.Journal;
+
+/**
+ * UUID hash map unit tests
+ *
+ * Test the open addressing map behaves like a <code>HashMap</code> through
+ * growth and removals, keeps its entries under concurrent writes and iteration,
+ * and holds the entities of a repository
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class UuidHashMapTest {
+
+	/**
+	 * Validate random puts, removes and computes over few segments, so the keys
+	 * collide and probe, give the same entries as a <code>HashMap</code>
+	 */
+	@Test
+	public void givenRandomWrites_whenRead_thenSameAsHashMap() {
+		// Data preparation
+		Random random = new Random(42);
+		UUID[] keys = new UUID[2_000];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = new UUID(random.nextInt(64), random.nextLong());
+		UuidHashMap<Integer> map = new UuidHashMap<>(2);
+		Map<UUID, Integer> expected = new HashMap<>();
+
+		// Method call
+		for (int i = 0; i < 50_000; i++) {
+			UUID key = keys[random.nextInt(keys.length)];
+			switch (random.nextInt(5)) {
+			case 0:
+			case 1:
+				assertThat(map.put(key, i)).isEqualTo(expected.put(key, i));
+				break;
+			case 2:
+				assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+				break;
+			case 3:
+				int value = i;
+				BiFunction<UUID, Integer, Integer> remapping = (id, current) -> current == null || current % 2 == 0
+						? value
+						: null;
+				assertThat(map.compute(key, remapping)).isEqualTo(expected.compute(key, remapping));
+				break;
+			default:
+				assertThat(map.putIfAbsent(key, i)).isEqualTo(expected.putIfAbsent(key, i));
+			}
+		}
+
+		// Verification
+		assertThat(map).hasSize(expected.size()).isEqualTo(expected);
+		for (UUID key : keys)
+			assertThat(map.get(new UUID(key.getMostSignificantBits(), key.getLeastSignificantBits())))
+					.isEqualTo(expected.get(key));
+		map.keySet().removeIf(key -> key.getMostSignificantBits() % 2 == 0);
+		expected.keySet().removeIf(key -> key.getMostSignificantBits() % 2 == 0);
+		assertThat(map).isEqualTo(expected);
+		map.clear();
+		assertThat(map).isEmpty();
+		assertThat(map.get(keys[0])).isNull();
+	}
+
+	/**
+	 * Validate a compute function can read the map, its own segment included,
+	 * as it can a <code>ConcurrentHashMap</code>
+	 */
+	@Test
+	public void givenComputeFunction_whenReadMap_thenReadsCurrentEntries() {
+		// Data preparation
+		UuidHashMap<String> map = new UuidHashMap<>(1);
+		UUID first = UUID.randomUUID();
+		UUID second = UUID.randomUUID();
+		map.put(first, "first");
+
+		// Method call
+		String computed = map.compute(second, (id, current) -> map.get(first) + " then second");
+
+		// Verification
+		assertThat(computed).isEqualTo("first then second");
+		assertThat(map).containsEntry(second, "first then second").hasSize(2);
+	}
+
+	/**
+	 * Validate concurrent writers, readers and iterators: the keys never removed
+	 * are always found and iterated exactly once, and the keys written and not
+	 * removed are all found in the end
+	 */
+	@Test
+	public void givenConcurrentWrites_whenReadAndIterate_thenStableKeysAlwaysFound() throws Exception {
+		// Data preparation
+		UuidHashMap<Integer> map = new UuidHashMap<>(4);
+		List<UUID> stable = new ArrayList<>();
+		for (int i = 0; i < 1_000; i++) {
+			UUID key = UUID.randomUUID();
+			stable.add(key);
+			map.put(key, -1);
+		}
+		int writers = 4;
+		int writes = 20_000;
+		List<List<UUID>> written = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+		List<Future<?>> futures = new ArrayList<>();
+
+		// Method call
+		for (int w = 0; w < writers; w++) {
+			List<UUID> keys = new ArrayList<>();
+			written.add(keys);
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < writes; i++) {
+					UUID key = UUID.randomUUID();
+					map.put(key, i);
+					if (i % 3 == 0)
+						map.remove(key);
+					else
+						keys.add(key);
+				}
+			}));
+		}
+		futures.add(executor.submit(() -> {
+			for (int round = 0; round < 20; round++)
+				for (UUID key : stable)
+					assertThat(map.get(key)).isEqualTo(-1);
+		}));
+		futures.add(executor.submit(() -> {
+			for (int round = 0; round < 5; round++) {
+				Set<UUID> seen = new HashSet<>();
+				for (UUID key : map.keySet())
+					assertThat(seen.add(key)).isTrue();
+				assertThat(seen).containsAll(stable);
+			}
+		}));
+		for (Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		// Verification
+		int expectedSize = stable.size();
+		for (List<UUID> keys : written) {
+			expectedSize += keys.size();
+			for (UUID key : keys)
+				assertThat(map).containsKey(key);
+		}
+		assertThat(map).hasSize(expectedSize);
+		Iterator<Map.Entry<UUID, Integer>> entries = map.entrySet().iterator();
+		int iterated = 0;
+		for (; entries.hasNext(); entries.next())
+			iterated++;
+		assertThat(iterated).isEqualTo(expectedSize);
+	}
+
+	/**
+	 * Validate a repository keeping its entities in the open addressing map
+	 * saves, updates, pages through and deletes them like the default one
+	 */
+	@Test
+	public void givenOpenAddressingRepository_whenWrite_thenFoundById() {
+		// Data preparation
+		TherapistRepository repository = new TherapistRepository(Journal.NONE, MapType.OPEN_ADDRESSING);
+		List<Therapist> therapists = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			Therapist therapist = new Therapist();
+			therapist.setName("Therapist " + i);
+			therapist.setEmail("therapist" + i + "@test.com");
+			therapists.add(repository.saveOrUpdate(therapist));
+		}
+
+		// Method call
+		Therapist renamed = new Therapist(therapists.get(0));
+		renamed.setName("Renamed");
+		boolean replaced = repository.replace(therapists.get(0), renamed);
+		repository.deleteById(therapists.get(1).getId());
+
+		// Verification
+		assertThat(replaced).isTrue();
+		assertThat(repository.count()).isEqualTo(99);
+		assertThat(repository.findById(renamed.getId())).containsSame(renamed);
+		assertThat(repository.existsById(therapists.get(1).getId())).isFalse();
+		assertThat(repository.findByEmail("THERAPIST2@test.com")).containsSame(therapists.get(2));
+		assertThat(repository.findAll()).hasSize(99).contains(renamed);
+		assertThat(repository.findPage(null, 200)).hasSize(99);
+		repository.deleteAll();
+		assertThat(repository.count()).isZero();
+	}
+}
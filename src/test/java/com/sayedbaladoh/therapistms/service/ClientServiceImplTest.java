@@ -1,11 +1,13 @@
 package com.sayedbaladoh.therapistms.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,6 +24,9 @@ import org.mockito.Mockito;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.exception.NotModifiedException;
+import com.sayedbaladoh.therapistms.exception.PreconditionFailedException;
 import com.sayedbaladoh.therapistms.exception.ResourceNotFoundException;
 import com.sayedbaladoh.therapistms.model.Client;
 import com.sayedbaladoh.therapistms.repository.ClientRepository;
@@ -77,7 +82,7 @@ public class ClientServiceImplTest {
 				.willReturn(mockedClientsResponseDto);
 
 		// Method call
-		List<ClientResponseDto> clientsList = clientService.getAllClients(therapistId);
+		List<ClientResponseDto> clientsList = clientService.getAllClients(therapistId, null);
 
 		// Verification
 		assertThat(clientsList).isNotNull();
@@ -99,7 +104,7 @@ public class ClientServiceImplTest {
 
 		// Method call and verification
 		ResourceNotFoundException thrown = assertThrows(ResourceNotFoundException.class, () -> {
-			clientService.getAllClients(therapistId);
+			clientService.getAllClients(therapistId, null);
 		});
 		assertTrue(thrown.getMessage()
 				.contains(String.format("No clients found with therapist id: %s.", therapistId.toString())));
@@ -109,6 +114,50 @@ public class ClientServiceImplTest {
 		Mockito.verifyNoInteractions(objectMapperHelper);
 	}
 
+	/**
+	 * Validate a client matching the If-None-Match header is not mapped
+	 */
+	@Test
+	public void givenMatchingETag_whenGetClient_thenThrowNotModifiedExceptionWithoutMapping() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = mockClient(UUID.randomUUID(), therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+		client.setVersion(3);
+
+		given(clientRepository.findClientById(client.getId())).willReturn(Optional.of(client));
+
+		// Method call and verification
+		NotModifiedException thrown = assertThrows(NotModifiedException.class, () -> {
+			clientService.getClient(client.getId(), "\"2\", W/\"3\"");
+		});
+		assertEquals(3, thrown.getVersion());
+
+		Mockito.verifyNoInteractions(objectMapperHelper);
+	}
+
+	/**
+	 * Validate an update based on an older version of the client is rejected
+	 */
+	@Test
+	public void givenStaleETag_whenUpdateClient_thenThrowPreconditionFailedException() {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		Client client = mockClient(UUID.randomUUID(), therapistId, "Ahmed", "ahmed@test.com", "male", "+2012345789");
+		client.setVersion(3);
+		Map<UUID, Client> clientsMap = Collections.singletonMap(client.getId(), client);
+
+		given(clientRepository.findById(therapistId)).willReturn(Optional.of(clientsMap));
+
+		// Method call and verification
+		assertThrows(PreconditionFailedException.class, () -> {
+			clientService.updateClient(therapistId, client.getId(), new ClientUpdateRequestDto(), "\"2\"");
+		});
+
+		Mockito.verify(clientRepository, Mockito.times(1)).findById(therapistId);
+		Mockito.verifyNoMoreInteractions(clientRepository);
+		Mockito.verifyNoInteractions(objectMapperHelper);
+	}
+
 	private Client mockClient(UUID id, UUID therapistId, String name, String email, String gender, String phoneNumber) {
 
 		Client client = new Client();
@@ -0,0 +1,137 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sayedbaladoh.therapistms.model.Client;
+
+/**
+ * JDBC storage engine unit tests
+ * 
+ * Test the entity stores of the H2 engine commit the writes of concurrent
+ * writers by group, in order, and read them back after a restart
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public class JdbcStorageEngineTest {
+
+	private static final int THREADS = 8;
+	private static final int CLIENTS_PER_THREAD = 50;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Validate every synced client of concurrent writers is in the table once
+	 * the engine is restarted, with every field
+	 */
+	@Test
+	public void givenConcurrentWriters_whenRestart_thenAllClientsLoaded() throws Exception {
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		List<Client> saved = new ArrayList<>();
+		try (JdbcStorageEngine engine = new JdbcStorageEngine(directory, 4, Duration.ofMillis(1))) {
+			EntityStore<Client> store = engine.open(Tables.CLIENTS);
+
+			// Method call
+			ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+			List<Future<List<Client>>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(() -> {
+					List<Client> clients = new ArrayList<>();
+					for (int i = 0; i < CLIENTS_PER_THREAD; i++) {
+						Client client = mockClient(therapistId, i);
+						store.save(therapistId, client.getId(), client);
+						store.sync();
+						clients.add(client);
+					}
+					return clients;
+				}));
+			}
+			for (Future<List<Client>> future : futures)
+				saved.addAll(future.get(60, TimeUnit.SECONDS));
+			executor.shutdown();
+		}
+
+		// Verification
+		List<Client> loaded = load();
+		loaded.sort(Comparator.comparing(Client::getId));
+		saved.sort(Comparator.comparing(Client::getId));
+		assertThat(loaded).hasSize(THREADS * CLIENTS_PER_THREAD);
+		assertThat(loaded).usingRecursiveComparison().isEqualTo(saved);
+	}
+
+	/**
+	 * Validate saves, removals and partition deletions queued together are
+	 * applied in the order they were queued, and a partition is read by its id
+	 */
+	@Test
+	public void givenMixedWrites_whenSync_thenAppliedInOrder() throws IOException {
+		try (JdbcStorageEngine engine = new JdbcStorageEngine(directory, 4, Duration.ofMillis(1))) {
+			// Data preparation
+			EntityStore<Client> store = engine.open(Tables.CLIENTS);
+			UUID therapistId = UUID.randomUUID();
+			UUID otherTherapistId = UUID.randomUUID();
+			Client first = mockClient(therapistId, 1);
+			Client second = mockClient(therapistId, 2);
+			Client other = mockClient(otherTherapistId, 3);
+			Client renamed = new Client(second);
+			renamed.setName("Mohamed");
+
+			// Method call
+			store.save(therapistId, first.getId(), first);
+			store.save(therapistId, second.getId(), second);
+			store.save(otherTherapistId, other.getId(), other);
+			store.deletePartition(therapistId);
+			store.save(therapistId, second.getId(), second);
+			store.save(therapistId, renamed.getId(), renamed);
+			store.delete(other.getId());
+			store.sync();
+
+			// Verification
+			assertThat(store.findByPartition(therapistId)).extracting(Client::getName).containsExactly("Mohamed");
+			assertThat(store.findByPartition(otherTherapistId)).isEmpty();
+		}
+	}
+
+	private List<Client> load() throws IOException {
+		List<Client> loaded = new ArrayList<>();
+		try (JdbcStorageEngine engine = new JdbcStorageEngine(directory, 4, Duration.ofMillis(1))) {
+			engine.open(Tables.CLIENTS).load((therapistId, client) -> loaded.add(client));
+		}
+		return loaded;
+	}
+
+	private static Client mockClient(UUID therapistId, int i) {
+		Client client = new Client();
+		client.setId(UUID.randomUUID());
+		client.setTherapistId(therapistId);
+		client.setName("Client " + i);
+		client.setEmail("client" + i + "@test.com");
+		client.setPhoneNumber("0100000000" + i % 10);
+		client.setAddress("Cairo");
+		client.setJob("Engineer");
+		client.setGender("female");
+		client.setBirthDate(Date.from(LocalDate.of(1980 + i % 40, 1 + i % 12, 1 + i % 28)
+				.atStartOfDay(ZoneOffset.UTC).toInstant()));
+		return client;
+	}
+}
@@ -0,0 +1,195 @@
+package com.sayedbaladoh.therapistms.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Write-ahead log unit tests
+ * 
+ * Test the durability and replay of the write-ahead log
+ * 
+ * @author Sayed Baladoh
+ *
+ */
+public class WriteAheadLogTest {
+
+	private static final int THREADS = 16;
+	private static final int RECORDS_PER_THREAD = 200;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Validate every synced record of concurrent writers is replayed, with group
+	 * commit and with fsync per write
+	 */
+	@Test
+	public void givenConcurrentWriters_whenReplay_thenAllRecordsReplayed() throws Exception {
+		for (Duration window : new Duration[] { Duration.ZERO, Duration.ofMillis(1) }) {
+			// Data preparation
+			String name = "log-" + window.toMillis();
+			WriteAheadLog writeAheadLog = new WriteAheadLog(directory, name, window);
+
+			// Method call
+			ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+						writeAheadLog.append(record(thread * RECORDS_PER_THREAD + i));
+						writeAheadLog.sync();
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get(60, TimeUnit.SECONDS);
+			executor.shutdown();
+			writeAheadLog.close();
+
+			// Verification
+			assertThat(replay(name)).hasSize(THREADS * RECORDS_PER_THREAD);
+		}
+	}
+
+	/**
+	 * Validate a torn record at the end of the log is dropped and the log can be
+	 * appended to again
+	 */
+	@Test
+	public void givenTornTail_whenRecover_thenTailTruncated() throws IOException {
+		// Data preparation
+		WriteAheadLog writeAheadLog = new WriteAheadLog(directory, "torn", Duration.ZERO);
+		writeAheadLog.append(record(1));
+		writeAheadLog.append(record(2));
+		writeAheadLog.close();
+		try (FileChannel channel = FileChannel.open(directory.resolve("torn.00000001.wal"),
+				StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 4, 1, 2 }), channel.size());
+		}
+
+		// Method call
+		writeAheadLog = new WriteAheadLog(directory, "torn", Duration.ZERO);
+		List<Integer> replayed = new ArrayList<>();
+		writeAheadLog.recover(snapshot -> {
+		}, record -> replayed.add(record.readInt()));
+		writeAheadLog.append(record(3));
+		writeAheadLog.close();
+
+		// Verification
+		assertThat(replayed).containsExactly(1, 2);
+		assertThat(replay("torn")).containsExactly(1, 2, 3);
+	}
+
+	/**
+	 * Validate a tail the crash left zero filled is dropped like a torn record
+	 * and the log can be appended to again
+	 */
+	@Test
+	public void givenZeroFilledTail_whenRecover_thenTailTruncated() throws IOException {
+		// Data preparation
+		WriteAheadLog writeAheadLog = new WriteAheadLog(directory, "zeros", Duration.ZERO);
+		writeAheadLog.append(record(1));
+		writeAheadLog.append(record(2));
+		writeAheadLog.close();
+		try (FileChannel channel = FileChannel.open(directory.resolve("zeros.00000001.wal"),
+				StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[4096]), channel.size());
+		}
+
+		// Method call
+		writeAheadLog = new WriteAheadLog(directory, "zeros", Duration.ZERO);
+		List<Integer> replayed = new ArrayList<>();
+		writeAheadLog.recover(snapshot -> {
+		}, record -> replayed.add(record.readInt()));
+		writeAheadLog.append(record(3));
+		writeAheadLog.close();
+
+		// Verification
+		assertThat(replayed).containsExactly(1, 2);
+		assertThat(replay("zeros")).containsExactly(1, 2, 3);
+	}
+
+	/**
+	 * Validate recovery loads the snapshot and only replays the segments written
+	 * after it, and that the covered segments are dropped
+	 */
+	@Test
+	public void givenCheckpoint_whenRecover_thenSnapshotAndTailReplayed() throws IOException {
+		// Data preparation
+		WriteAheadLog writeAheadLog = new WriteAheadLog(directory, "checkpointed", Duration.ofMillis(1));
+		writeAheadLog.append(record(1));
+		writeAheadLog.append(record(2));
+		long segment = writeAheadLog.rotate();
+		writeAheadLog.append(record(3));
+		writeAheadLog.checkpoint(segment, out -> out.writeInt(12));
+		writeAheadLog.append(record(4));
+		writeAheadLog.close();
+
+		// Method call
+		List<Integer> snapshot = new ArrayList<>();
+		List<Integer> replayed = new ArrayList<>();
+		try (WriteAheadLog recovered = new WriteAheadLog(directory, "checkpointed", Duration.ofMillis(1))) {
+			recovered.recover(in -> snapshot.add(in.readInt()), record -> replayed.add(record.readInt()));
+		}
+
+		// Verification
+		assertThat(snapshot).containsExactly(12);
+		assertThat(replayed).containsExactly(3, 4);
+		assertThat(directory.resolve("checkpointed.00000001.wal")).doesNotExist();
+	}
+
+	/**
+	 * Validate a segment written with another format version is rejected on
+	 * recovery rather than misread
+	 */
+	@Test
+	public void givenSegmentOfOtherVersion_whenRecover_thenRejected() throws IOException {
+		// Data preparation
+		WriteAheadLog writeAheadLog = new WriteAheadLog(directory, "versioned", Duration.ZERO);
+		writeAheadLog.append(record(1));
+		writeAheadLog.close();
+		try (FileChannel channel = FileChannel.open(directory.resolve("versioned.00000001.wal"),
+				StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { Codecs.FORMAT_VERSION + 1 }), Integer.BYTES);
+		}
+
+		// Method call
+		try (WriteAheadLog recovered = new WriteAheadLog(directory, "versioned", Duration.ZERO)) {
+
+			// Verification
+			assertThatThrownBy(() -> recovered.recover(snapshot -> {
+			}, record -> {
+			})).isInstanceOf(IOException.class).hasMessageContaining("Unsupported format version");
+		}
+	}
+
+	private List<Integer> replay(String name) throws IOException {
+		List<Integer> replayed = new ArrayList<>();
+		try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, name, Duration.ZERO)) {
+			writeAheadLog.recover(snapshot -> {
+			}, record -> replayed.add(record.readInt()));
+		}
+		return replayed;
+	}
+
+	private byte[] record(int value) {
+		return ByteBuffer.allocate(4).putInt(value).array();
+	}
+}
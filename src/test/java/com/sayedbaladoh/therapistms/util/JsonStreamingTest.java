@@ -0,0 +1,144 @@
+package com.sayedbaladoh.therapistms.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.BDDMockito.given;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.repository.ClientRepository;
+import com.sayedbaladoh.therapistms.service.ClientService;
+import com.sayedbaladoh.therapistms.service.ClientServiceImpl;
+
+/**
+ * Streaming JSON unit tests
+ *
+ * Test a large list is streamed in constant memory. Run by the
+ * <code>streaming-test</code> Surefire execution, in its own JVM with a heap
+ * far too small to hold the mapped list.
+ *
+ * @author Sayed Baladoh
+ *
+ */
+@Tag("streaming")
+public class JsonStreamingTest {
+
+	private static final int CLIENTS = 500_000;
+	private static final long SMALL_HEAP = 64L * 1024 * 1024;
+
+	/**
+	 * Validate 500k clients are streamed with a small heap
+	 */
+	@Test
+	public void givenManyClients_whenStreamAllClients_thenWrittenWithSmallHeap() throws IOException {
+		assumeTrue(Runtime.getRuntime().maxMemory() <= SMALL_HEAP, "Needs a small heap, see the streaming-test execution");
+
+		// Data preparation
+		UUID therapistId = UUID.randomUUID();
+		ClientRepository clientRepository = Mockito.mock(ClientRepository.class);
+		given(clientRepository.findById(therapistId))
+				.willReturn(Optional.of(new GeneratedClients(therapistId, CLIENTS)));
+		ClientService clientService = new ClientServiceImpl(clientRepository, new ObjectMapperHelper());
+		JsonShapeOutputStream out = new JsonShapeOutputStream();
+
+		// Method call
+		JsonStreaming.array(new ObjectMapper(), clientService.streamAllClients(therapistId)).writeTo(out);
+
+		// Verification
+		assertEquals('[', out.first);
+		assertEquals(']', out.last);
+		assertEquals(CLIENTS, out.objects);
+	}
+
+	/**
+	 * The clients of a therapist, created as they are iterated so only the
+	 * response can fill the heap.
+	 */
+	private static class GeneratedClients extends AbstractMap<UUID, Client> {
+
+		private final UUID therapistId;
+		private final int size;
+
+		GeneratedClients(UUID therapistId, int size) {
+			this.therapistId = therapistId;
+			this.size = size;
+		}
+
+		@Override
+		public Set<Map.Entry<UUID, Client>> entrySet() {
+			return new AbstractSet<Map.Entry<UUID, Client>>() {
+
+				@Override
+				public Iterator<Map.Entry<UUID, Client>> iterator() {
+					return new Iterator<Map.Entry<UUID, Client>>() {
+
+						private int next;
+
+						@Override
+						public boolean hasNext() {
+							return next < size;
+						}
+
+						@Override
+						public Map.Entry<UUID, Client> next() {
+							Client client = new Client();
+							client.setId(UUID.randomUUID());
+							client.setTherapistId(therapistId);
+							client.setName("Client " + next);
+							client.setEmail("client" + next + "@test.com");
+							client.setGender(next % 2 == 0 ? "male" : "female");
+							client.setPhoneNumber("+2012345789");
+							next++;
+							return new AbstractMap.SimpleImmutableEntry<>(client.getId(), client);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Keeps the shape of the written JSON instead of its bytes: the first and last
+	 * bytes and the number of objects, none of the fields being an object.
+	 */
+	private static class JsonShapeOutputStream extends OutputStream {
+
+		private int first = -1;
+		private int last = -1;
+		private int objects;
+
+		@Override
+		public void write(int b) {
+			if (first == -1)
+				first = b;
+			last = b;
+			if (b == '{')
+				objects++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			for (int i = off; i < off + len; i++)
+				write(b[i]);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.sayedbaladoh.therapistms.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.sayedbaladoh.therapistms.dto.ClientRequestDto;
+import com.sayedbaladoh.therapistms.dto.ClientResponseDto;
+import com.sayedbaladoh.therapistms.dto.ClientUpdateRequestDto;
+import com.sayedbaladoh.therapistms.dto.TherapistResponseDto;
+import com.sayedbaladoh.therapistms.dto.TherapistUpdateRequestDto;
+import com.sayedbaladoh.therapistms.model.Client;
+import com.sayedbaladoh.therapistms.model.Therapist;
+
+/**
+ * Object mapper helper unit tests
+ *
+ * Test the mappings between the entities and their DTOs
+ *
+ * @author Sayed Baladoh
+ *
+ */
+public class ObjectMapperHelperTest {
+
+	private final ObjectMapperHelper objectMapperHelper = new ObjectMapperHelper();
+
+	/**
+	 * Validate a client request is mapped to a new client
+	 */
+	@Test
+	public void givenClientRequest_whenMapToClient_thenAllPropertiesMapped() {
+		// Data preparation
+		ClientRequestDto clientDto = new ClientRequestDto();
+		clientDto.setName("Ahmed");
+		clientDto.setEmail("ahmed@test.com");
+		clientDto.setPhoneNumber("+2012345789");
+		clientDto.setAddress("Cairo");
+		clientDto.setJob("Engineer");
+		clientDto.setBirthDate(new Date(0));
+		clientDto.setGender("male");
+
+		// Method call
+		Client client = objectMapperHelper.map(clientDto, Client.class);
+
+		// Verification
+		assertEquals("Ahmed", client.getName());
+		assertEquals("ahmed@test.com", client.getEmail());
+		assertEquals("+2012345789", client.getPhoneNumber());
+		assertEquals("Cairo", client.getAddress());
+		assertEquals("Engineer", client.getJob());
+		assertEquals(new Date(0), client.getBirthDate());
+		assertEquals("male", client.getGender());
+	}
+
+	/**
+	 * Validate a client update request only changes the properties it carries
+	 */
+	@Test
+	public void givenPartialClientUpdate_whenMapToClient_thenNullPropertiesSkipped() {
+		// Data preparation
+		Client client = new Client();
+		client.setId(UUID.randomUUID());
+		client.setName("Ahmed");
+		client.setEmail("ahmed@test.com");
+		client.setJob("Engineer");
+		ClientUpdateRequestDto clientDto = new ClientUpdateRequestDto();
+		clientDto.setEmail("ahmed@example.com");
+
+		// Method call
+		Client updated = objectMapperHelper.map(clientDto, client);
+
+		// Verification
+		assertSame(client, updated);
+		assertEquals("Ahmed", updated.getName());
+		assertEquals("ahmed@example.com", updated.getEmail());
+		assertEquals("Engineer", updated.getJob());
+	}
+
+	/**
+	 * Validate a client is mapped to its response
+	 */
+	@Test
+	public void givenClient_whenMapToResponse_thenAllPropertiesMapped() {
+		// Data preparation
+		Client client = new Client();
+		client.setId(UUID.randomUUID());
+		client.setTherapistId(UUID.randomUUID());
+		client.setName("Mariam");
+		client.setEmail("mariam@test.com");
+		client.setGender("female");
+		client.setVersion(2);
+
+		// Method call
+		ClientResponseDto clientDto = objectMapperHelper.map(client, ClientResponseDto.class);
+
+		// Verification
+		assertEquals(client.getId(), clientDto.getId());
+		assertEquals(client.getTherapistId(), clientDto.getTherapistId());
+		assertEquals("Mariam", clientDto.getName());
+		assertEquals("mariam@test.com", clientDto.getEmail());
+		assertEquals("female", clientDto.getGender());
+		assertEquals(2, clientDto.getVersion());
+	}
+
+	/**
+	 * Validate a therapist update request only changes the properties it carries
+	 */
+	@Test
+	public void givenPartialTherapistUpdate_whenMapToTherapist_thenNullPropertiesSkipped() {
+		// Data preparation
+		Therapist therapist = new Therapist();
+		therapist.setId(UUID.randomUUID());
+		therapist.setPracticeId(UUID.randomUUID());
+		therapist.setName("Sayed");
+		therapist.setEmail("sayed@test.com");
+		TherapistUpdateRequestDto therapistDto = new TherapistUpdateRequestDto(null, "Sayed Baladoh", null);
+
+		// Method call
+		objectMapperHelper.map(therapistDto, therapist);
+		TherapistResponseDto response = objectMapperHelper.map(therapist, TherapistResponseDto.class);
+
+		// Verification
+		assertEquals(therapist.getId(), response.getId());
+		assertEquals(therapist.getPracticeId(), response.getPracticeId());
+		assertEquals("Sayed Baladoh", response.getName());
+		assertEquals("sayed@test.com", response.getEmail());
+	}
+
+	/**
+	 * Validate mapping between unrelated types fails
+	 */
+	@Test
+	public void givenNoMapping_whenMap_thenThrowIllegalStateException() {
+		assertThrows(IllegalStateException.class, () -> objectMapperHelper.map(new Client(), Therapist.class));
+	}
+}